@@ -0,0 +1,278 @@
+package graphics;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.net.URL;
+import javax.imageio.ImageIO;
+
+/**
+ * The BlitBenchmark class measures how quickly the game's images can be painted, comparing
+ * the images exactly as ImageIO reads them against the converted images held by the
+ * SpriteCache. Images are painted into a VolatileImage of the screen's size if there is a
+ * screen, so that accelerated painting is measured, or into a plain image if there is not.
+ * The cached images are also painted into a plain image both by Graphics2D.drawImage and
+ * by a SoftwareBlitter, straight and mirrored, to compare the two software paths, and
+ * copied out of an OffHeapSpriteStore a row at a time for the SoftwareBlitter to paint.
+ * <p>Build it with the compile-benchmarks target, then run it from the folder holding the
+ * game's resources folder, optionally giving the number of images to paint in each run:
+ * <pre>java -cp build;build-benchmarks;. graphics.BlitBenchmark [count]</pre>
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class BlitBenchmark {
+	/**
+	 * The default number of images painted in each run
+	 */
+	private static final int DEFAULT_BLIT_COUNT = 200000;
+
+	/**
+	 * The number of runs made before timing, so that the JIT compiler has settled
+	 */
+	private static final int WARMUP_RUNS = 3;
+
+	/**
+	 * The number of timed runs, of which the fastest is reported
+	 */
+	private static final int TIMED_RUNS = 5;
+
+	/**
+	 * The Duck frames painted
+	 */
+	private static final String[] SPRITE_NAMES = {
+		"resources/images/duck/flyright/bvw3-flyright_frame_000.png",
+		"resources/images/duck/flyright/bvw3-flyright_frame_006.png",
+		"resources/images/duck/flyright/bvw3-flyright_frame_012.png",
+		"resources/images/duck/flyright/bvw3-flyright_frame_018.png",
+		"resources/images/background/cloud.png"
+	};
+
+	/**
+	 * The background painted
+	 */
+	private static final String BACKGROUND_NAME = "resources/images/background/background.png";
+
+	/**
+	 * Runs the benchmark
+	 * @param	args	the number of images to paint in each run, if given
+	 * @throws	IOException	if an image cannot be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		final int blitCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_BLIT_COUNT;
+		final SpriteCache spriteCache = new SpriteCache();
+
+		// Read every image both as ImageIO gives it and as the SpriteCache converts it
+		final Image[] rawSprites = new Image[SPRITE_NAMES.length];
+		final Image[] cachedSprites = new Image[SPRITE_NAMES.length];
+		for(int i = 0; i < SPRITE_NAMES.length; i++) {
+			rawSprites[i] = readImage(SPRITE_NAMES[i]);
+			cachedSprites[i] = spriteCache.getSprite(SPRITE_NAMES[i]);
+		}
+		final Image[] rawBackground = {
+			readImage(BACKGROUND_NAME).getScaledInstance(DisplayView.WIDTH, DisplayView.HEIGHT, Image.SCALE_DEFAULT)
+		};
+		final Image[] cachedBackground = {
+			spriteCache.getScaledBackground(BACKGROUND_NAME, DisplayView.WIDTH, DisplayView.HEIGHT)
+		};
+
+		// Paint into an accelerated image if there is a screen to accelerate with
+		final Image target;
+		if(GraphicsEnvironment.isHeadless()) {
+			target = spriteCache.createCompatibleImage(DisplayView.WIDTH, DisplayView.HEIGHT, Transparency.OPAQUE);
+			System.out.println("Target: headless " + DisplayView.WIDTH + "x" + DisplayView.HEIGHT + " image");
+		} else {
+			final GraphicsConfiguration gfxConfig = GraphicsEnvironment.getLocalGraphicsEnvironment()
+				.getDefaultScreenDevice().getDefaultConfiguration();
+			target = gfxConfig.createCompatibleVolatileImage(DisplayView.WIDTH, DisplayView.HEIGHT);
+			System.out.println("Target: " + DisplayView.WIDTH + "x" + DisplayView.HEIGHT + " volatile image");
+		}
+		for(int i = 0; i < SPRITE_NAMES.length; i++) {
+			System.out.println(SPRITE_NAMES[i] + ": read as " + describe(rawSprites[i])
+					+ ", cached as " + describe(cachedSprites[i]));
+		}
+
+		// Backgrounds cover the whole target, so far fewer of them are painted
+		final int backgroundCount = Math.max(blitCount / 500, 1);
+		report("Sprites, as read", blitCount, run(target, rawSprites, blitCount));
+		report("Sprites, cached", blitCount, run(target, cachedSprites, blitCount));
+		report("Background, scaled instance", backgroundCount, run(target, rawBackground, backgroundCount));
+		report("Background, cached", backgroundCount, run(target, cachedBackground, backgroundCount));
+
+		// Compare Java2D's software loops against the SoftwareBlitter, painting into memory
+		final BufferedImage softwareTarget = new BufferedImage(DisplayView.WIDTH, DisplayView.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage[] softwareSprites = new BufferedImage[SPRITE_NAMES.length];
+		final BufferedImage[] mirroredSprites = new BufferedImage[SPRITE_NAMES.length];
+		final ImageTransform imageTransform = new ImageTransform(null);
+		for(int i = 0; i < SPRITE_NAMES.length; i++) {
+			softwareSprites[i] = (BufferedImage)cachedSprites[i];
+			mirroredSprites[i] = imageTransform.getMirrorImage(cachedSprites[i]);
+			if(!SoftwareBlitter.isSupported(softwareSprites[i])) {
+				System.out.println("Blitter: " + SPRITE_NAMES[i] + " is not an int image, so it cannot be blitted");
+				return;
+			}
+		}
+		report("Sprites, drawImage into memory", blitCount, run(softwareTarget, softwareSprites, blitCount));
+		report("Sprites, blitter into memory", blitCount, runBlitter(softwareTarget, softwareSprites, blitCount, false));
+		report("Mirrored sprites, drawImage of mirrored copies", blitCount, run(softwareTarget, mirroredSprites, blitCount));
+		report("Mirrored sprites, blitter mirroring", blitCount, runBlitter(softwareTarget, softwareSprites, blitCount, true));
+
+		// Paint the same sprites held outside the heap
+		final OffHeapSpriteStore store = new OffHeapSpriteStore();
+		final int[] storedSprites = new int[SPRITE_NAMES.length];
+		for(int i = 0; i < SPRITE_NAMES.length; i++) {
+			storedSprites[i] = store.add(softwareSprites[i]);
+		}
+		report("Sprites, blitter from off-heap store", blitCount, runStore(softwareTarget, store, storedSprites, blitCount));
+		store.close();
+	}
+
+	/**
+	 * Reads an image from the class path without converting it
+	 * @param	name	the path of the image
+	 * @return	the image as ImageIO reads it
+	 * @throws	IOException	if the image cannot be read
+	 */
+	private static BufferedImage readImage(final String name) throws IOException {
+		final URL url = BlitBenchmark.class.getClassLoader().getResource(name);
+		if(url == null) {
+			throw new IOException("Cannot find " + name);
+		}
+		return ImageIO.read(url);
+	}
+
+	/**
+	 * Paints the specified images into the target, warming up first, and returns the fastest run
+	 * @param	target	the image to paint into
+	 * @param	images	the images to paint, in turn
+	 * @param	count	the number of images to paint in each run
+	 * @return	the time of the fastest run in nanoseconds
+	 */
+	private static long run(final Image target, final Image[] images, final int count) {
+		long fastest = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+			final Graphics2D gfx = (Graphics2D)target.getGraphics();
+			final long startTime = System.nanoTime();
+			for(int j = 0; j < count; j++) {
+				// Spread the images over the target in a pattern that does not line up with the image list
+				gfx.drawImage(images[j % images.length], (j * 37) % DisplayView.WIDTH - 64,
+						(j * 53) % DisplayView.HEIGHT - 64, null);
+			}
+			// Make sure every image has actually been painted before stopping the clock
+			if(target instanceof VolatileImage) {
+				((VolatileImage)target).getSnapshot().flush();
+			}
+			final long runTime = System.nanoTime() - startTime;
+			gfx.dispose();
+			if(i >= WARMUP_RUNS) {
+				fastest = Math.min(fastest, runTime);
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Paints the specified images into the target with a SoftwareBlitter, warming up first,
+	 * and returns the fastest run
+	 * @param	target	the image to paint into
+	 * @param	images	the images to paint, in turn
+	 * @param	count	the number of images to paint in each run
+	 * @param	mirrored	true to paint the images mirrored
+	 * @return	the time of the fastest run in nanoseconds
+	 */
+	private static long runBlitter(final BufferedImage target, final BufferedImage[] images, final int count,
+			final boolean mirrored) {
+		final SoftwareBlitter blitter = new SoftwareBlitter(target);
+		long fastest = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+			final long startTime = System.nanoTime();
+			for(int j = 0; j < count; j++) {
+				// Spread the images exactly as run does, so both paint the same pixels
+				blitter.blit(images[j % images.length], (j * 37) % DisplayView.WIDTH - 64,
+						(j * 53) % DisplayView.HEIGHT - 64, mirrored);
+			}
+			final long runTime = System.nanoTime() - startTime;
+			if(i >= WARMUP_RUNS) {
+				fastest = Math.min(fastest, runTime);
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Paints the specified sprites from an OffHeapSpriteStore into the target with a
+	 * SoftwareBlitter, warming up first, and returns the fastest run. Each row painted is
+	 * copied out of the store into a one-row image, so no sprite is ever held whole in the heap.
+	 * @param	target	the image to paint into
+	 * @param	store	the store holding the sprites
+	 * @param	sprites	the numbers of the sprites to paint, in turn
+	 * @param	count	the number of sprites to paint in each run
+	 * @return	the time of the fastest run in nanoseconds
+	 */
+	private static long runStore(final BufferedImage target, final OffHeapSpriteStore store, final int[] sprites,
+			final int count) {
+		final SoftwareBlitter blitter = new SoftwareBlitter(target);
+
+		// Give each sprite a row image of its own width to copy its rows into
+		final BufferedImage[] rowImages = new BufferedImage[sprites.length];
+		final int[][] rowPixels = new int[sprites.length][];
+		for(int i = 0; i < sprites.length; i++) {
+			rowImages[i] = new BufferedImage(store.getWidth(sprites[i]), 1, BufferedImage.TYPE_INT_ARGB_PRE);
+			rowPixels[i] = ((DataBufferInt)rowImages[i].getRaster().getDataBuffer()).getData();
+		}
+
+		long fastest = Long.MAX_VALUE;
+		for(int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+			final long startTime = System.nanoTime();
+			for(int j = 0; j < count; j++) {
+				// Spread the sprites exactly as run does, so both paint the same pixels
+				final int index = j % sprites.length;
+				final int xPos = (j * 37) % DisplayView.WIDTH - 64;
+				final int yPos = (j * 53) % DisplayView.HEIGHT - 64;
+
+				// Only copy out the rows that land on the target
+				final int firstRow = Math.max(-yPos, 0);
+				final int lastRow = Math.min(store.getHeight(sprites[index]), DisplayView.HEIGHT - yPos);
+				for(int row = firstRow; row < lastRow; row++) {
+					store.getPixels(sprites[index], row, 0, rowPixels[index], 0, rowPixels[index].length);
+					blitter.blit(rowImages[index], xPos, yPos + row, false);
+				}
+			}
+			final long runTime = System.nanoTime() - startTime;
+			if(i >= WARMUP_RUNS) {
+				fastest = Math.min(fastest, runTime);
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * Prints the rate at which a run painted images
+	 * @param	label	the name of the run
+	 * @param	count	the number of images painted
+	 * @param	nanos	the time taken in nanoseconds
+	 */
+	private static void report(final String label, final int count, final long nanos) {
+		System.out.println(label + ": " + count + " images in " + (nanos / 1000000) + "ms, "
+				+ (long)(count * 1000000000.0 / nanos) + " images/s");
+	}
+
+	/**
+	 * Returns a short description of the format of an image
+	 * @param	image	the image
+	 * @return	the image's type and transparency
+	 */
+	private static String describe(final Image image) {
+		if(!(image instanceof BufferedImage)) {
+			return image.getClass().getName();
+		}
+		final BufferedImage buffered = (BufferedImage)image;
+		final String[] transparency = { "", "opaque", "bitmask", "translucent" };
+		return "type " + buffered.getType() + ", " + transparency[buffered.getTransparency()];
+	}
+}
@@ -0,0 +1,281 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+
+/**
+ * The OffHeapSpriteStore class holds the decoded pixels of sprites outside the Java heap,
+ * in direct buffers owned by the store, so that they add nothing to the heap the garbage
+ * collector has to size and mark. Pixels are kept as premultiplied ARGB ints, packed one
+ * sprite after another into slabs of SLAB_BYTES, or a slab of its own for a sprite larger
+ * than that, and each sprite is known by the number add returns.
+ * <p>Sprites are read out of the store a row at a time by getPixels, or copied into
+ * a BufferedImage by toImage whenever Java2D needs one. The store's memory is owned by the
+ * store: once close is called every sprite is gone and the buffers are left for the garbage
+ * collector to free, and any further use of the store throws an IllegalStateException.
+ * <p>A store is filled by one thread, but once filled may be read by any number of threads.
+ * <p>The store is only used by the BlitBenchmark and SpriteStoreBenchmark, to measure what
+ * keeping sprites outside the heap would save, and lives with them in the benchmark sources
+ * rather than in the game. The game still
+ * needs every sprite as a BufferedImage on the heap, for Java2D to paint, scale and test for
+ * hits, so a copy in the store would only add to its memory. The heap the sprites take is
+ * cut instead by keeping them as CompactSprites.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+class OffHeapSpriteStore {
+	/**
+	 * The size of each slab of memory allocated, in bytes
+	 */
+	public static final int SLAB_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * The default number of sprites the store can describe before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The slabs holding the pixels, as IntBuffers over direct ByteBuffers
+	 */
+	private transient ArrayList slabs;
+
+	/**
+	 * The slab holding each sprite, the index of each sprite's first pixel in its slab,
+	 * and each sprite's width and height
+	 */
+	private transient int[] spriteSlab, spriteOffset, spriteWidth, spriteHeight;
+
+	/**
+	 * The number of sprites held, and the index of the next free pixel in the last slab
+	 */
+	private transient int spriteCount, slabPosition;
+
+	/**
+	 * The number of bytes allocated for slabs, and the number used by sprites
+	 */
+	private transient long allocatedBytes, usedBytes;
+
+	/**
+	 * Constructor for the class OffHeapSpriteStore
+	 */
+	public OffHeapSpriteStore() {
+		slabs = new ArrayList();
+		spriteSlab = new int[DEFAULT_CAPACITY];
+		spriteOffset = new int[DEFAULT_CAPACITY];
+		spriteWidth = new int[DEFAULT_CAPACITY];
+		spriteHeight = new int[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Copies the pixels of an image into the store
+	 * @param	image	the image to copy
+	 * @return	the number of the sprite in the store
+	 */
+	public int add(final BufferedImage image) {
+		checkOpen();
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int pixelCount = width * height;
+
+		// Start a new slab if the sprite does not fit in what is left of the last one,
+		// giving sprites larger than a slab, such as backgrounds, a slab of their own
+		if((slabs.isEmpty()) || (slabPosition + pixelCount > ((IntBuffer)slabs.get(slabs.size() - 1)).capacity())) {
+			final int slabBytes = Math.max(SLAB_BYTES, pixelCount * 4);
+			slabs.add(ByteBuffer.allocateDirect(slabBytes).order(ByteOrder.nativeOrder()).asIntBuffer());
+			allocatedBytes += slabBytes;
+			slabPosition = 0;
+		}
+		if(spriteCount == spriteSlab.length) {
+			grow();
+		}
+
+		// Copy the image a row at a time as premultiplied ARGB, taking the pixels as they are
+		// from images that already hold them that way, so they are not rounded twice
+		final IntBuffer slab = (IntBuffer)slabs.get(slabs.size() - 1);
+		final int type = image.getType();
+		final int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			if(type == BufferedImage.TYPE_INT_ARGB_PRE) {
+				image.getRaster().getDataElements(0, y, width, 1, row);
+			} else if(type == BufferedImage.TYPE_INT_RGB) {
+				image.getRaster().getDataElements(0, y, width, 1, row);
+				for(int x = 0; x < width; x++) {
+					row[x] |= 0xFF000000;
+				}
+			} else {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				for(int x = 0; x < width; x++) {
+					row[x] = premultiply(row[x]);
+				}
+			}
+			slab.put(slabPosition + y * width, row, 0, width);
+		}
+		spriteSlab[spriteCount] = slabs.size() - 1;
+		spriteOffset[spriteCount] = slabPosition;
+		spriteWidth[spriteCount] = width;
+		spriteHeight[spriteCount] = height;
+		slabPosition += pixelCount;
+		usedBytes += pixelCount * 4L;
+		return spriteCount++;
+	}
+
+	/**
+	 * Copies a sprite into a new premultiplied ARGB image for painting with Java2D
+	 * @param	sprite	the number of the sprite
+	 * @return	a new image holding the sprite's pixels
+	 */
+	public BufferedImage toImage(final int sprite) {
+		checkSprite(sprite);
+		final int width = spriteWidth[sprite];
+		final int height = spriteHeight[sprite];
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		final int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		getSlab(sprite).get(spriteOffset[sprite], pixels, 0, width * height);
+		return image;
+	}
+
+	/**
+	 * Copies part of one row of a sprite's pixels into an array
+	 * @param	sprite	the number of the sprite
+	 * @param	row	the row to copy
+	 * @param	column	the first column to copy
+	 * @param	destination	the array to copy the pixels into
+	 * @param	index	the index in the array of the first pixel copied
+	 * @param	count	the number of pixels to copy
+	 */
+	public void getPixels(final int sprite, final int row, final int column, final int[] destination,
+			final int index, final int count) {
+		checkSprite(sprite);
+		getSlab(sprite).get(spriteOffset[sprite] + row * spriteWidth[sprite] + column, destination, index, count);
+	}
+
+	/**
+	 * Returns the width of a sprite
+	 * @param	sprite	the number of the sprite
+	 * @return	the width in pixels
+	 */
+	public int getWidth(final int sprite) {
+		checkSprite(sprite);
+		return spriteWidth[sprite];
+	}
+
+	/**
+	 * Returns the height of a sprite
+	 * @param	sprite	the number of the sprite
+	 * @return	the height in pixels
+	 */
+	public int getHeight(final int sprite) {
+		checkSprite(sprite);
+		return spriteHeight[sprite];
+	}
+
+	/**
+	 * Returns the number of sprites held
+	 * @return	the number of sprites
+	 */
+	public int getSpriteCount() { return spriteCount; }
+
+	/**
+	 * Returns the number of bytes of memory outside the heap allocated by the store
+	 * @return	the number of bytes allocated
+	 */
+	public long getAllocatedBytes() { return allocatedBytes; }
+
+	/**
+	 * Returns the number of bytes of the store's memory holding sprites
+	 * @return	the number of bytes used
+	 */
+	public long getUsedBytes() { return usedBytes; }
+
+	/**
+	 * Returns whether the store has been closed
+	 * @return	true if the store has been closed
+	 */
+	public boolean isClosed() { return slabs == null; }
+
+	/**
+	 * Forgets every sprite and lets go of the store's memory. Direct buffers cannot be freed
+	 * on demand, so the memory is returned once the garbage collector finds the buffers
+	 * unreachable, which only the store ever refers to.
+	 */
+	public void close() {
+		slabs = null;
+		spriteCount = 0;
+		allocatedBytes = 0;
+		usedBytes = 0;
+	}
+
+	/**
+	 * Returns the slab holding a sprite
+	 * @param	sprite	the number of the sprite
+	 * @return	the sprite's slab
+	 */
+	private IntBuffer getSlab(final int sprite) {
+		return (IntBuffer)slabs.get(spriteSlab[sprite]);
+	}
+
+	/**
+	 * Throws an exception if the store has been closed
+	 */
+	private void checkOpen() {
+		if(slabs == null) {
+			throw new IllegalStateException("Sprite store is closed");
+		}
+	}
+
+	/**
+	 * Throws an exception if the store has been closed or holds no such sprite
+	 * @param	sprite	the number of the sprite
+	 */
+	private void checkSprite(final int sprite) {
+		checkOpen();
+		if((sprite < 0) || (sprite >= spriteCount)) {
+			throw new IllegalArgumentException("No sprite " + sprite + " in the store");
+		}
+	}
+
+	/**
+	 * Multiplies the colours of an ARGB pixel by its alpha, rounding as Java2D does
+	 * @param	pixel	the ARGB pixel
+	 * @return	the premultiplied pixel
+	 */
+	private static int premultiply(final int pixel) {
+		final int alpha = pixel >>> 24;
+		if(alpha == 0xFF) {
+			return pixel;
+		} else if(alpha == 0) {
+			return 0;
+		}
+		final int red = (((pixel >> 16) & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		final int green = (((pixel >> 8) & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		final int blue = ((pixel & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	/**
+	 * Doubles the number of sprites the store can describe
+	 */
+	private void grow() {
+		final int capacity = spriteSlab.length * 2;
+		spriteSlab = copyOf(spriteSlab, capacity);
+		spriteOffset = copyOf(spriteOffset, capacity);
+		spriteWidth = copyOf(spriteWidth, capacity);
+		spriteHeight = copyOf(spriteHeight, capacity);
+	}
+
+	/**
+	 * Copies an array into a new, larger array
+	 * @param	array	the array to copy
+	 * @param	length	the length of the new array
+	 * @return	the new array
+	 */
+	private static int[] copyOf(final int[] array, final int length) {
+		final int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, array.length);
+		return copy;
+	}
+}
@@ -0,0 +1,174 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.FileLister;
+
+/**
+ * The SpriteStoreBenchmark class measures what keeping the game's sprites outside the heap
+ * saves. It loads every image under the resources folder, with a mirrored copy of each as
+ * the game makes for its animations, first into the heap as the SpriteCache holds them and
+ * then into an OffHeapSpriteStore, which needs no mirrored copies as the SoftwareBlitter
+ * mirrors as it paints. For each it reports the heap in use once the images are loaded and
+ * the time the garbage collector takes to run full collections and to clear away short-lived
+ * garbage while the images are held.
+ * <p>Build it with the compile-benchmarks target, then run it from the folder holding the
+ * game's resources folder:
+ * <pre>java -cp build;build-benchmarks;. graphics.SpriteStoreBenchmark</pre>
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class SpriteStoreBenchmark {
+	/**
+	 * The folder the images are loaded from
+	 */
+	private static final String IMAGE_FOLDER = "resources/images";
+
+	/**
+	 * The number of full collections timed
+	 */
+	private static final int FULL_COLLECTIONS = 10;
+
+	/**
+	 * The number of short-lived arrays allocated to make the collector run, and their size in bytes
+	 */
+	private static final int GARBAGE_COUNT = 200000, GARBAGE_BYTES = 1024;
+
+	/**
+	 * An array kept reachable so the garbage allocated is not optimised away
+	 */
+	private static byte[] lastGarbage;
+
+	/**
+	 * Runs the benchmark
+	 * @param	args	not used
+	 * @throws	IOException	if the images cannot be listed
+	 */
+	public static void main(final String[] args) throws IOException {
+		final List names = listImages();
+		System.out.println("Images: " + names.size() + " found under " + IMAGE_FOLDER);
+		final long baseHeap = getUsedHeap();
+		report("Baseline", baseHeap, baseHeap);
+
+		// Load every image into the heap, with a mirrored copy of each
+		SpriteCache spriteCache = new SpriteCache();
+		ArrayList heapImages = new ArrayList();
+		final ImageTransform imageTransform = new ImageTransform(null);
+		for(int i = 0; i < names.size(); i++) {
+			final BufferedImage image = spriteCache.getSprite((String)names.get(i));
+			heapImages.add(image);
+			heapImages.add(imageTransform.getMirrorImage(image));
+		}
+		report("On the heap (" + heapImages.size() + " images)", baseHeap, getUsedHeap());
+
+		// Copy the images into the store, then let go of every heap image
+		final OffHeapSpriteStore store = new OffHeapSpriteStore();
+		for(int i = 0; i < heapImages.size(); i += 2) {
+			store.add((BufferedImage)heapImages.get(i));
+		}
+		heapImages = null;
+		spriteCache = null;
+		report("Off the heap (" + store.getSpriteCount() + " sprites, " + (store.getUsedBytes() / 1024) + "KB used of "
+				+ (store.getAllocatedBytes() / 1024) + "KB allocated)", baseHeap, getUsedHeap());
+
+		// Free the store and check the heap returns to where it started
+		store.close();
+		report("Store closed", baseHeap, getUsedHeap());
+	}
+
+	/**
+	 * Prints the heap in use and how long the garbage collector takes with it
+	 * @param	label	the name of what is being measured
+	 * @param	baseHeap	the heap in use before any images were loaded, in bytes
+	 * @param	usedHeap	the heap in use now, in bytes
+	 */
+	private static void report(final String label, final long baseHeap, final long usedHeap) {
+		// Time full collections, which have to visit everything still reachable
+		long startTime = System.nanoTime();
+		for(int i = 0; i < FULL_COLLECTIONS; i++) {
+			System.gc();
+		}
+		final long fullNanos = (System.nanoTime() - startTime) / FULL_COLLECTIONS;
+
+		// Make short-lived garbage and count the time the collector reports spending on it
+		final long startCollections = getCollectionCount();
+		final long startCollectionTime = getCollectionTime();
+		startTime = System.nanoTime();
+		for(int i = 0; i < GARBAGE_COUNT; i++) {
+			lastGarbage = new byte[GARBAGE_BYTES];
+		}
+		final long garbageNanos = System.nanoTime() - startTime;
+		System.out.println(label + ": heap " + (usedHeap / 1024) + "KB (" + ((usedHeap - baseHeap) / 1024)
+				+ "KB for images), full GC " + (fullNanos / 1000) + "us, garbage made in " + (garbageNanos / 1000000)
+				+ "ms with " + (getCollectionCount() - startCollections) + " collections taking "
+				+ (getCollectionTime() - startCollectionTime) + "ms");
+	}
+
+	/**
+	 * Returns the heap in use once everything unreachable has been collected
+	 * @return	the heap in use in bytes
+	 */
+	private static long getUsedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Returns the total number of collections run by every garbage collector
+	 * @return	the number of collections
+	 */
+	private static long getCollectionCount() {
+		long count = 0;
+		final List collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for(int i = 0; i < collectors.size(); i++) {
+			count += ((GarbageCollectorMXBean)collectors.get(i)).getCollectionCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total time spent collecting by every garbage collector
+	 * @return	the collection time in milliseconds
+	 */
+	private static long getCollectionTime() {
+		long time = 0;
+		final List collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		for(int i = 0; i < collectors.size(); i++) {
+			time += ((GarbageCollectorMXBean)collectors.get(i)).getCollectionTime();
+		}
+		return time;
+	}
+
+	/**
+	 * Lists the class path names of every PNG image under the image folder
+	 * @return	the image names
+	 * @throws	IOException	if the folder cannot be found or read
+	 */
+	private static List listImages() throws IOException {
+		final URL folder = SpriteStoreBenchmark.class.getClassLoader().getResource(IMAGE_FOLDER);
+		if(folder == null) {
+			throw new IOException("Cannot find " + IMAGE_FOLDER);
+		}
+		final File root = new File(folder.getFile());
+		final String rootPath = root.getParentFile().getParentFile().getPath();
+		final List files = FileLister.getFileListing(root);
+		final ArrayList names = new ArrayList();
+		for(int i = 0; i < files.size(); i++) {
+			final String path = files.get(i).toString();
+			if(path.endsWith(".png")) {
+				names.add(path.substring(rootPath.length() + 1).replace(File.separatorChar, '/'));
+			}
+		}
+		return names;
+	}
+}
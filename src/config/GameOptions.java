@@ -52,6 +52,16 @@ public class GameOptions implements Serializable {
 	 */
 	private boolean soundDuck;
 	
+	/**
+	 * The state of rendering on a separate thread from the game updates
+	 */
+	private boolean pipelinedRendering;
+	
+	/**
+	 * The state of lowering the quality when frames take too long
+	 */
+	private boolean adaptiveQuality;
+	
 	/**
 	 * Creates a new instance of the GameOptions class with the specified option parameters.
 	 * @param	dMode	whether or not debug mode is active
@@ -76,6 +86,12 @@ public class GameOptions implements Serializable {
 		soundAmbience = sAmbience;
 		soundShot = sShot;
 		soundDuck = sDuck;
+		
+		// Render on a separate thread by default if there is a processor free to do it
+		pipelinedRendering = (Runtime.getRuntime().availableProcessors() > 1);
+		
+		// Lower the quality when frames take too long by default
+		adaptiveQuality = true;
 	}
 	
 	/**
@@ -174,6 +190,30 @@ public class GameOptions implements Serializable {
 	 */
 	public void setDecalLimitEnabled(final boolean dLimit) { decalLimitEnabled = dLimit; }
 	
+	/**
+	 * Returns whether the game is rendered on a separate thread from the game updates
+	 * @return	current pipelined rendering state
+	 */
+	public boolean getPipelinedRendering() { return pipelinedRendering; }
+	
+	/**
+	 * Sets whether the game is rendered on a separate thread from the game updates
+	 * @param	pRendering	the pipelined rendering state to set
+	 */
+	public void setPipelinedRendering(final boolean pRendering) { pipelinedRendering = pRendering; }
+	
+	/**
+	 * Returns whether the quality is lowered when frames take too long
+	 * @return	current adaptive quality state
+	 */
+	public boolean getAdaptiveQuality() { return adaptiveQuality; }
+	
+	/**
+	 * Sets whether the quality is lowered when frames take too long
+	 * @param	aQuality	the adaptive quality state to set
+	 */
+	public void setAdaptiveQuality(final boolean aQuality) { adaptiveQuality = aQuality; }
+	
 	/**
 	 * Returns a String value based on the boolean passed. Simply converts a boolean
 	 * variable to a "Yes" or "No" answer.
@@ -197,6 +237,8 @@ public class GameOptions implements Serializable {
 				+ "\nSound: " + booleanToString(soundEnabled)
 				+ "\nSound-Ambience: " + booleanToString(soundAmbience)
 				+ "\nSound-Shotgun: " + booleanToString(soundShot)
-				+ "\nSound-Duck: " + booleanToString(soundDuck));
+				+ "\nSound-Duck: " + booleanToString(soundDuck)
+				+ "\nRender Thread: " + booleanToString(pipelinedRendering)
+				+ "\nAdaptive Quality: " + booleanToString(adaptiveQuality));
 	}
 }
@@ -0,0 +1,388 @@
+package core;
+
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import config.AbstractGameMode;
+import config.GameOptions;
+import graphics.DisplayView;
+import graphics.ImageRenderTarget;
+import graphics.SpriteCache;
+import sound.SoundCache;
+import util.GameClock;
+
+/**
+ * The ConsistencyCheck class runs the whole game with no window, as the HeadlessBenchmark
+ * does, and checks that the different ways of painting a frame into memory give exactly the
+ * same pixels. Every CHECK_INTERVAL frames, the frame just painted is painted again on the
+ * game thread alone with Java2D drawing every Sprite, which is the reference, and then with
+ * the Sprites blitted by SoftwareBlitters, in tiles across a pool, and in tiles with the
+ * Sprites blitted, each of which is compared pixel for pixel with the reference. Every image
+ * is filled with the same colour first, so a part of the frame one way leaves unpainted is
+ * caught too. The tiles are painted across a pool of TILE_THREADS threads of the check's
+ * own, so they are checked even on a machine with one processor, and shots are fired at
+ * fixed places so that decals and scores are painted as well.
+ * <p>The game is run twice, once keeping sprites as CompactSprites and once converting every
+ * sprite to an integer RGB format, as the SoftwareBlitter paints the two differently.
+ * <p>The check then runs a game of DUCK_COUNT Ducks a round twice from the same seed, firing
+ * the same shots, once updating the Ducks on the game thread and once updating them across
+ * a pool of UPDATE_THREADS threads every tick, and compares a hash of every Duck's position,
+ * velocity, state and animation frame after each tick, so any tick the parallel update
+ * differs from the sequential one is caught, including the removal of dead Ducks and the
+ * rounds that follow. The round has a time limit, so Ducks fly away as well as being shot.
+ * <p>The check exits with status 1 if any frame or tick differs.
+ * <p>Run it from the folder holding the game's resources folder:
+ * <pre>java -Djava.awt.headless=true core.ConsistencyCheck [frames]</pre>
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class ConsistencyCheck {
+	/**
+	 * The default number of frames run in each game
+	 */
+	private static final int DEFAULT_FRAME_COUNT = 1000;
+
+	/**
+	 * The number of frames run before the first check, so the game has started
+	 */
+	private static final int WARMUP_FRAMES = 10;
+
+	/**
+	 * The number of frames between checks
+	 */
+	private static final int CHECK_INTERVAL = 20;
+
+	/**
+	 * The number of frames between shots
+	 */
+	private static final int SHOT_INTERVAL = 15;
+
+	/**
+	 * The number of threads painting tiles
+	 */
+	private static final int TILE_THREADS = 4;
+
+	/**
+	 * The number of threads updating Ducks
+	 */
+	private static final int UPDATE_THREADS = 4;
+
+	/**
+	 * The number of Ducks spawned each round of the game updating Ducks, which is enough for the
+	 * updates to be split across the pool, the shots each round, and the round's time limit
+	 */
+	private static final int DUCK_COUNT = 300, DUCK_AMMO = 40, DUCK_TIME_LIMIT = 8000;
+
+	/**
+	 * The seed every Duck's movement is derived from, so each run plays out the same
+	 */
+	private static final long GAME_SEED = 20060603L;
+
+	/**
+	 * The game mode run
+	 */
+	private static final String GAME_MODE = "config.gamemodes.Aduckalypse";
+
+	/**
+	 * The colour every image is filled with before it is painted
+	 */
+	private static final int FILL_COLOUR = 0xFF00FF;
+
+	/**
+	 * The largest number of differences described in full for each way of painting
+	 */
+	private static final int MAX_REPORTED = 5;
+
+	/**
+	 * The time between checks of whether the game has finished, in milliseconds
+	 */
+	private static final long POLL_TIME = 5;
+
+	/**
+	 * The names of the ways of painting compared against the reference
+	 */
+	private static final String[] PATH_NAMES = { "blitted", "tiled", "tiled and blitted" };
+
+	/**
+	 * The game being checked
+	 */
+	private transient GameCore game;
+
+	/**
+	 * The pool the tiles are painted across
+	 */
+	private transient final ForkJoinPool tilePool;
+
+	/**
+	 * The pool the Ducks are updated across
+	 */
+	private transient final ForkJoinPool updatePool;
+
+	/**
+	 * The hash of the Ducks after each frame of the game being run, or null if frames are being checked
+	 */
+	private transient long[] duckHashes;
+
+	/**
+	 * The image the reference frame is painted into, and the images each way of painting paints into
+	 */
+	private transient final BufferedImage referenceImage;
+	private transient final BufferedImage[] pathImages;
+
+	/**
+	 * The number of frames to run before stopping the game
+	 */
+	private transient final int frameCount;
+
+	/**
+	 * The number of frames checked, and the number of frames that differed for each way of painting
+	 */
+	private transient int checkedCount;
+	private transient final int[] differentCounts;
+
+	/**
+	 * The number of shots fired
+	 */
+	private transient int shotCount;
+
+	/**
+	 * Constructor for the class ConsistencyCheck
+	 * @param	frames	the number of frames to run in each game
+	 */
+	public ConsistencyCheck(int frames) {
+		frameCount = frames;
+		tilePool = new ForkJoinPool(TILE_THREADS);
+		updatePool = new ForkJoinPool(UPDATE_THREADS);
+		referenceImage = new BufferedImage(DisplayView.WIDTH, DisplayView.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		pathImages = new BufferedImage[PATH_NAMES.length];
+		for(int i = 0; i < pathImages.length; i++) {
+			pathImages[i] = new BufferedImage(DisplayView.WIDTH, DisplayView.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		}
+		differentCounts = new int[PATH_NAMES.length];
+	}
+
+	/**
+	 * Runs the check
+	 * @param	args	the number of frames to run in each game, if given
+	 * @throws	Exception	if the game mode cannot be created or the game thread is interrupted
+	 */
+	public static void main(final String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		final int frames = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_FRAME_COUNT;
+		final ConsistencyCheck check = new ConsistencyCheck(frames);
+		boolean passed = check.checkFrames(true);
+		passed = check.checkFrames(false) && passed;
+		passed = check.checkDuckUpdates() && passed;
+		check.tilePool.shutdown();
+		check.updatePool.shutdown();
+		System.out.println(passed ? "Consistency check passed" : "Consistency check FAILED");
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Runs a game, checking its frames are painted the same every way
+	 * @param	compactSprites	true to keep sprites as CompactSprites
+	 * @return	true if every frame checked was the same every way
+	 * @throws	Exception	if the game mode cannot be created or the game thread is interrupted
+	 */
+	private boolean checkFrames(final boolean compactSprites) throws Exception {
+		checkedCount = 0;
+		Arrays.fill(differentCounts, 0);
+		duckHashes = null;
+		runGame((AbstractGameMode)Class.forName(GAME_MODE).getDeclaredConstructor().newInstance(),
+				new SpriteCache(compactSprites), null);
+
+		// Report how many frames differed each way
+		boolean passed = (checkedCount > 0);
+		System.out.println((compactSprites ? "Compact" : "Converted") + " sprites: " + checkedCount + " frames checked");
+		for(int i = 0; i < PATH_NAMES.length; i++) {
+			System.out.println("  " + PATH_NAMES[i] + ": " + differentCounts[i] + " frames differ");
+			passed = passed && (differentCounts[i] == 0);
+		}
+		return passed;
+	}
+
+	/**
+	 * Runs a game updating the Ducks on the game thread and then the same game updating them
+	 * across the pool, checking the Ducks are the same after every tick
+	 * @return	true if the Ducks were the same after every tick
+	 * @throws	InterruptedException	if the game thread is interrupted
+	 */
+	private boolean checkDuckUpdates() throws InterruptedException {
+		final SpriteCache spriteCache = new SpriteCache();
+		duckHashes = new long[frameCount + 1];
+		runGame(new CheckMode(), spriteCache, null);
+		final long[] sequentialHashes = duckHashes;
+		duckHashes = new long[frameCount + 1];
+		runGame(new CheckMode(), spriteCache, updatePool);
+		final long[] parallelHashes = duckHashes;
+		duckHashes = null;
+
+		// Find the first tick the Ducks differed after
+		int firstDifferent = -1;
+		for(int i = 0; (i < parallelHashes.length) && (firstDifferent < 0); i++) {
+			if(sequentialHashes[i] != parallelHashes[i]) {
+				firstDifferent = i;
+			}
+		}
+		System.out.println("Duck updates: " + frameCount + " ticks of " + DUCK_COUNT + " Ducks a round, "
+				+ ((firstDifferent < 0) ? "parallel and sequential the same"
+				: "parallel differs from sequential after tick " + firstDifferent));
+		return (firstDifferent < 0);
+	}
+
+	/**
+	 * Runs a silent game painting into memory on the game thread, on a virtual clock, calling
+	 * frameShown as each frame is shown, until frameCount frames have been shown
+	 * @param	gameMode	the game mode to run
+	 * @param	spriteCache	the SpriteCache to use
+	 * @param	duckPool	the pool to update the Ducks across every tick, or null to update them on the game thread
+	 * @throws	InterruptedException	if the game thread is interrupted
+	 */
+	private void runGame(final AbstractGameMode gameMode, final SpriteCache spriteCache, final ForkJoinPool duckPool)
+			throws InterruptedException {
+		shotCount = 0;
+		final GameOptions gameOptions = new GameOptions(false, true, false, false, false, false, true, true);
+		gameOptions.setPipelinedRendering(false);
+		gameOptions.setAdaptiveQuality(false);
+		final Player player = new Player("Check", gameMode.getAmmoCount(), gameMode.getLifeCount());
+		final ImageRenderTarget target = new ImageRenderTarget(DisplayView.WIDTH, DisplayView.HEIGHT) {
+			public void show() {
+				super.show();
+				frameShown(getFrameCount());
+			}
+		};
+		game = new GameCore(gameMode, gameOptions, spriteCache, new SoundCache(), player, target);
+		game.setGameClock(new GameClock(true));
+		game.setGameSeed(GAME_SEED);
+		game.setDuckUpdatePool(duckPool, 0);
+		final Thread gameThread = new Thread(game, "Game");
+		gameThread.start();
+		while(gameThread.isAlive()) {
+			Thread.sleep(POLL_TIME);
+		}
+	}
+
+	/**
+	 * Called on the game thread each time a frame is shown, firing shots, checking the frame or
+	 * recording the Ducks, and stopping the game once enough frames have been run
+	 * @param	frame	the number of frames shown so far
+	 */
+	private void frameShown(final long frame) {
+		if(frame >= frameCount) {
+			game.setVisible(false);
+		}
+		if(duckHashes != null) {
+			duckHashes[(int)Math.min(frame, frameCount)] = game.getDuckStateHash();
+		}
+		if(frame < WARMUP_FRAMES) {
+			return;
+		}
+		if(frame % SHOT_INTERVAL == 0) {
+			fireShot();
+		}
+		if((duckHashes == null) && (frame % CHECK_INTERVAL == 0)) {
+			checkFrame(frame);
+		}
+	}
+
+	/**
+	 * Fires a shot at the next of a fixed set of places spread across the game
+	 */
+	private void fireShot() {
+		final int xPos = (shotCount * 389) % DisplayView.WIDTH;
+		final int yPos = (shotCount * 241) % DisplayView.HEIGHT;
+		shotCount++;
+		game.mousePressed(new MouseEvent(game, MouseEvent.MOUSE_PRESSED, 0, 0, xPos, yPos, 1, false, MouseEvent.BUTTON1));
+	}
+
+	/**
+	 * Paints the frame just shown again every way, comparing each with the reference
+	 * @param	frame	the number of the frame
+	 */
+	private void checkFrame(final long frame) {
+		final int[] reference = getPixels(referenceImage);
+		Arrays.fill(reference, FILL_COLOUR);
+		game.repaintFrame(referenceImage, null, false);
+		for(int i = 0; i < pathImages.length; i++) {
+			final int[] pixels = getPixels(pathImages[i]);
+			Arrays.fill(pixels, FILL_COLOUR);
+			game.repaintFrame(pathImages[i], (i == 0) ? null : tilePool, (i != 1));
+			if(!Arrays.equals(reference, pixels)) {
+				if(differentCounts[i] < MAX_REPORTED) {
+					reportDifference(frame, PATH_NAMES[i], reference, pixels);
+				}
+				differentCounts[i]++;
+			}
+		}
+		checkedCount++;
+	}
+
+	/**
+	 * Describes how a frame painted one way differs from the reference
+	 * @param	frame	the number of the frame
+	 * @param	pathName	the name of the way of painting
+	 * @param	reference	the reference frame's pixels
+	 * @param	pixels	the pixels painted the other way
+	 */
+	private static void reportDifference(final long frame, final String pathName, final int[] reference,
+			final int[] pixels) {
+		int first = -1, count = 0;
+		for(int i = 0; i < reference.length; i++) {
+			if(reference[i] != pixels[i]) {
+				if(first < 0) {
+					first = i;
+				}
+				count++;
+			}
+		}
+		System.out.println("Frame " + frame + " painted " + pathName + ": " + count + " pixels differ, first at "
+				+ (first % DisplayView.WIDTH) + "," + (first / DisplayView.WIDTH) + " (" + Integer.toHexString(pixels[first])
+				+ " rather than " + Integer.toHexString(reference[first]) + ")");
+	}
+
+	/**
+	 * The CheckMode inner-class is the game mode run to check the Duck updates, spawning
+	 * DUCK_COUNT Ducks a round with a time limit, and lives enough that the game never ends
+	 */
+	private class CheckMode extends AbstractGameMode {
+		/**
+		 * Resets the initial variables for this GameMode
+		 */
+		public void resetGame() {
+			this.setDifficultyLevel(1);
+			this.setRoundNumber(1);
+			this.setAmmoCount(DUCK_AMMO);
+			this.setDuckCount(DUCK_COUNT);
+			this.setLifeCount(Integer.MAX_VALUE);
+			this.setTimeLimit(DUCK_TIME_LIMIT);
+			this.setShotModifier(false);
+			this.setName("Consistency Check");
+			this.setDescription("Crowded rounds for checking Duck updates");
+		}
+
+		/**
+		 * Moves on to the next round, and the next level after every fifth round
+		 */
+		public void updateState() {
+			if(roundNumber >= 5) {
+				roundNumber = 1;
+				difficultyLevel++;
+			} else {
+				roundNumber++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the array behind the pixels of an integer RGB image
+	 * @param	image	the image
+	 * @return	the image's pixels
+	 */
+	private static int[] getPixels(final BufferedImage image) {
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+}
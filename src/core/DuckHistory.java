@@ -0,0 +1,218 @@
+package core;
+
+import java.util.ArrayList;
+
+import core.sprites.Duck;
+import graphics.HitMask;
+
+/**
+ * The DuckHistory class remembers where every Duck was for the last few ticks, so that a
+ * shot can be checked against the Ducks the player could see when they clicked rather than
+ * where the Ducks have moved to by the time the click is handled. Each tick is recorded
+ * with its game time into a ring buffer, and a shot is rewound to the newest tick recorded
+ * at or before the time the click was made.
+ * <p>The arrays for each tick are reused, so recording does not create any objects once
+ * they are large enough, and checking a shot takes at most one pass over the ticks and
+ * one pass over the Ducks of a single tick.
+ * <p>A shot is checked in two stages: first against the bounds of each Duck's frame, and
+ * then, only for a Duck whose bounds contain the point, against the HitMask of the frame
+ * that was showing, so clicking the transparent corners around a Duck is a miss.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class DuckHistory {
+	/**
+	 * The default number of Ducks each tick can hold before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The game time of each tick recorded
+	 */
+	private transient final long[] tickTimes;
+
+	/**
+	 * The number of Ducks in each tick recorded
+	 */
+	private transient final int[] duckCounts;
+
+	/**
+	 * The Ducks in each tick recorded
+	 */
+	private transient final Duck[][] tickDucks;
+
+	/**
+	 * The bounds of each Duck in each tick recorded
+	 */
+	private transient final int[][] duckLeft, duckTop, duckRight, duckBottom;
+
+	/**
+	 * The HitMask of each Duck's frame in each tick recorded
+	 */
+	private transient final HitMask[][] duckMasks;
+
+	/**
+	 * The slot holding the newest tick and the number of ticks recorded
+	 */
+	private transient int newestSlot, recordCount;
+
+	/**
+	 * The number of ticks the last shot was rewound by
+	 */
+	private transient int lastRewind;
+
+	/**
+	 * The number of shots that were inside a Duck's bounds but missed its HitMask
+	 */
+	private transient long maskMissCount;
+
+	/**
+	 * Constructor for the class DuckHistory
+	 * @param	depth	the number of ticks to remember
+	 */
+	public DuckHistory(int depth) {
+		if(depth <= 0) {
+			throw new IllegalArgumentException("depth must be greater than zero");
+		}
+		tickTimes = new long[depth];
+		duckCounts = new int[depth];
+		tickDucks = new Duck[depth][DEFAULT_CAPACITY];
+		duckLeft = new int[depth][DEFAULT_CAPACITY];
+		duckTop = new int[depth][DEFAULT_CAPACITY];
+		duckRight = new int[depth][DEFAULT_CAPACITY];
+		duckBottom = new int[depth][DEFAULT_CAPACITY];
+		duckMasks = new HitMask[depth][DEFAULT_CAPACITY];
+		clear();
+	}
+
+	/**
+	 * Records where every Duck in the list is at the specified game time, replacing
+	 * the oldest tick remembered
+	 * @param	time	the game time of the tick
+	 * @param	duckList	the list of Ducks
+	 */
+	public void record(final long time, final ArrayList duckList) {
+		final int slot = (newestSlot + 1) % tickTimes.length;
+		final int count = duckList.size();
+
+		// Drop the references held by the old tick, then make room for the new one
+		for(int i = 0; i < duckCounts[slot]; i++) {
+			tickDucks[slot][i] = null;
+			duckMasks[slot][i] = null;
+		}
+		if(count > tickDucks[slot].length) {
+			final int capacity = Math.max(count, tickDucks[slot].length * 2);
+			tickDucks[slot] = new Duck[capacity];
+			duckLeft[slot] = new int[capacity];
+			duckTop[slot] = new int[capacity];
+			duckRight[slot] = new int[capacity];
+			duckBottom[slot] = new int[capacity];
+			duckMasks[slot] = new HitMask[capacity];
+		}
+
+		// Record the bounds and HitMask of each Duck's current frame
+		Duck aDuck = null;
+		for(int i = 0; i < count; i++) {
+			aDuck = (Duck)duckList.get(i);
+			tickDucks[slot][i] = aDuck;
+			duckLeft[slot][i] = aDuck.getXPosition();
+			duckTop[slot][i] = aDuck.getYPosition();
+			duckRight[slot][i] = aDuck.getXPosition() + aDuck.getWidth();
+			duckBottom[slot][i] = aDuck.getYPosition() + aDuck.getHeight();
+			duckMasks[slot][i] = aDuck.getHitMask();
+		}
+		tickTimes[slot] = time;
+		duckCounts[slot] = count;
+		newestSlot = slot;
+		recordCount = Math.min(recordCount + 1, tickTimes.length);
+	}
+
+	/**
+	 * Forgets every tick recorded
+	 */
+	public void clear() {
+		for(int slot = 0; slot < tickTimes.length; slot++) {
+			for(int i = 0; i < duckCounts[slot]; i++) {
+				tickDucks[slot][i] = null;
+				duckMasks[slot][i] = null;
+			}
+			duckCounts[slot] = 0;
+		}
+		newestSlot = tickTimes.length - 1;
+		recordCount = 0;
+		lastRewind = 0;
+	}
+
+	/**
+	 * Returns the first living Duck whose solid pixels were under the specified point in the
+	 * newest tick recorded at or before the specified time. If every tick remembered is newer than the
+	 * time, the oldest tick is used.
+	 * @param	time	the game time at which the point was clicked
+	 * @param	xPos	the x position of the point
+	 * @param	yPos	the y position of the point
+	 * @return	the Duck under the point, or null if there was none or nothing has been recorded
+	 */
+	public Duck getDuckAt(final long time, final int xPos, final int yPos) {
+		if(recordCount == 0) {
+			return null;
+		}
+
+		// Step back from the newest tick until one is found at or before the time
+		int slot = newestSlot;
+		int rewind = 0;
+		while((tickTimes[slot] > time) && (rewind < recordCount - 1)) {
+			slot = (slot == 0) ? tickTimes.length - 1 : slot - 1;
+			rewind++;
+		}
+		lastRewind = rewind;
+
+		// Check the point against each Duck's bounds at that tick, then against the
+		// HitMask of the frame it was showing
+		final int[] left = duckLeft[slot], top = duckTop[slot], right = duckRight[slot], bottom = duckBottom[slot];
+		HitMask mask = null;
+		for(int i = 0; i < duckCounts[slot]; i++) {
+			if((xPos > left[i]) && (xPos < right[i]) && (yPos > top[i]) && (yPos < bottom[i])
+			&& (tickDucks[slot][i].getState() == Duck.STATE_ALIVE)) {
+				mask = duckMasks[slot][i];
+				if((mask == null) || (mask.contains(xPos - left[i], yPos - top[i]))) {
+					return tickDucks[slot][i];
+				}
+				maskMissCount++;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of ticks the last shot checked was rewound by
+	 * @return	the number of ticks rewound
+	 */
+	public int getLastRewind() {
+		return lastRewind;
+	}
+
+	/**
+	 * Returns the number of times a shot was inside a living Duck's bounds but missed
+	 * the solid pixels of its frame
+	 * @return	the number of HitMask misses
+	 */
+	public long getMaskMissCount() {
+		return maskMissCount;
+	}
+
+	/**
+	 * Returns the number of ticks currently remembered
+	 * @return	the number of ticks recorded
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the greatest number of ticks that can be remembered
+	 * @return	the depth of the history
+	 */
+	public int getDepth() {
+		return tickTimes.length;
+	}
+}
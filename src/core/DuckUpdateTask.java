@@ -0,0 +1,80 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+import core.sprites.Duck;
+
+/**
+ * The DuckUpdateTask class updates a range of the Ducks in a list on a ForkJoinPool.
+ * The range is split in half until it is small enough to update directly, so a large
+ * population of Ducks is spread across all the pool's threads.
+ * <p>Each Duck only changes its own position, velocity, animation and state when it acts,
+ * and each Duck has its own Randomizer, so the Ducks can be updated in any order and on
+ * any thread with exactly the same result as updating them one after another. The list
+ * itself must not be changed while the task is running.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class DuckUpdateTask extends RecursiveAction {
+	/**
+	 * Version ID used for serialization
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of Ducks at or below which a range is updated directly rather than split
+	 */
+	private static final int SPLIT_SIZE = 64;
+
+	/**
+	 * The list holding the Ducks to update
+	 */
+	private transient final ArrayList duckList;
+
+	/**
+	 * The first Duck to update and the Duck after the last to update
+	 */
+	private transient final int fromIndex, toIndex;
+
+	/**
+	 * Constructor for the class DuckUpdateTask
+	 * @param	ducks	the list holding the Ducks to update
+	 * @param	from	the index of the first Duck to update
+	 * @param	to	the index after the last Duck to update
+	 */
+	public DuckUpdateTask(ArrayList ducks, int from, int to) {
+		duckList = ducks;
+		fromIndex = from;
+		toIndex = to;
+	}
+
+	/**
+	 * Updates the range of Ducks, splitting it into two tasks if it is too large
+	 */
+	protected void compute() {
+		if(toIndex - fromIndex <= SPLIT_SIZE) {
+			actDucks(duckList, fromIndex, toIndex);
+		} else {
+			final int middle = (fromIndex + toIndex) >>> 1;
+			invokeAll(new DuckUpdateTask(duckList, fromIndex, middle),
+					new DuckUpdateTask(duckList, middle, toIndex));
+		}
+	}
+
+	/**
+	 * Updates every Duck in the specified range that is not dead
+	 * @param	ducks	the list holding the Ducks to update
+	 * @param	from	the index of the first Duck to update
+	 * @param	to	the index after the last Duck to update
+	 */
+	public static void actDucks(final ArrayList ducks, final int from, final int to) {
+		Duck aDuck = null;
+		for(int i = from; i < to; i++) {
+			aDuck = (Duck)ducks.get(i);
+			if(aDuck.getState() != Duck.STATE_DEAD) {
+				aDuck.act();
+			}
+		}
+	}
+}
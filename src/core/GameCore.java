@@ -3,14 +3,18 @@ package core;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
+import java.io.File;
 import javax.swing.*;
 import java.util.ArrayList;
-import java.awt.geom.Point2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import config.AbstractGameMode;
 import config.GameOptions;
 import graphics.*;
 import core.sprites.*;
+import core.events.*;
 import sound.*;
 import util.*;
 import ui.*;
@@ -27,7 +31,7 @@ import ui.*;
  * @version	1.0 - 03/06/2006
  */
 public class GameCore extends Canvas implements DisplayView, KeyListener, MouseListener, 
-	WindowListener, WindowFocusListener, Runnable {
+	WindowListener, WindowFocusListener, ComponentListener, GameEventListener, TimedEventListener, TilePainter, Runnable {
 	
 	/**
 	 * Constant variable for the game's name
@@ -49,6 +53,11 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 */
 	private static final int SOUND_COUNT = 5;
 	
+	/**
+	 * Constant specifying the maximum number of sounds waiting to be played
+	 */
+	private static final int SOUND_QUEUE_SIZE = 32;
+	
 	/**
 	 * Constant specifying the maximum amount of decals on the scren
 	 */
@@ -74,6 +83,16 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 */
 	private static final int SPRITE_UI_YPOS = 55;
 	
+	/**
+	 * Constant specifying the slowest and fastest time scales available in debug mode
+	 */
+	private static final double MIN_TIME_SCALE = 0.125, MAX_TIME_SCALE = 8.0;
+	
+	/**
+	 * Timer event ID for the round's time limit running out
+	 */
+	private static final int TIMER_ROUND_TIMEOUT = 0;
+	
 	/**
 	 * String literal for "Tahoma" system font
 	 */
@@ -84,6 +103,128 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 */
 	private static final String FONT_ARIAL = "Arial";
 	
+	/**
+	 * Fonts used for the loading screen, Duck scores, game title, FPS counter,
+	 * player status and debug information. These are created once rather than
+	 * every time they are painted.
+	 */
+	private static final Font LOADING_FONT = new Font(FONT_TAHOMA, Font.BOLD + Font.ITALIC, 125),
+		SCORE_FONT = new Font(FONT_ARIAL, Font.BOLD, 30),
+		TITLE_FONT = new Font(FONT_TAHOMA, Font.BOLD, 35),
+		FPS_FONT = new Font(FONT_TAHOMA, Font.BOLD + Font.ITALIC, 15),
+		STATUS_FONT = new Font(FONT_TAHOMA, Font.BOLD, 18),
+		DEBUG_FONT = new Font(FONT_ARIAL, Font.PLAIN, 12);
+	
+	/**
+	 * The characters drawn for numbers and times
+	 */
+	private static final String NUMBER_CHARACTERS = "-:0123456789";
+	
+	/**
+	 * Bitmap fonts drawing the fonts above in each colour they are used in, so that text
+	 * is drawn by copying glyphs rather than rasterising them every frame. Text that is
+	 * always the same or always a number only has the characters it needs.
+	 */
+	private static final BitmapFont LOADING_SHADOW_TEXT = new BitmapFont(LOADING_FONT, Color.GRAY, "Loading."),
+		LOADING_TEXT = new BitmapFont(LOADING_FONT, Color.BLACK, "Loading."),
+		SCORE_TEXT = new BitmapFont(SCORE_FONT, Color.RED, NUMBER_CHARACTERS),
+		TITLE_TEXT = new BitmapFont(TITLE_FONT, Color.BLUE, "Duck Hunter"),
+		FPS_TEXT = new BitmapFont(FPS_FONT, Color.BLUE, NUMBER_CHARACTERS + " fps"),
+		RECORDING_TEXT = new BitmapFont(FPS_FONT, Color.RED, "REC"),
+		STATUS_TEXT = new BitmapFont(STATUS_FONT, Color.BLACK),
+		STATUS_ALERT_TEXT = new BitmapFont(STATUS_FONT, Color.RED, NUMBER_CHARACTERS + " Repla"),
+		STATUS_TIME_TEXT = new BitmapFont(STATUS_FONT, Color.LIGHT_GRAY, NUMBER_CHARACTERS),
+		DEBUG_TEXT = new BitmapFont(DEBUG_FONT, Color.BLACK);
+	
+	/**
+	 * Paths of the blood and bullet hole decal images
+	 */
+	private static final String[] DECALS_BLOOD = {
+		"resources/images/decals/blood0.png",
+		"resources/images/decals/blood1.png",
+		"resources/images/decals/blood2.png"
+	}, DECALS_HOLE = {
+		"resources/images/decals/hole0.png",
+		"resources/images/decals/hole1.png",
+		"resources/images/decals/hole2.png"
+	};
+	
+	/**
+	 * Constant specifying the number of bytes a game loop tick may allocate
+	 * before it is reported as over budget in debug mode
+	 */
+	private static final long FRAME_ALLOCATION_BUDGET = 2048;
+	
+	/**
+	 * Constants specifying the fractions of the maximum heap size above which spawning Ducks
+	 * is throttled and refused
+	 */
+	private static final double MEMORY_THROTTLE_FRACTION = 0.75, MEMORY_REJECT_FRACTION = 0.9;
+	
+	/**
+	 * Constant specifying the estimated number of bytes taken by a Duck's own objects, not
+	 * counting its images, and the estimate used for a whole Duck before one has been measured
+	 */
+	private static final long DUCK_OBJECT_BYTES = 1024, DEFAULT_DUCK_BYTES = 256 * 1024;
+	
+	/**
+	 * Constant specifying the number of Ducks above which they are updated in parallel
+	 */
+	private static final int PARALLEL_UPDATE_THRESHOLD = 256;
+	
+	/**
+	 * Constant specifying the number of Sprites above which frames painted into memory are painted in tiles
+	 */
+	private static final int TILED_RENDER_THRESHOLD = 256;
+	
+	/**
+	 * Constant specifying the number of tiles painted for each thread in the pool, so that
+	 * a thread finishing a quiet tile early can pick up another
+	 */
+	private static final int TILES_PER_THREAD = 2;
+	
+	/**
+	 * Constant specifying the fewest rows painted as one tile
+	 */
+	private static final int MIN_TILE_HEIGHT = 32;
+	
+	/**
+	 * Constants specifying the number of Ducks that makes a crowd, with each further crowd
+	 * holding every Duck's animation frames for one more tick, and the longest they are held for
+	 */
+	private static final int ANIMATION_CROWD_SIZE = 64, MAX_CROWD_INTERVAL = 4;
+	
+	/**
+	 * Constant specifying the number of ticks of Duck positions kept for checking shots against
+	 */
+	private static final int HIT_HISTORY_DEPTH = 8;
+	
+	/**
+	 * Constants specifying the number of seconds kept for replays, the number of seconds
+	 * each press of a cursor key seeks through a replay, and the number of seconds replayed
+	 * by the kill-cam when a round ends
+	 */
+	private static final int REPLAY_SECONDS = 10, REPLAY_SEEK_SECONDS = 1, KILL_CAM_SECONDS = 3;
+	
+	/**
+	 * Indexes of the values captured for the UI of each tick, which are kept with each tick in the
+	 * ReplayBuffer so that replays show the score, shots and time left as they were
+	 */
+	private static final int HUD_FLAGS = 0, HUD_SCORE_X = 1, HUD_SCORE_Y = 2, HUD_DUCK_VALUE = 3, 
+		HUD_SHOTS = 4, HUD_DUCKS_SHOT = 5, HUD_AMMO = 6, HUD_DUCKS = 7, HUD_LIVES = 8, HUD_LEVEL = 9, 
+		HUD_ROUND = 10, HUD_SCORE = 11, HUD_TIME_LEFT = 12, HUD_VALUE_COUNT = 13;
+	
+	/**
+	 * Bits of the HUD_FLAGS value for the game being paused, the round being completed,
+	 * the Ducks flying away and the value of a shot Duck being shown
+	 */
+	private static final int HUD_PAUSED = 1, HUD_ROUND_COMPLETED = 2, HUD_FLY_AWAY = 4, HUD_SCORE_VISIBLE = 8;
+	
+	/**
+	 * Constant specifying the folder in which each frame capture gets its own folder
+	 */
+	private static final String CAPTURE_FOLDER = "captures";
+	
 	// Game options object
 	private GameOptions gameOptions;
 	
@@ -94,8 +235,9 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	private transient ArrayList soundsGunHit, soundsGunMiss, soundsGunNoAmmo, soundsGunReload, 
 		soundsDuckAlive, soundsDuckDead, soundsAmbience;
 	
-	// Graphics display BufferStrategy object
-	private transient final BufferStrategy strategy;
+	// Target every frame is painted onto, which is the window's BufferStrategy unless
+	// the game was given a target of its own
+	private transient final RenderTarget renderTarget;
 	
 	// SpriteCache for this game
 	private transient final SpriteCache spriteCache;
@@ -106,19 +248,51 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	// Animation generator for this game
 	private transient final AnimGenerator animGenerator;
 	
-	// Main window for this game
+	// Main window for this game, or null if the game paints into a RenderTarget of its own
 	private transient final JFrame mainWindow;
 	
 	// The GameMode the game is currently running in
 	private transient final AbstractGameMode gameMode;
 	
-	// Point2D objects for pointer clicked location, debug information and
-	// painting duck value on-screen
-	private transient Point2D pointerLoc, pointerCache, scoreLocation;
+	// Pointer clicked location, last clicked location for debug information and
+	// location for painting duck value on-screen
+	private transient int pointerX, pointerY, lastClickX = -1, lastClickY = -1, scoreX, scoreY;
+	
+	// The game time of the frame on screen when the pointer was clicked, and of the last frame shown
+	private transient long pointerTime;
+	
+	// The System.nanoTime at which the pointer was clicked, and of the click whose shot is being handled
+	private transient long pointerNanos, shotTraceNanos;
+	
+	// The click and hit decision times of the last shot, kept in each snapshot until it has been shown,
+	// and the click time of the last shot the renderer has shown
+	private transient long pendingClickNanos, pendingDecisionNanos;
+	private transient volatile long lastShownClickNanos;
+	
+	// Histograms of the time from a click to its hit decision, from the decision to the shot
+	// being shown on screen, and from the click to the shot being shown
+	private transient final LatencyHistogram inputLatency = new LatencyHistogram("Click to hit decision"),
+		renderLatency = new LatencyHistogram("Hit decision to display"),
+		photonLatency = new LatencyHistogram("Click to display");
+	private transient volatile long displayedWorldTime;
+	
+	// Recent Duck positions for checking shots against what the player saw
+	private transient final DuckHistory duckHistory = new DuckHistory(HIT_HISTORY_DEPTH);
+	
+	// Flags for the pointer having been clicked since the last update and a score location being set
+	private transient volatile boolean pointerClicked;
+	private transient boolean scoreLocationSet;
 	
 	// Player object
 	private transient Player thePlayer;
 	
+	// Event bus onto which all game events are published
+	private transient GameEventBus eventBus;
+	
+	// Clock measuring the game time and the timer wheel for all timed game events driven by it
+	private transient GameClock gameClock;
+	private transient TimerWheel timerWheel;
+	
 	// Background Sprite images
 	private transient Background backgroundSprite, backgroundFlyAway;
 	
@@ -132,14 +306,112 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	// Variables for point value of a Duck when shot and current number of Ducks shot
 	private transient int duckValue, numDucksShot;
 	
-	// Variables for the time the game started and the amount of time used
-	private transient long timeStarted, usedTime;
+	// Variables for the game time of the current tick, the time the current round started 
+	// and the amount of time used
+	private transient long worldTime, roundStartTime, usedTime;
 	
-	// Flag for memory limiter when spawning Ducks
+	// Flag for the round's time limit running out
+	private transient boolean roundTimedOut;
+	
+	// Flag for the memory budget having limited the last Duck spawn
 	private transient boolean maxDucksReached = false;
 	
-	// Create String for timer display
-	private transient String timeString;
+	// Memory budget deciding how many Ducks can be spawned, and the estimated bytes each Duck takes
+	private transient final MemoryBudget memoryBudget;
+	private transient long duckFootprint = DEFAULT_DUCK_BYTES;
+	
+	// Pool for updating large numbers of Ducks and painting large frames in parallel, or null if there is only one processor
+	private transient final ForkJoinPool updatePool;
+	
+	// Pool the Ducks are updated across, which is the update pool unless a check has set another,
+	// and the number of Ducks above which they are updated across it
+	private transient ForkJoinPool duckPool;
+	private transient int parallelUpdateThreshold = PARALLEL_UPDATE_THRESHOLD;
+	
+	// Seed from which every Duck's movement is derived and the number of Ducks spawned from it
+	private transient long gameSeed, spawnCount;
+	
+	// The round time left shown, which is kept once the round is over, or -1 if there is no time limit
+	private transient int timeLeft = -1;
+	
+	// The last few seconds of the game for replays, and the UI values of the live and replayed ticks
+	private transient final ReplayBuffer replayBuffer = new ReplayBuffer(
+			(REPLAY_SECONDS * 1000) / THREAD_WAIT_TIME, HUD_VALUE_COUNT);
+	private transient final int[] hudValues = new int[HUD_VALUE_COUNT], replayValues = new int[HUD_VALUE_COUNT];
+	
+	// Flags for a replay playing and for the player asking to start or stop one
+	private transient volatile boolean replaying, replayToggled;
+	
+	// Flag for the kill-cam having been shown for the round that has just ended
+	private transient boolean killCamShown;
+	
+	// The next tick of the replay to show, and the ticks the player has asked to seek by
+	private transient long replayTick;
+	private transient final AtomicInteger replaySeekTicks = new AtomicInteger();
+	
+	// The total time spent recording ticks for replays, and the number of ticks recorded
+	private transient long replayRecordNanos, replayRecordCount;
+	
+	// The number of Sprites left out of the last snapshot because they were off-screen
+	private transient int culledCount;
+	
+	// The frame capture the renderer paints into, or null if frames are not being captured,
+	// and a flag for the player asking to start or stop capturing
+	private transient volatile FrameCapture frameCapture;
+	private transient volatile boolean captureToggled;
+	
+	// Triple buffer of snapshots handed from the game thread to the renderer
+	private transient final SnapshotBuffer snapshotBuffer = new SnapshotBuffer();
+	
+	// Thread painting the snapshots, or null if they are painted on the game thread
+	private transient volatile Thread renderThread;
+	
+	// The number of ticks run, and the renderer's time between frames and time the last frame started
+	private transient long tickCount, frameTime, lastFrameStart;
+	
+	// Randomizer used to pick decals
+	private transient final Randomizer decalRandomizer = new Randomizer();
+	
+	// Monitor measuring the memory allocated by each tick of the game loop
+	private transient final AllocationMonitor allocationMonitor = new AllocationMonitor(FRAME_ALLOCATION_BUDGET);
+	
+	// Governor lowering the quality when frames go over budget, and the time the renderer took to paint
+	// the last frame and to show it, which can include waiting for the display
+	private transient final QualityGovernor qualityGovernor = new QualityGovernor(THREAD_WAIT_TIME * GameClock.NANOS_PER_MILLI);
+	private transient volatile long renderNanos, showNanos;
+	
+	// Queues grouping the Sprites painted under and over the debug numbers each frame by image, filled
+	// only by whichever thread renders, and the snapshot the frame's tiles are being painted from
+	private transient final RenderQueue spriteQueue = new RenderQueue(DisplayView.WIDTH, DisplayView.HEIGHT);
+	private transient final RenderQueue cloudQueue = new RenderQueue(DisplayView.WIDTH, DisplayView.HEIGHT);
+	private transient RenderSnapshot tileSnapshot;
+	
+	// The tiles of the last image painted in tiles, kept with their Graphics contexts and blitters for the next frame
+	private transient FrameTiles frameTiles;
+	
+	// Whether the tiles being painted blit their Sprites
+	private transient boolean tileBlitted;
+	
+	// Blitter painting Sprites straight into the last frame painted into memory on one thread, or null
+	private transient SoftwareBlitter frameBlitter;
+	
+	// Whether Sprites may be painted by SoftwareBlitters, which is only when the game has no display.
+	// A blitter takes the arrays behind the Sprites' images, which stops Java2D accelerating them,
+	// so a game painting to the screen never uses one, even while capturing frames into memory.
+	private transient final boolean blitSprites;
+	
+	// The number of frames painted in tiles
+	private transient volatile long tiledFrameCount;
+	
+	// The number of screen pixels to each game pixel and the position of the game's top-left
+	// corner in the window, which change when the window is resized
+	private transient volatile double renderScale = 1;
+	private transient volatile int renderOffsetX, renderOffsetY;
+	
+	// Pool scaling the cached images in the background when the window is resized, or null if
+	// there is no window, and a flag for a rescale having been asked for and not yet finished
+	private transient ThreadPool rescalePool;
+	private transient volatile boolean rescalePending;
 	
 	/******* CONSTRUCTOR *******/
 	
@@ -154,6 +426,21 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 */
 	public GameCore(AbstractGameMode gMode, GameOptions gOptions, SpriteCache spCache, 
 			SoundCache sCache, Player aPlayer) {
+		this(gMode, gOptions, spCache, sCache, aPlayer, null);
+	}
+	
+	/**
+	 * Creates an instance of this class that paints into the specified RenderTarget
+	 * instead of opening a window, so the game can be run and measured with no display.
+	 * If no target is given, a window is created as normal.
+	 * @param 	gMode	the mode in which to run the game
+	 * @param	gOptions	the options to use when running the game
+	 * @param	spCache		pointer to the SpriteCache to use
+	 * @param	sCache		pointer to the SoundCache to use
+	 * @param	target	the RenderTarget to paint into, or null to paint into a new window
+	 */
+	public GameCore(AbstractGameMode gMode, GameOptions gOptions, SpriteCache spCache, 
+			SoundCache sCache, Player aPlayer, RenderTarget target) {
 		// Call superclass constructor
 		super();
 		
@@ -167,42 +454,76 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		// Disable or enable sound based on game options passed
 		soundCache.enableSound(gameOptions.getSoundEnabled());
 		
+		// Paint into the target given, if there is one, without creating any windows
+		if(target != null) {
+			mainWindow = null;
+			renderTarget = target;
+			blitSprites = (target instanceof ImageRenderTarget);
+			this.setBounds(0, 0, target.getWidth(), target.getHeight());
+		} else {
+			mainWindow = createWindow();
+			renderTarget = new BufferStrategyTarget(getBufferStrategy(), DisplayView.WIDTH, DisplayView.HEIGHT);
+			blitSprites = false;
+			this.requestFocus();
+		}
+		this.addKeyListener(this);
+		this.addMouseListener(this);
+		this.setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
+		animGenerator = new AnimGenerator(this.spriteCache, this.getGraphicsConfiguration());
+		gameClock = new GameClock();
+		memoryBudget = new MemoryBudget(MEMORY_THROTTLE_FRACTION, MEMORY_REJECT_FRACTION);
+		gameSeed = System.nanoTime();
+		
+		// Only create a pool for updating Ducks if there is more than one processor to run it on
+		final int processors = Runtime.getRuntime().availableProcessors();
+		if(processors > 1) {
+			updatePool = new ForkJoinPool(processors);
+		} else {
+			updatePool = null;
+		}
+		duckPool = updatePool;
+	}
+	
+	/**
+	 * Creates the main window, adds the Canvas to it and gives the Canvas a BufferStrategy
+	 * @return	the main window
+	 */
+	private JFrame createWindow() {
 		// Create and set-up our main window
-		String windowTitle = new String(GAME_NAME + " v" + GAME_VERSION + " - " + gMode.getName());
+		String windowTitle = new String(GAME_NAME + " v" + GAME_VERSION + " - " + gameMode.getName());
 		if(gameOptions.getDebugMode()) { windowTitle = windowTitle + " (DEBUG)"; }
-		mainWindow = new JFrame(windowTitle);
-		mainWindow.setBounds(0, 0, DisplayView.WIDTH + 10, DisplayView.HEIGHT + 10);
-		mainWindow.setVisible(true);
-		mainWindow.setResizable(false);
-		mainWindow.createBufferStrategy(2);
-		mainWindow.setIgnoreRepaint(true);
-		mainWindow.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+		final JFrame window = new JFrame(windowTitle);
+		window.setVisible(true);
+		window.setResizable(true);
+		window.createBufferStrategy(2);
+		window.setIgnoreRepaint(true);
+		window.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 		
 		// Position the frame in the middle of the screen
 		Dimension screen = getToolkit().getScreenSize();
-    	mainWindow.setLocation(
-    		(screen.getSize().width - DisplayView.WIDTH - 10) / 2, 
-    		(screen.getSize().height - DisplayView.HEIGHT - 10) / 2);
+		window.setLocation(
+			(screen.getSize().width - DisplayView.WIDTH - 10) / 2, 
+			(screen.getSize().height - DisplayView.HEIGHT - 10) / 2);
 		
 		// Get the main window panel and set it up
-		JPanel mainPanel = (JPanel)mainWindow.getContentPane();
+		JPanel mainPanel = (JPanel)window.getContentPane();
 		this.setBounds(0, 0, DisplayView.WIDTH, DisplayView.HEIGHT);
 		mainPanel.setPreferredSize(new Dimension(DisplayView.WIDTH, DisplayView.HEIGHT));
 		mainPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
 		mainPanel.setLayout(null);
 		mainPanel.add(this);
+		window.pack();
 		
-		// Add window listeners
-		mainWindow.addWindowListener(this);
-		mainWindow.addWindowFocusListener(this);
+		// Add window listeners, including one resizing the Canvas with the window
+		window.addWindowListener(this);
+		window.addWindowFocusListener(this);
+		mainPanel.addComponentListener(this);
+		
+		// Scale the cached images on a thread of their own, only ever keeping the latest rescale waiting
+		rescalePool = new ThreadPool(1, 1, ThreadPool.POLICY_DISCARD_OLDEST);
 		
 		this.createBufferStrategy(2);
-		strategy = getBufferStrategy();
-		this.requestFocus();
-		this.addKeyListener(this);
-		this.addMouseListener(this);
-		this.setCursor(new Cursor(Cursor.CROSSHAIR_CURSOR));
-		animGenerator = new AnimGenerator(this.spriteCache, this.getGraphicsConfiguration());
+		return window;
 	}
 	
 	/******* GAME LOOP *******/
@@ -220,25 +541,87 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		initWorld();
 		System.out.println("Starting game...");
 		
+		// Start the render thread if rendering is pipelined, so that the time taken
+		// to paint and show each frame no longer holds up the game updates
+		if(gameOptions.getPipelinedRendering()) {
+			final Thread renderer = new Thread(new Runnable() {
+				public void run() {
+					renderLoop();
+				}
+			}, "Render");
+			renderer.setDaemon(true);
+			renderThread = renderer;
+			renderer.start();
+		}
+		
 		usedTime = 1000;
 		while(this.isVisible()) {
 			// Note when we started the update and paint operations
-			final long startTime = System.currentTimeMillis();
+			final long startTime = System.nanoTime();
+			allocationMonitor.startFrame();
 			
-			// Update the world
-			updateWorld();
+			// A virtual clock only moves when told to, so move it on by one tick
+			if(gameClock.isVirtual()) {
+				gameClock.advance(THREAD_WAIT_TIME * GameClock.NANOS_PER_MILLI);
+			}
 			
-			// Draw the screen
-			renderWorld();
-			paint(getGraphics());
+			// Start or stop a replay or a frame capture if the player asked to
+			if(replayToggled) {
+				replayToggled = false;
+				setReplaying(!replaying);
+			}
+			if(captureToggled) {
+				captureToggled = false;
+				setCapturing(frameCapture == null);
+			}
+			
+			// Update the world and hand a snapshot of it to the renderer. The world stands
+			// still while a replay is playing.
+			if(replaying) {
+				tickCount++;
+			} else {
+				updateWorld();
+			}
+			captureSnapshot();
+			
+			// Draw the screen, unless the render thread is doing it
+			if(renderThread == null) {
+				renderWorld();
+			}
+			allocationMonitor.endFrame();
 			
 			// Get time used updating world and drawing graphics
-			usedTime = System.currentTimeMillis() - startTime;
+			final long workTime = System.nanoTime() - startTime;
+			usedTime = workTime / GameClock.NANOS_PER_MILLI;
 			
-			// Sleep the thread
-			do {
-				Thread.yield();
-			} while (System.currentTimeMillis() - startTime < THREAD_WAIT_TIME);
+			// Let the governor change the quality if the game thread or the renderer is over budget,
+			// not counting any time spent waiting for the display to show a frame
+			final long tickWork = (renderThread == null) ? workTime - showNanos : workTime;
+			if(qualityGovernor.recordFrame(Math.max(tickWork, renderNanos))) {
+				System.out.println("Quality set to " + QualityGovernor.getLevelName(qualityGovernor.getLevel()) 
+						+ " (average frame " + (qualityGovernor.getAverageFrameTime() / 1000) + "us)");
+			}
+			
+			// Sleep the thread for the rest of the tick, stretching or shrinking the tick 
+			// by the time scale. A virtual clock runs as fast as it can.
+			if(!gameClock.isVirtual()) {
+				final long tickTime = (long)((THREAD_WAIT_TIME * GameClock.NANOS_PER_MILLI) / gameClock.getTimeScale());
+				do {
+					Thread.yield();
+				} while (System.nanoTime() - startTime < tickTime);
+			}
+		}
+		
+		// Stop the render thread
+		final Thread renderer = renderThread;
+		if(renderer != null) {
+			renderThread = null;
+			LockSupport.unpark(renderer);
+			try {
+				renderer.join();
+			} catch(InterruptedException ex) {
+				// Should never happen
+			}
 		}
 		
 		// Pause the game if the Canvas is not currently visible
@@ -266,11 +649,28 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		// Reset our current Duck's value to zero
 		duckValue = 0;
 		
-		// Store time game started
-		timeStarted = System.currentTimeMillis();
-		
-		// Initialize sound
-		soundCache.setPool(new ThreadPool(SOUND_COUNT));
+		// Create the event bus and listen for our own events
+		if(eventBus != null) {
+			eventBus.close();
+		}
+		eventBus = new GameEventBus();
+		eventBus.addListener(this);
+		
+		// Start at full quality, lowering it only if the options allow. The governor works from
+		// wall-clock frame times, so it stays off on a virtual clock or without a display, where
+		// runs must play out the same on every machine.
+		qualityGovernor.setEnabled((gameOptions.getAdaptiveQuality()) && (!gameClock.isVirtual())
+				&& (!GraphicsEnvironment.isHeadless()));
+		qualityGovernor.reset();
+		
+		// Start the game time and the timers from zero
+		gameClock.reset();
+		worldTime = gameClock.getMillis();
+		timerWheel = new TimerWheel(worldTime);
+		
+		// Initialize sound - the oldest queued sound effect is dropped if the pool falls behind
+		// and any pool left over from a previous session is closed by the SoundCache
+		soundCache.setPool(new ThreadPool(SOUND_COUNT, SOUND_QUEUE_SIZE, ThreadPool.POLICY_DISCARD_OLDEST));
 		System.out.println("...init sound");
 		initSound();
 		
@@ -428,20 +828,35 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 * are then updated by calling updateSprites()
 	 **/
 	private void updateWorld() {
+		tickCount++;
+		
+		// Read the game time for this tick and fire any timers that are due. The game clock
+		// is paused along with the game, so no time passes for the round while paused.
+		worldTime = gameClock.getMillis();
+		timerWheel.advanceTo(worldTime);
+		
 		// If the game is not paused...
 		if(!gamePaused) {
 			// Check there are still Ducks left
 			if(duckList.isEmpty()) {
+				// Replay the end of the round first; the world stands still until the replay ends
+				if(!killCamShown) {
+					killCamShown = true;
+					startKillCam();
 				// If the player still has lives left...
-				if(thePlayer.hasLives()) {
+				} else if(thePlayer.hasLives()) {
 					// ...then reset round
 					this.resetRound();
 				} else {
 					// Otherwise, game must be over so pause game then add 
 					// player to high scores table and display
-					ScoreWindow highScores = new ScoreWindow(thePlayer);
+					eventBus.publish(GameEvent.GAME_OVER, 0, 0, thePlayer.getScore());
+					// The high scores are only shown if there is a window to show them over
 					this.setPaused(true);
-					highScores.setVisible(true);
+					if(mainWindow != null) {
+						final ScoreWindow highScores = new ScoreWindow(thePlayer);
+						highScores.setVisible(true);
+					}
 					// Create a new Player based on the current Player
 					thePlayer = new Player(thePlayer.getPlayerName(), 
 							gameMode.getAmmoCount(), gameMode.getLifeCount());
@@ -452,66 +867,125 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 				}
 			} else {
 				// Check if the player has clicked on the Canvas
-				if(pointerLoc != null) {
+				if(pointerClicked) {
 					// ... then check for where the player clicked
 					duckValue = 0;
 					if((!gamePaused) || (!roundCompleted) || (!flyAway)) {
 						duckValue = checkForHit();
 					}
 					
+					// Record how long the click took to reach the hit decision, and trace the
+					// shot through to the screen and the sound it makes
+					final long decisionNanos = System.nanoTime();
+					inputLatency.record(decisionNanos - pointerNanos);
+					shotTraceNanos = pointerNanos;
+					pendingClickNanos = pointerNanos;
+					pendingDecisionNanos = decisionNanos;
+					
+					// Publish the result of the shot
 					if(duckValue > 0) {
-						// Add a blood decal
-						addDecal(true);
-						numDucksShot++;
-						// Increment and paint score
-						thePlayer.hitDuck();
-						thePlayer.addScore(duckValue);
-						// Set scoreLocation to where the Duck was hit
-						scoreLocation = pointerLoc;
-						// Stop all Duck sounds
-						soundCache.stopAllSounds(soundsDuckAlive);
-						if(gameOptions.getSoundShot()) {
-							soundCache.playSound(soundsGunHit);
-						}
+						eventBus.publish(GameEvent.DUCK_HIT, pointerX, pointerY, duckValue);
+					} else if(thePlayer.getShotCount() <= 0) {
+						eventBus.publish(GameEvent.OUT_OF_AMMO, pointerX, pointerY, 0);
 					} else {
-						// Check if the player has shots
-						if(thePlayer.getShotCount() <= 0) {
-							// Player does not have ammo, so play gun click sound
-							if(gameOptions.getSoundShot()) {
-								soundCache.playSound(soundsGunNoAmmo);
-							}
-						} else {
-							// Otherwise, the player missed the duck
-							thePlayer.missedDuck();
-							if(gameOptions.getSoundShot()) {
-								soundCache.playSound(soundsGunMiss);
-							}
-							// Add a decal
-							addDecal(false);
-						}
+						eventBus.publish(GameEvent.SHOT_MISSED, pointerX, pointerY, 0);
 					}
+					shotTraceNanos = 0;
 				}
 				
-				// Update all the Sprites on-screen
+				// Update all the Sprites on-screen and remember where the Ducks are for later shots
 				updateSprites();
-			}
-		} else {
-			// If our game has a time limit...
-			if(gameMode.hasTimeLimit()) {
-				// ...then set the time started to the current time minus the time left
-				final long timeLeft = timeStarted + gameMode.getTimeLimit();
-				timeStarted = System.currentTimeMillis() - timeLeft;
+				duckHistory.record(worldTime, duckList);
 			}
 		}
 		
-		// Clear the mouse pointer location
-		pointerLoc = null;
+		// Clear the mouse pointer click
+		pointerClicked = false;
+		
+		// Hand this tick's events to any batch listeners
+		eventBus.endTick();
+	}
+	
+	/**
+	 * Handles the events published by this game. This is where the player's score,
+	 * decals and sound effects are updated in response to what happened during the tick.
+	 * @param	event	the event that has happened
+	 */
+	public void gameEventFired(final GameEvent event) {
+		switch(event.getType()) {
+			case GameEvent.DUCK_HIT:
+				// Add a blood decal
+				addDecal(true, event.getXPosition(), event.getYPosition());
+				numDucksShot++;
+				// Increment and paint score
+				thePlayer.hitDuck();
+				thePlayer.addScore(event.getValue());
+				// Set the score location to where the Duck was hit
+				scoreX = event.getXPosition();
+				scoreY = event.getYPosition();
+				scoreLocationSet = true;
+				// Stop all Duck sounds
+				soundCache.stopAllSounds(soundsDuckAlive);
+				if(gameOptions.getSoundShot()) {
+					soundCache.playSound(soundsGunHit, shotTraceNanos);
+				}
+				break;
+			case GameEvent.OUT_OF_AMMO:
+				// Player does not have ammo, so play gun click sound
+				if(gameOptions.getSoundShot()) {
+					soundCache.playSound(soundsGunNoAmmo, shotTraceNanos);
+				}
+				break;
+			case GameEvent.SHOT_MISSED:
+				// The player missed the duck
+				thePlayer.missedDuck();
+				if(gameOptions.getSoundShot()) {
+					soundCache.playSound(soundsGunMiss, shotTraceNanos);
+				}
+				// Add a decal
+				addDecal(false, event.getXPosition(), event.getYPosition());
+				break;
+			case GameEvent.DUCK_DIED:
+				// Play the sound of the Duck hitting the ground
+				if(gameOptions.getSoundDuck()) {
+					soundCache.playSound(soundsDuckDead);
+				}
+				break;
+			case GameEvent.ROUND_RESET:
+				// Play sound effects
+				if(gameOptions.getSoundShot()) {
+					soundCache.playSound(soundsGunReload);
+				}
+				if(gameOptions.getSoundDuck()) {
+					soundCache.loopSound(soundsDuckAlive);
+				}
+				break;
+			default:
+				// Do nothing
+		}
+	}
+	
+	/**
+	 * Handles the timers scheduled by this game on the timer wheel
+	 * @param	eventID	the ID of the timer that has expired
+	 */
+	public void timerExpired(final int eventID) {
+		switch(eventID) {
+			case TIMER_ROUND_TIMEOUT:
+				// The round's time limit has run out
+				roundTimedOut = true;
+				break;
+			default:
+				// Do nothing
+		}
 	}
 	
 	/**
 	 * Updates all Sprite objects in the game, including ducks, clouds and the UI.
 	 * This involves updating the clouds, then checking whether the player has taken their last
-	 * shot followed by updating all the ducks. 
+	 * shot followed by updating all the ducks. Large numbers of ducks are updated in parallel,
+	 * after which dead ducks are removed and the round checked for completion in list order, 
+	 * so the result is the same whichever way the ducks were updated.
 	 */
 	private void updateSprites() {
 		// Create a temporary Duck
@@ -526,44 +1000,52 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		
 		// If the player has taken their last 'shot' or the time limit has run out
 		// then set all Ducks that are 'alive' to the 'fly away' state and set flag
-		int timeLeft = (int)((timeStarted + gameMode.getTimeLimit()) - System.currentTimeMillis());
-		if((thePlayer.getShotCount() <= 0) || (timeLeft < 0)) {
+		if((thePlayer.getShotCount() <= 0) || (roundTimedOut)) {
 			if((!roundCompleted) && (!flyAway) && (gameMode.hasTimeLimit())) {
+				int flownAway = 0;
 				for(int i = 0; i < duckList.size(); i++) {
 					aDuck = (Duck)duckList.get(i);
 					if(aDuck.getState() == Duck.STATE_ALIVE) {
 						aDuck.setState(Duck.STATE_FLY_AWAY);
 						thePlayer.loseLife();
 						flyAway = true;
+						flownAway++;
 					}
 				}
+				if(flownAway > 0) {
+					eventBus.publish(GameEvent.FLY_AWAY, 0, 0, flownAway);
+				}
 			}
 		}
 	
-		// Update all the Ducks
-		for(int i = 0; i < duckList.size(); i++) {
-			aDuck = (Duck)duckList.get(i);
-			// If the Duck is dead, then play sound (if enabled) and remove it from the list
-			if(aDuck.getState() == Duck.STATE_DEAD) {
-				if(gameOptions.getSoundDuck()) {
-					soundCache.playSound(soundsDuckDead);
-				}
-				duckList.remove(i);
-			} else {
-				// Otherwise update
-				aDuck.act();
-			}
+		// Slow the Ducks' animations down as the crowd grows
+		Duck.setCrowdInterval(Math.min(1 + duckList.size() / ANIMATION_CROWD_SIZE, MAX_CROWD_INTERVAL));
+		
+		// Update all the Ducks, in parallel if there are enough of them to be worth it
+		if((duckPool != null) && (duckList.size() > parallelUpdateThreshold)) {
+			duckPool.invoke(new DuckUpdateTask(duckList, 0, duckList.size()));
+		} else {
+			DuckUpdateTask.actDucks(duckList, 0, duckList.size());
 		}
 		
-		// If there are Ducks left, then set roundCompleted will be set to false
+		// Remove dead Ducks in list order, publishing their deaths, and if any Ducks
+		// are still alive then the round has not been completed
 		roundCompleted = true;
+		int liveCount = 0;
 		for(int i = 0; i < duckList.size(); i++) {
 			aDuck = (Duck)duckList.get(i);
-			if(aDuck.getState() == Duck.STATE_ALIVE) { 
-				roundCompleted = false;
-				break;
+			if(aDuck.getState() == Duck.STATE_DEAD) {
+				eventBus.publish(GameEvent.DUCK_DIED, aDuck.getXPosition(), aDuck.getYPosition(), aDuck.getDuckDifficulty());
+			} else {
+				if(aDuck.getState() == Duck.STATE_ALIVE) {
+					roundCompleted = false;
+				}
+				duckList.set(liveCount++, aDuck);
 			}
 		}
+		while(duckList.size() > liveCount) {
+			duckList.remove(duckList.size() - 1);
+		}
 	}
 	
 	/**
@@ -576,13 +1058,20 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		System.out.println("Restarting round...");
 		
 		// Get the time the round started
-		timeStarted = System.currentTimeMillis();
+		roundStartTime = worldTime;
 
 		// Go to next level if the Player successfully completed the round
 		if(roundCompleted) {
 			gameMode.updateState();
 		}
 		
+		// Cancel any timers left over from the last round and start the round's time limit
+		timerWheel.cancelAll();
+		roundTimedOut = false;
+		if(gameMode.hasTimeLimit()) {
+			timerWheel.schedule(gameMode.getTimeLimit(), this, TIMER_ROUND_TIMEOUT);
+		}
+		
 		// Clear all 
 		decalList.removeAll(decalList);
 		duckList.removeAll(duckList);
@@ -591,42 +1080,35 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		numDucksShot = 0;
 		flyAway = false;
 		roundCompleted = false;
+		killCamShown = false;
 		
-		// Play sound effects
-		if(gameOptions.getSoundShot()) {
-			soundCache.playSound(soundsGunReload);
-		}
-		if(gameOptions.getSoundDuck()) {
-			soundCache.loopSound(soundsDuckAlive);
-		}
+		// Let listeners know a new round has started
+		eventBus.publish(GameEvent.ROUND_RESET, 0, 0, gameMode.getRoundNumber());
 		
-		// Spawn the number of ducks specified
+		// Spawn the number of ducks specified and forget where the last round's Ducks were
 		spawnDucks(gameMode.getDuckCount());
+		duckHistory.clear();
+		duckHistory.record(worldTime, duckList);
 	}
 	
 	/**
-	 * Adds a new decal at the player's current pointer location for future rendering. If the
+	 * Adds a new decal at the specified location for future rendering. If the
 	 * decalLimit is enabled and has been reached, then the first item in the decalList is
 	 * removed to maintain an acceptable frame rate.
 	 * @param	bulletHole	specifies whether the player hit or missed the duck
+	 * @param	xPos	the x position at which the shot was fired
+	 * @param	yPos	the y position at which the shot was fired
 	 */
-	private void addDecal(final boolean bulletHole) {
+	private void addDecal(final boolean bulletHole, final int xPos, final int yPos) {
 		if(gameOptions.getDecalsEnabled()) {
 			// Get the decal's path 
-			String decalPath = null;
-			if(bulletHole) {
-				final Randomizer randomDecal = new Randomizer();
-				randomDecal.randomNum(0, 2);
-				decalPath = "resources/images/decals/blood" + randomDecal.getCurrentNumber() + ".png";
-			} else {
-				final Randomizer randomDecal = new Randomizer();
-				randomDecal.randomNum(0, 2);
-				decalPath = "resources/images/decals/hole" + randomDecal.getCurrentNumber() + ".png";
-			}
+			final String[] decalPaths = bulletHole ? DECALS_BLOOD : DECALS_HOLE;
+			decalRandomizer.randomNum(0, decalPaths.length - 1);
+			final String decalPath = decalPaths[decalRandomizer.getCurrentNumber()];
 			// Create a new decal and add it to the decalList
 			SimpleSprite newDecal = new SimpleSprite(this, animGenerator, decalPath);
-			final int decalX = (int)(pointerLoc.getX() - (newDecal.getWidth() / 2));
-			final int decalY = (int)(pointerLoc.getY() - (newDecal.getHeight() / 2));
+			final int decalX = xPos - (newDecal.getWidth() / 2);
+			final int decalY = yPos - (newDecal.getHeight() / 2);
 			newDecal.setXPosition(decalX); newDecal.setYPosition(decalY);
 			decalList.add(newDecal);
 			
@@ -641,134 +1123,511 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	}
 	
 	/**
-	 * Checks whether any of the Ducks on screen have been 'shot' by the user by checking whether the 
-	 * pointerLoc co-ordinates intersect any area of the frame currently being displayed. 
-	 * This method will return a positive integer value if a Duck has been hit and -1 if a Duck has 
-	 * not been hit.
-	 * @return	an integer value of the score for the Duck that has been 'hit' by the user
+	 * Checks whether any of the Ducks on screen have been 'shot' by the user by checking whether the 
+	 * pointer co-ordinates intersect any area of the frame that was being displayed when the pointer
+	 * was clicked. The Ducks may have moved on since then, so their positions are taken from the
+	 * DuckHistory for the tick that was on screen at the time.
+	 * This method will return a positive integer value if a Duck has been hit and -1 if a Duck has 
+	 * not been hit.
+	 * @return	an integer value of the score for the Duck that has been 'hit' by the user
+	 */
+	private int checkForHit() {
+		// Check a Duck has been 'hit' by the player by checking whether the pointer co-ordinates
+		// intersect any area of the frame that was being displayed. If the player hit the Duck, then
+		// a score value for the Duck is returned, otherwise -1 is returned.
+		int duckPoints = -1;
+		
+		// Find the living Duck under the pointer when it was clicked
+		final Duck aDuck = duckHistory.getDuckAt(pointerTime, pointerX, pointerY);
+		
+		// Check that the player currently has shots
+		if((aDuck != null) && (thePlayer.getShotCount() > 0)) {
+			// Change the Duck's state to shot and schedule it to start dying
+			aDuck.setState(Duck.STATE_SHOT);
+			timerWheel.schedule(Duck.SHOT_WAIT_TIME, aDuck, Duck.TIMER_SHOT_WAIT);
+			// Generate a point value for the Duck based on its velocities
+			int duckPointsX = aDuck.getDX(); int duckPointsY = aDuck.getDY();
+			
+			// Invert any of the velocities to positive if negative values
+			if(duckPointsX < 0) { duckPointsX = -duckPointsX; }
+			if(duckPointsY < 0) { duckPointsY = -duckPointsY; }
+			
+			// Generate a score for the Duck based on its velocities multiplied by
+			// the Duck's difficulty divided by how many shots the Player has left,
+			// multiplied by 10 to make a 'sensible' score :o)
+			duckPoints = (duckPointsX + duckPointsY) * aDuck.getDuckDifficulty();
+			
+			// If the current game mode uses a shot modifier, then take that into account
+			if(gameMode.getShotModifier()) {
+				final int shotModifier = gameMode.getAmmoCount() - thePlayer.getShotCount();
+				if (shotModifier != 0) {
+					duckPoints = duckPoints / shotModifier;
+				}
+			}
+			
+			// Multiply to give a 'big' number
+			duckPoints = duckPoints * 10;
+			
+			// Print to the debug window which Duck has been hit and its point value
+			if(gameOptions.getDebugMode()) {
+				System.out.println("Duck " + duckList.indexOf(aDuck) + " hit (" + Integer.toString(duckPoints) 
+						+ " points, " + duckHistory.getLastRewind() + " ticks rewound)");
+			}
+		}
+		return duckPoints;
+	}
+	
+	/**
+	 * Respawns a limited number of Ducks and adds them  to the DuckList. 
+	 * The number of Ducks spawned is specified  by the parameter numDucks.
+	 * NOTE: The number of Ducks that can be spawned is limited by the MemoryBudget,
+	 * which is asked how many Ducks of the estimated size fit in the heap before any
+	 * are created. The maxDucksReached flag is set if fewer Ducks were spawned than
+	 * asked for, and cleared again once the budget allows a full spawn.
+	 * @param numDucks	the number of Ducks to spawn and add to the screen
+	 */
+	private void spawnDucks(final int numDucks) {
+		// Create a temporary Duck
+		Duck aDuck = null;
+		// Print to console
+		System.out.println("Spawning " + numDucks + " ducks... (" + (duckList.size()) + " current)");
+		
+		// Ask the memory budget how many Ducks can be spawned
+		final int admitted = memoryBudget.admit(duckFootprint, numDucks);
+		maxDucksReached = (admitted < numDucks);
+		if(maxDucksReached) {
+			System.out.println("Memory budget reached - spawning " + admitted + " of " + numDucks + " ducks");
+		}
+		
+		// Get the game's current difficulty level
+		final int currentLevel = gameMode.getDifficultyLevel();
+		
+		// Create the admitted number of Ducks and add them to the list
+		for(int i = 0; i < admitted; i++) {
+			// Create our duck, measuring the memory taken by its images
+			final long generatedBytes = animGenerator.getGeneratedBytes();
+			aDuck = new Duck(this, animGenerator, currentLevel, Randomizer.getStreamSeed(gameSeed, spawnCount++));
+			duckFootprint = DUCK_OBJECT_BYTES + (animGenerator.getGeneratedBytes() - generatedBytes);
+			// Place it in the bottom-middle of the game, which is not the Canvas's size once the window is resized
+			final int xPos = (DisplayView.WIDTH - aDuck.getWidth()) / 2;
+			final int yPos = (DisplayView.HEIGHT - aDuck.getHeight()); 
+			aDuck.setXPosition(xPos);	aDuck.setYPosition(yPos);
+			// And add it to the list of ducks
+			duckList.add(aDuck);
+		}
+	}
+	
+	/******* PAINT METHODS *******/
+	/**
+	 * Captures everything needed to paint the current tick into a RenderSnapshot and
+	 * publishes it to the renderer. This runs on the game thread at the end of every
+	 * tick, so the renderer never reads the game's own objects while they are changing.
+	 * While a replay is playing, the snapshot is filled from the ReplayBuffer instead.
+	 */
+	private void captureSnapshot() {
+		final RenderSnapshot snapshot = snapshotBuffer.getBackSnapshot();
+		snapshot.clear(tickCount, worldTime);
+		if(replaying) {
+			captureReplay(snapshot);
+		} else {
+			captureWorld(snapshot);
+		}
+		
+		// Keep tracing the last shot until the renderer has shown it
+		if((pendingClickNanos != 0) && (lastShownClickNanos == pendingClickNanos)) {
+			pendingClickNanos = 0;
+		}
+		snapshot.setShotTrace(pendingClickNanos, pendingDecisionNanos);
+		
+		// Capture debug information if the flag is set and the quality allows
+		if((gameOptions.getDebugMode()) && (qualityGovernor.isDebugOverlayEnabled())) {
+			appendDebug(snapshot.getDebugText());
+		}
+		
+		// Hand the snapshot to the renderer and wake it up if it is waiting
+		snapshotBuffer.publish();
+		final Thread renderer = renderThread;
+		if(renderer != null) {
+			LockSupport.unpark(renderer);
+		}
+	}
+
+	/**
+	 * Fills a snapshot with the Sprites and UI of the current tick and records
+	 * the tick in the ReplayBuffer
+	 * @param	snapshot	the snapshot to fill
+	 */
+	private void captureWorld(final RenderSnapshot snapshot) {
+		int culled = 0;
+		
+		// Capture all the Decals, if the quality allows
+		if((gameOptions.getDecalsEnabled()) && (qualityGovernor.isDecalsEnabled())) {
+			SimpleSprite aDecal = null;
+			for(int i = 0; i < decalList.size(); i++) {
+				aDecal = (SimpleSprite)decalList.get(i);
+				if(captureSprite(snapshot, aDecal)) { culled++; }
+			}
+		}
+		snapshot.endLayer(RenderSnapshot.LAYER_DECALS);
+		
+		// If the game is paused, don't capture any Ducks to prevent the player from cheating ;o)
+		// Ducks that have flown off the edge of the screen are left out
+		Duck aDuck = null;
+		if(!gamePaused) {
+			for(int i = 0; i < duckList.size(); i++) {
+				aDuck = (Duck)duckList.get(i);
+				if(captureSprite(snapshot, aDuck)) { culled++; }
+			}
+		}
+		snapshot.endLayer(RenderSnapshot.LAYER_DUCKS);
+		
+		// Capture all the Clouds, if the quality allows
+		if(qualityGovernor.isCloudsEnabled()) {
+			SimpleSprite cloudSprite = null;
+			for(int i = 0; i < cloudList.size(); i++) {
+				cloudSprite = (SimpleSprite)cloudList.get(i);
+				if(captureSprite(snapshot, cloudSprite)) { culled++; }
+			}
+		}
+		snapshot.endLayer(RenderSnapshot.LAYER_CLOUDS);
+		culledCount = culled;
+		
+		// Note the game state, and show the value of the Duck just shot while any Duck is still
+		// shot or dying, only if the score location has been set and the Duck's value is greater than zero
+		int flags = 0;
+		if(gamePaused) { flags |= HUD_PAUSED; }
+		if(roundCompleted) { flags |= HUD_ROUND_COMPLETED; }
+		if(flyAway) { flags |= HUD_FLY_AWAY; }
+		if((scoreLocationSet) && (duckValue > 0)) {
+			for(int i = 0; i < duckList.size(); i++) {
+				aDuck = (Duck)duckList.get(i);
+				if((aDuck.getState() == Duck.STATE_SHOT) || (aDuck.getState() == Duck.STATE_DYING)) {
+					flags |= HUD_SCORE_VISIBLE;
+					break;
+				}
+			}
+		}
+		
+		// Update the round time left if the round has not been completed and ducks aren't flying away
+		if((!roundCompleted) && (!flyAway)) {
+			// Check our GameMode has a time limit - display time left if so
+			if(gameMode.hasTimeLimit()) {
+				timeLeft = (int)Math.max((roundStartTime + gameMode.getTimeLimit()) - worldTime, 0);
+			} else {
+				timeLeft = -1;
+			}
+		}
+		
+		// Capture the Player's current status, level and round
+		hudValues[HUD_FLAGS] = flags;
+		hudValues[HUD_SCORE_X] = scoreX;
+		hudValues[HUD_SCORE_Y] = scoreY - 75;
+		hudValues[HUD_DUCK_VALUE] = duckValue;
+		hudValues[HUD_SHOTS] = thePlayer.getShotCount();
+		hudValues[HUD_DUCKS_SHOT] = numDucksShot;
+		hudValues[HUD_AMMO] = gameMode.getAmmoCount();
+		hudValues[HUD_DUCKS] = gameMode.getDuckCount();
+		hudValues[HUD_LIVES] = thePlayer.getLives();
+		hudValues[HUD_LEVEL] = gameMode.getDifficultyLevel();
+		hudValues[HUD_ROUND] = gameMode.getRoundNumber();
+		hudValues[HUD_SCORE] = thePlayer.getScore();
+		hudValues[HUD_TIME_LEFT] = timeLeft;
+		captureHud(snapshot, hudValues);
+		
+		// Record the tick for replays, unless the game is paused and nothing is moving
+		if(!gamePaused) {
+			final long recordStart = System.nanoTime();
+			replayBuffer.record(worldTime, snapshot, hudValues);
+			replayRecordNanos += System.nanoTime() - recordStart;
+			replayRecordCount++;
+		}
+	}
+	
+	/**
+	 * Fills a snapshot with the next tick of the replay being played, stopping the replay
+	 * once its newest tick has been captured or if the tick wanted is no longer remembered
+	 * @param	snapshot	the snapshot to fill
+	 */
+	private void captureReplay(final RenderSnapshot snapshot) {
+		// Move the replay on by any seeking asked for, keeping it within the ticks remembered
+		final int seekTicks = replaySeekTicks.getAndSet(0);
+		replayTick = Math.max(replayBuffer.getOldestTick(), 
+				Math.min(replayTick + seekTicks, replayBuffer.getNewestTick()));
+		if(!replayBuffer.decode(replayTick, snapshot, replayValues)) {
+			setReplaying(false);
+			return;
+		}
+		captureHud(snapshot, replayValues);
+		
+		// Show how far behind the live game the replay is
+		snapshot.getReplayText().append("Replay -");
+		appendTime(snapshot.getReplayText(), 
+				replayBuffer.getTickTime(replayBuffer.getNewestTick()) - replayBuffer.getTickTime(replayTick));
+		
+		// Stop once the newest tick has been shown
+		if(replayTick >= replayBuffer.getNewestTick()) {
+			setReplaying(false);
+		} else {
+			replayTick++;
+		}
+	}
+	
+	/**
+	 * Adds a Sprite to the layer of a snapshot currently being filled, unless no part of it is
+	 * on the screen, so that the renderer and the ReplayBuffer never see Sprites nobody can see
+	 * @param	snapshot	the snapshot being filled
+	 * @param	sprite	the Sprite to add
+	 * @return	true if the Sprite was left out
+	 */
+	private static boolean captureSprite(final RenderSnapshot snapshot, final Sprite sprite) {
+		final Image image = sprite.getImage();
+		final int xPos = sprite.getXPosition();
+		final int yPos = sprite.getYPosition();
+		if((xPos >= DisplayView.WIDTH) || (yPos >= DisplayView.HEIGHT)
+				|| (xPos + image.getWidth(null) <= 0) || (yPos + image.getHeight(null) <= 0)) {
+			return true;
+		}
+		snapshot.addSprite(image, xPos, yPos);
+		return false;
+	}
+	
+	/**
+	 * Fills in the game state flags and the text of the UI of a snapshot from the
+	 * values captured for a tick
+	 * @param	snapshot	the snapshot to fill
+	 * @param	values	the values of the tick, indexed by the HUD_ constants
 	 */
-	private int checkForHit() {
-		// Check a Duck has been 'hit' by the player by checking whether the pointerLoc co-ordinates
-		// intersect any area of the frame currently being displayed. If the player hit the Duck, then
-		// a score value for the Duck is returned, otherwise -1 is returned.
-		int boundX, boundY, duckPoints = 0;
-		Duck aDuck = null;
-		duckPoints = -1;
-		
-		// Loop through our list of Ducks
-		for(int i = 0; i < duckList.size(); i++) {
-			aDuck = (Duck)duckList.get(i);
-			
-			// Find bounds of our Duck's current Sprite
-			boundX = aDuck.getXPosition() + aDuck.getWidth();
-			boundY = aDuck.getYPosition() + aDuck.getHeight();
-			
-			// Check that the users pointer location intersects the box, that the player
-			// currently has shots and the Duck is currently alive
-			if(((pointerLoc.getX() > aDuck.getXPosition()) && (pointerLoc.getX() < boundX)) &&
-			((pointerLoc.getY() > aDuck.getYPosition()) && (pointerLoc.getY() < boundY)) &&
-			(aDuck.getState() == Duck.STATE_ALIVE) && (thePlayer.getShotCount() > 0)) {
-				// Change the Duck's state to shot
-				aDuck.setState(Duck.STATE_SHOT);
-				// Generate a point value for the Duck based on its velocities
-				int duckPointsX = aDuck.getDX(); int duckPointsY = aDuck.getDY();
-				
-				// Invert any of the velocities to positive if negative values
-				if(duckPointsX < 0) { duckPointsX = -duckPointsX; }
-				if(duckPointsY < 0) { duckPointsY = -duckPointsY; }
-				
-				// Generate a score for the Duck based on its velocities multiplied by
-				// the Duck's difficulty divided by how many shots the Player has left,
-				// multiplied by 10 to make a 'sensible' score :o)
-				duckPoints = (duckPointsX + duckPointsY) * aDuck.getDuckDifficulty();
-				
-				// If the current game mode uses a shot modifier, then take that into account
-				if(gameMode.getShotModifier()) {
-					final int shotModifier = gameMode.getAmmoCount() - thePlayer.getShotCount();
-					if (shotModifier != 0) {
-						duckPoints = duckPoints / shotModifier;
-					}
-				}
-				
-				// Multiply to give a 'big' number
-				duckPoints = duckPoints * 10;
-				
-				// Print to the debug window which Duck has been hit and its point value
-				if(gameOptions.getDebugMode()) {
-					System.out.println("Duck " + i + " hit (" + Integer.toString(duckPoints) + " points)");
-				}
-				
-				// Exit the loop
-				break;
-			}
+	private void captureHud(final RenderSnapshot snapshot, final int[] values) {
+		final int flags = values[HUD_FLAGS];
+		snapshot.setState((flags & HUD_PAUSED) != 0, (flags & HUD_ROUND_COMPLETED) != 0, 
+				(flags & HUD_FLY_AWAY) != 0, (gameOptions.getDebugMode()) && (qualityGovernor.isDebugOverlayEnabled()), 
+				gameOptions.getFpsDisplay());
+		if((flags & HUD_SCORE_VISIBLE) != 0) {
+			snapshot.setScoreLocation(values[HUD_SCORE_X], values[HUD_SCORE_Y]);
+			snapshot.getScoreText().append(values[HUD_DUCK_VALUE]);
+		}
+		snapshot.setPlayer(thePlayer.getPlayerName(), values[HUD_SHOTS], values[HUD_DUCKS_SHOT]);
+		snapshot.setRound(values[HUD_AMMO], values[HUD_DUCKS]);
+		snapshot.getLivesText().append("Lives: ").append(values[HUD_LIVES]);
+		snapshot.getLevelText().append("Level: ").append(values[HUD_LEVEL])
+				.append('-').append(values[HUD_ROUND]);
+		snapshot.getPlayerScoreText().append(values[HUD_SCORE]);
+		if(values[HUD_TIME_LEFT] < 0) {
+			snapshot.getTimeText().append("--:--:--");
+		} else {
+			appendTime(snapshot.getTimeText(), values[HUD_TIME_LEFT]);
 		}
-		return duckPoints;
 	}
 	
 	/**
-	 * Respawns a limited number of Ducks and adds them  to the DuckList. 
-	 * The number of Ducks spawned is specified  by the parameter numDucks.
-	 * NOTE: The number of Ducks that can be spawned is dependent on the amount
-	 * of memory available to the JVM. Therefore, a global flag is set to true if 
-	 * the OutOfMemoryError exception is caught.
-	 * @param numDucks	the number of Ducks to spawn and add to the screen
+	 * Runs the render thread, painting each snapshot as soon as it is published
+	 * until the render thread is stopped
 	 */
-	private void spawnDucks(final int numDucks) {
-		// Create a temporary Duck
-		Duck aDuck = null;
-		// Print to console
-		System.out.println("Spawning " + numDucks + " ducks... (" + (duckList.size()) + " current)");
+	private void renderLoop() {
+		final Thread currentThread = Thread.currentThread();
 		try {
-			// If the maximum number of Ducks has not been reached, then add another to the ArrayList
-			if(maxDucksReached) {
-				// Otherwise, just display error
-				System.out.println("Maximum amount of Ducks reached - please increase JVM heapsize");
-			} else {
-				// Get the game's current difficulty level
-				final int currentLevel = gameMode.getDifficultyLevel();
-				
-				// Create the specified number of Ducks and add them to the list
-				for(int i = 0; i < numDucks; i++) {
-					// Create our duck
-					aDuck = new Duck(this, animGenerator, currentLevel);
-					// Place it in the bottom-middle of the Canvas
-					final int xPos = (this.getWidth() - aDuck.getWidth()) / 2;
-					final int yPos = (this.getHeight() - aDuck.getHeight()); 
-					aDuck.setXPosition(xPos);	aDuck.setYPosition(yPos);
-					// And add it to the list of ducks
-					duckList.add(aDuck);
+			while(renderThread == currentThread) {
+				if(snapshotBuffer.hasNewSnapshot()) {
+					renderWorld();
+				} else {
+					// Wait for the game thread to publish the next snapshot
+					LockSupport.park(this);
 				}
 			}
-		} catch(OutOfMemoryError oom) {
-			// Display error and set flag if maximum memory reached
-			System.out.println("Cannot create any more Ducks: " + oom.toString());
-			maxDucksReached = true;
+		} catch(IllegalStateException ex) {
+			// The window's buffers have gone - should only happen when closing
+			System.out.println("Render thread stopped: " + ex.getMessage());
 		}
 	}
 	
-	/******* PAINT METHODS *******/
-	
 	/**
-	 * Paints the complete world to the current Graphics context by calling
+	 * Paints the newest RenderSnapshot to the current Graphics context by calling
 	 * all the paint methods available.
 	 **/
 	private void renderWorld() {
-		// Get the current Graphics context
-		final Graphics2D gfx = (Graphics2D)strategy.getDrawGraphics();
+		// Get the newest snapshot and the time since the last frame was painted
+		final RenderSnapshot snapshot = snapshotBuffer.acquire();
+		final long frameStart = System.nanoTime();
+		frameTime = (frameStart - lastFrameStart) / GameClock.NANOS_PER_MILLI;
+		lastFrameStart = frameStart;
+		
+		// Queue and sort the Sprites once, so every tile of the frame paints them in the same order
+		queueSprites(snapshot);
+		
+		// Find the image the frame is painted into, if it is painted into memory. If frames are being
+		// captured, the frame is painted into a captured image, unless every image is still waiting to be written.
+		final FrameCapture capture = frameCapture;
+		final BufferedImage captureImage = (capture != null) ? capture.acquireFrame() : null;
+		final BufferedImage frameImage = (captureImage != null) ? captureImage
+				: (renderTarget instanceof ImageRenderTarget) ? ((ImageRenderTarget)renderTarget).getImage() : null;
+		
+		// Paint all the Sprites, in tiles across the pool if the frame is in memory and crowded enough.
+		// Frames painted into memory are never scaled or moved, only frames painted to the window.
+		final double scale = renderScale;
+		final boolean framed = (scale != 1) || (renderOffsetX != 0) || (renderOffsetY != 0);
+		if((updatePool != null) && (frameImage != null) && (snapshot.getSpriteCount() > TILED_RENDER_THRESHOLD)) {
+			paintTiles(frameImage, snapshot, updatePool, blitSprites);
+			tiledFrameCount++;
+		} else {
+			// Blit Sprites straight into the frame's pixels if it is in memory and there is no display,
+			// bypassing Java2D's loops
+			final SoftwareBlitter blitter = (blitSprites) ? getFrameBlitter(frameImage) : null;
+			
+			// Captured frames are always painted at the game's own size, and scaled as they are copied to the screen.
+			// The window paints the game between bars whenever it is a different size to the game, even if
+			// it is only wider or taller and the game is not scaled.
+			final Graphics2D gfx = (captureImage != null) 
+					? captureImage.createGraphics() : renderTarget.getDrawGraphics();
+			if((captureImage == null) && (framed)) {
+				paintBorders(gfx, scale);
+				gfx.translate(renderOffsetX, renderOffsetY);
+				paintFrame(gfx, null, snapshot, Integer.MIN_VALUE, Integer.MAX_VALUE, scale);
+			} else {
+				paintFrame(gfx, blitter, snapshot, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
+			}
+			if(captureImage != null) {
+				gfx.dispose();
+			} else {
+				renderTarget.releaseDrawGraphics(gfx);
+			}
+		}
+		spriteQueue.clear();
+		cloudQueue.clear();
+		
+		// Copy a captured frame to the screen and queue it to be written
+		if(captureImage != null) {
+			final Graphics2D screenGfx = renderTarget.getDrawGraphics();
+			if(framed) {
+				paintBorders(screenGfx, scale);
+			}
+			if(scale != 1) {
+				screenGfx.drawImage(captureImage, renderOffsetX, renderOffsetY, (int)Math.round(DisplayView.WIDTH * scale),
+						(int)Math.round(DisplayView.HEIGHT * scale), this);
+			} else {
+				screenGfx.drawImage(captureImage, renderOffsetX, renderOffsetY, this);
+			}
+			renderTarget.releaseDrawGraphics(screenGfx);
+			capture.submitFrame(captureImage);
+		}
 		
-		// Paint all the Sprites to the context
-		paintSprites(gfx);	
-		paintGameStatus(gfx);
-		paintDebug(gfx);
-		paintToolbars(gfx);
-		paintUI(gfx);
+		// Ask for the cached images to be scaled again if the window has been resized or images have been added
+		if((rescalePool != null) && !rescalePending && spriteCache.isRescaleNeeded()) {
+			requestRescale();
+		}
 		
-		// Attempt to display the graphics buffer
+		// Attempt to display the graphics buffer, noting how long the frame took to paint and to show
+		final long showStart = System.nanoTime();
+		renderNanos = showStart - frameStart;
 		try {
-			strategy.show();
+			renderTarget.show();
 		} catch(NullPointerException ex) {
 			// Do nothing - should only catch when closing thread
 		}
+		showNanos = System.nanoTime() - showStart;
+		
+		// Note the game time of the frame now on screen, which is the time clicks are checked at
+		displayedWorldTime = snapshot.getWorldTime();
+		
+		// If this is the first frame showing a shot, record how long the shot took to reach the screen
+		final long clickNanos = snapshot.getClickNanos();
+		if((clickNanos != 0) && (clickNanos != lastShownClickNanos)) {
+			final long shownNanos = System.nanoTime();
+			photonLatency.record(shownNanos - clickNanos);
+			renderLatency.record(shownNanos - snapshot.getDecisionNanos());
+			lastShownClickNanos = clickNanos;
+		}
+	}
+	
+	/**
+	 * Queues and sorts the Sprites of a snapshot to be painted. The queues must be cleared
+	 * once the frame has been painted.
+	 * @param	snapshot	the snapshot to paint
+	 */
+	private void queueSprites(final RenderSnapshot snapshot) {
+		queueLayer(spriteQueue, snapshot, RenderSnapshot.LAYER_DECALS);
+		queueLayer(spriteQueue, snapshot, RenderSnapshot.LAYER_DUCKS);
+		spriteQueue.sort();
+		queueLayer(cloudQueue, snapshot, RenderSnapshot.LAYER_CLOUDS);
+		cloudQueue.sort();
+	}
+	
+	/**
+	 * Paints a snapshot into an image in memory in horizontal tiles across a pool. The Sprite
+	 * queues must already be sorted.
+	 * @param	image	the image to paint into
+	 * @param	snapshot	the snapshot to paint
+	 * @param	pool	the pool painting the tiles
+	 * @param	blitted	true to blit Sprites straight into the image's pixels where possible
+	 */
+	private void paintTiles(final BufferedImage image, final RenderSnapshot snapshot, final ForkJoinPool pool,
+			final boolean blitted) {
+		final int tiles = pool.getParallelism() * TILES_PER_THREAD;
+		final int tileHeight = Math.max(MIN_TILE_HEIGHT, (image.getHeight() + tiles - 1) / tiles);
+		
+		// Split the image into tiles again only if it is a different image or the pool has changed size
+		if((frameTiles == null) || (frameTiles.getImage() != image) || (frameTiles.getTileHeight() != tileHeight)) {
+			if(frameTiles != null) {
+				frameTiles.dispose();
+			}
+			frameTiles = new FrameTiles(image, tileHeight);
+		}
+		tileSnapshot = snapshot;
+		tileBlitted = (blitted) && frameTiles.createBlitters();
+		pool.invoke(new TileRenderTask(this, frameTiles, 0, frameTiles.getTileCount()));
+		tileSnapshot = null;
+	}
+	
+	/**
+	 * Returns the blitter painting Sprites into a frame painted into memory on one thread,
+	 * making a new one if the frame is painted into a different image to the last
+	 * @param	image	the image the frame is painted into, or null if it is not painted into memory
+	 * @return	the blitter, or null if Sprites cannot be blitted into the image
+	 */
+	private SoftwareBlitter getFrameBlitter(final BufferedImage image) {
+		if((image == null) || !SoftwareBlitter.isTargetSupported(image)) {
+			frameBlitter = null;
+		} else if((frameBlitter == null) || (frameBlitter.getTarget() != image)) {
+			frameBlitter = new SoftwareBlitter(image);
+		}
+		return frameBlitter;
+	}
+	
+	/**
+	 * Paints the snapshot last painted again into the specified image at the game's own size,
+	 * in tiles across the specified pool or on this thread alone, and with Sprites blitted or
+	 * drawn by Java2D, so that the ways of painting frames into memory can be checked against
+	 * each other. The frames must be painted on the game thread, and this may only be called
+	 * between frames, such as from the RenderTarget's show method.
+	 * @param	image	the image to paint into
+	 * @param	pool	the pool to paint tiles across, or null to paint on this thread
+	 * @param	blitted	true to blit Sprites straight into the image's pixels where possible
+	 */
+	void repaintFrame(final BufferedImage image, final ForkJoinPool pool, final boolean blitted) {
+		final RenderSnapshot snapshot = snapshotBuffer.acquire();
+		queueSprites(snapshot);
+		if(pool != null) {
+			paintTiles(image, snapshot, pool, blitted);
+		} else {
+			final Graphics2D gfx = image.createGraphics();
+			paintFrame(gfx, (blitted) ? getFrameBlitter(image) : null, snapshot, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
+			gfx.dispose();
+		}
+		spriteQueue.clear();
+		cloudQueue.clear();
+	}
+	
+	/**
+	 * Scales the cached images to the window in the background, swapping the scaled images in
+	 * once they are all ready. Until then, images are scaled as they are painted.
+	 */
+	private void requestRescale() {
+		rescalePending = true;
+		rescalePool.runTask(new Runnable() {
+			public void run() {
+				spriteCache.rescaleImages();
+				rescalePending = false;
+			}
+		});
 	}
 	
 	/**
@@ -778,7 +1637,7 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 */
 	private void paintLoading() {
 		// Get the current graphics drawing area
-		final Graphics2D gfx = (Graphics2D)strategy.getDrawGraphics();
+		final Graphics2D gfx = renderTarget.getDrawGraphics();
 		
 		// Draw blue box covering entire screen area
 		gfx.setColor(Color.WHITE);
@@ -786,12 +1645,8 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		
 		// Draw the "Loading..." text in the bottom, left of the screen
 		// and add a 'shadow' effect to the text
-		gfx.setColor(Color.GRAY);
-		gfx.setFont(new Font(FONT_TAHOMA, Font.BOLD + Font.ITALIC, 125));
-		gfx.drawString("Loading...", 5, DisplayView.HEIGHT - 105);
-		gfx.setColor(Color.BLACK);
-		gfx.setFont(new Font(FONT_TAHOMA, Font.BOLD + Font.ITALIC, 125));
-		gfx.drawString("Loading...", 10, DisplayView.HEIGHT - 110);
+		LOADING_SHADOW_TEXT.drawString(gfx, "Loading...", 5, DisplayView.HEIGHT - 105);
+		LOADING_TEXT.drawString(gfx, "Loading...", 10, DisplayView.HEIGHT - 110);
 		
 		// Create Sprite for shotgun on loading screen
 		loadingSprite = new SimpleSprite(this, animGenerator, "resources/images/interface/loading/shotgun.png");
@@ -804,50 +1659,121 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		paintToolbars(gfx);
 		
 		// Show the buffer
-		strategy.show();
+		renderTarget.releaseDrawGraphics(gfx);
+		renderTarget.show();
 	}
 	
 	/**
-	 * Paints all Sprites to screen, including Ducks, Decals and Clouds
+	 * Paints one tile of the frame being painted in tiles. Called by a TileRenderTask on
+	 * the pool's threads, so it only reads the snapshot and the sorted queues.
+	 * @param	gfx	the Graphics context onto which to paint, clipped to the tile
+	 * @param	blitter	the tile's own blitter, clipped to the tile, or null if there is none
+	 * @param	top	the first row of the tile
+	 * @param	bottom	the row below the last row of the tile
+	 */
+	public void paintTile(final Graphics2D gfx, final SoftwareBlitter blitter, final int top, final int bottom) {
+		// The tiles keep their blitters once made, so only blit if this frame asked for it
+		paintFrame(gfx, (tileBlitted) ? blitter : null, tileSnapshot, top, bottom, 1);
+	}
+	
+	/**
+	 * Paints the whole frame, or one horizontal band of it, by calling all the
+	 * paint methods available. The Sprite queues must already be sorted.
 	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	blitter	the blitter painting Sprites into the same image as gfx, or null
+	 * @param	snapshot	the snapshot to paint
+	 * @param	top	the first row of the band being painted
+	 * @param	bottom	the row below the last row of the band being painted
+	 * @param	scale	the number of screen pixels to each game pixel
 	 */
-	private void paintSprites(final Graphics2D gfx) {
-		// If the player lost the round, then swap the background image and paint to the screen
-		if(flyAway) {
-			backgroundFlyAway.paint(gfx);
-		} else {
-			backgroundSprite.paint(gfx);
+	private void paintFrame(final Graphics2D gfx, final SoftwareBlitter blitter, final RenderSnapshot snapshot,
+			final int top, final int bottom, final double scale) {
+		// When the display is scaled, Sprites are painted from their scaled copies in screen
+		// pixels, and everything else in game coordinates through a scaled copy of the context
+		final Graphics2D uiGfx = (scale == 1) ? gfx : (Graphics2D)gfx.create();
+		if(uiGfx != gfx) {
+			uiGfx.scale(scale, scale);
 		}
+		paintSprites(gfx, uiGfx, blitter, snapshot, top, bottom, scale);	
+		paintGameStatus(uiGfx, snapshot);
+		paintDebug(uiGfx, snapshot);
+		paintToolbars(uiGfx);
+		paintUI(uiGfx, snapshot);
+		if(uiGfx != gfx) {
+			uiGfx.dispose();
+		}
+	}
+	
+	/**
+	 * Paints the bars either side of, or above and below, the game when the window is not
+	 * the same shape as the game
+	 * @param	gfx	the Graphics context onto which to paint, in screen pixels
+	 * @param	scale	the number of screen pixels to each game pixel
+	 */
+	private void paintBorders(final Graphics2D gfx, final double scale) {
+		final int left = renderOffsetX;
+		final int top = renderOffsetY;
+		final int right = left + (int)Math.round(DisplayView.WIDTH * scale);
+		final int bottom = top + (int)Math.round(DisplayView.HEIGHT * scale);
+		gfx.setColor(Color.BLACK);
+		gfx.fillRect(0, 0, left, this.getHeight());
+		gfx.fillRect(right, 0, this.getWidth() - right, this.getHeight());
+		gfx.fillRect(0, 0, this.getWidth(), top);
+		gfx.fillRect(0, bottom, this.getWidth(), this.getHeight() - bottom);
+	}
+	
+	/**
+	 * Paints all Sprites in the snapshot to screen, including Ducks, Decals and Clouds
+	 * @param	gfx	the Graphics context onto which to paint the Sprites, in screen pixels
+	 * @param	uiGfx	the Graphics context onto which to paint text, in game coordinates
+	 * @param	blitter	the blitter painting Sprites into the same image as gfx, or null
+	 * @param	snapshot	the snapshot to paint
+	 * @param	top	the first row of the band being painted
+	 * @param	bottom	the row below the last row of the band being painted
+	 * @param	scale	the number of screen pixels to each game pixel
+	 */
+	private void paintSprites(final Graphics2D gfx, final Graphics2D uiGfx, final SoftwareBlitter blitter,
+			final RenderSnapshot snapshot, final int top, final int bottom, final double scale) {
+		// If the player lost the round, then swap the background image and paint to the screen
+		final Background background = snapshot.isFlyAway() ? backgroundFlyAway : backgroundSprite;
 		
-		if(gameOptions.getDecalsEnabled()) {
-			// Paint all the Decals on the Canvas
-			SimpleSprite aDecal = null;
-			for(int i = 0; i < decalList.size(); i++) {
-				aDecal = (SimpleSprite)decalList.get(i);
-				aDecal.paint(gfx);
-			}
+		// Paint the background, then all the Decals and then all the Ducks on the Canvas
+		if(scale == 1) {
+			background.paint(gfx);
+			spriteQueue.paint(gfx, this, blitter, top, bottom);
+		} else {
+			spriteCache.paintScaled(gfx, background.getImage(), background.getXPosition(), background.getYPosition(), this);
+			spriteQueue.paintScaled(gfx, this, spriteCache);
 		}
 		
-		// If the game is paused, don't paint any Ducks to prevent the player from cheating ;o)
-		if(!gamePaused) {
-			// Paint all the Ducks on the Canvas
-			Duck aDuck = null;
-			gfx.setColor(Color.BLACK);
-			for(int i = 0; i < duckList.size(); i++) {
-				aDuck = (Duck)duckList.get(i);
-				aDuck.paint(gfx);
-				// Add a number to the Duck's sprite if we're running in debug mode
-				if(gameOptions.getDebugMode()) {
-					gfx.drawString(Integer.toString(i), aDuck.getXPosition(), aDuck.getYPosition() + (aDuck.getHeight() / 2));
-				}
+		// Add a number to each Duck's sprite if we're running in debug mode
+		if(snapshot.isDebugMode()) {
+			final int duckStart = snapshot.getLayerStart(RenderSnapshot.LAYER_DUCKS);
+			final int duckEnd = snapshot.getLayerEnd(RenderSnapshot.LAYER_DUCKS);
+			for(int i = duckStart; i < duckEnd; i++) {
+				DEBUG_TEXT.drawInt(uiGfx, i - duckStart, snapshot.getXPosition(i), 
+						snapshot.getYPosition(i) + (snapshot.getImage(i).getHeight(null) / 2));
 			}
 		}
 		
 		// Paint all the Clouds on the Canvas
-		SimpleSprite cloudSprite = null;
-		for(int i = 0; i < cloudList.size(); i++) {
-			cloudSprite = (SimpleSprite)cloudList.get(i);
-			cloudSprite.paint(gfx);
+		if(scale == 1) {
+			cloudQueue.paint(gfx, this, blitter, top, bottom);
+		} else {
+			cloudQueue.paintScaled(gfx, this, spriteCache);
+		}
+	}
+	
+	/**
+	 * Adds every Sprite in one layer of the snapshot to a RenderQueue
+	 * @param	queue	the queue to add the Sprites to
+	 * @param	snapshot	the snapshot to paint
+	 * @param	layer	the layer to paint
+	 */
+	private static void queueLayer(final RenderQueue queue, final RenderSnapshot snapshot, final int layer) {
+		final int end = snapshot.getLayerEnd(layer);
+		for(int i = snapshot.getLayerStart(layer); i < end; i++) {
+			queue.add(snapshot.getImage(i), snapshot.getXPosition(i), snapshot.getYPosition(i), layer);
 		}
 	}
 	
@@ -855,36 +1781,27 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 * Paints any status messages to the screen, including the score of the Duck
 	 * just shot by the player.
 	 * @param 	gfx	the Graphics context onto which to paint
+	 * @param	snapshot	the snapshot to paint
 	 */
-	private void paintGameStatus(final Graphics2D gfx) {
-		// Create a temporary Duck
-		Duck aDuck = null;
-		
-		// Set the Graphics context properties
-		gfx.setColor(Color.RED);
-		gfx.setFont(new Font(FONT_ARIAL, Font.BOLD, 30));
-		
-		// Loop through all the Ducks
-		for(int i = 0; i < duckList.size(); i++) {
-			aDuck = (Duck)duckList.get(i);
-			// Check the state of the Duck to see if the score for the Duck needs displaying,
-			// only if the scoreLocation isn't null and the Duck's value is greater than zero
-			if(((aDuck.getState() == Duck.STATE_SHOT) || (aDuck.getState() == Duck.STATE_DYING)) 
-			&& (scoreLocation != null) && (duckValue > 0)) {
-				// Write the score to the screen
-				gfx.drawString(Integer.toString(duckValue), (int)scoreLocation.getX(), (int)scoreLocation.getY() - 75);
-			}
+	private void paintGameStatus(final Graphics2D gfx, final RenderSnapshot snapshot) {
+		// Write the score of the Duck just shot to the screen
+		if(snapshot.isScoreVisible()) {
+			SCORE_TEXT.drawText(gfx, snapshot.getScoreText(), snapshot.getScoreX(), snapshot.getScoreY());
 		}
 		
+		// Show that a replay is playing, and how far behind the live game it is
+		if(snapshot.isReplay()) {
+			STATUS_ALERT_TEXT.drawText(gfx, snapshot.getReplayText(), SPRITE_UI_XPOS, (int)(0.1 * DisplayView.HEIGHT) + 25);
+		}
 		
 		// If the game is paused, then show pausedSprite
-		if(gamePaused) {
+		if(snapshot.isGamePaused()) {
 			pausedSprite.paint(gfx);
 		} else {
 			// Display 'fly away' Sprite if all Ducks flew away
-			if(flyAway) {
+			if(snapshot.isFlyAway()) {
 				flyAwaySprite.paint(gfx);
-			} else if(roundCompleted) {
+			} else if(snapshot.isRoundCompleted()) {
 				// Display 'round end' Sprite if player run out of shots
 				// and there are Ducks left
 				roundEndSprite.paint(gfx);
@@ -896,55 +1813,44 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 * Paints the UI to the screen. This includes elements such as the FPS counter,
 	 * the Player's current status, score, level, round number, ammunition count and lives.
 	 * @param	gfx	the Graphics context onto which to draw the Sprites
+	 * @param	snapshot	the snapshot to paint
 	 */
-	private void paintUI(final Graphics2D gfx) {
+	private void paintUI(final Graphics2D gfx, final RenderSnapshot snapshot) {
 		// Add game title
-		gfx.setColor(Color.BLUE);
-		gfx.setFont(new Font(FONT_TAHOMA, Font.BOLD, 35));
-		gfx.drawString("Duck Hunter", SPRITE_UI_XPOS - 10, 35);
+		TITLE_TEXT.drawString(gfx, "Duck Hunter", SPRITE_UI_XPOS - 10, 35);
 		
 		// Draw FPS counter
-		gfx.setColor(Color.BLUE);
-		gfx.setFont(new Font(FONT_TAHOMA, Font.BOLD + Font.ITALIC, 15));
-		if(gameOptions.getFpsDisplay()) {
-			if(usedTime > 0) {
-				gfx.drawString(String.valueOf(1000 / usedTime) + " fps", DisplayView.WIDTH - 70, DisplayView.HEIGHT - 45);
+		if(snapshot.isFpsDisplay()) {
+			if(frameTime > 0) {
+				final int xPos = FPS_TEXT.drawInt(gfx, (int)(1000 / frameTime), DisplayView.WIDTH - 70, DisplayView.HEIGHT - 45);
+				FPS_TEXT.drawString(gfx, " fps", xPos, DisplayView.HEIGHT - 45);
 			} else {
-				gfx.drawString("--- fps", 50, 40);
+				FPS_TEXT.drawString(gfx, "--- fps", 50, 40);
 			}
 		}
 		
+		// Show that frames are being captured
+		if(frameCapture != null) {
+			RECORDING_TEXT.drawString(gfx, "REC", DisplayView.WIDTH - 70, DisplayView.HEIGHT - 25);
+		}
+		
 		//	Paint the Player's current score, lives, level and round number in the top-right
 		gfx.setColor(Color.BLACK);
 		gfx.fillRect(DisplayView.WIDTH - 147 - SPRITE_UI_XPOS, 10, 158, 107);
 		gfx.setColor(Color.WHITE);
 		gfx.fillRect(DisplayView.WIDTH - 145 - SPRITE_UI_XPOS, 11, 155, 105);
-		gfx.setColor(Color.BLACK);
-		gfx.setFont(new Font(FONT_TAHOMA, Font.BOLD, 18));
-		gfx.drawString(thePlayer.getPlayerName(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 30);
-		gfx.drawString("Lives: " + Integer.toString(thePlayer.getLives()), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 50);
-		gfx.drawString("Level: " + Integer.toString(gameMode.getDifficultyLevel()) 
-				+ "-" + Integer.toString(gameMode.getRoundNumber()), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 70);
-		gfx.setColor(Color.RED);
-		gfx.drawString(Integer.toString(thePlayer.getScore()), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 90);
-		gfx.setColor(Color.LIGHT_GRAY);
+		STATUS_TEXT.drawString(gfx, snapshot.getPlayerName(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 30);
+		STATUS_TEXT.drawText(gfx, snapshot.getLivesText(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 50);
+		STATUS_TEXT.drawText(gfx, snapshot.getLevelText(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 70);
+		STATUS_ALERT_TEXT.drawText(gfx, snapshot.getPlayerScoreText(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 90);
 		
-		// Draw round time left if the round has not been completed and ducks aren't flying away
-		if((!roundCompleted) && (!flyAway)) {
-			// Check our GameMode has a time limit - display time left if so
-			if(gameMode.hasTimeLimit()) {
-				long timeLeft = ((timeStarted + gameMode.getTimeLimit()) - System.currentTimeMillis());
-				timeString = millisecondsToString(timeLeft);
-			} else {
-				timeString = new String("--:--:--");
-			}
-		}
-		gfx.drawString(timeString, DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 110);
+		// Draw round time left
+		STATUS_TIME_TEXT.drawText(gfx, snapshot.getTimeText(), DisplayView.WIDTH - 135 - SPRITE_UI_XPOS, 110);
 		
 		// Get X and Y position of the box surrounding the sprites
 		int boxX = ammoSprite.getXPosition() - 10;
 		int boxY = ammoSprite.getYPosition() - 10;
-		int boxWidth = ((gameMode.getAmmoCount() * ammoSprite.getWidth()) + 20);
+		int boxWidth = ((snapshot.getAmmoCount() * ammoSprite.getWidth()) + 20);
 		int boxHeight = (ammoSprite.getHeight() + 20);
 		
 		// Create the surrounding box
@@ -955,20 +1861,15 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		
 		// Draw the ammoSprite in the box
 		int imageXOffset = ammoSprite.getXPosition();
-		for(int i = 1; i <= thePlayer.getShotCount(); i++) {
-			ammoSprite.setXPosition(imageXOffset);
-			ammoSprite.paint(gfx);
-			// g.drawImage(currentImage, imageXOffset, this.getY(), displayView);
+		for(int i = 1; i <= snapshot.getShotCount(); i++) {
+			gfx.drawImage(ammoSprite.getImage(), imageXOffset, ammoSprite.getYPosition(), this);
 			imageXOffset += ammoSprite.getWidth();
 		}
 		
-		// Reset ammoSprite X position for next render
-		ammoSprite.setXPosition(SPRITE_UI_XPOS);
-		
 		// Get the X and Y position of the box surrounding the sprites
 		boxX = (duckAliveSprite.getXPosition() - 10);
 		boxY = duckAliveSprite.getYPosition() - 10;
-		boxWidth = (gameMode.getDuckCount() * duckAliveSprite.getWidth()) + 20;
+		boxWidth = (snapshot.getDuckCount() * duckAliveSprite.getWidth()) + 20;
 		boxHeight = (duckAliveSprite.getHeight()) + 20;
 		
 		// Create the surrounding box
@@ -979,20 +1880,14 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		
 		// Draw the duckIcons in the box
 		imageXOffset = duckAliveSprite.getXPosition();
-		for(int i = 0; i < gameMode.getDuckCount(); i++) {
-			duckAliveSprite.setXPosition(imageXOffset);
-			duckDeadSprite.setXPosition(imageXOffset);
-			if(i < numDucksShot) {
-				duckDeadSprite.paint(gfx);
+		for(int i = 0; i < snapshot.getDuckCount(); i++) {
+			if(i < snapshot.getDucksShot()) {
+				gfx.drawImage(duckDeadSprite.getImage(), imageXOffset, duckDeadSprite.getYPosition(), this);
 			} else {
-				duckAliveSprite.paint(gfx);
+				gfx.drawImage(duckAliveSprite.getImage(), imageXOffset, duckAliveSprite.getYPosition(), this);
 			}
 			imageXOffset += duckAliveSprite.getWidth();
 		}
-		
-		// Reset duckIcons X position for next render
-		duckAliveSprite.setXPosition(SPRITE_UI_XPOS);
-		duckDeadSprite.setXPosition(SPRITE_UI_XPOS);
 	}
 	
 	/**
@@ -1010,61 +1905,168 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		gfx.setColor(Color.LIGHT_GRAY);
 		gfx.fillRect(0, (int)(0.9 * DisplayView.HEIGHT), DisplayView.WIDTH, DisplayView.HEIGHT);
 		gfx.setColor(Color.BLACK);
-		gfx.drawLine(0, (int)(0.9 * DisplayView.HEIGHT), DisplayView.WIDTH, (int)(0.9 * this.getHeight()));
+		gfx.drawLine(0, (int)(0.9 * DisplayView.HEIGHT), DisplayView.WIDTH, (int)(0.9 * DisplayView.HEIGHT));
 	}
 	
 	/**
-	 * Paints debug info onto the screen. Debug info includes the location
-	 * of the last point clicked, as well as the horizontal and vertical
-	 * speeds of each duck in the DuckList.
+	 * Paints the debug info captured in the snapshot onto the screen, one line at a time
 	 * @param gfx	The Graphics context onto which to paint
+	 * @param	snapshot	the snapshot to paint
 	 */
-	private void paintDebug(final Graphics2D gfx) {
+	private void paintDebug(final Graphics2D gfx, final RenderSnapshot snapshot) {
 		// Write debug information to screen if flag set
-		if(gameOptions.getDebugMode()) {
-			// Draw Duck debug info
+		if(snapshot.isDebugMode()) {
+			final TextBuilder debugText = snapshot.getDebugText();
+			final char[] debugChars = debugText.getChars();
 			int yDrawPos = 110;
-			Duck aDuck = null;
-			
-			// Draw the location of where the pointer was last clicked
-			gfx.setColor(Color.BLACK);
-			gfx.setFont(new Font(FONT_ARIAL, Font.PLAIN, 12));
-			gfx.drawString("Pointer clicked at: " + pointerCache, 10, yDrawPos);
-			yDrawPos += 15;
-			gfx.drawString("Number of Ducks: " + Integer.toString(duckList.size()), 10, yDrawPos);
-			
-			// Loop through all Ducks in the list and print their current location, velocity and status
-			String duckDetails = null;
-			for(int i = 0; i < duckList.size(); i++) {
-				yDrawPos += 15;
-				aDuck = (Duck)duckList.get(i);
-				duckDetails = "#" + i + ": ";
-				duckDetails = duckDetails + "dx: " + aDuck.getDX() + ", dy: " + aDuck.getDY() + ",";
-				duckDetails = duckDetails + " x: " + aDuck.getXPosition() + ", y: " + aDuck.getYPosition();
-				duckDetails = duckDetails + " status: " + aDuck.getState();
-				gfx.drawString(duckDetails, 10, yDrawPos);
+			int lineStart = 0;
+			for(int i = 0; i <= debugText.length(); i++) {
+				if((i == debugText.length()) || (debugChars[i] == '\n')) {
+					DEBUG_TEXT.drawChars(gfx, debugChars, lineStart, i - lineStart, 10, yDrawPos);
+					yDrawPos += 15;
+					lineStart = i + 1;
+				}
 			}
 		}
 	}
-
+	
+	/**
+	 * Appends the debug info to the specified TextBuilder, one line per item. Debug info
+	 * includes the location of the last point clicked, the state of the game's clock, 
+	 * events, sounds, memory and rendering, as well as the horizontal and vertical speeds
+	 * of each duck in the DuckList.
+	 * @param	text	the TextBuilder to append to
+	 */
+	private void appendDebug(final TextBuilder text) {
+		// The location of where the pointer was last clicked
+		text.append("Pointer clicked at: ");
+		if(lastClickX < 0) {
+			text.append("none");
+		} else {
+			text.append(lastClickX).append(", ").append(lastClickY);
+		}
+		text.append("\nNumber of Ducks: ").append(duckList.size());
+		
+		// The game time, event bus and sound pool state
+		final ThreadPool soundPool = soundCache.getPool();
+		text.append("\nGame time: ").append(worldTime)
+				.append("ms (").append((long)(gameClock.getTimeScale() * 100)).append("% speed), timers pending: ")
+				.append(timerWheel.getTimerCount());
+		text.append("\nEvents published: ").append(eventBus.getPublishedCount())
+				.append(", queued: ").append(eventBus.getQueuedCount())
+				.append(", dropped: ").append(eventBus.getDroppedCount());
+		text.append("\nSound queue: ").append(soundPool.getQueueDepth()).append('/').append(soundPool.getQueueCapacity())
+				.append(", rejected: ").append(soundPool.getRejectedCount())
+				.append(", latency: ").append(soundPool.getAverageLatency() / 1000).append("us avg, ")
+				.append(soundPool.getMaxLatency() / 1000).append("us max");
+		text.append("\nDuck spawns admitted: ").append(memoryBudget.getAdmittedCount())
+				.append(", throttled: ").append(memoryBudget.getThrottledCount())
+				.append(", rejected: ").append(memoryBudget.getRejectedCount())
+				.append(", duck size: ").append(duckFootprint / 1024).append("KB")
+				.append(memoryBudget.isLowMemory() ? ", LOW MEMORY" : "");
+		
+		// The memory allocated by the game loop
+		if(AllocationMonitor.isSupported()) {
+			text.append("\nAllocated per tick: ").append(allocationMonitor.getLastFrameBytes())
+					.append(" bytes (").append(allocationMonitor.getAverageFrameBytes()).append(" avg, ")
+					.append(allocationMonitor.getMaxFrameBytes()).append(" max), over budget: ")
+					.append(allocationMonitor.getFramesOverBudget());
+		}
+		
+		// The snapshots handed to the renderer
+		text.append("\nSnapshots published: ").append(snapshotBuffer.getPublishedCount())
+				.append(", skipped: ").append(snapshotBuffer.getSkippedCount())
+				.append((renderThread != null) ? ", render thread" : ", game thread")
+				.append(", tick time: ").append(usedTime).append("ms");
+		appendLatency(text, inputLatency);
+		appendLatency(text, renderLatency);
+		appendLatency(text, photonLatency);
+		appendLatency(text, soundCache.getSoundLatency());
+		text.append("\nLast shot rewound: ").append(duckHistory.getLastRewind()).append(" ticks (")
+				.append(duckHistory.getRecordCount()).append('/').append(duckHistory.getDepth()).append(" remembered)");
+		text.append("\nQuality: ").append(QualityGovernor.getLevelName(qualityGovernor.getLevel()))
+				.append(qualityGovernor.isEnabled() ? "" : " (fixed)")
+				.append(", average frame: ").append(qualityGovernor.getAverageFrameTime() / 1000)
+				.append("us of ").append(qualityGovernor.getFrameBudget() / 1000)
+				.append("us, render: ").append(renderNanos / 1000)
+				.append("us, lowered: ").append(qualityGovernor.getDowngradeCount())
+				.append(", raised: ").append(qualityGovernor.getUpgradeCount());
+		text.append("\nReplay: ").append(replayBuffer.getNewestTick() - replayBuffer.getOldestTick() + 1)
+				.append('/').append(replayBuffer.getDepth()).append(" ticks, ")
+				.append(replayBuffer.getEncodedBytes() / 1024).append("KB encoded, ")
+				.append(replayBuffer.getAllocatedBytes() / 1024).append("KB allocated, ")
+				.append(replayBuffer.getImageCount()).append(" images, record time: ")
+				.append((replayRecordCount == 0) ? 0 : (replayRecordNanos / replayRecordCount) / 1000).append("us");
+		final FrameCapture capture = frameCapture;
+		if(capture != null) {
+			text.append("\nFrames captured: ").append(capture.getCapturedCount())
+					.append(", dropped: ").append(capture.getDroppedCount())
+					.append(", waiting: ").append(capture.getQueueDepth())
+					.append(", failed: ").append(capture.getFailedCount());
+		}
+		text.append("\nHit masks: ").append(spriteCache.getHitMaskCount()).append(" (")
+				.append(spriteCache.getHitMaskBytes() / 1024).append("KB), shots missed by mask: ")
+				.append(duckHistory.getMaskMissCount());
+		text.append("\nImages: ").append(spriteCache.getTransparencyCount(Transparency.OPAQUE)).append(" opaque, ")
+				.append(spriteCache.getTransparencyCount(Transparency.BITMASK)).append(" bitmask, ")
+				.append(spriteCache.getTransparencyCount(Transparency.TRANSLUCENT)).append(" translucent, converted in ")
+				.append(spriteCache.getConvertNanos() / GameClock.NANOS_PER_MILLI).append("ms");
+		text.append("\nShared images: ").append(spriteCache.getSharedImageCount()).append(" of ")
+				.append(spriteCache.getUniqueImageCount() + spriteCache.getSharedImageCount()).append(" (")
+				.append(spriteCache.getSharedImageBytes() / 1024).append("KB saved), mirrors made: ")
+				.append(animGenerator.getMirrorCount()).append(", reused: ").append(animGenerator.getMirrorReuseCount());
+		text.append("\nImage switches: ").append(spriteQueue.getSwitchCount() + cloudQueue.getSwitchCount())
+				.append(" grouped, ").append(spriteQueue.getUnsortedSwitchCount() + cloudQueue.getUnsortedSwitchCount())
+				.append(" in order, frames tiled: ").append(tiledFrameCount);
+		text.append("\nDisplay scale: ").append((long)(renderScale * 100)).append("%, scaled images: ")
+				.append(spriteCache.getScaledImageCount()).append(", rescaled ").append(spriteCache.getRescaleCount())
+				.append(" times in ").append(spriteCache.getRescaleNanos() / GameClock.NANOS_PER_MILLI)
+				.append("ms, painted unscaled: ").append(spriteCache.getUnscaledPaintCount());
+		text.append("\nCulled: ").append(culledCount).append(" sprites off-screen, Duck animation interval: ")
+				.append(Duck.getCrowdInterval()).append(" ticks");
+		
+		// The current location, velocity and status of each Duck in the list
+		Duck aDuck = null;
+		for(int i = 0; i < duckList.size(); i++) {
+			aDuck = (Duck)duckList.get(i);
+			text.append("\n#").append(i).append(": ");
+			text.append("dx: ").append(aDuck.getDX()).append(", dy: ").append(aDuck.getDY()).append(',');
+			text.append(" x: ").append(aDuck.getXPosition()).append(", y: ").append(aDuck.getYPosition());
+			text.append(" status: ").append(aDuck.getState());
+		}
+	}
+	
+	/**
+	 * Appends a line summarising the specified latency histogram to a TextBuilder
+	 * @param	text	the TextBuilder to append to
+	 * @param	histogram	the histogram to summarise
+	 */
+	private void appendLatency(final TextBuilder text, final LatencyHistogram histogram) {
+		text.append('\n').append(histogram.getName()).append(": ")
+				.append(histogram.getPercentile(0.5) / 1000).append("us p50, ")
+				.append(histogram.getPercentile(0.99) / 1000).append("us p99, ")
+				.append(histogram.getMax() / 1000).append("us max (")
+				.append(histogram.getCount()).append(" shots)");
+	}
+	
 	/**
-	 * Converts the specified number of milliseconds to a String in the form hh:mm:ss:ms
+	 * Appends the specified number of milliseconds to a TextBuilder in the form mm:ss:ms
+	 * @param	text	the TextBuilder to append to
 	 * @param	time	the amount of time in milliseconds to convert
-	 * @return	a String representation of the time in hh:mm:ss:ms
 	 */
-	private String millisecondsToString(long time) {
+	private void appendTime(final TextBuilder text, long time) {
 		long hours = 0;
 		long minutes = 0;
 		long seconds = 0;
 		long milliseconds = 0;
-		long timeLeft = ((timeStarted + gameMode.getTimeLimit()) - System.currentTimeMillis());
+		long timeLeft = Math.max(time, 0);
 		hours = timeLeft / 3600000;
-		timeLeft = timeLeft - (hours * 3600);
+		timeLeft = timeLeft - (hours * 3600000);
 		minutes = timeLeft / 60000;
 		timeLeft = timeLeft - (minutes * 60000);
 		seconds = timeLeft / 1000;
 		milliseconds = timeLeft - (seconds * 1000);
-		return (new String(minutes + ":" + seconds + ":" + milliseconds));
+		text.append(minutes).append(':').append(seconds).append(':').append(milliseconds);
 	}
 	
 	/******* DEBUG METHODS *******/
@@ -1144,6 +2146,13 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		return spriteCache;
 	}
 	
+	/**
+	 * Returns the AnimGenerator that creates the game's Animations
+	 */
+	public AnimGenerator getAnimGenerator() {
+		return animGenerator;
+	}
+	
 	/**
 	 * Returns the SoundCache that the game is currently using
 	 */
@@ -1151,6 +2160,107 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		return soundCache;
 	}
 	
+	/**
+	 * Returns the GameEventBus onto which this game publishes its events
+	 * @return	the game's event bus
+	 */
+	public GameEventBus getEventBus() {
+		return eventBus;
+	}
+	
+	/**
+	 * Sets the seed from which the movement of every Duck spawned from now on is derived.
+	 * Two games given the same seed and the same input play out identically, whether the
+	 * Ducks are updated in parallel or not.
+	 * @param	seed	the seed to use
+	 */
+	public void setGameSeed(final long seed) {
+		gameSeed = seed;
+		spawnCount = 0;
+	}
+	
+	/**
+	 * Sets the pool the Ducks are updated across and the number of Ducks above which they
+	 * are, so that updating the Ducks in parallel can be checked against updating them on
+	 * the game thread. Must be called before the game is started.
+	 * @param	pool	the pool to update the Ducks across, or null to update them on the game thread
+	 * @param	threshold	the number of Ducks above which they are updated across the pool
+	 */
+	void setDuckUpdatePool(final ForkJoinPool pool, final int threshold) {
+		duckPool = pool;
+		parallelUpdateThreshold = threshold;
+	}
+	
+	/**
+	 * Returns a hash of the position, velocity, state and animation frame of every Duck, in
+	 * list order, so that runs of the game can be compared tick by tick. Only the game
+	 * thread may call this, between ticks.
+	 * @return	the hash of the Ducks
+	 */
+	long getDuckStateHash() {
+		final ArrayList ducks = duckList;
+		if(ducks == null) {
+			return 0;
+		}
+		long hash = ducks.size();
+		for(int i = 0; i < ducks.size(); i++) {
+			final Duck aDuck = (Duck)ducks.get(i);
+			hash = hash * 31 + aDuck.getXPosition();
+			hash = hash * 31 + aDuck.getYPosition();
+			hash = hash * 31 + aDuck.getDX();
+			hash = hash * 31 + aDuck.getDY();
+			hash = hash * 31 + aDuck.getState();
+			hash = hash * 31 + aDuck.getAnimation().getFrameIndex();
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns the seed from which the movement of every Duck is derived
+	 * @return	the game seed
+	 */
+	public long getGameSeed() {
+		return gameSeed;
+	}
+	
+	/**
+	 * Returns the GameClock measuring this game's time
+	 * @return	the game's clock
+	 */
+	public GameClock getGameClock() {
+		return gameClock;
+	}
+	
+	/**
+	 * Returns the monitor measuring the memory allocated by each tick of the game loop
+	 * @return	the game loop's AllocationMonitor
+	 */
+	public AllocationMonitor getAllocationMonitor() {
+		return allocationMonitor;
+	}
+	
+	/**
+	 * Returns the number of frames painted in tiles across the pool rather than on one thread
+	 * @return	the number of tiled frames
+	 */
+	public long getTiledFrameCount() {
+		return tiledFrameCount;
+	}
+	
+	/**
+	 * Sets the GameClock used to measure this game's time. A virtual GameClock
+	 * is moved on by one tick's worth of time every tick and the game loop does
+	 * not wait between ticks, and the QualityGovernor is turned off so that the
+	 * game does not depend on how fast the machine runs it.
+	 * @param	clock	the clock to use
+	 */
+	public void setGameClock(final GameClock clock) {
+		gameClock = clock;
+		if(clock.isVirtual()) {
+			qualityGovernor.setEnabled(false);
+		}
+	}
+	
 	/**
 	 * Sets the GameOptions for this instance of the game
 	 * @param gOptions	options to be used
@@ -1176,8 +2286,22 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	 * is pause the game, display FPS and exit the game.
 	 */
 	public void keyPressed(final KeyEvent event) {
-		// Parse the keys if we're in debug mode
-		if(gameOptions.getDebugMode()) {
+		// While a replay is playing, the left and right cursor keys seek through it.
+		// Otherwise, parse the keys if we're in debug mode
+		if(replaying) {
+			switch(event.getKeyCode()) {
+				case KeyEvent.VK_LEFT:
+					// Seek back through the replay
+					replaySeekTicks.addAndGet(-(REPLAY_SEEK_SECONDS * 1000) / THREAD_WAIT_TIME);
+					break;
+				case KeyEvent.VK_RIGHT:
+					// Seek forward through the replay
+					replaySeekTicks.addAndGet((REPLAY_SEEK_SECONDS * 1000) / THREAD_WAIT_TIME);
+					break;
+				default:
+					// Do nothing
+			}
+		} else if(gameOptions.getDebugMode()) {
 			int currentAmmo = 0;
 			
 			// Modify velocities if any of the cursor keys are pressed.
@@ -1222,6 +2346,18 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 					currentAmmo--;
 					thePlayer.setShotCount(currentAmmo);
 					break;
+				case KeyEvent.VK_PAGE_UP:
+					// Speed up the game clock
+					gameClock.setTimeScale(Math.min(gameClock.getTimeScale() * 2, MAX_TIME_SCALE));
+					break;
+				case KeyEvent.VK_PAGE_DOWN:
+					// Slow down the game clock
+					gameClock.setTimeScale(Math.max(gameClock.getTimeScale() / 2, MIN_TIME_SCALE));
+					break;
+				case KeyEvent.VK_HOME:
+					// Return the game clock to normal speed
+					gameClock.setTimeScale(1.0);
+					break;
 				default:
 					// Do nothing
 			}
@@ -1245,6 +2381,14 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 				// Display FPS on screen
 				gameOptions.setFpsDisplay(!gameOptions.getFpsDisplay());
 				break;
+			case KeyEvent.VK_R:
+				// Start or stop a replay of the last few seconds
+				replayToggled = true;
+				break;
+			case KeyEvent.VK_C:
+				// Start or stop capturing frames
+				captureToggled = true;
+				break;
 			default:
 				// Do nothing
 		}
@@ -1261,6 +2405,56 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 		// have fallen off the screen.
 		if(gamePaused != pauseGame) {
 			gamePaused = pauseGame;
+			gameClock.setPaused(gamePaused || replaying);
+		}
+	}
+	
+	/**
+	 * Starts or stops capturing the frames painted as a PNG sequence. Each capture is
+	 * written to a new folder inside CAPTURE_FOLDER.
+	 * @param	capture	true to start capturing, false to stop
+	 */
+	private void setCapturing(final boolean capture) {
+		final FrameCapture oldCapture = frameCapture;
+		if(capture && (oldCapture == null)) {
+			final File folder = new File(CAPTURE_FOLDER, "capture-" + System.currentTimeMillis());
+			frameCapture = new FrameCapture(folder, DisplayView.WIDTH, DisplayView.HEIGHT, FrameCapture.DEFAULT_POOL_SIZE);
+			System.out.println("Capturing frames to " + folder);
+		} else if((!capture) && (oldCapture != null)) {
+			frameCapture = null;
+			oldCapture.close();
+			System.out.println("Stopped capturing frames to " + oldCapture.getCaptureFolder() + " (" 
+					+ oldCapture.getCapturedCount() + " written, " + oldCapture.getDroppedCount() + " dropped)");
+		}
+	}
+	
+	/**
+	 * Starts or stops a replay of the last few seconds of the game. The game clock is
+	 * stopped while the replay plays, so no time passes for the round, and any click
+	 * made during the replay is ignored.
+	 * @param	replay	true to start a replay from the oldest tick remembered, false to return to the game
+	 */
+	private void setReplaying(final boolean replay) {
+		if(replay && (replayBuffer.getNewestTick() < 0)) {
+			// Nothing has been recorded yet
+			return;
+		}
+		replaying = replay;
+		replayTick = replayBuffer.getOldestTick();
+		replaySeekTicks.set(0);
+		pointerClicked = false;
+		gameClock.setPaused(gamePaused || replaying);
+	}
+
+	/**
+	 * Starts the kill-cam, which replays the last few seconds of the round that has just ended.
+	 * The player can stop it early like any other replay.
+	 */
+	private void startKillCam() {
+		setReplaying(true);
+		if(replaying) {
+			replayTick = Math.max(replayBuffer.getOldestTick(),
+					replayBuffer.getNewestTick() - (KILL_CAM_SECONDS * 1000) / THREAD_WAIT_TIME);
 		}
 	}
 
@@ -1279,9 +2473,15 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 				thePlayer.resetShots();
 			}
 		} else {
-			// Get the location of where the mouse was clicked on the Canvas
-			pointerLoc = event.getPoint();
-			pointerCache = event.getPoint();
+			// Get the location of where the mouse was clicked in game coordinates, setting
+			// the flag last so the game thread never sees a half-written location
+			pointerX = (int)Math.floor((event.getX() - renderOffsetX) / renderScale);
+			pointerY = (int)Math.floor((event.getY() - renderOffsetY) / renderScale);
+			pointerTime = displayedWorldTime;
+			pointerNanos = System.nanoTime();
+			lastClickX = pointerX;
+			lastClickY = pointerY;
+			pointerClicked = true;
 		}
 	}
 	
@@ -1352,6 +2552,24 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 			soundCache.stopAllSounds(soundsAmbience);
 			soundCache.stopAllSounds(soundsDuckAlive);
 			soundCache.getPool().close();
+			eventBus.close();
+			memoryBudget.close();
+			setCapturing(false);
+			
+			// Report the shot latencies measured this session
+			if(gameOptions.getDebugMode()) {
+				System.out.println(inputLatency);
+				System.out.println(renderLatency);
+				System.out.println(photonLatency);
+				System.out.println(soundCache.getSoundLatency());
+				System.out.println(qualityGovernor);
+			}
+			if(updatePool != null) {
+				updatePool.shutdown();
+			}
+			if(rescalePool != null) {
+				rescalePool.close();
+			}
 			
 			// Get rid of main window
 			mainWindow.dispose();
@@ -1500,4 +2718,42 @@ public class GameCore extends Canvas implements DisplayView, KeyListener, MouseL
 	public void windowGainedFocus(final WindowEvent event) { 
 		// Do nothing
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Resizes the Canvas to fill the window, and scales the game to fit inside it without
+	 * stretching, centred between bars along the spare sides
+	 */
+	public void componentResized(final ComponentEvent event) {
+		final int width = event.getComponent().getWidth();
+		final int height = event.getComponent().getHeight();
+		this.setBounds(0, 0, width, height);
+		final double scale = Math.min((double)width / DisplayView.WIDTH, (double)height / DisplayView.HEIGHT);
+		if(scale > 0) {
+			renderOffsetX = (int)((width - DisplayView.WIDTH * scale) / 2);
+			renderOffsetY = (int)((height - DisplayView.HEIGHT * scale) / 2);
+			renderScale = scale;
+			spriteCache.setDisplayScale(scale);
+		}
+	}
+	
+	/**
+	 * Inherited method from implemented superclass ComponentListener
+	 */
+	public void componentMoved(final ComponentEvent event) { 
+		// Do nothing
+	}
+	
+	/**
+	 * Inherited method from implemented superclass ComponentListener
+	 */
+	public void componentShown(final ComponentEvent event) { 
+		// Do nothing
+	}
+	
+	/**
+	 * Inherited method from implemented superclass ComponentListener
+	 */
+	public void componentHidden(final ComponentEvent event) { 
+		// Do nothing
+	}
+}
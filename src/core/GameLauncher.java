@@ -32,7 +32,7 @@ public class GameLauncher {
 		// Print command-line argument information
 		System.out.println("Starting DuckHunter...");
 		System.out.println("Parameters:");
-		System.out.println("GameLauncher [-dev | -fps | -nosound | -noambience | -noshotsound | -noducksound]");
+		System.out.println("GameLauncher [-dev | -fps | -nosound | -noambience | -noshotsound | -noducksound | -norenderthread | -fixedquality]");
 		System.out.println("   -dev 		\t to run in debug mode");
 		System.out.println("   -fps 		\t to turn on the fps counter");
 		System.out.println("   -nodecals 	\t to turn off decal graphics");
@@ -41,6 +41,8 @@ public class GameLauncher {
 		System.out.println("   -noambience 		\t to turn off ambience sound");
 		System.out.println("   -noshotsound 	\t to turn off gunshot sound");
 		System.out.println("   -noducksound 	\t to turn off duck sound");
+		System.out.println("   -norenderthread 	\t to update and render on the same thread");
+		System.out.println("   -fixedquality 	\t to keep full quality even when frames take too long");
 		
 		// Create splash screen
 		System.out.println("Creating splash screen...");
@@ -56,6 +58,8 @@ public class GameLauncher {
 		boolean soundAmbience = true;
 		boolean soundGunShot = true;
 		boolean soundDuck = true;
+		boolean renderThread = true;
+		boolean adaptiveQuality = true;
 		
 		// Check all command-line switches and set variables appropriately
 		if(args.length != 0) {
@@ -76,6 +80,10 @@ public class GameLauncher {
 					soundGunShot = false;
 				} else if(args[i].equals("-noducksound")) {
 					soundDuck = false;
+				} else if(args[i].equals("-norenderthread")) {
+					renderThread = false;
+				} else if(args[i].equals("-fixedquality")) {
+					adaptiveQuality = false;
 				}
 			}
 		}
@@ -84,6 +92,10 @@ public class GameLauncher {
 		debugMode = true;
 		final GameOptions gameOpts = new GameOptions(debugMode, fpsDisplayOn, soundEnabled, 
 				soundAmbience, soundGunShot, soundDuck, decalsEnabled, decalLimiter);
+		if(!renderThread) {
+			gameOpts.setPipelinedRendering(false);
+		}
+		gameOpts.setAdaptiveQuality(adaptiveQuality);
 		System.out.println(gameOpts);
 		
 		// Precache resources
@@ -0,0 +1,170 @@
+package core;
+
+import config.AbstractGameMode;
+import config.GameOptions;
+import graphics.DisplayView;
+import graphics.ImageRenderTarget;
+import graphics.SpriteCache;
+import sound.SoundCache;
+import util.AllocationMonitor;
+import util.GameClock;
+
+/**
+ * The HeadlessBenchmark class runs the whole game, updating and painting every tick, into
+ * an ImageRenderTarget with no window and no sound, on a virtual GameClock so that ticks
+ * run back to back. It reports how many frames a second the game can update and paint,
+ * and how much memory each tick allocates, so rendering changes can be measured on a
+ * machine with no display. Nobody shoots, so the game mode should be one without a time
+ * limit, or the game will keep running out of rounds.
+ * <p>Run it from the folder holding the game's resources folder:
+ * <pre>java -Djava.awt.headless=true core.HeadlessBenchmark [frames] [game mode class] [-pipelined] [-budget=bytes]</pre>
+ * <p>Given -budget, the benchmark is also an allocation check, exiting with status 1 if the
+ * ticks measured allocated more than that many bytes on average, or if any one of them went
+ * over the game's own frame budget, so that a change that makes the game loop create garbage
+ * fails the build rather than showing up later as garbage collection pauses.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class HeadlessBenchmark {
+	/**
+	 * The default number of frames measured
+	 */
+	private static final int DEFAULT_FRAME_COUNT = 3000;
+
+	/**
+	 * The number of frames run before measuring, so that the JIT compiler has settled and
+	 * every image has been loaded
+	 */
+	private static final int WARMUP_FRAMES = 500;
+
+	/**
+	 * The game mode run if none is given
+	 */
+	private static final String DEFAULT_GAME_MODE = "config.gamemodes.Aduckalypse";
+
+	/**
+	 * The time between checks of how many frames have been painted, in milliseconds
+	 */
+	private static final long POLL_TIME = 5;
+
+	/**
+	 * The prefix of the argument giving the average bytes a tick may allocate
+	 */
+	private static final String BUDGET_ARGUMENT = "-budget=";
+
+	/**
+	 * Runs the benchmark
+	 * @param	args	the number of frames to measure, the class name of the game mode to run
+	 * 			-pipelined to paint on a separate render thread and -budget= followed by the
+	 * 			average bytes a tick may allocate, all optional
+	 * @throws	Exception	if the game mode cannot be created or the game thread is interrupted
+	 */
+	public static void main(final String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int frameCount = DEFAULT_FRAME_COUNT;
+		String modeName = DEFAULT_GAME_MODE;
+		boolean pipelined = false;
+		long allocationBudget = -1;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-pipelined")) {
+				pipelined = true;
+			} else if(args[i].startsWith(BUDGET_ARGUMENT)) {
+				allocationBudget = Long.parseLong(args[i].substring(BUDGET_ARGUMENT.length()));
+			} else if(Character.isDigit(args[i].charAt(0))) {
+				frameCount = Integer.parseInt(args[i]);
+			} else {
+				modeName = args[i];
+			}
+		}
+
+		// Set up a silent game painting into memory on a virtual clock
+		final AbstractGameMode gameMode = (AbstractGameMode)Class.forName(modeName).getDeclaredConstructor().newInstance();
+		final GameOptions gameOptions = new GameOptions(false, true, false, false, false, false, true, true);
+		gameOptions.setPipelinedRendering(pipelined);
+		gameOptions.setAdaptiveQuality(false);
+		final Player player = new Player("Benchmark", gameMode.getAmmoCount(), gameMode.getLifeCount());
+		final ImageRenderTarget target = new ImageRenderTarget(DisplayView.WIDTH, DisplayView.HEIGHT);
+		final GameCore game = new GameCore(gameMode, gameOptions, new SpriteCache(), new SoundCache(), player, target);
+		game.setGameClock(new GameClock(true));
+		final Thread gameThread = new Thread(game, "Game");
+		gameThread.start();
+
+		// Let the game warm up, then measure the frames that follow
+		waitForFrames(target, WARMUP_FRAMES);
+		final AllocationMonitor allocationMonitor = game.getAllocationMonitor();
+		allocationMonitor.reset();
+		final long startFrames = target.getFrameCount();
+		final long startTime = System.nanoTime();
+		waitForFrames(target, startFrames + frameCount);
+		final long elapsed = System.nanoTime() - startTime;
+		final long measured = target.getFrameCount() - startFrames;
+		game.setVisible(false);
+		gameThread.join();
+
+		System.out.println("Mode: " + gameMode.getName() + (pipelined ? ", render thread" : ", game thread"));
+		System.out.println("Frames: " + measured + " in " + (elapsed / GameClock.NANOS_PER_MILLI) + "ms, "
+				+ (long)(measured * 1000000000.0 / elapsed) + " fps, "
+				+ (elapsed / measured / 1000) + "us per frame");
+		System.out.println("Frames tiled: " + game.getTiledFrameCount() + " across "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+		if(AllocationMonitor.isSupported()) {
+			System.out.println("Allocated per tick: " + allocationMonitor.getAverageFrameBytes() + " bytes avg, "
+					+ allocationMonitor.getMaxFrameBytes() + " max, over "
+					+ allocationMonitor.getFrameCount() + " ticks");
+		} else {
+			System.out.println("Allocated per tick: not supported by this JVM");
+		}
+		final SpriteCache spriteCache = game.getSpriteCache();
+		System.out.println("Sprites kept in a palette: " + spriteCache.getCompactCount());
+		System.out.println("Images shared: " + spriteCache.getSharedImageCount() + " of "
+				+ (spriteCache.getUniqueImageCount() + spriteCache.getSharedImageCount()) + ", "
+				+ (spriteCache.getSharedImageBytes() / 1024) + "KB saved, mirrors made: "
+				+ game.getAnimGenerator().getMirrorCount() + ", reused: " + game.getAnimGenerator().getMirrorReuseCount());
+		System.out.print(game.getAnimGenerator().getEncodingReport());
+		System.exit(checkAllocationBudget(allocationMonitor, allocationBudget) ? 0 : 1);
+	}
+
+	/**
+	 * Checks the ticks measured against the allocation budget, if one was given, and reports
+	 * any that went over it
+	 * @param	allocationMonitor	the game's AllocationMonitor
+	 * @param	allocationBudget	the average bytes a tick may allocate, or -1 if there is no budget
+	 * @return	true if the ticks stayed within the budget or there is no budget
+	 */
+	private static boolean checkAllocationBudget(final AllocationMonitor allocationMonitor, final long allocationBudget) {
+		if(allocationBudget < 0) {
+			return true;
+		}
+		if(!AllocationMonitor.isSupported()) {
+			System.out.println("Allocation budget cannot be checked: this JVM does not count allocations");
+			return false;
+		}
+		boolean withinBudget = true;
+		if(allocationMonitor.getAverageFrameBytes() > allocationBudget) {
+			System.out.println("Allocation budget exceeded: " + allocationMonitor.getAverageFrameBytes()
+					+ " bytes per tick on average, the budget is " + allocationBudget);
+			withinBudget = false;
+		}
+		if(allocationMonitor.getFramesOverBudget() > 0) {
+			System.out.println("Allocation budget exceeded: " + allocationMonitor.getFramesOverBudget()
+					+ " ticks allocated more than " + allocationMonitor.getFrameBudget() + " bytes");
+			withinBudget = false;
+		}
+		if(withinBudget) {
+			System.out.println("Allocation budget of " + allocationBudget + " bytes per tick met");
+		}
+		return withinBudget;
+	}
+
+	/**
+	 * Waits until the target has shown the specified number of frames
+	 * @param	target	the target being painted into
+	 * @param	frames	the number of frames to wait for
+	 * @throws	InterruptedException	if the thread is interrupted while waiting
+	 */
+	private static void waitForFrames(final ImageRenderTarget target, final long frames) throws InterruptedException {
+		while(target.getFrameCount() < frames) {
+			Thread.sleep(POLL_TIME);
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package core;
+
+import graphics.Animation;
+
+/**
+ * The QualityGovernor class keeps the game within its frame budget on slower machines by
+ * turning off extra work when frames take too long, and turning it back on when there is
+ * time to spare. Each frame's time is fed into an exponentially weighted moving average, so
+ * a single slow frame does not change anything but a run of them does. Quality steps down
+ * one level at a time when the average goes over DOWNGRADE_FRACTION of the budget, and steps
+ * back up only once the average has stayed under the much lower UPGRADE_FRACTION for
+ * UPGRADE_HOLD_FRAMES frames, so the quality does not flicker between two levels.
+ * <p>The levels are cumulative: each level also turns off everything the levels above it do.
+ * <p>Frame times are measured on the wall clock, and the half animation level changes how
+ * Ducks animate, so the governor must be left disabled wherever a run has to play out the
+ * same on every machine, such as on a virtual GameClock or without a display.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class QualityGovernor {
+	/**
+	 * Quality level with everything turned on
+	 */
+	public static final int LEVEL_FULL = 0;
+
+	/**
+	 * Quality level with decals turned off
+	 */
+	public static final int LEVEL_NO_DECALS = 1;
+
+	/**
+	 * Quality level with clouds turned off as well
+	 */
+	public static final int LEVEL_NO_CLOUDS = 2;
+
+	/**
+	 * Quality level with animations running at half their normal rate as well
+	 */
+	public static final int LEVEL_HALF_ANIMATION = 3;
+
+	/**
+	 * Quality level with the debug overlay turned off as well
+	 */
+	public static final int LEVEL_NO_DEBUG = 4;
+
+	/**
+	 * The number of quality levels
+	 */
+	public static final int LEVEL_COUNT = 5;
+
+	/**
+	 * The weight given to each new frame time in the moving average
+	 */
+	private static final double SMOOTHING = 0.1;
+
+	/**
+	 * The fraction of the budget above which quality is stepped down
+	 */
+	private static final double DOWNGRADE_FRACTION = 0.9;
+
+	/**
+	 * The fraction of the budget below which quality is stepped back up
+	 */
+	private static final double UPGRADE_FRACTION = 0.6;
+
+	/**
+	 * The number of frames after a change before quality is stepped down again,
+	 * giving the moving average time to show the effect of the last change
+	 */
+	private static final int DOWNGRADE_HOLD_FRAMES = 30;
+
+	/**
+	 * The number of frames the average must stay under UPGRADE_FRACTION of the
+	 * budget before quality is stepped back up
+	 */
+	private static final int UPGRADE_HOLD_FRAMES = 180;
+
+	/**
+	 * The time each frame should take, in nanoseconds
+	 */
+	private transient final long frameBudget;
+
+	/**
+	 * Whether the quality is changed at all
+	 */
+	private transient boolean isEnabled;
+
+	/**
+	 * The current quality level
+	 */
+	private transient volatile int qualityLevel;
+
+	/**
+	 * The moving average of the frame time, in nanoseconds
+	 */
+	private transient double averageFrameTime;
+
+	/**
+	 * The number of frames since quality was last changed, and the number of frames
+	 * the average has been under the upgrade threshold
+	 */
+	private transient int framesSinceChange, framesUnderBudget;
+
+	/**
+	 * The number of times quality has been stepped down and up
+	 */
+	private transient long downgradeCount, upgradeCount;
+
+	/**
+	 * The number of frames spent at each quality level
+	 */
+	private transient final long[] levelFrames;
+
+	/**
+	 * Constructor for the class QualityGovernor
+	 * @param	budget	the time each frame should take, in nanoseconds
+	 */
+	public QualityGovernor(long budget) {
+		if(budget <= 0) {
+			throw new IllegalArgumentException("budget must be greater than zero");
+		}
+		frameBudget = budget;
+		levelFrames = new long[LEVEL_COUNT];
+		isEnabled = true;
+		reset();
+	}
+
+	/**
+	 * Records the time a frame took and changes the quality level if needed
+	 * @param	frameTime	the time the frame took, in nanoseconds
+	 * @return	true if the quality level changed
+	 */
+	public boolean recordFrame(final long frameTime) {
+		averageFrameTime += (frameTime - averageFrameTime) * SMOOTHING;
+		levelFrames[qualityLevel]++;
+		framesSinceChange++;
+		if(!isEnabled) {
+			return false;
+		}
+
+		// Step down as soon as the average is over budget, once the last change has had time to show
+		if((averageFrameTime > frameBudget * DOWNGRADE_FRACTION) && (qualityLevel < LEVEL_COUNT - 1)) {
+			framesUnderBudget = 0;
+			if(framesSinceChange >= DOWNGRADE_HOLD_FRAMES) {
+				setLevel(qualityLevel + 1);
+				downgradeCount++;
+				return true;
+			}
+			return false;
+		}
+
+		// Step up only once the average has stayed well under budget for a while
+		if((averageFrameTime < frameBudget * UPGRADE_FRACTION) && (qualityLevel > LEVEL_FULL)) {
+			framesUnderBudget++;
+			if(framesUnderBudget >= UPGRADE_HOLD_FRAMES) {
+				setLevel(qualityLevel - 1);
+				upgradeCount++;
+				return true;
+			}
+		} else {
+			framesUnderBudget = 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the quality to full and forgets the frame times recorded
+	 */
+	public void reset() {
+		averageFrameTime = 0;
+		framesUnderBudget = 0;
+		setLevel(LEVEL_FULL);
+	}
+
+	/**
+	 * Sets whether the quality is changed at all. Disabling the governor returns the quality to full.
+	 * @param	enabled	true to let the quality change with the frame time
+	 */
+	public void setEnabled(final boolean enabled) {
+		isEnabled = enabled;
+		if(!enabled) {
+			reset();
+		}
+	}
+
+	/**
+	 * Returns whether the quality is changed at all
+	 * @return	true if the quality changes with the frame time
+	 */
+	public boolean isEnabled() { return isEnabled; }
+
+	/**
+	 * Returns the current quality level
+	 * @return	the quality level, from LEVEL_FULL to LEVEL_NO_DEBUG
+	 */
+	public int getLevel() { return qualityLevel; }
+
+	/**
+	 * Returns whether decals are painted at the current quality level
+	 * @return	true if decals are painted
+	 */
+	public boolean isDecalsEnabled() { return qualityLevel < LEVEL_NO_DECALS; }
+
+	/**
+	 * Returns whether clouds are painted at the current quality level
+	 * @return	true if clouds are painted
+	 */
+	public boolean isCloudsEnabled() { return qualityLevel < LEVEL_NO_CLOUDS; }
+
+	/**
+	 * Returns the number of updates each animation frame is held for at the current quality level
+	 * @return	the animation update interval
+	 */
+	public int getAnimationInterval() { return (qualityLevel < LEVEL_HALF_ANIMATION) ? 1 : 2; }
+
+	/**
+	 * Returns whether the debug overlay is shown at the current quality level
+	 * @return	true if the debug overlay is shown
+	 */
+	public boolean isDebugOverlayEnabled() { return qualityLevel < LEVEL_NO_DEBUG; }
+
+	/**
+	 * Returns the moving average of the frame time
+	 * @return	the average frame time in nanoseconds
+	 */
+	public long getAverageFrameTime() { return (long)averageFrameTime; }
+
+	/**
+	 * Returns the time each frame should take
+	 * @return	the frame budget in nanoseconds
+	 */
+	public long getFrameBudget() { return frameBudget; }
+
+	/**
+	 * Returns the number of times quality has been stepped down
+	 * @return	the number of downgrades
+	 */
+	public long getDowngradeCount() { return downgradeCount; }
+
+	/**
+	 * Returns the number of times quality has been stepped back up
+	 * @return	the number of upgrades
+	 */
+	public long getUpgradeCount() { return upgradeCount; }
+
+	/**
+	 * Returns the number of frames spent at the specified quality level
+	 * @param	level	the quality level
+	 * @return	the number of frames
+	 */
+	public long getLevelFrames(final int level) { return levelFrames[level]; }
+
+	/**
+	 * Returns the name of the specified quality level
+	 * @param	level	the quality level
+	 * @return	the level's name
+	 */
+	public static String getLevelName(final int level) {
+		switch(level) {
+			case LEVEL_FULL:
+				return "full";
+			case LEVEL_NO_DECALS:
+				return "no decals";
+			case LEVEL_NO_CLOUDS:
+				return "no clouds";
+			case LEVEL_HALF_ANIMATION:
+				return "half animation";
+			case LEVEL_NO_DEBUG:
+				return "no debug";
+			default:
+				return "unknown";
+		}
+	}
+
+	/**
+	 * Returns a String summarising the quality level and the frames spent at each level
+	 */
+	public String toString() {
+		final StringBuffer text = new StringBuffer("Quality: ");
+		text.append(getLevelName(qualityLevel)).append(", average frame ")
+			.append(getAverageFrameTime() / 1000).append("us of ").append(frameBudget / 1000)
+			.append("us, ").append(downgradeCount).append(" down, ").append(upgradeCount).append(" up");
+		for(int i = 0; i < LEVEL_COUNT; i++) {
+			text.append("\n  ").append(getLevelName(i)).append(": ").append(levelFrames[i]).append(" frames");
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Changes the quality level, applying the animation rate for the new level
+	 * @param	level	the new quality level
+	 */
+	private void setLevel(final int level) {
+		qualityLevel = level;
+		framesSinceChange = 0;
+		framesUnderBudget = 0;
+		Animation.setUpdateInterval(getAnimationInterval());
+	}
+}
@@ -0,0 +1,439 @@
+package core;
+
+import java.awt.Image;
+
+import util.TextBuilder;
+
+/**
+ * The RenderSnapshot class holds everything needed to paint one tick of the game: the
+ * image and position of every Sprite, the game state flags and the text of the UI. The
+ * game thread fills a RenderSnapshot at the end of each tick and hands it over through a
+ * SnapshotBuffer, after which it is never changed until the renderer has let it go, so
+ * the renderer can paint it without reading any of the game's own objects.
+ * <p>RenderSnapshots are reused from tick to tick, so filling one does not create any
+ * objects once its arrays have grown large enough.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	SnapshotBuffer
+ */
+public class RenderSnapshot {
+	/**
+	 * The layer holding decals, which are painted first
+	 */
+	public static final int LAYER_DECALS = 0;
+
+	/**
+	 * The layer holding Ducks, which are painted over decals
+	 */
+	public static final int LAYER_DUCKS = 1;
+
+	/**
+	 * The layer holding clouds, which are painted over Ducks
+	 */
+	public static final int LAYER_CLOUDS = 2;
+
+	/**
+	 * The number of layers
+	 */
+	public static final int LAYER_COUNT = 3;
+
+	/**
+	 * The default number of Sprites the snapshot can hold before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 32;
+
+	/**
+	 * The image of each Sprite
+	 */
+	private transient Image[] spriteImages;
+
+	/**
+	 * The position of each Sprite
+	 */
+	private transient int[] spriteX, spriteY;
+
+	/**
+	 * The number of Sprites held
+	 */
+	private transient int spriteCount;
+
+	/**
+	 * The index after the last Sprite in each layer
+	 */
+	private transient final int[] layerEnd;
+
+	/**
+	 * The tick and game time the snapshot was taken at
+	 */
+	private transient long tick, worldTime;
+
+	/**
+	 * The game state flags at the time of the snapshot
+	 */
+	private transient boolean gamePaused, roundCompleted, flyAway, debugMode, fpsDisplay;
+
+	/**
+	 * Whether the value of a shot Duck is shown, and where
+	 */
+	private transient boolean scoreVisible;
+	private transient int scoreX, scoreY;
+
+	/**
+	 * The player's name
+	 */
+	private transient String playerName;
+
+	/**
+	 * The number of shots left, the ammunition per round, the Ducks per round and the Ducks shot
+	 */
+	private transient int shotCount, ammoCount, duckCount, ducksShot;
+
+	/**
+	 * The text of the shot Duck's value, the player's lives, level, score and round time,
+	 * and the debug information, which may run over several lines
+	 */
+	private transient final TextBuilder scoreText, livesText, levelText, playerScoreText, timeText, debugText;
+
+	/**
+	 * The text shown while a replay is playing, which is empty for the live game
+	 */
+	private transient final TextBuilder replayText;
+
+	/**
+	 * The System.nanoTime of the click and hit decision of the shot being traced, or zero if none
+	 */
+	private transient long clickNanos, decisionNanos;
+
+	/**
+	 * Constructor for the class RenderSnapshot
+	 */
+	public RenderSnapshot() {
+		spriteImages = new Image[DEFAULT_CAPACITY];
+		spriteX = new int[DEFAULT_CAPACITY];
+		spriteY = new int[DEFAULT_CAPACITY];
+		layerEnd = new int[LAYER_COUNT];
+		scoreText = new TextBuilder();
+		livesText = new TextBuilder();
+		levelText = new TextBuilder();
+		playerScoreText = new TextBuilder();
+		timeText = new TextBuilder();
+		debugText = new TextBuilder(1024);
+		replayText = new TextBuilder();
+	}
+
+	/**
+	 * Clears the snapshot ready to be filled for the specified tick
+	 * @param	tickNumber	the number of the tick being captured
+	 * @param	time	the game time of the tick
+	 */
+	void clear(final long tickNumber, final long time) {
+		// Drop the image references so that nothing is kept alive by an old snapshot
+		for(int i = 0; i < spriteCount; i++) {
+			spriteImages[i] = null;
+		}
+		spriteCount = 0;
+		for(int i = 0; i < LAYER_COUNT; i++) {
+			layerEnd[i] = 0;
+		}
+		tick = tickNumber;
+		worldTime = time;
+		scoreVisible = false;
+		scoreText.clear();
+		livesText.clear();
+		levelText.clear();
+		playerScoreText.clear();
+		timeText.clear();
+		debugText.clear();
+		replayText.clear();
+	}
+
+	/**
+	 * Adds a Sprite to the layer currently being filled. Layers must be filled in order.
+	 * @param	image	the Sprite's image
+	 * @param	xPos	the Sprite's x position
+	 * @param	yPos	the Sprite's y position
+	 */
+	void addSprite(final Image image, final int xPos, final int yPos) {
+		if(spriteCount == spriteImages.length) {
+			final int capacity = spriteCount * 2;
+			final Image[] images = new Image[capacity];
+			System.arraycopy(spriteImages, 0, images, 0, spriteCount);
+			spriteImages = images;
+			final int[] xs = new int[capacity];
+			System.arraycopy(spriteX, 0, xs, 0, spriteCount);
+			spriteX = xs;
+			final int[] ys = new int[capacity];
+			System.arraycopy(spriteY, 0, ys, 0, spriteCount);
+			spriteY = ys;
+		}
+		spriteImages[spriteCount] = image;
+		spriteX[spriteCount] = xPos;
+		spriteY[spriteCount] = yPos;
+		spriteCount++;
+	}
+
+	/**
+	 * Marks the end of the specified layer, so that every Sprite added since the end
+	 * of the previous layer belongs to it
+	 * @param	layer	the layer that has been filled
+	 */
+	void endLayer(final int layer) {
+		for(int i = layer; i < LAYER_COUNT; i++) {
+			layerEnd[i] = spriteCount;
+		}
+	}
+
+	/**
+	 * Sets the game state flags
+	 * @param	paused	whether the game is paused
+	 * @param	completed	whether the round has been completed
+	 * @param	flownAway	whether the Ducks have flown away
+	 * @param	debug	whether debug information is shown
+	 * @param	fps	whether the FPS counter is shown
+	 */
+	void setState(final boolean paused, final boolean completed, final boolean flownAway,
+			final boolean debug, final boolean fps) {
+		gamePaused = paused;
+		roundCompleted = completed;
+		flyAway = flownAway;
+		debugMode = debug;
+		fpsDisplay = fps;
+	}
+
+	/**
+	 * Shows the value of a shot Duck at the specified location. The value itself is
+	 * written to getScoreText.
+	 * @param	xPos	the x position of the value
+	 * @param	yPos	the y position of the value
+	 */
+	void setScoreLocation(final int xPos, final int yPos) {
+		scoreVisible = true;
+		scoreX = xPos;
+		scoreY = yPos;
+	}
+
+	/**
+	 * Sets the player's status
+	 * @param	name	the player's name
+	 * @param	shots	the number of shots the player has left
+	 * @param	shot	the number of Ducks shot this round
+	 */
+	void setPlayer(final String name, final int shots, final int shot) {
+		playerName = name;
+		shotCount = shots;
+		ducksShot = shot;
+	}
+
+	/**
+	 * Sets the size of the current round
+	 * @param	ammo	the ammunition given for each round
+	 * @param	ducks	the number of Ducks in each round
+	 */
+	void setRound(final int ammo, final int ducks) {
+		ammoCount = ammo;
+		duckCount = ducks;
+	}
+
+	/**
+	 * Sets the shot being traced through to the screen
+	 * @param	click	the System.nanoTime at which the pointer was clicked, or zero if there is no shot
+	 * @param	decision	the System.nanoTime at which the hit decision was made
+	 */
+	void setShotTrace(final long click, final long decision) {
+		clickNanos = click;
+		decisionNanos = decision;
+	}
+
+	/**
+	 * Returns the number of Sprites held
+	 * @return	the number of Sprites
+	 */
+	public int getSpriteCount() { return spriteCount; }
+
+	/**
+	 * Returns the index of the first Sprite in the specified layer
+	 * @param	layer	the layer
+	 * @return	the index of the layer's first Sprite
+	 */
+	public int getLayerStart(final int layer) {
+		return (layer == 0) ? 0 : layerEnd[layer - 1];
+	}
+
+	/**
+	 * Returns the index after the last Sprite in the specified layer
+	 * @param	layer	the layer
+	 * @return	the index after the layer's last Sprite
+	 */
+	public int getLayerEnd(final int layer) { return layerEnd[layer]; }
+
+	/**
+	 * Returns the image of the specified Sprite
+	 * @param	index	the index of the Sprite
+	 * @return	the Sprite's image
+	 */
+	public Image getImage(final int index) { return spriteImages[index]; }
+
+	/**
+	 * Returns the x position of the specified Sprite
+	 * @param	index	the index of the Sprite
+	 * @return	the Sprite's x position
+	 */
+	public int getXPosition(final int index) { return spriteX[index]; }
+
+	/**
+	 * Returns the y position of the specified Sprite
+	 * @param	index	the index of the Sprite
+	 * @return	the Sprite's y position
+	 */
+	public int getYPosition(final int index) { return spriteY[index]; }
+
+	/**
+	 * Returns the tick the snapshot was taken at
+	 * @return	the tick number
+	 */
+	public long getTick() { return tick; }
+
+	/**
+	 * Returns the game time the snapshot was taken at
+	 * @return	the game time in milliseconds
+	 */
+	public long getWorldTime() { return worldTime; }
+
+	/**
+	 * Returns whether the game was paused
+	 * @return	true if the game was paused
+	 */
+	public boolean isGamePaused() { return gamePaused; }
+
+	/**
+	 * Returns whether the round had been completed
+	 * @return	true if the round had been completed
+	 */
+	public boolean isRoundCompleted() { return roundCompleted; }
+
+	/**
+	 * Returns whether the Ducks had flown away
+	 * @return	true if the Ducks had flown away
+	 */
+	public boolean isFlyAway() { return flyAway; }
+
+	/**
+	 * Returns whether debug information is shown
+	 * @return	true if in debug mode
+	 */
+	public boolean isDebugMode() { return debugMode; }
+
+	/**
+	 * Returns whether the FPS counter is shown
+	 * @return	true if the FPS counter is shown
+	 */
+	public boolean isFpsDisplay() { return fpsDisplay; }
+
+	/**
+	 * Returns whether the value of a shot Duck is shown
+	 * @return	true if the value is shown
+	 */
+	public boolean isScoreVisible() { return scoreVisible; }
+
+	/**
+	 * Returns the x position of the shot Duck's value
+	 * @return	the x position
+	 */
+	public int getScoreX() { return scoreX; }
+
+	/**
+	 * Returns the y position of the shot Duck's value
+	 * @return	the y position
+	 */
+	public int getScoreY() { return scoreY; }
+
+	/**
+	 * Returns the player's name
+	 * @return	the player's name
+	 */
+	public String getPlayerName() { return playerName; }
+
+	/**
+	 * Returns the number of shots the player had left
+	 * @return	the number of shots
+	 */
+	public int getShotCount() { return shotCount; }
+
+	/**
+	 * Returns the ammunition given for each round
+	 * @return	the ammunition per round
+	 */
+	public int getAmmoCount() { return ammoCount; }
+
+	/**
+	 * Returns the number of Ducks in each round
+	 * @return	the Ducks per round
+	 */
+	public int getDuckCount() { return duckCount; }
+
+	/**
+	 * Returns the number of Ducks shot this round
+	 * @return	the number of Ducks shot
+	 */
+	public int getDucksShot() { return ducksShot; }
+
+	/**
+	 * Returns the text of the shot Duck's value
+	 * @return	the score text
+	 */
+	public TextBuilder getScoreText() { return scoreText; }
+
+	/**
+	 * Returns the text of the player's lives
+	 * @return	the lives text
+	 */
+	public TextBuilder getLivesText() { return livesText; }
+
+	/**
+	 * Returns the text of the player's level
+	 * @return	the level text
+	 */
+	public TextBuilder getLevelText() { return levelText; }
+
+	/**
+	 * Returns the text of the player's score
+	 * @return	the player score text
+	 */
+	public TextBuilder getPlayerScoreText() { return playerScoreText; }
+
+	/**
+	 * Returns the text of the round time left
+	 * @return	the time text
+	 */
+	public TextBuilder getTimeText() { return timeText; }
+
+	/**
+	 * Returns whether the snapshot is a tick of a replay rather than the live game
+	 * @return	true if a replay is playing
+	 */
+	public boolean isReplay() { return replayText.length() > 0; }
+
+	/**
+	 * Returns the text shown while a replay is playing
+	 * @return	the replay text, which is empty for the live game
+	 */
+	public TextBuilder getReplayText() { return replayText; }
+
+	/**
+	 * Returns the System.nanoTime at which the pointer was clicked for the shot being traced
+	 * @return	the click time, or zero if no shot is being traced
+	 */
+	public long getClickNanos() { return clickNanos; }
+
+	/**
+	 * Returns the System.nanoTime at which the hit decision was made for the shot being traced
+	 * @return	the hit decision time
+	 */
+	public long getDecisionNanos() { return decisionNanos; }
+
+	/**
+	 * Returns the debug information, with lines separated by '\n'
+	 * @return	the debug text
+	 */
+	public TextBuilder getDebugText() { return debugText; }
+}
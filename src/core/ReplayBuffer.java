@@ -0,0 +1,517 @@
+package core;
+
+import java.awt.Image;
+import java.util.HashMap;
+
+/**
+ * The ReplayBuffer class remembers the last few seconds of the game, one RenderSnapshot per
+ * tick, so they can be played back as an instant replay or looked over after a hitch. Each
+ * tick records the image and position of every Sprite in the snapshot together with a fixed
+ * number of int values chosen by the caller, such as the player's score and shots.
+ * <p>To keep the buffer small, only every KEYFRAME_INTERVAL-th tick is recorded in full.
+ * Every other tick only records what changed since the tick before it: values that changed,
+ * Sprites that moved and Sprites whose image changed. Images are recorded as ids from a table
+ * of every image seen, and positions are packed two to an int, so a Duck flying across the
+ * screen with the same frame costs two ints a tick. Playing a tick back decodes forward from
+ * the keyframe before it, so seeking costs at most KEYFRAME_INTERVAL ticks of decoding.
+ * <p>The ticks are held in a ring, and the depth of the ring is always a whole number of
+ * keyframe intervals, so keyframes always land in the same slots and only those slots grow
+ * large. Recording reuses each slot's array, so once the arrays are large enough it does not
+ * create any objects except when a new image is seen.
+ * <p>Positions must fit in a short, which every Sprite on or near the screen does.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	RenderSnapshot
+ */
+public class ReplayBuffer {
+	/**
+	 * The number of ticks from one keyframe to the next
+	 */
+	public static final int KEYFRAME_INTERVAL = 30;
+
+	/**
+	 * The greatest number of values that can be recorded with each tick
+	 */
+	public static final int MAX_VALUE_COUNT = 32 - 1 - RenderSnapshot.LAYER_COUNT;
+
+	/**
+	 * The default number of Sprites and images the buffer can hold before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The number of images held in the table after which unused images are looked for
+	 */
+	private static final int MIN_PRUNE_SIZE = 1024;
+
+	/**
+	 * The number of header ints recorded with each tick: the Sprite count, the end of
+	 * each layer, and then the caller's values
+	 */
+	private transient final int headerSize;
+
+	/**
+	 * The encoded data of each tick in the ring, and the number of ints used by each
+	 */
+	private transient final int[][] slotData;
+	private transient final int[] slotLength;
+
+	/**
+	 * The game time of each tick in the ring
+	 */
+	private transient final long[] slotTimes;
+
+	/**
+	 * The number of ticks ever recorded, which is also the number of the next tick
+	 */
+	private transient long recordedCount;
+
+	/**
+	 * The header, Sprite image ids, images and packed positions of the last tick recorded
+	 */
+	private transient final int[] recordHeader, lastHeader;
+	private transient int[] lastIds, lastPositions;
+	private transient Image[] lastImages;
+	private transient int lastCount;
+
+	/**
+	 * The id of each image seen, and the image and the last tick using each id
+	 */
+	private transient final HashMap imageIds;
+	private transient Image[] idImages;
+	private transient long[] idLastUsed;
+
+	/**
+	 * The ids freed for reuse, the number free and the next id never used
+	 */
+	private transient int[] freeIds;
+	private transient int freeCount, nextId;
+
+	/**
+	 * The number of images in the table at which unused images are next looked for
+	 */
+	private transient int pruneSize;
+
+	/**
+	 * The tick last decoded, or -1, and its header, image ids and packed positions
+	 */
+	private transient long decodedTick;
+	private transient final int[] decodedHeader;
+	private transient int[] decodedIds, decodedPositions;
+
+	/**
+	 * Constructor for the class ReplayBuffer
+	 * @param	ticks	the number of ticks to remember, which is rounded up to a whole number of keyframe intervals
+	 * @param	valueCount	the number of int values recorded with each tick, up to MAX_VALUE_COUNT
+	 */
+	public ReplayBuffer(int ticks, int valueCount) {
+		if(ticks <= 0) {
+			throw new IllegalArgumentException("ticks must be greater than zero");
+		}
+		if((valueCount < 0) || (valueCount > MAX_VALUE_COUNT)) {
+			throw new IllegalArgumentException("valueCount must be from 0 to " + MAX_VALUE_COUNT);
+		}
+		final int depth = ((ticks + KEYFRAME_INTERVAL - 1) / KEYFRAME_INTERVAL) * KEYFRAME_INTERVAL;
+		headerSize = 1 + RenderSnapshot.LAYER_COUNT + valueCount;
+		slotData = new int[depth][];
+		slotLength = new int[depth];
+		slotTimes = new long[depth];
+		recordHeader = new int[headerSize];
+		lastHeader = new int[headerSize];
+		decodedHeader = new int[headerSize];
+		lastIds = new int[DEFAULT_CAPACITY];
+		lastPositions = new int[DEFAULT_CAPACITY];
+		lastImages = new Image[DEFAULT_CAPACITY];
+		decodedIds = new int[DEFAULT_CAPACITY];
+		decodedPositions = new int[DEFAULT_CAPACITY];
+		imageIds = new HashMap();
+		idImages = new Image[DEFAULT_CAPACITY];
+		idLastUsed = new long[DEFAULT_CAPACITY];
+		freeIds = new int[DEFAULT_CAPACITY];
+		for(int slot = 0; slot < depth; slot++) {
+			slotData[slot] = new int[headerSize + 2];
+		}
+		clear();
+	}
+
+	/**
+	 * Records the Sprites in the snapshot and the specified values as the next tick,
+	 * replacing the oldest tick remembered
+	 * @param	time	the game time of the tick
+	 * @param	snapshot	the snapshot holding the tick's Sprites
+	 * @param	values	the values to record with the tick
+	 */
+	public void record(final long time, final RenderSnapshot snapshot, final int[] values) {
+		final long tick = recordedCount;
+		final int slot = (int)(tick % slotData.length);
+		final boolean keyframe = (tick % KEYFRAME_INTERVAL) == 0;
+		final int count = snapshot.getSpriteCount();
+
+		// Gather the header and make sure there is room for the worst case
+		recordHeader[0] = count;
+		for(int layer = 0; layer < RenderSnapshot.LAYER_COUNT; layer++) {
+			recordHeader[1 + layer] = snapshot.getLayerEnd(layer);
+		}
+		System.arraycopy(values, 0, recordHeader, 1 + RenderSnapshot.LAYER_COUNT, headerSize - 1 - RenderSnapshot.LAYER_COUNT);
+		ensureLastCapacity(count);
+		final int[] data = ensureSlotCapacity(slot, 2 + headerSize + (count * 3));
+
+		// Write a mask of the header ints that changed, followed by the ints themselves
+		int pos = 1;
+		int mask = 0;
+		for(int i = 0; i < headerSize; i++) {
+			if((keyframe) || (recordHeader[i] != lastHeader[i])) {
+				mask |= 1 << i;
+				data[pos++] = recordHeader[i];
+				lastHeader[i] = recordHeader[i];
+			}
+		}
+		data[0] = mask;
+
+		// Write every Sprite for a keyframe, or only the Sprites that changed otherwise
+		final int changePos = pos++;
+		int changes = 0;
+		Image image = null;
+		int position = 0;
+		for(int i = 0; i < count; i++) {
+			image = snapshot.getImage(i);
+			position = packPosition(snapshot.getXPosition(i), snapshot.getYPosition(i));
+			if((i < lastCount) && (image == lastImages[i])) {
+				// Same image as last tick, so only the position can have changed
+				if(keyframe) {
+					data[pos++] = useId(lastIds[i], tick);
+					data[pos++] = position;
+					changes++;
+				} else if(position != lastPositions[i]) {
+					data[pos++] = -(i + 1);
+					data[pos++] = position;
+					changes++;
+				}
+			} else {
+				// A new image, so write its id as well
+				lastIds[i] = useId(getImageId(image), tick);
+				lastImages[i] = image;
+				if(!keyframe) {
+					data[pos++] = i;
+				}
+				data[pos++] = lastIds[i];
+				data[pos++] = position;
+				changes++;
+			}
+			lastPositions[i] = position;
+		}
+		data[changePos] = changes;
+
+		// Drop the references to Sprites no longer in the snapshot
+		for(int i = count; i < lastCount; i++) {
+			lastImages[i] = null;
+		}
+		lastCount = count;
+		slotLength[slot] = pos;
+		slotTimes[slot] = time;
+		recordedCount++;
+
+		// Free the ids of images no tick in the ring uses any more
+		if(nextId - freeCount >= pruneSize) {
+			pruneImages();
+		}
+	}
+
+	/**
+	 * Adds the Sprites of the specified tick to a snapshot, one layer at a time, and copies
+	 * the values recorded with it. The snapshot should have been cleared first.
+	 * @param	tick	the number of the tick, from getOldestTick to getNewestTick
+	 * @param	snapshot	the snapshot to add the Sprites to
+	 * @param	values	the array to copy the tick's values into
+	 * @return	true if the tick was decoded, or false if it is no longer remembered
+	 */
+	public boolean decode(final long tick, final RenderSnapshot snapshot, final int[] values) {
+		if((tick < getOldestTick()) || (tick > getNewestTick())) {
+			return false;
+		}
+
+		// Start again from the keyframe unless the last tick decoded leads on to this one
+		final long keyframe = tick - (tick % KEYFRAME_INTERVAL);
+		if((decodedTick < keyframe) || (decodedTick > tick)) {
+			decodedTick = keyframe - 1;
+		}
+		while(decodedTick < tick) {
+			decodeNext();
+		}
+
+		// Hand the decoded Sprites and values over
+		int start = 0;
+		for(int layer = 0; layer < RenderSnapshot.LAYER_COUNT; layer++) {
+			final int end = decodedHeader[1 + layer];
+			for(int i = start; i < end; i++) {
+				snapshot.addSprite(idImages[decodedIds[i]], unpackX(decodedPositions[i]), unpackY(decodedPositions[i]));
+			}
+			snapshot.endLayer(layer);
+			start = end;
+		}
+		System.arraycopy(decodedHeader, 1 + RenderSnapshot.LAYER_COUNT, values, 0, headerSize - 1 - RenderSnapshot.LAYER_COUNT);
+		return true;
+	}
+
+	/**
+	 * Forgets every tick recorded and every image seen
+	 */
+	public void clear() {
+		for(int i = 0; i < lastCount; i++) {
+			lastImages[i] = null;
+		}
+		for(int i = 0; i < nextId; i++) {
+			idImages[i] = null;
+		}
+		imageIds.clear();
+		recordedCount = 0;
+		lastCount = 0;
+		freeCount = 0;
+		nextId = 0;
+		pruneSize = MIN_PRUNE_SIZE;
+		decodedTick = -1;
+	}
+
+	/**
+	 * Returns the number of the oldest tick that can still be decoded, which is always a keyframe
+	 * @return	the oldest tick, or -1 if nothing has been recorded
+	 */
+	public long getOldestTick() {
+		if(recordedCount == 0) {
+			return -1;
+		}
+		final long firstHeld = Math.max(recordedCount - slotData.length, 0);
+		return ((firstHeld + KEYFRAME_INTERVAL - 1) / KEYFRAME_INTERVAL) * KEYFRAME_INTERVAL;
+	}
+
+	/**
+	 * Returns the number of the newest tick recorded
+	 * @return	the newest tick, or -1 if nothing has been recorded
+	 */
+	public long getNewestTick() {
+		return recordedCount - 1;
+	}
+
+	/**
+	 * Returns the game time the specified tick was recorded at
+	 * @param	tick	the number of the tick, from getOldestTick to getNewestTick
+	 * @return	the game time of the tick
+	 */
+	public long getTickTime(final long tick) {
+		return slotTimes[(int)(tick % slotData.length)];
+	}
+
+	/**
+	 * Returns the greatest number of ticks the ring can hold
+	 * @return	the depth of the ring
+	 */
+	public int getDepth() {
+		return slotData.length;
+	}
+
+	/**
+	 * Returns the number of bytes used by the ticks currently held
+	 * @return	the encoded size of the ticks in bytes
+	 */
+	public long getEncodedBytes() {
+		long ints = 0;
+		final int held = (int)Math.min(recordedCount, slotData.length);
+		for(int slot = 0; slot < held; slot++) {
+			ints += slotLength[slot];
+		}
+		return ints * 4;
+	}
+
+	/**
+	 * Returns the number of bytes allocated for the ring's data
+	 * @return	the size of the ring in bytes
+	 */
+	public long getAllocatedBytes() {
+		long ints = 0;
+		for(int slot = 0; slot < slotData.length; slot++) {
+			ints += slotData[slot].length;
+		}
+		return ints * 4;
+	}
+
+	/**
+	 * Returns the number of images in the table
+	 * @return	the number of images with ids
+	 */
+	public int getImageCount() {
+		return nextId - freeCount;
+	}
+
+	/**
+	 * Decodes the tick after the last one decoded into the decoded state
+	 */
+	private void decodeNext() {
+		final long tick = decodedTick + 1;
+		final int[] data = slotData[(int)(tick % slotData.length)];
+		final boolean keyframe = (tick % KEYFRAME_INTERVAL) == 0;
+
+		// Read the header ints that changed
+		int pos = 1;
+		final int mask = data[0];
+		for(int i = 0; i < headerSize; i++) {
+			if((mask & (1 << i)) != 0) {
+				decodedHeader[i] = data[pos++];
+			}
+		}
+		final int count = decodedHeader[0];
+		if(count > decodedIds.length) {
+			final int capacity = Math.max(count, decodedIds.length * 2);
+			final int[] ids = new int[capacity];
+			System.arraycopy(decodedIds, 0, ids, 0, decodedIds.length);
+			decodedIds = ids;
+			final int[] positions = new int[capacity];
+			System.arraycopy(decodedPositions, 0, positions, 0, decodedPositions.length);
+			decodedPositions = positions;
+		}
+
+		// Read every Sprite for a keyframe, or apply the changes otherwise
+		final int changes = data[pos++];
+		if(keyframe) {
+			for(int i = 0; i < changes; i++) {
+				decodedIds[i] = data[pos++];
+				decodedPositions[i] = data[pos++];
+			}
+		} else {
+			int index = 0;
+			for(int i = 0; i < changes; i++) {
+				index = data[pos++];
+				if(index < 0) {
+					decodedPositions[-index - 1] = data[pos++];
+				} else {
+					decodedIds[index] = data[pos++];
+					decodedPositions[index] = data[pos++];
+				}
+			}
+		}
+		decodedTick = tick;
+	}
+
+	/**
+	 * Returns the id of the specified image, giving it one if it has not been seen before
+	 * @param	image	the image
+	 * @return	the image's id
+	 */
+	private int getImageId(final Image image) {
+		final Integer knownId = (Integer)imageIds.get(image);
+		if(knownId != null) {
+			return knownId.intValue();
+		}
+
+		// Reuse a freed id if there is one, otherwise take the next new id
+		int id = 0;
+		if(freeCount > 0) {
+			id = freeIds[--freeCount];
+		} else {
+			id = nextId++;
+			if(id == idImages.length) {
+				final Image[] images = new Image[id * 2];
+				System.arraycopy(idImages, 0, images, 0, id);
+				idImages = images;
+				final long[] lastUsed = new long[id * 2];
+				System.arraycopy(idLastUsed, 0, lastUsed, 0, id);
+				idLastUsed = lastUsed;
+			}
+		}
+		idImages[id] = image;
+		imageIds.put(image, Integer.valueOf(id));
+		return id;
+	}
+
+	/**
+	 * Notes that the specified id is used by a tick
+	 * @param	id	the image id
+	 * @param	tick	the tick using it
+	 * @return	the id
+	 */
+	private int useId(final int id, final long tick) {
+		idLastUsed[id] = tick;
+		return id;
+	}
+
+	/**
+	 * Frees the id of every image not used by any tick that can still be decoded. Every
+	 * image used by a tick that can be decoded was written at or after the oldest keyframe,
+	 * so any id last used before it can safely be given to a new image.
+	 */
+	private void pruneImages() {
+		final long oldestTick = getOldestTick();
+		for(int id = 0; id < nextId; id++) {
+			if((idImages[id] != null) && (idLastUsed[id] < oldestTick)) {
+				imageIds.remove(idImages[id]);
+				idImages[id] = null;
+				if(freeCount == freeIds.length) {
+					final int[] ids = new int[freeCount * 2];
+					System.arraycopy(freeIds, 0, ids, 0, freeCount);
+					freeIds = ids;
+				}
+				freeIds[freeCount++] = id;
+			}
+		}
+		pruneSize = Math.max(MIN_PRUNE_SIZE, (nextId - freeCount) * 2);
+	}
+
+	/**
+	 * Grows the record of the last tick's Sprites if it cannot hold the specified number
+	 * @param	count	the number of Sprites needed
+	 */
+	private void ensureLastCapacity(final int count) {
+		if(count > lastIds.length) {
+			final int capacity = Math.max(count, lastIds.length * 2);
+			final int[] ids = new int[capacity];
+			System.arraycopy(lastIds, 0, ids, 0, lastCount);
+			lastIds = ids;
+			final int[] positions = new int[capacity];
+			System.arraycopy(lastPositions, 0, positions, 0, lastCount);
+			lastPositions = positions;
+			final Image[] images = new Image[capacity];
+			System.arraycopy(lastImages, 0, images, 0, lastCount);
+			lastImages = images;
+		}
+	}
+
+	/**
+	 * Grows the array of the specified slot if it cannot hold the specified number of ints
+	 * @param	slot	the slot
+	 * @param	size	the number of ints needed
+	 * @return	the slot's array
+	 */
+	private int[] ensureSlotCapacity(final int slot, final int size) {
+		if(size > slotData[slot].length) {
+			slotData[slot] = new int[size + (size / 2)];
+		}
+		return slotData[slot];
+	}
+
+	/**
+	 * Packs a position into a single int, with x in the low half and y in the high half
+	 * @param	xPos	the x position
+	 * @param	yPos	the y position
+	 * @return	the packed position
+	 */
+	private static int packPosition(final int xPos, final int yPos) {
+		return (xPos & 0xFFFF) | (yPos << 16);
+	}
+
+	/**
+	 * Returns the x position of a packed position
+	 * @param	position	the packed position
+	 * @return	the x position
+	 */
+	private static int unpackX(final int position) {
+		return (short)position;
+	}
+
+	/**
+	 * Returns the y position of a packed position
+	 * @param	position	the packed position
+	 * @return	the y position
+	 */
+	private static int unpackY(final int position) {
+		return position >> 16;
+	}
+}
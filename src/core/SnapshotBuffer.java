@@ -0,0 +1,126 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SnapshotBuffer class hands RenderSnapshots from the game thread to the render thread
+ * without either thread ever waiting for the other. Three snapshots are kept: one being
+ * filled by the game thread, one being painted by the render thread, and a spare holding the
+ * newest snapshot published. Publishing and acquiring each swap a snapshot with the spare in
+ * a single atomic operation, so the game thread can publish as often as it likes and the
+ * render thread always paints the newest snapshot, skipping any it was too slow to see.
+ * <p>Only one thread may publish and only one thread may acquire.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	RenderSnapshot
+ */
+public class SnapshotBuffer {
+	/**
+	 * Flag set on the spare index when it holds a snapshot the render thread has not seen
+	 */
+	private static final int FRESH = 4;
+
+	/**
+	 * Mask for the index part of the spare index
+	 */
+	private static final int INDEX_MASK = 3;
+
+	/**
+	 * The three snapshots
+	 */
+	private transient final RenderSnapshot[] snapshots;
+
+	/**
+	 * The index of the spare snapshot, with the FRESH flag if it has not been acquired
+	 */
+	private transient final AtomicInteger spareIndex;
+
+	/**
+	 * The index of the snapshot being filled, owned by the publishing thread
+	 */
+	private transient int backIndex;
+
+	/**
+	 * The index of the snapshot being painted, owned by the acquiring thread
+	 */
+	private transient int frontIndex;
+
+	/**
+	 * The number of snapshots published and the number replaced before they were acquired
+	 */
+	private transient final AtomicLong publishedCount, skippedCount;
+
+	/**
+	 * Constructor for the class SnapshotBuffer
+	 */
+	public SnapshotBuffer() {
+		snapshots = new RenderSnapshot[3];
+		for(int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = new RenderSnapshot();
+		}
+		backIndex = 0;
+		spareIndex = new AtomicInteger(1);
+		frontIndex = 2;
+		publishedCount = new AtomicLong();
+		skippedCount = new AtomicLong();
+	}
+
+	/**
+	 * Returns the snapshot the publishing thread should fill next
+	 * @return	the snapshot to fill
+	 */
+	public RenderSnapshot getBackSnapshot() {
+		return snapshots[backIndex];
+	}
+
+	/**
+	 * Publishes the snapshot returned by getBackSnapshot, making it the newest snapshot
+	 * available to the render thread. The publishing thread must not touch it again.
+	 */
+	public void publish() {
+		final int oldSpare = spareIndex.getAndSet(backIndex | FRESH);
+		backIndex = oldSpare & INDEX_MASK;
+		publishedCount.incrementAndGet();
+		if((oldSpare & FRESH) != 0) {
+			skippedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns whether a snapshot has been published since the last one was acquired
+	 * @return	true if a newer snapshot is available
+	 */
+	public boolean hasNewSnapshot() {
+		return (spareIndex.get() & FRESH) != 0;
+	}
+
+	/**
+	 * Returns the newest snapshot published. If nothing has been published since the
+	 * last call, the same snapshot is returned again. The snapshot stays unchanged
+	 * until the next call to this method.
+	 * @return	the newest snapshot
+	 */
+	public RenderSnapshot acquire() {
+		if(hasNewSnapshot()) {
+			frontIndex = spareIndex.getAndSet(frontIndex) & INDEX_MASK;
+		}
+		return snapshots[frontIndex];
+	}
+
+	/**
+	 * Returns the number of snapshots published
+	 * @return	the number of snapshots published
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * Returns the number of snapshots replaced by a newer one before the render thread acquired them
+	 * @return	the number of snapshots never painted
+	 */
+	public long getSkippedCount() {
+		return skippedCount.get();
+	}
+}
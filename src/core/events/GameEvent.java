@@ -0,0 +1,166 @@
+package core.events;
+
+/**
+ * The GameEvent class describes something that has happened in the game world, such as
+ * a Duck being hit or the Player running out of ammo. GameEvents are preallocated by the
+ * GameEventBus and reused for every event published, so listeners must copy any values
+ * they want to keep rather than holding on to the GameEvent itself.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	GameEventBus
+ */
+public class GameEvent {
+	/**
+	 * Event type for a Duck being hit by the Player. The value is the points scored.
+	 */
+	public static final int DUCK_HIT = 0;
+
+	/**
+	 * Event type for the Player firing a shot that did not hit a Duck. The value is zero.
+	 */
+	public static final int SHOT_MISSED = 1;
+
+	/**
+	 * Event type for the Player firing with no shots left. The value is zero.
+	 */
+	public static final int OUT_OF_AMMO = 2;
+
+	/**
+	 * Event type for a Duck reaching the dead state and being removed from the game. The
+	 * value is the difficulty of the Duck.
+	 */
+	public static final int DUCK_DIED = 3;
+
+	/**
+	 * Event type for a new round being started. The value is the number of the new round.
+	 */
+	public static final int ROUND_RESET = 4;
+
+	/**
+	 * Event type for the remaining Ducks flying away at the end of a round. The value is
+	 * the number of Ducks that flew away.
+	 */
+	public static final int FLY_AWAY = 5;
+
+	/**
+	 * Event type for the Player losing their last life. The value is the Player's final score.
+	 */
+	public static final int GAME_OVER = 6;
+
+	/**
+	 * The number of event types
+	 */
+	public static final int EVENT_TYPE_COUNT = 7;
+
+	/**
+	 * The type of this event
+	 */
+	private transient int eventType;
+
+	/**
+	 * The x and y position on screen at which this event happened
+	 */
+	private transient int xPosition, yPosition;
+
+	/**
+	 * The value associated with this event, such as the points scored for a hit
+	 */
+	private transient int eventValue;
+
+	/**
+	 * The game tick on which this event happened
+	 */
+	private transient long eventTick;
+
+	/**
+	 * Sets all the values of this event
+	 * @param	type	the event type
+	 * @param	xPos	the x position of the event
+	 * @param	yPos	the y position of the event
+	 * @param	value	the value associated with the event
+	 * @param	tick	the game tick on which the event happened
+	 */
+	void set(final int type, final int xPos, final int yPos, final int value, final long tick) {
+		eventType = type;
+		xPosition = xPos;
+		yPosition = yPos;
+		eventValue = value;
+		eventTick = tick;
+	}
+
+	/**
+	 * Copies the values of the specified event into this event
+	 * @param	event	the event to copy from
+	 */
+	void copy(final GameEvent event) {
+		set(event.eventType, event.xPosition, event.yPosition, event.eventValue, event.eventTick);
+	}
+
+	/**
+	 * Returns the type of this event
+	 * @return	one of the event type constants
+	 */
+	public int getType() { return eventType; }
+
+	/**
+	 * Returns the x position at which this event happened
+	 * @return	the x position
+	 */
+	public int getXPosition() { return xPosition; }
+
+	/**
+	 * Returns the y position at which this event happened
+	 * @return	the y position
+	 */
+	public int getYPosition() { return yPosition; }
+
+	/**
+	 * Returns the value associated with this event, whose meaning depends on the event
+	 * type as described by each event type constant. For DUCK_HIT this is the points
+	 * scored, for DUCK_DIED the Duck's difficulty, for ROUND_RESET the new round's number,
+	 * for FLY_AWAY the number of Ducks that flew away, for GAME_OVER the Player's final
+	 * score, and zero for SHOT_MISSED and OUT_OF_AMMO.
+	 * @return	the event value
+	 */
+	public int getValue() { return eventValue; }
+
+	/**
+	 * Returns the game tick on which this event happened
+	 * @return	the game tick
+	 */
+	public long getTick() { return eventTick; }
+
+	/**
+	 * Returns the name of the specified event type
+	 * @param	type	the event type
+	 * @return	the name of the event type
+	 */
+	public static String getTypeName(final int type) {
+		switch(type) {
+			case DUCK_HIT:
+				return "DuckHit";
+			case SHOT_MISSED:
+				return "ShotMissed";
+			case OUT_OF_AMMO:
+				return "OutOfAmmo";
+			case DUCK_DIED:
+				return "DuckDied";
+			case ROUND_RESET:
+				return "RoundReset";
+			case FLY_AWAY:
+				return "FlyAway";
+			case GAME_OVER:
+				return "GameOver";
+			default:
+				return "Unknown";
+		}
+	}
+
+	/**
+	 * Returns a String representation of this event
+	 */
+	public String toString() {
+		return getTypeName(eventType) + " [tick " + eventTick + ", x: " + xPosition
+			+ ", y: " + yPosition + ", value: " + eventValue + "]";
+	}
+}
@@ -0,0 +1,316 @@
+package core.events;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The GameEventBus class passes GameEvents from the game thread to any number of
+ * GameEventListeners. Listeners are added as either synchronous listeners, which are
+ * called on the game thread as soon as an event is published, or batch listeners, which
+ * are called on the bus' own worker thread once per game tick so that a slow listener
+ * never adds to the frame time. All events are stored in preallocated slots so publishing
+ * an event does not create any objects.
+ * <p>Events must only be published from a single thread (the game thread).
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	GameEvent
+ * @see	GameEventListener
+ */
+public class GameEventBus implements Runnable {
+	/**
+	 * The default number of events that can be waiting for batch listeners
+	 */
+	private static final int DEFAULT_QUEUE_SIZE = 256;
+
+	/**
+	 * The maximum depth of nested events published by synchronous listeners
+	 */
+	private static final int MAX_DISPATCH_DEPTH = 8;
+
+	/**
+	 * The amount of time (in nanoseconds) the worker thread waits before checking for events again
+	 */
+	private static final long IDLE_PARK_TIME = 50000000L;
+
+	/**
+	 * The listeners called on the game thread
+	 */
+	private transient final ArrayList syncListeners;
+
+	/**
+	 * The listeners called on the worker thread. The array is replaced rather than
+	 * modified so the worker thread never sees a partly updated list.
+	 */
+	private transient volatile GameEventListener[] batchListeners;
+
+	/**
+	 * The events used for synchronous dispatch, one per level of nesting
+	 */
+	private transient final GameEvent[] dispatchEvents;
+
+	/**
+	 * The ring of events waiting for the batch listeners
+	 */
+	private transient final GameEvent[] eventQueue;
+
+	/**
+	 * Mask used to wrap a sequence number onto an index in the event queue
+	 */
+	private transient final int queueMask;
+
+	/**
+	 * The current level of nested synchronous dispatch
+	 */
+	private transient int dispatchDepth;
+
+	/**
+	 * The sequence number of the next event to be written by the game thread
+	 */
+	private transient long writeSequence;
+
+	/**
+	 * The sequence number up to which events have been handed to the worker thread
+	 */
+	private transient volatile long publishedSequence;
+
+	/**
+	 * The sequence number up to which the worker thread has dispatched events
+	 */
+	private transient volatile long consumedSequence;
+
+	/**
+	 * The current game tick, stamped onto each event
+	 */
+	private transient long currentTick;
+
+	/**
+	 * Counters for the events published and the events dropped because the batch queue was full
+	 */
+	private transient long publishedCount, droppedCount;
+
+	/**
+	 * The worker thread for batch listeners
+	 */
+	private transient volatile Thread workerThread;
+
+	/**
+	 * Whether the worker thread should keep running
+	 */
+	private transient volatile boolean isRunning;
+
+	/**
+	 * Constructor for the class GameEventBus
+	 */
+	public GameEventBus() {
+		this(DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * Constructor for the class GameEventBus. The queue size is rounded up to the
+	 * next power of two.
+	 * @param	queueSize	the number of events that can be waiting for batch listeners
+	 */
+	public GameEventBus(int queueSize) {
+		int size = 1;
+		while(size < queueSize) {
+			size = size << 1;
+		}
+
+		syncListeners = new ArrayList();
+		batchListeners = new GameEventListener[0];
+		queueMask = size - 1;
+
+		// Preallocate every event the bus will ever use
+		eventQueue = new GameEvent[size];
+		for(int i = 0; i < size; i++) {
+			eventQueue[i] = new GameEvent();
+		}
+		dispatchEvents = new GameEvent[MAX_DISPATCH_DEPTH];
+		for(int i = 0; i < MAX_DISPATCH_DEPTH; i++) {
+			dispatchEvents[i] = new GameEvent();
+		}
+	}
+
+	/**
+	 * Adds a listener that is called on the game thread as soon as an event is published
+	 * @param	listener	the listener to add
+	 */
+	public void addListener(final GameEventListener listener) {
+		syncListeners.add(listener);
+	}
+
+	/**
+	 * Adds a listener that is called on the worker thread with each tick's events.
+	 * The worker thread is started when the first batch listener is added.
+	 * @param	listener	the listener to add
+	 */
+	public synchronized void addBatchListener(final GameEventListener listener) {
+		final GameEventListener[] listeners = new GameEventListener[batchListeners.length + 1];
+		System.arraycopy(batchListeners, 0, listeners, 0, batchListeners.length);
+		listeners[batchListeners.length] = listener;
+		batchListeners = listeners;
+		
+		if(workerThread == null) {
+			isRunning = true;
+			workerThread = new Thread(this, "GameEventBus");
+			workerThread.setDaemon(true);
+			workerThread.setPriority(Thread.MIN_PRIORITY);
+			workerThread.start();
+		}
+	}
+
+	/**
+	 * Removes the specified listener from this GameEventBus
+	 * @param	listener	the listener to remove
+	 */
+	public synchronized void removeListener(final GameEventListener listener) {
+		syncListeners.remove(listener);
+		
+		// Copy every batch listener except the one being removed
+		int count = 0;
+		final GameEventListener[] listeners = new GameEventListener[batchListeners.length];
+		for(int i = 0; i < batchListeners.length; i++) {
+			if(batchListeners[i] != listener) {
+				listeners[count++] = batchListeners[i];
+			}
+		}
+		final GameEventListener[] remaining = new GameEventListener[count];
+		System.arraycopy(listeners, 0, remaining, 0, count);
+		batchListeners = remaining;
+	}
+
+	/**
+	 * Publishes an event. Synchronous listeners are called before this method returns and
+	 * the event is queued for the batch listeners, which receive it after the next call to
+	 * endTick. If the batch queue is full the event is dropped for the batch listeners only.
+	 * @param	type	the event type
+	 * @param	xPos	the x position of the event
+	 * @param	yPos	the y position of the event
+	 * @param	value	the value associated with the event
+	 */
+	public void publish(final int type, final int xPos, final int yPos, final int value) {
+		publishedCount++;
+
+		// Queue the event for the batch listeners
+		if(workerThread != null) {
+			if(writeSequence - consumedSequence > queueMask) {
+				droppedCount++;
+			} else {
+				eventQueue[(int)(writeSequence & queueMask)].set(type, xPos, yPos, value, currentTick);
+				writeSequence++;
+			}
+		}
+
+		// Dispatch the event to the synchronous listeners, using a separate event
+		// for each level in case a listener publishes another event
+		if(dispatchDepth >= MAX_DISPATCH_DEPTH) {
+			throw new IllegalStateException("GameEvents nested too deeply");
+		}
+		final GameEvent event = dispatchEvents[dispatchDepth];
+		event.set(type, xPos, yPos, value, currentTick);
+		dispatchDepth++;
+		try {
+			for(int i = 0; i < syncListeners.size(); i++) {
+				((GameEventListener)syncListeners.get(i)).gameEventFired(event);
+			}
+		} finally {
+			dispatchDepth--;
+		}
+	}
+
+	/**
+	 * Publishes an event with no position or value
+	 * @param	type	the event type
+	 */
+	public void publish(final int type) {
+		publish(type, 0, 0, 0);
+	}
+
+	/**
+	 * Marks the end of a game tick. All events published during the tick are handed to
+	 * the worker thread in a single batch.
+	 */
+	public void endTick() {
+		currentTick++;
+		if((workerThread != null) && (publishedSequence != writeSequence)) {
+			publishedSequence = writeSequence;
+			LockSupport.unpark(workerThread);
+		}
+	}
+
+	/**
+	 * Stops the worker thread. Any events not yet dispatched to the batch listeners are discarded.
+	 */
+	public synchronized void close() {
+		isRunning = false;
+		if(workerThread != null) {
+			LockSupport.unpark(workerThread);
+			workerThread = null;
+		}
+	}
+
+	/**
+	 * Dispatches batches of events to the batch listeners until this GameEventBus is closed
+	 */
+	public void run() {
+		final GameEvent event = new GameEvent();
+		while(isRunning) {
+			final long published = publishedSequence;
+			long consumed = consumedSequence;
+			if(consumed == published) {
+				LockSupport.parkNanos(this, IDLE_PARK_TIME);
+				continue;
+			}
+
+			// Dispatch every event in the batch
+			while(consumed < published) {
+				// Copy the event out so the slot can be reused as soon as it is released
+				event.copy(eventQueue[(int)(consumed & queueMask)]);
+				consumed++;
+				consumedSequence = consumed;
+
+				final GameEventListener[] listeners = batchListeners;
+				for(int i = 0; i < listeners.length; i++) {
+					try {
+						listeners[i].gameEventFired(event);
+					} catch(RuntimeException ex) {
+						// A failing listener must not stop the others receiving events
+						System.out.println("GameEventListener failed: " + ex);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events published on this GameEventBus
+	 * @return	the number of events published
+	 */
+	public long getPublishedCount() {
+		return publishedCount;
+	}
+
+	/**
+	 * Returns the number of events dropped because the batch listeners fell behind
+	 * @return	the number of events dropped
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Returns the number of events waiting to be dispatched to the batch listeners
+	 * @return	the number of queued events
+	 */
+	public int getQueuedCount() {
+		return (int)(writeSequence - consumedSequence);
+	}
+
+	/**
+	 * Returns the current game tick
+	 * @return	the number of ticks ended on this GameEventBus
+	 */
+	public long getCurrentTick() {
+		return currentTick;
+	}
+}
@@ -0,0 +1,17 @@
+package core.events;
+
+/**
+ * The GameEventListener interface is implemented by any class wishing to receive
+ * GameEvents from a GameEventBus.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	GameEventBus
+ */
+public interface GameEventListener {
+	/**
+	 * Called when a GameEvent is dispatched to this listener. The GameEvent passed is
+	 * reused by the GameEventBus once this method returns.
+	 * @param	event	the event that has happened
+	 */
+	void gameEventFired(GameEvent event);
+}
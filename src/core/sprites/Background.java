@@ -3,9 +3,9 @@ package core.sprites;
 import graphics.DisplayView;
 import graphics.Sprite;
 import graphics.AnimGenerator;
+import graphics.HitMask;
 
 import java.awt.Graphics2D;
-import java.awt.image.*;
 import java.awt.Image;
 
 /**
@@ -30,9 +30,8 @@ public class Background extends Sprite {
 	public Background(DisplayView displayView, AnimGenerator animGenerator, 
 			int xPos, int yPos, String imageName) {
 		super(displayView, xPos, yPos);
-		backgroundImage = animGenerator.getSpriteCache().getSprite(imageName);
-		backgroundImage = backgroundImage.getScaledInstance(
-				DisplayView.WIDTH, DisplayView.HEIGHT, BufferedImage.SCALE_DEFAULT);
+		backgroundImage = animGenerator.getSpriteCache().getScaledBackground(
+				imageName, DisplayView.WIDTH, DisplayView.HEIGHT);
 	}
 	
 	/**
@@ -52,6 +51,18 @@ public class Background extends Sprite {
 		gfx.drawImage(backgroundImage, getXPosition(), getYPosition(), displayView);
 	}
 	
+	/**
+	 * Returns the image this Background paints
+	 * @return	the Background's image
+	 */
+	public Image getImage() { return backgroundImage; }
+	
+	/**
+	 * Returns null, as the whole of the Background can be hit
+	 * @return	null
+	 */
+	public HitMask getHitMask() { return null; }
+	
 	/**
 	 * Gets the width of the Background's current image
 	 * @return	the width size of the Background's current image
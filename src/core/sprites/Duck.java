@@ -5,6 +5,7 @@ import graphics.DisplayView;
 import graphics.Sprite;
 import graphics.AnimGenerator;
 import util.Randomizer;
+import util.TimedEventListener;
 
 /**
  * The Duck class represents a Duck on the screen. It has a simple AI in that it will
@@ -13,7 +14,7 @@ import util.Randomizer;
  * @author	Graham Mace
  * @version	1.0 - 03/06/2006
  */
-public class Duck extends Sprite {
+public class Duck extends Sprite implements TimedEventListener {
 	
 	/**
 	 * The AnimGenerator object that is responsible for loading the Sprites
@@ -88,9 +89,14 @@ public class Duck extends Sprite {
 	private static final int FLY_AWAY_SPEED = -10;
 	
 	/**
-	 * The amount of time for all Ducks to 'wait' when they are shot
+	 * The amount of time (in milliseconds) for all Ducks to 'wait' when they are shot
 	 */
-	private static final int SHOT_WAIT_TIME = 20;
+	public static final int SHOT_WAIT_TIME = 20 * DisplayView.THREAD_WAIT_TIME;
+	
+	/**
+	 * Timer event ID for a shot Duck to start dying
+	 */
+	public static final int TIMER_SHOT_WAIT = 0;
 	
 	/**
 	 * The bounding box size of the screen that ensures the Duck does not get
@@ -114,9 +120,22 @@ public class Duck extends Sprite {
 	private transient int currentState;
 	
 	/**
-	 * The amount of time a Duck should 'hang' in when it is shot
+	 * The Randomizer used for this Duck's movement, kept for the Duck's
+	 * lifetime so that moving does not create any objects
+	 */
+	private transient final Randomizer randomizer;
+	
+	/**
+	 * The number of ticks each animation frame is held for by every Duck, which is raised
+	 * when there are so many Ducks on the screen that nobody can follow any one of them
 	 */
-	private transient int currentHangTime;
+	private static volatile int crowdInterval = 1;
+	
+	/**
+	 * The number of ticks this Duck has acted for, starting at a different point for each
+	 * Duck so that a crowd of Ducks do not all change frame on the same tick
+	 */
+	private transient int animationTicks;
 	
 	/**
 	 * Constructor for the class Duck
@@ -126,8 +145,35 @@ public class Duck extends Sprite {
 	 * @param yPos	the y-position of the Duck on-screen
 	 */
 	public Duck(DisplayView displayView, AnimGenerator animGenerator, int xPos, int yPos, int difficulty) {
+		this(displayView, animGenerator, xPos, yPos, difficulty, new Randomizer());
+	}
+	
+	/**
+	 * Constructor for the class Duck. Ducks created with the same seed always move in the same way.
+	 * @param displayView	the DisplayView onto which the Duck is painted
+	 * @param animGenerator	the AnimGenerator that generates the frames for the Duck
+	 * @param difficulty	the difficulty of the Duck
+	 * @param seed	the seed for the Duck's random movement
+	 */
+	public Duck(DisplayView displayView, AnimGenerator animGenerator, int difficulty, long seed) {
+		this(displayView, animGenerator, 0, 0, difficulty, new Randomizer(seed));
+		animationTicks = (int)(seed & 0x7FFFFFFF);
+	}
+	
+	/**
+	 * Constructor for the class Duck
+	 * @param displayView	the DisplayView onto which the Duck is painted
+	 * @param animGenerator	the AnimGenerator that generates the frames for the Duck
+	 * @param xPos	the x-position of the Duck on-screen
+	 * @param yPos	the y-position of the Duck on-screen
+	 * @param difficulty	the difficulty of the Duck
+	 * @param movementRandomizer	the Randomizer used for the Duck's movement
+	 */
+	private Duck(DisplayView displayView, AnimGenerator animGenerator, int xPos, int yPos, int difficulty,
+			Randomizer movementRandomizer) {
 		super(displayView, xPos, yPos);
 		animationLoader = animGenerator;
+		randomizer = movementRandomizer;
 		setupAnimation();
 		this.setAnimation(leftAnimation);
 		
@@ -137,7 +183,6 @@ public class Duck extends Sprite {
 		
 		// Set default Duck values
 		currentState = STATE_ALIVE;
-		currentHangTime = 0;
 	}
 	
 	/**
@@ -172,7 +217,6 @@ public class Duck extends Sprite {
 		
 		// Find the upperBound
 		final int upperBound = duckDifficulty + 10;
-		Randomizer randomizer = new Randomizer();
 		
 		// Loop until we have a greater X than Y velocity to
 		// 'encourage' the duck to move more horizontally than vertically
@@ -182,7 +226,6 @@ public class Duck extends Sprite {
 		} while (randomDX < randomDY);
 		
 		// Randomize left/right velocity
-		randomizer = new Randomizer();
 		final boolean changeDir = randomizer.getBoolean();
 		if(changeDir) { randomDX = -randomDX; }
 		
@@ -198,7 +241,11 @@ public class Duck extends Sprite {
 	 * simulate movement on-screen.
 	 */
 	public void act() {
-		super.act();
+		// Freeze the animation while the Duck is off-screen, as nobody can see it, and
+		// in a crowd only advance it on this Duck's share of the ticks
+		if((isOnScreen()) && (((animationTicks++ & 0x7FFFFFFF) % crowdInterval) == 0)) {
+			super.act();
+		}
 		
 		switch(this.getState()) {
 			case STATE_ALIVE:
@@ -220,6 +267,29 @@ public class Duck extends Sprite {
 
 	}
 	
+	/**
+	 * Returns whether any part of the Duck is on the screen
+	 * @return	true if the Duck can be seen
+	 */
+	public boolean isOnScreen() {
+		return (xPosition + this.getWidth() > 0) && (xPosition < DisplayView.WIDTH)
+			&& (yPosition + this.getHeight() > 0) && (yPosition < DisplayView.HEIGHT);
+	}
+	
+	/**
+	 * Sets the number of ticks each animation frame is held for by every Duck on the screen
+	 * @param interval	the number of ticks, which is at least one
+	 */
+	public static void setCrowdInterval(final int interval) {
+		crowdInterval = Math.max(interval, 1);
+	}
+	
+	/**
+	 * Returns the number of ticks each animation frame is held for by every Duck on the screen
+	 * @return	the number of ticks
+	 */
+	public static int getCrowdInterval() { return crowdInterval; }
+	
 	/**
 	 * This method gives the Duck a percentage chance to change
 	 * direction, which is specified by the constant DIR_CHANGE_CHANCE.
@@ -231,7 +301,6 @@ public class Duck extends Sprite {
 		// Generate a random number between 1 and 100
 		// If the number is below the direction change percentage
 		// then change directions, otherwise leave the direction
-		Randomizer randomizer = new Randomizer();
 		randomizer.randomNum(1, 100);
 		if((randomizer.getCurrentNumber() < DIR_CHANGE_CHANCE) 
 		&& (xVelocity > 0 || xPosition < (DisplayView.WIDTH - this.getWidth()))) { 
@@ -312,25 +381,25 @@ public class Duck extends Sprite {
 	
 	/**
 	 * The shotMovement method causes this Duck to change
-	 * its animation if the Duck is not currently dying.
-	 * If it is not dying, then increment the currentHangTime
-	 * variable until it has reached the number specified
-	 * by the constant SHOT_WAIT_TIME.
+	 * its animation if the Duck is not currently dying. The Duck
+	 * 'hangs' in the air until the timer scheduled when it was shot
+	 * expires, after SHOT_WAIT_TIME milliseconds.
 	 */
 	private void shotMovement() {
-		// If the duck is currently not dying
-		if(this.getState() != Duck.STATE_DYING) {
-			// Update its animation
-			if(this.getAnimation() != shotAnimation) {
-				this.setAnimation(shotAnimation);
-			}
-			
-			// Increment currentHangTime until the wait time is reached
-			if(currentHangTime > SHOT_WAIT_TIME) {
-				this.setState(Duck.STATE_DYING);
-			} else {
-				currentHangTime++;
-			}
+		// If the duck is currently not dying, update its animation
+		if((this.getState() != Duck.STATE_DYING) && (this.getAnimation() != shotAnimation)) {
+			this.setAnimation(shotAnimation);
+		}
+	}
+	
+	/**
+	 * Called when a timer scheduled for this Duck expires. When the
+	 * TIMER_SHOT_WAIT timer expires, a shot Duck starts dying.
+	 * @param	eventID	the ID of the timer that has expired
+	 */
+	public void timerExpired(final int eventID) {
+		if((eventID == TIMER_SHOT_WAIT) && (this.getState() == Duck.STATE_SHOT)) {
+			this.setState(Duck.STATE_DYING);
 		}
 	}
 	
@@ -2,6 +2,10 @@ package graphics;
 
 import java.awt.image.BufferedImage;
 import java.awt.GraphicsConfiguration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 
 /**
  * The AnimGenerator class returns an Animation object comprising of a set
@@ -36,6 +40,37 @@ public class AnimGenerator {
 	 */
 	public static final int RIGHT_FACING = 1;
 	
+	/**
+	 * The estimated number of bytes taken by all the images this AnimGenerator has created
+	 */
+	private transient long generatedBytes;
+	
+	/**
+	 * The names of the animations whose frames have been measured, in the order first seen,
+	 * the number of frames, the bytes they would take as 32-bit ARGB and the bytes they take
+	 * as stored, by animation name, and the names of the images already counted
+	 */
+	private transient final ArrayList animationNames;
+	private transient final HashMap animationSizes;
+	private transient final HashSet measuredImages;
+	
+	/**
+	 * The images already counted in the animations' stored bytes, so that frames shared
+	 * between animations are only counted once
+	 */
+	private transient final IdentityHashMap measuredFrames;
+	
+	/**
+	 * The mirror image of every image mirrored, by the image mirrored, so that every
+	 * Animation facing the same way shares the same frames
+	 */
+	private transient final IdentityHashMap mirrorImages;
+	
+	/**
+	 * The number of mirror images made, and the number of times one was reused rather than made again
+	 */
+	private transient int mirrorCount, mirrorReuseCount;
+	
 	/**
 	 * Constructor for the class AnimGenerator
 	 * @param	theCache	the SpriteCache containing the Images for the Animation
@@ -44,6 +79,11 @@ public class AnimGenerator {
 	public AnimGenerator(SpriteCache theCache, GraphicsConfiguration gfxConfig) {
 		spriteCache = theCache;
 		imageTransformer = new ImageTransform(gfxConfig);
+		animationNames = new ArrayList();
+		animationSizes = new HashMap();
+		measuredImages = new HashSet();
+		measuredFrames = new IdentityHashMap();
+		mirrorImages = new IdentityHashMap();
 	}
 	
 	/**
@@ -71,14 +111,19 @@ public class AnimGenerator {
 			}
 			
 			BufferedImage currentImage = spriteCache.getSprite(imageLocation);
+			HitMask currentMask = null;
+			measureImage(folderPrefix + filePrefix, imageLocation, currentImage);
 			
 			// Flip the image if we want a left-facing animation
 			if(faceDirection == RIGHT_FACING) {
-				currentImage = imageTransformer.getMirrorImage(currentImage);
+				currentImage = getMirrorImage(currentImage);
+				currentMask = spriteCache.getMirrorHitMask(imageLocation);
+			} else {
+				currentMask = spriteCache.getHitMask(imageLocation);
 			}
 			
-			// Add the Image to the Animation
-			anim.addFrame(currentImage);
+			// Add the Image and its HitMask to the Animation
+			anim.addFrame(currentImage, currentMask);
 		}
 
 		return anim;
@@ -97,17 +142,151 @@ public class AnimGenerator {
 		
 		// Get the Image from the SpriteCache
 		BufferedImage currentImage = spriteCache.getSprite(imageLocation);
+		HitMask currentMask = null;
+		measureImage(imageLocation, imageLocation, currentImage);
 		
 		// Flip the image if we want a left-facing animation
 		if(faceDirection == RIGHT_FACING) {
-			currentImage = imageTransformer.getMirrorImage(currentImage);
+			currentImage = getMirrorImage(currentImage);
+			currentMask = spriteCache.getMirrorHitMask(imageLocation);
+		} else {
+			currentMask = spriteCache.getHitMask(imageLocation);
 		}
 		
-		// Add the frame to the Animation and return
-		anim.addFrame(currentImage);
+		// Add the frame and its HitMask to the Animation and return
+		anim.addFrame(currentImage, currentMask);
 		return anim;
 	}
 	
+	/**
+	 * Returns the estimated number of bytes taken by all the images this AnimGenerator
+	 * has created, not counting the images shared from the SpriteCache. Comparing this
+	 * figure before and after creating a Sprite gives the memory the Sprite's own
+	 * images take, which is nothing once a Sprite with the same frames has been created,
+	 * as mirror images are made once and shared.
+	 * @return	the estimated number of bytes generated
+	 */
+	public long getGeneratedBytes() {
+		return generatedBytes;
+	}
+	
+	/**
+	 * Returns the mirror image of the specified image, making it the first time the image
+	 * is mirrored and sharing it with any image with the same pixels in the SpriteCache.
+	 * CompactSprites are kept in their palette.
+	 * @param	image	the image to mirror
+	 * @return	the mirrored image
+	 */
+	private BufferedImage getMirrorImage(final BufferedImage image) {
+		BufferedImage mirror = (BufferedImage)mirrorImages.get(image);
+		if(mirror != null) {
+			mirrorReuseCount++;
+			return mirror;
+		}
+		
+		// Mirror the image, keeping the mirror only if no image has the same pixels already
+		final BufferedImage newMirror = (image instanceof CompactSprite)
+			? ((CompactSprite)image).getMirrorImage() : imageTransformer.getMirrorImage(image);
+		mirror = spriteCache.getSharedImage(newMirror);
+		if(mirror == newMirror) {
+			generatedBytes += getImageBytes(mirror);
+			spriteCache.addScalableImage(mirror);
+		}
+		mirrorImages.put(image, mirror);
+		mirrorCount++;
+		return mirror;
+	}
+	
+	/**
+	 * Adds an image from the SpriteCache to the sizes of the animation it is a frame of,
+	 * unless it has been counted already
+	 * @param	animationName	the name of the animation
+	 * @param	imageName	the name of the image
+	 * @param	image	the image
+	 */
+	private void measureImage(final String animationName, final String imageName, final BufferedImage image) {
+		if(!measuredImages.add(imageName)) {
+			return;
+		}
+		long[] sizes = (long[])animationSizes.get(animationName);
+		if(sizes == null) {
+			sizes = new long[3];
+			animationSizes.put(animationName, sizes);
+			animationNames.add(animationName);
+		}
+		sizes[0]++;
+		sizes[1] += (long)image.getWidth() * image.getHeight() * 4;
+		if(measuredFrames.put(image, Boolean.TRUE) == null) {
+			sizes[2] += getImageBytes(image);
+		}
+	}
+	
+	/**
+	 * Returns a report of the memory taken by the frames of every animation created so far,
+	 * a line per animation, comparing the bytes they would take as 32-bit ARGB images with
+	 * the bytes they take as stored, which is less for frames kept as CompactSprites and
+	 * nothing for frames sharing an image already counted. Mirrored copies are not counted.
+	 * @return	the report
+	 */
+	public String getEncodingReport() {
+		final StringBuilder report = new StringBuilder();
+		long totalArgb = 0, totalStored = 0;
+		for(int i = 0; i < animationNames.size(); i++) {
+			final String name = (String)animationNames.get(i);
+			final long[] sizes = (long[])animationSizes.get(name);
+			appendSizes(report, name + " (" + sizes[0] + " frames)", sizes[1], sizes[2]);
+			totalArgb += sizes[1];
+			totalStored += sizes[2];
+		}
+		appendSizes(report, "Total (" + measuredImages.size() + " frames)", totalArgb, totalStored);
+		return report.toString();
+	}
+	
+	/**
+	 * Appends a line to a report comparing the size of some frames as ARGB and as stored
+	 * @param	report	the report to append to
+	 * @param	label	the name of the frames
+	 * @param	argbBytes	the bytes the frames would take as 32-bit ARGB
+	 * @param	storedBytes	the bytes the frames take as stored
+	 */
+	private static void appendSizes(final StringBuilder report, final String label, final long argbBytes,
+			final long storedBytes) {
+		report.append(label).append(": ").append(argbBytes / 1024).append("KB as ARGB, ")
+				.append(storedBytes / 1024).append("KB stored, ").append((argbBytes - storedBytes) / 1024)
+				.append("KB saved (").append((argbBytes > 0) ? (argbBytes - storedBytes) * 100 / argbBytes : 0)
+				.append("%)\n");
+	}
+	
+	/**
+	 * Returns the estimated number of bytes taken by the pixels of the specified image,
+	 * including the palette and runs of a CompactSprite
+	 * @param	image	the image to measure
+	 * @return	the estimated size of the image in bytes
+	 */
+	public static long getImageBytes(final BufferedImage image) {
+		if(image instanceof CompactSprite) {
+			return ((CompactSprite)image).getBytes();
+		}
+		final int bytesPerPixel = (image.getColorModel().getPixelSize() + 7) / 8;
+		return (long)image.getWidth() * image.getHeight() * bytesPerPixel;
+	}
+	
+	/**
+	 * Returns the number of mirror images made, each of which is shared by every Animation
+	 * facing that way
+	 * @return	the number of mirror images made
+	 */
+	public int getMirrorCount() {
+		return mirrorCount;
+	}
+	
+	/**
+	 * Returns the number of times a mirror image already made was reused rather than made again
+	 * @return	the number of mirror images reused
+	 */
+	public int getMirrorReuseCount() {
+		return mirrorReuseCount;
+	}
 	
 	/**
 	 * Returns the current SpriteCache used by this AnimGenerator
@@ -10,6 +10,12 @@ import java.util.ArrayList;
  * @version	1.0 - 03/06/2006
  */
 public class Animation {
+	/**
+	 * The number of updates each frame is held for, shared by every Animation so
+	 * that all animations can be slowed down together when the game is short of time
+	 */
+	private static volatile int updateInterval = 1;
+	
 	/**
 	 * The list of frames in the Animation object
 	 */
@@ -20,6 +26,11 @@ public class Animation {
 	 */
 	private transient int currentFrameIndex = 0;
 	
+	/**
+	 * The number of updates the current frame has been held for
+	 */
+	private transient int heldUpdates = 0;
+	
 	/**
 	 * Constructor for the class Animation
 	 */
@@ -42,7 +53,16 @@ public class Animation {
 	 * @param	image	the Image to be added to the frame list
 	 */
 	public void addFrame(final Image image) {
-		frames.add(new AnimFrame(image));
+		addFrame(image, null);
+	}
+	
+	/**
+	 * Adds a new Image frame to this Animation, along with the HitMask of its solid pixels.
+	 * @param	image	the Image to be added to the frame list
+	 * @param	mask	the HitMask of the Image, or null if the whole frame can be hit
+	 */
+	public void addFrame(final Image image, final HitMask mask) {
+		frames.add(new AnimFrame(image, mask));
 	}
 	
 	/**
@@ -57,6 +77,13 @@ public class Animation {
 	 */
 	public void update() 
 	{
+		// Hold the current frame until it has been shown for the update interval
+		heldUpdates++;
+		if(heldUpdates < updateInterval) {
+			return;
+		}
+		heldUpdates = 0;
+		
 		// Increment if there are more than 1 frames
 		if(frames.size() > 1) {
 				currentFrameIndex++;
@@ -69,6 +96,23 @@ public class Animation {
 		}
 	}
 	
+	/**
+	 * Sets the number of updates every Animation holds each frame for. An interval of 2
+	 * halves the rate at which all animations run.
+	 * @param	interval	the number of updates per frame, at least 1
+	 */
+	public static void setUpdateInterval(final int interval) {
+		updateInterval = Math.max(interval, 1);
+	}
+	
+	/**
+	 * Returns the number of updates every Animation holds each frame for
+	 * @return	the number of updates per frame
+	 */
+	public static int getUpdateInterval() {
+		return updateInterval;
+	}
+	
 	/**
 	 * Gets this Animation's current Image. Returns null if Animation has no images.
 	 * @return	the current Image
@@ -82,6 +126,28 @@ public class Animation {
 		}
 	}
 	
+	/**
+	 * Gets the index of this Animation's current frame
+	 * @return	the index of the current frame
+	 */
+	public int getFrameIndex() {
+		return currentFrameIndex;
+	}
+	
+	/**
+	 * Gets the HitMask of this Animation's current Image. Returns null if the Animation
+	 * has no images or the current frame has no mask.
+	 * @return	the current HitMask
+	 */
+	public HitMask getHitMask() {
+		// Check we have frames
+		if(frames.size() == 0) {
+			return null;
+		} else {
+			return getFrame(currentFrameIndex).mask;
+		}
+	}
+	
 	/**
 	 * Gets the Animation frame at the specified index
 	 * @param	index	the index of the frame requested
@@ -92,19 +158,22 @@ public class Animation {
 	}
 	
 	/**
-	 * The Animframe inner-class stores the specified Image  
+	 * The Animframe inner-class stores the specified Image and its HitMask
 	 * @author	Graham Mace
 	 *
 	 */
 	private class AnimFrame {
 		private transient final Image image;
+		private transient final HitMask mask;
 		
 		/**
 		 * Constructor for the class AnimFrame
 		 * @param	image	the Image to be set for the frame
+		 * @param	mask	the HitMask of the Image, or null
 		 */
-		public AnimFrame(Image image) {
+		public AnimFrame(Image image, HitMask mask) {
 			this.image = image;
+			this.mask = mask;
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,346 @@
+package graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import util.TextBuilder;
+
+/**
+ * The BitmapFont class draws text in one font, size and colour by copying glyphs out of
+ * a single image, the glyph atlas, which is drawn once when the BitmapFont is created.
+ * Each glyph is kept as a sub-image of the atlas trimmed to its own pixels, so drawing a
+ * character is a single unscaled image copy of as few pixels as possible, rather than Java2D looking the font up
+ * and rasterising the glyph every time text is drawn, and text can be drawn from character
+ * arrays, TextBuilders and numbers without creating any Strings.
+ * <p>Only the characters given when the BitmapFont is created can be drawn. Any other
+ * character is drawn as a question mark, or is skipped if the font has no question mark.
+ * <p>A BitmapFont is never changed once it has been created, so it can be shared between threads.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class BitmapFont {
+	/**
+	 * The printable ASCII and Latin-1 characters, which cover all the text the game draws
+	 */
+	public static final String DEFAULT_CHARACTERS;
+
+	static {
+		final StringBuffer characters = new StringBuffer();
+		for(char c = 32; c < 127; c++) {
+			characters.append(c);
+		}
+		for(char c = 160; c < 256; c++) {
+			characters.append(c);
+		}
+		DEFAULT_CHARACTERS = characters.toString();
+	}
+
+	/**
+	 * The character drawn in place of any character that is not in the atlas
+	 */
+	private static final char MISSING_CHARACTER = '?';
+
+	/**
+	 * The widest the atlas is made, in pixels
+	 */
+	private static final int MAX_ATLAS_WIDTH = 1024;
+
+	/**
+	 * The glyph atlas
+	 */
+	private transient final BufferedImage atlas;
+
+	/**
+	 * The index of each character's glyph, or -1 if the character is not in the atlas
+	 */
+	private transient final int[] glyphIndex;
+
+	/**
+	 * Each glyph's pixels, trimmed to the smallest rectangle holding them, or null if the
+	 * glyph has no pixels to draw, such as a space
+	 */
+	private transient final BufferedImage[] glyphImages;
+
+	/**
+	 * The position of each glyph's image relative to the pen and the baseline
+	 */
+	private transient final int[] glyphLeft, glyphTop;
+
+	/**
+	 * The distance the pen moves after each glyph
+	 */
+	private transient final int[] glyphAdvance;
+
+	/**
+	 * The glyph drawn for characters not in the atlas, or -1 if there is none
+	 */
+	private transient final int missingGlyph;
+
+	/**
+	 * The distance from the baseline to the top of the font
+	 */
+	private transient final int fontAscent;
+
+	/**
+	 * Constructor for the class BitmapFont, holding every character in DEFAULT_CHARACTERS
+	 * @param	font	the font to draw
+	 * @param	color	the colour to draw the text in
+	 */
+	public BitmapFont(Font font, Color color) {
+		this(font, color, DEFAULT_CHARACTERS);
+	}
+
+	/**
+	 * Constructor for the class BitmapFont
+	 * @param	font	the font to draw
+	 * @param	color	the colour to draw the text in
+	 * @param	characters	the characters that can be drawn
+	 */
+	public BitmapFont(Font font, Color color, String characters) {
+		// Measure the font with a scratch image, as no screen may be available yet
+		final BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D scratchGfx = scratch.createGraphics();
+		final FontMetrics metrics = scratchGfx.getFontMetrics(font);
+		scratchGfx.dispose();
+		fontAscent = metrics.getAscent();
+		
+		// Leave space around each glyph in its cell, so that italic and other glyphs
+		// that stick out past their advance are not cut off
+		final int cellPadding = font.getSize() / 4 + 1;
+		final int cellHeight = metrics.getAscent() + metrics.getDescent() + cellPadding * 2;
+
+		// Find the highest character, so the index can cover them all, and the widest
+		int maxChar = MISSING_CHARACTER;
+		int maxAdvance = 1;
+		for(int i = 0; i < characters.length(); i++) {
+			maxChar = Math.max(maxChar, characters.charAt(i));
+			maxAdvance = Math.max(maxAdvance, metrics.charWidth(characters.charAt(i)));
+		}
+		final int cellWidth = maxAdvance + cellPadding * 2;
+
+		// Number each different character
+		glyphIndex = new int[maxChar + 1];
+		for(int i = 0; i < glyphIndex.length; i++) {
+			glyphIndex[i] = -1;
+		}
+		int glyphCount = 0;
+		for(int i = 0; i < characters.length(); i++) {
+			if(glyphIndex[characters.charAt(i)] < 0) {
+				glyphIndex[characters.charAt(i)] = glyphCount++;
+			}
+		}
+		missingGlyph = glyphIndex[MISSING_CHARACTER];
+
+		// Lay the cells out in rows no wider than MAX_ATLAS_WIDTH
+		final int columns = Math.max(1, Math.min(glyphCount, MAX_ATLAS_WIDTH / cellWidth));
+		final int rows = Math.max(1, (glyphCount + columns - 1) / columns);
+		atlas = new BufferedImage(columns * cellWidth, rows * cellHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+		glyphImages = new BufferedImage[glyphCount];
+		glyphLeft = new int[glyphCount];
+		glyphTop = new int[glyphCount];
+		glyphAdvance = new int[glyphCount];
+
+		// Draw each glyph into its cell, with its baseline the ascent below the top of the cell
+		final Graphics2D gfx = atlas.createGraphics();
+		gfx.setFont(font);
+		gfx.setColor(color);
+		final char[] glyphChar = new char[1];
+		for(int c = 0; c < glyphIndex.length; c++) {
+			final int glyph = glyphIndex[c];
+			if(glyph < 0) {
+				continue;
+			}
+			final int cellX = (glyph % columns) * cellWidth;
+			final int cellY = (glyph / columns) * cellHeight;
+			glyphAdvance[glyph] = metrics.charWidth((char)c);
+			glyphChar[0] = (char)c;
+			gfx.drawChars(glyphChar, 0, 1, cellX + cellPadding, cellY + cellPadding + fontAscent);
+			trimGlyph(glyph, cellX, cellY, cellWidth, cellHeight);
+			if(glyphImages[glyph] != null) {
+				glyphLeft[glyph] -= cellPadding;
+				glyphTop[glyph] -= cellPadding + fontAscent;
+			}
+		}
+		gfx.dispose();
+	}
+
+	/**
+	 * Draws part of a character array with its baseline at the specified position
+	 * @param	gfx	the Graphics context onto which to draw
+	 * @param	chars	the characters to draw
+	 * @param	offset	the index of the first character to draw
+	 * @param	length	the number of characters to draw
+	 * @param	xPos	the x position of the start of the text
+	 * @param	yPos	the y position of the baseline
+	 * @return	the x position of the end of the text
+	 */
+	public int drawChars(final Graphics2D gfx, final char[] chars, final int offset, final int length,
+			final int xPos, final int yPos) {
+		int penX = xPos;
+		for(int i = offset; i < offset + length; i++) {
+			penX = drawChar(gfx, chars[i], penX, yPos);
+		}
+		return penX;
+	}
+
+	/**
+	 * Draws the text of a TextBuilder with its baseline at the specified position
+	 * @param	gfx	the Graphics context onto which to draw
+	 * @param	text	the text to draw
+	 * @param	xPos	the x position of the start of the text
+	 * @param	yPos	the y position of the baseline
+	 * @return	the x position of the end of the text
+	 */
+	public int drawText(final Graphics2D gfx, final TextBuilder text, final int xPos, final int yPos) {
+		return drawChars(gfx, text.getChars(), 0, text.length(), xPos, yPos);
+	}
+
+	/**
+	 * Draws a String with its baseline at the specified position
+	 * @param	gfx	the Graphics context onto which to draw
+	 * @param	text	the text to draw
+	 * @param	xPos	the x position of the start of the text
+	 * @param	yPos	the y position of the baseline
+	 * @return	the x position of the end of the text
+	 */
+	public int drawString(final Graphics2D gfx, final String text, final int xPos, final int yPos) {
+		int penX = xPos;
+		for(int i = 0; i < text.length(); i++) {
+			penX = drawChar(gfx, text.charAt(i), penX, yPos);
+		}
+		return penX;
+	}
+
+	/**
+	 * Draws a number in decimal with its baseline at the specified position
+	 * @param	gfx	the Graphics context onto which to draw
+	 * @param	value	the number to draw
+	 * @param	xPos	the x position of the start of the number
+	 * @param	yPos	the y position of the baseline
+	 * @return	the x position of the end of the number
+	 */
+	public int drawInt(final Graphics2D gfx, final int value, final int xPos, final int yPos) {
+		int penX = xPos;
+		long remaining = value;
+		if(remaining < 0) {
+			penX = drawChar(gfx, '-', penX, yPos);
+			remaining = -remaining;
+		}
+
+		// Draw the digits from the most significant down, so that no buffer is needed
+		long divisor = 1;
+		while(divisor * 10 <= remaining) {
+			divisor *= 10;
+		}
+		while(divisor > 0) {
+			penX = drawChar(gfx, (char)('0' + (remaining / divisor)), penX, yPos);
+			remaining %= divisor;
+			divisor /= 10;
+		}
+		return penX;
+	}
+
+	/**
+	 * Returns the width of part of a character array
+	 * @param	chars	the characters to measure
+	 * @param	offset	the index of the first character
+	 * @param	length	the number of characters
+	 * @return	the width in pixels
+	 */
+	public int charsWidth(final char[] chars, final int offset, final int length) {
+		int width = 0;
+		for(int i = offset; i < offset + length; i++) {
+			final int glyph = getGlyph(chars[i]);
+			if(glyph >= 0) {
+				width += glyphAdvance[glyph];
+			}
+		}
+		return width;
+	}
+
+	/**
+	 * Returns the distance from the baseline to the top of the font
+	 * @return	the ascent in pixels
+	 */
+	public int getAscent() { return fontAscent; }
+
+	/**
+	 * Returns the number of glyphs in the atlas
+	 * @return	the number of glyphs
+	 */
+	public int getGlyphCount() { return glyphAdvance.length; }
+
+	/**
+	 * Returns the number of bytes taken by the pixels of the atlas
+	 * @return	the size of the atlas in bytes
+	 */
+	public long getAtlasBytes() { return (long)atlas.getWidth() * atlas.getHeight() * 4; }
+
+	/**
+	 * Draws one character and returns the position of the next
+	 * @param	gfx	the Graphics context onto which to draw
+	 * @param	c	the character to draw
+	 * @param	xPos	the x position of the pen
+	 * @param	yPos	the y position of the baseline
+	 * @return	the x position of the pen after the character
+	 */
+	private int drawChar(final Graphics2D gfx, final char c, final int xPos, final int yPos) {
+		final int glyph = getGlyph(c);
+		if(glyph < 0) {
+			return xPos;
+		}
+		if(glyphImages[glyph] != null) {
+			gfx.drawImage(glyphImages[glyph], xPos + glyphLeft[glyph], yPos + glyphTop[glyph], null);
+		}
+		return xPos + glyphAdvance[glyph];
+	}
+
+	/**
+	 * Returns the glyph drawn for the specified character
+	 * @param	c	the character
+	 * @return	the index of the glyph, or -1 if nothing is drawn
+	 */
+	private int getGlyph(final char c) {
+		if(c < glyphIndex.length) {
+			final int glyph = glyphIndex[c];
+			if(glyph >= 0) {
+				return glyph;
+			}
+		}
+		return missingGlyph;
+	}
+
+	/**
+	 * Finds the smallest rectangle of an atlas cell holding every pixel of its glyph, and
+	 * keeps that part of the atlas as the glyph's image, with its position within the cell
+	 * @param	glyph	the index of the glyph
+	 * @param	cellX	the x position of the cell
+	 * @param	cellY	the y position of the cell
+	 * @param	cellWidth	the width of the cell
+	 * @param	cellHeight	the height of the cell
+	 */
+	private void trimGlyph(final int glyph, final int cellX, final int cellY, final int cellWidth,
+			final int cellHeight) {
+		int left = cellWidth, top = cellHeight, right = -1, bottom = -1;
+		final int[] row = new int[cellWidth];
+		for(int y = 0; y < cellHeight; y++) {
+			atlas.getRGB(cellX, cellY + y, cellWidth, 1, row, 0, cellWidth);
+			for(int x = 0; x < cellWidth; x++) {
+				if((row[x] >>> 24) != 0) {
+					left = Math.min(left, x);
+					right = Math.max(right, x);
+					top = Math.min(top, y);
+					bottom = y;
+				}
+			}
+		}
+		if(right >= 0) {
+			glyphImages[glyph] = atlas.getSubimage(cellX + left, cellY + top, right - left + 1, bottom - top + 1);
+			glyphLeft[glyph] = left;
+			glyphTop[glyph] = top;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package graphics;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferStrategy;
+
+/**
+ * The BufferStrategyTarget class is a RenderTarget that paints into the back buffer of
+ * a window's BufferStrategy and shows each frame by flipping it onto the screen.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class BufferStrategyTarget implements RenderTarget {
+	/**
+	 * The BufferStrategy painted into
+	 */
+	private transient final BufferStrategy strategy;
+
+	/**
+	 * The size of the area painted
+	 */
+	private transient final int targetWidth, targetHeight;
+
+	/**
+	 * Constructor for the class BufferStrategyTarget
+	 * @param	bufferStrategy	the BufferStrategy to paint into
+	 * @param	width	the width of the area painted
+	 * @param	height	the height of the area painted
+	 */
+	public BufferStrategyTarget(BufferStrategy bufferStrategy, int width, int height) {
+		strategy = bufferStrategy;
+		targetWidth = width;
+		targetHeight = height;
+	}
+
+	/**
+	 * Returns a Graphics context for painting into the back buffer
+	 * @return	the back buffer's Graphics context
+	 */
+	public Graphics2D getDrawGraphics() {
+		return (Graphics2D)strategy.getDrawGraphics();
+	}
+
+	/**
+	 * Disposes of the back buffer's Graphics context, as the BufferStrategy returns a new one each frame
+	 * @param	gfx	the Graphics context the frame was painted into
+	 */
+	public void releaseDrawGraphics(final Graphics2D gfx) {
+		gfx.dispose();
+	}
+
+	/**
+	 * Shows the back buffer on the screen
+	 */
+	public void show() {
+		strategy.show();
+	}
+
+	/**
+	 * Returns the width of the area painted
+	 * @return	the width in pixels
+	 */
+	public int getWidth() { return targetWidth; }
+
+	/**
+	 * Returns the height of the area painted
+	 * @return	the height in pixels
+	 */
+	public int getHeight() { return targetHeight; }
+}
@@ -0,0 +1,282 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+
+/**
+ * The CompactSprite class is an image kept as one byte per pixel, indexing a palette of at
+ * most MAX_COLOURS colours, rather than as a 32-bit ARGB int per pixel. The game's sprites
+ * are flat-coloured cartoons, so most of their frames fit in a palette and take a quarter of
+ * the memory this way. A CompactSprite is a BufferedImage with an IndexColorModel, so it can
+ * be painted, scaled and tested for hits like any other image.
+ * <p>Sprites that are mostly see-through also keep the spans of visible pixels along each row,
+ * run-length encoded as the first column of each span and the column after it, so that a
+ * SoftwareBlitter can jump straight over the transparent runs rather than reading every pixel.
+ * Only sprites where at least one pixel in SPARSE_DIVISOR is transparent keep their runs, as
+ * for anything more solid the runs cost more than they save.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class CompactSprite extends BufferedImage {
+	/**
+	 * The most colours a sprite can have and still be kept in a palette
+	 */
+	public static final int MAX_COLOURS = 256;
+
+	/**
+	 * The fraction of pixels, as one in this many, that must be transparent for the runs to be kept
+	 */
+	private static final int SPARSE_DIVISOR = 4;
+
+	/**
+	 * The palette's colours with their alpha multiplied in, as the SoftwareBlitter paints them
+	 */
+	private transient final int[] premultipliedPalette;
+
+	/**
+	 * The index in runs of the first span of each row, followed by the length of runs,
+	 * or null if the sprite is not sparse enough to keep its runs
+	 */
+	private transient final int[] rowRuns;
+
+	/**
+	 * The spans of visible pixels along each row, as pairs of the first column in the span
+	 * and the column after it
+	 */
+	private transient final short[] runs;
+
+	/**
+	 * Constructor for the class CompactSprite
+	 * @param	model	the sprite's palette
+	 * @param	raster	the sprite's palette indices
+	 * @param	premultipliedPalette	the palette's colours with their alpha multiplied in
+	 * @param	rowRuns	the index in runs of the first span of each row, or null if the runs are not kept
+	 * @param	runs	the spans of visible pixels along each row, or null if the runs are not kept
+	 */
+	private CompactSprite(IndexColorModel model, WritableRaster raster, int[] premultipliedPalette,
+			int[] rowRuns, short[] runs) {
+		super(model, raster, false, null);
+		this.premultipliedPalette = premultipliedPalette;
+		this.rowRuns = rowRuns;
+		this.runs = runs;
+	}
+
+	/**
+	 * Encodes an image as a CompactSprite, if it has few enough colours. Pixels are read with
+	 * getRGB, so the image should be the one read from disk rather than a converted copy, whose
+	 * colours may already have been rounded by premultiplying them.
+	 * @param	image	the image to encode
+	 * @return	the encoded sprite, or null if the image has more than MAX_COLOURS colours
+	 */
+	public static CompactSprite encode(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		if(width > Short.MAX_VALUE) {
+			return null;
+		}
+
+		// Give each colour an index as it is first seen, treating every transparent pixel as
+		// the same colour, and give up as soon as there are too many colours
+		final HashMap colourIndices = new HashMap();
+		final int[] colours = new int[MAX_COLOURS];
+		int colourCount = 0;
+		final byte[] indices = new byte[width * height];
+		final int[] row = new int[width];
+		int lastColour = 0, lastIndex = -1, transparentCount = 0;
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				int colour = row[x];
+				if((colour >>> 24) == 0) {
+					colour = 0;
+					transparentCount++;
+				}
+				if((colour != lastColour) || (lastIndex < 0)) {
+					final Integer index = (Integer)colourIndices.get(Integer.valueOf(colour));
+					if(index != null) {
+						lastIndex = index.intValue();
+					} else if(colourCount == MAX_COLOURS) {
+						return null;
+					} else {
+						colours[colourCount] = colour;
+						colourIndices.put(Integer.valueOf(colour), Integer.valueOf(colourCount));
+						lastIndex = colourCount++;
+					}
+					lastColour = colour;
+				}
+				indices[y * width + x] = (byte)lastIndex;
+			}
+		}
+
+		// Build the palette, and the same colours premultiplied for the blitter
+		final IndexColorModel model = new IndexColorModel(8, colourCount, colours, 0, true, -1, DataBuffer.TYPE_BYTE);
+		final int[] premultipliedPalette = new int[colourCount];
+		for(int i = 0; i < colourCount; i++) {
+			premultipliedPalette[i] = premultiply(colours[i]);
+		}
+
+		// Setting the pixels, rather than taking the raster's array, lets Java2D still accelerate the image
+		final WritableRaster raster = model.createCompatibleWritableRaster(width, height);
+		raster.setDataElements(0, 0, width, height, indices);
+
+		// Keep the spans of visible pixels if enough of the sprite is transparent to make them worthwhile
+		if(transparentCount * SPARSE_DIVISOR < width * height) {
+			return new CompactSprite(model, raster, premultipliedPalette, null, null);
+		}
+		final int[] rowRuns = new int[height + 1];
+		short[] runs = new short[height * 2];
+		int runLength = 0;
+		for(int y = 0; y < height; y++) {
+			rowRuns[y] = runLength;
+			final int rowStart = y * width;
+			int x = 0;
+			while(x < width) {
+				// Skip the transparent run, then find the end of the visible run after it
+				while((x < width) && (premultipliedPalette[indices[rowStart + x] & 0xFF] == 0)) {
+					x++;
+				}
+				if(x == width) {
+					break;
+				}
+				final int start = x;
+				while((x < width) && (premultipliedPalette[indices[rowStart + x] & 0xFF] != 0)) {
+					x++;
+				}
+				if(runLength + 2 > runs.length) {
+					final short[] grown = new short[runs.length * 2];
+					System.arraycopy(runs, 0, grown, 0, runLength);
+					runs = grown;
+				}
+				runs[runLength++] = (short)start;
+				runs[runLength++] = (short)x;
+			}
+		}
+		rowRuns[height] = runLength;
+		final short[] trimmed = new short[runLength];
+		System.arraycopy(runs, 0, trimmed, 0, runLength);
+		return new CompactSprite(model, raster, premultipliedPalette, rowRuns, trimmed);
+	}
+
+	/**
+	 * Returns a new sprite mirroring this one left to right, sharing its palette, as
+	 * ImageTransform.getMirrorImage would but without leaving the palette
+	 * @return	the mirrored sprite
+	 */
+	public CompactSprite getMirrorImage() {
+		final int width = getWidth();
+		final int height = getHeight();
+
+		// Reverse each row of indices, copying them out so this sprite can still be accelerated
+		final byte[] indices = (byte[])getRaster().getDataElements(0, 0, width, height, null);
+		final byte[] mirrored = new byte[indices.length];
+		for(int y = 0; y < height; y++) {
+			final int rowStart = y * width;
+			for(int x = 0; x < width; x++) {
+				mirrored[rowStart + width - 1 - x] = indices[rowStart + x];
+			}
+		}
+		final IndexColorModel model = (IndexColorModel)getColorModel();
+		final WritableRaster raster = model.createCompatibleWritableRaster(width, height);
+		raster.setDataElements(0, 0, width, height, mirrored);
+		if(rowRuns == null) {
+			return new CompactSprite(model, raster, premultipliedPalette, null, null);
+		}
+
+		// Reverse each row's spans, so they still run from left to right
+		final short[] mirroredRuns = new short[runs.length];
+		for(int y = 0; y < height; y++) {
+			final int first = rowRuns[y];
+			final int last = rowRuns[y + 1] - 2;
+			for(int run = first; run <= last; run += 2) {
+				final int mirroredRun = first + last - run;
+				mirroredRuns[mirroredRun] = (short)(width - runs[run + 1]);
+				mirroredRuns[mirroredRun + 1] = (short)(width - runs[run]);
+			}
+		}
+		return new CompactSprite(model, raster, premultipliedPalette, rowRuns, mirroredRuns);
+	}
+
+	/**
+	 * Returns the number of colours in the sprite's palette
+	 * @return	the number of colours
+	 */
+	public int getColourCount() {
+		return premultipliedPalette.length;
+	}
+
+	/**
+	 * Returns whether the sprite keeps the spans of visible pixels along its rows
+	 * @return	true if the runs are kept
+	 */
+	public boolean hasRuns() {
+		return rowRuns != null;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the sprite's pixels, palettes and runs
+	 * @return	the size of the sprite in bytes
+	 */
+	public long getBytes() {
+		long bytes = (long)getWidth() * getHeight() + premultipliedPalette.length * 8L;
+		if(rowRuns != null) {
+			bytes += rowRuns.length * 4L + runs.length * 2L;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the palette index of every pixel, a row after another. Taking the array stops
+	 * Java2D accelerating the image, so only the SoftwareBlitter, which paints frames in memory, uses it.
+	 * @return	the palette indices
+	 */
+	byte[] getIndices() {
+		return ((DataBufferByte)getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Returns the palette's colours with their alpha multiplied in
+	 * @return	the premultiplied palette
+	 */
+	int[] getPremultipliedPalette() {
+		return premultipliedPalette;
+	}
+
+	/**
+	 * Returns the index in the runs of the first span of each row, followed by the length of the runs
+	 * @return	the row starts, or null if the runs are not kept
+	 */
+	int[] getRowRuns() {
+		return rowRuns;
+	}
+
+	/**
+	 * Returns the spans of visible pixels along each row, as pairs of the first column in
+	 * the span and the column after it
+	 * @return	the runs, or null if they are not kept
+	 */
+	short[] getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Multiplies the colours of an ARGB pixel by its alpha, rounding as Java2D does
+	 * @param	pixel	the ARGB pixel
+	 * @return	the premultiplied pixel
+	 */
+	private static int premultiply(final int pixel) {
+		final int alpha = pixel >>> 24;
+		if(alpha == 0xFF) {
+			return pixel;
+		} else if(alpha == 0) {
+			return 0;
+		}
+		final int red = (((pixel >> 16) & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		final int green = (((pixel >> 8) & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		final int blue = ((pixel & 0xFF) * alpha * 0x10101 + 0x800000) >>> 24;
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+}
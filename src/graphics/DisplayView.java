@@ -13,12 +13,12 @@ import java.awt.image.ImageObserver;
  **/
 public interface DisplayView extends ImageObserver {
 	/**
-	 * The width of the DisplayView
+	 * The width of the DisplayView in game coordinates, which the window may be scaled from
 	 */
 	int WIDTH = 1024;
 	
 	/**
-	 * The height of the DisplayView
+	 * The height of the DisplayView in game coordinates, which the window may be scaled from
 	 */
 	int HEIGHT = 768;
 	
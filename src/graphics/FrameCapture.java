@@ -0,0 +1,257 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * The FrameCapture class records the frames painted by the game as a numbered sequence of
+ * PNG files, so a session can be captured for a bug report without a screen recorder. Frames
+ * are painted into one of a small pool of images, and an encoder thread writes each filled
+ * image to disk and hands it back to the pool. The renderer never waits: if every image in
+ * the pool is still waiting to be written, the frame is simply not captured and is counted
+ * as dropped, so a slow disk costs frames rather than frame rate.
+ * <p>Frames are numbered in the order they are written, so a sequence with dropped frames
+ * still has no gaps and plays back slightly fast rather than stuttering.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class FrameCapture extends Thread {
+	/**
+	 * The default number of images in the pool
+	 */
+	public static final int DEFAULT_POOL_SIZE = 8;
+
+	/**
+	 * The PNG compression quality used, where 1.0 is no compression and 0.0 is the smallest
+	 * file. Light compression takes about half as long per frame as the default, for
+	 * files less than half as large again.
+	 */
+	private static final float COMPRESSION_QUALITY = 0.875f;
+
+	/**
+	 * The image queued to tell the encoder thread to finish
+	 */
+	private static final BufferedImage END_OF_CAPTURE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+	/**
+	 * The folder the frames are written to
+	 */
+	private transient final File captureFolder;
+
+	/**
+	 * The images free to be painted and the images waiting to be written
+	 */
+	private transient final ArrayBlockingQueue freeFrames, filledFrames;
+
+	/**
+	 * Whether the capture has been closed
+	 */
+	private transient volatile boolean isClosed;
+
+	/**
+	 * The number of frames written, dropped because the pool was empty, and failed to write
+	 */
+	private transient final AtomicLong capturedCount, droppedCount, failedCount;
+
+	/**
+	 * Constructor for the class FrameCapture. The encoder thread is started straight away.
+	 * @param	folder	the folder to write the frames to, which is created if needed
+	 * @param	width	the width of each frame
+	 * @param	height	the height of each frame
+	 * @param	poolSize	the number of frames that can be waiting to be written at once
+	 */
+	public FrameCapture(File folder, int width, int height, int poolSize) {
+		super("Frame capture");
+		if(poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be greater than zero");
+		}
+		captureFolder = folder;
+		captureFolder.mkdirs();
+		freeFrames = new ArrayBlockingQueue(poolSize);
+		filledFrames = new ArrayBlockingQueue(poolSize + 1);
+		for(int i = 0; i < poolSize; i++) {
+			freeFrames.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+		}
+		capturedCount = new AtomicLong();
+		droppedCount = new AtomicLong();
+		failedCount = new AtomicLong();
+		setDaemon(true);
+		setPriority(Thread.MIN_PRIORITY);
+		start();
+	}
+
+	/**
+	 * Returns a free image to paint the next frame into, or null if the frame cannot be
+	 * captured because every image is waiting to be written or the capture is closed.
+	 * Every image returned must be passed to submitFrame.
+	 * @return	the image to paint into, or null if the frame is dropped
+	 */
+	public BufferedImage acquireFrame() {
+		if(isClosed) {
+			return null;
+		}
+		final BufferedImage frame = (BufferedImage)freeFrames.poll();
+		if(frame == null) {
+			droppedCount.incrementAndGet();
+		}
+		return frame;
+	}
+
+	/**
+	 * Queues an image returned by acquireFrame to be written once it has been painted
+	 * @param	frame	the painted image
+	 */
+	public void submitFrame(final BufferedImage frame) {
+		// There is always room, as the queue holds every image in the pool
+		if(isClosed) {
+			freeFrames.offer(frame);
+		} else {
+			filledFrames.offer(frame);
+		}
+	}
+
+	/**
+	 * Stops capturing. Any frames already queued are still written before the encoder thread finishes.
+	 */
+	public void close() {
+		if(!isClosed) {
+			isClosed = true;
+			filledFrames.offer(END_OF_CAPTURE);
+		}
+	}
+
+	/**
+	 * Writes each frame queued until the capture is closed
+	 */
+	public void run() {
+		// Set up a PNG writer to reuse for every frame
+		final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+		final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+		if(writeParam.canWriteCompressed()) {
+			writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			writeParam.setCompressionQuality(COMPRESSION_QUALITY);
+		}
+		
+		BufferedImage frame = null;
+		while(true) {
+			try {
+				frame = (BufferedImage)filledFrames.take();
+			} catch(InterruptedException ex) {
+				return;
+			}
+			if(frame == END_OF_CAPTURE) {
+				writer.dispose();
+				return;
+			}
+
+			// Write the frame and hand the image back to the pool
+			final File frameFile = new File(captureFolder, "frame" + padNumber(capturedCount.get()) + ".png");
+			try {
+				frameFile.delete();
+				final ImageOutputStream output = ImageIO.createImageOutputStream(frameFile);
+				if(output == null) {
+					// No stream can be made for the folder, so no later frame can be written either
+					System.out.println("Cannot create " + frameFile + ", stopping capture");
+					failedCount.incrementAndGet();
+					freeFrames.offer(frame);
+					endCapture(writer);
+					return;
+				}
+				try {
+					writer.setOutput(output);
+					writer.write(null, new IIOImage(frame, null, null), writeParam);
+				} finally {
+					output.close();
+				}
+				capturedCount.incrementAndGet();
+			} catch(IOException ex) {
+				if(failedCount.getAndIncrement() == 0) {
+					System.out.println("Cannot write frame " + frameFile + ": " + ex.getMessage());
+				}
+			}
+			freeFrames.offer(frame);
+		}
+	}
+
+	/**
+	 * Closes the capture after the encoder thread has failed, handing back every frame
+	 * still waiting to be written
+	 * @param	writer	the PNG writer to let go of
+	 */
+	private void endCapture(final ImageWriter writer) {
+		isClosed = true;
+		Object frame;
+		while((frame = filledFrames.poll()) != null) {
+			if(frame != END_OF_CAPTURE) {
+				freeFrames.offer(frame);
+			}
+		}
+		writer.dispose();
+	}
+
+	/**
+	 * Returns the folder the frames are written to
+	 * @return	the capture folder
+	 */
+	public File getCaptureFolder() {
+		return captureFolder;
+	}
+
+	/**
+	 * Returns whether the capture has been closed
+	 * @return	true if no more frames are being captured
+	 */
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Returns the number of frames written
+	 * @return	the number of frames captured
+	 */
+	public long getCapturedCount() {
+		return capturedCount.get();
+	}
+
+	/**
+	 * Returns the number of frames not captured because every image was waiting to be written
+	 * @return	the number of frames dropped
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of frames that could not be written
+	 * @return	the number of frames failed
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Returns the number of frames waiting to be written
+	 * @return	the queue depth
+	 */
+	public int getQueueDepth() {
+		return filledFrames.size();
+	}
+
+	/**
+	 * Returns a frame number padded with leading zeros to six digits
+	 * @param	number	the frame number
+	 * @return	the padded frame number
+	 */
+	private static String padNumber(final long number) {
+		final String digits = Long.toString(number);
+		return "000000".substring(Math.min(digits.length(), 6)) + digits;
+	}
+}
@@ -0,0 +1,171 @@
+package graphics;
+
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * The FrameTiles class splits an image in memory into horizontal tiles of a fixed height
+ * and keeps a Graphics context for each tile, and a SoftwareBlitter for each tile once
+ * asked for, so that a frame painted in tiles every tick does not create a new context
+ * or blitter for every tile of every frame. Each tile's context and blitter are only ever
+ * used by the thread painting that tile, so the tiles can be painted at the same time.
+ * <p>A tile's Graphics context is put back as it was created, clipped to the tile, each
+ * time it is handed out. Blitters are only made when asked for, because a blitter takes the
+ * array behind the image, which stops Java2D accelerating it for good.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	TileRenderTask
+ */
+public class FrameTiles {
+	/**
+	 * The image the tiles cover
+	 */
+	private transient final BufferedImage frameImage;
+
+	/**
+	 * The number of rows in each tile but the last, and the number of tiles
+	 */
+	private transient final int tileHeight, tileCount;
+
+	/**
+	 * The Graphics context painting each tile
+	 */
+	private transient final Graphics2D[] tileGraphics;
+
+	/**
+	 * The blitter painting each tile, clipped to the tile, or null until asked for
+	 */
+	private transient SoftwareBlitter[] tileBlitters;
+
+	/**
+	 * The state of the tiles' Graphics contexts as they were created, restored before each tile is painted
+	 */
+	private transient final AffineTransform defaultTransform;
+	private transient final Paint defaultPaint;
+	private transient final Font defaultFont;
+	private transient final Composite defaultComposite;
+	private transient final Stroke defaultStroke;
+
+	/**
+	 * Constructor for the class FrameTiles
+	 * @param	image	the image to split into tiles
+	 * @param	height	the largest number of rows in a tile
+	 */
+	public FrameTiles(BufferedImage image, int height) {
+		if(height <= 0) {
+			throw new IllegalArgumentException("height must be greater than zero");
+		}
+		frameImage = image;
+		tileHeight = height;
+		tileCount = (image.getHeight() + height - 1) / height;
+
+		// Create every tile's context now, on the thread setting up the tiles
+		tileGraphics = new Graphics2D[tileCount];
+		for(int i = 0; i < tileCount; i++) {
+			tileGraphics[i] = image.createGraphics();
+		}
+		defaultTransform = tileGraphics[0].getTransform();
+		defaultPaint = tileGraphics[0].getPaint();
+		defaultFont = tileGraphics[0].getFont();
+		defaultComposite = tileGraphics[0].getComposite();
+		defaultStroke = tileGraphics[0].getStroke();
+	}
+
+	/**
+	 * Makes a blitter for each tile, clipped to the tile, unless they have already been made.
+	 * This must be called before the tiles are painted, not while they are being painted.
+	 * @return	true if the tiles have blitters, false if the image cannot be blitted into
+	 */
+	public boolean createBlitters() {
+		if(tileBlitters != null) {
+			return true;
+		}
+		if(!SoftwareBlitter.isTargetSupported(frameImage)) {
+			return false;
+		}
+		final SoftwareBlitter[] blitters = new SoftwareBlitter[tileCount];
+		for(int i = 0; i < tileCount; i++) {
+			blitters[i] = new SoftwareBlitter(frameImage);
+			blitters[i].setClip(0, getTop(i), frameImage.getWidth(), getBottom(i) - getTop(i));
+		}
+		tileBlitters = blitters;
+		return true;
+	}
+
+	/**
+	 * Returns a tile's Graphics context, put back as it was created and clipped to the tile.
+	 * Only the thread painting the tile may use it.
+	 * @param	tile	the number of the tile
+	 * @return	the tile's Graphics context
+	 */
+	public Graphics2D getGraphics(final int tile) {
+		final Graphics2D gfx = tileGraphics[tile];
+		gfx.setTransform(defaultTransform);
+		gfx.setPaint(defaultPaint);
+		gfx.setFont(defaultFont);
+		gfx.setComposite(defaultComposite);
+		gfx.setStroke(defaultStroke);
+		gfx.setClip(0, getTop(tile), frameImage.getWidth(), getBottom(tile) - getTop(tile));
+		return gfx;
+	}
+
+	/**
+	 * Returns a tile's blitter, clipped to the tile
+	 * @param	tile	the number of the tile
+	 * @return	the tile's blitter, or null if createBlitters has not made one
+	 */
+	public SoftwareBlitter getBlitter(final int tile) {
+		return (tileBlitters != null) ? tileBlitters[tile] : null;
+	}
+
+	/**
+	 * Returns the first row of a tile
+	 * @param	tile	the number of the tile
+	 * @return	the first row of the tile
+	 */
+	public int getTop(final int tile) {
+		return tile * tileHeight;
+	}
+
+	/**
+	 * Returns the row below the last row of a tile
+	 * @param	tile	the number of the tile
+	 * @return	the row after the tile
+	 */
+	public int getBottom(final int tile) {
+		return Math.min((tile + 1) * tileHeight, frameImage.getHeight());
+	}
+
+	/**
+	 * Disposes of every tile's Graphics context. The tiles cannot be painted afterwards.
+	 */
+	public void dispose() {
+		for(int i = 0; i < tileCount; i++) {
+			tileGraphics[i].dispose();
+		}
+		tileBlitters = null;
+	}
+
+	/**
+	 * Returns the image the tiles cover
+	 * @return	the image
+	 */
+	public BufferedImage getImage() { return frameImage; }
+
+	/**
+	 * Returns the largest number of rows in a tile
+	 * @return	the tile height
+	 */
+	public int getTileHeight() { return tileHeight; }
+
+	/**
+	 * Returns the number of tiles
+	 * @return	the number of tiles
+	 */
+	public int getTileCount() { return tileCount; }
+}
@@ -0,0 +1,138 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The HitMask class records which pixels of an image can be hit, as one bit per pixel packed
+ * into an array of longs. A pixel can be hit if its alpha is at least ALPHA_THRESHOLD, so the
+ * transparent corners around a Sprite's frame do not count. Masks are built once when the
+ * image is loaded, so checking a point at click time is a single array lookup instead of
+ * reading the pixel back out of the image.
+ * <p>Each row of the mask starts on a new long, so a row of up to 64 pixels takes one long.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	SpriteCache#getHitMask(String)
+ */
+public class HitMask {
+	/**
+	 * The lowest alpha a pixel can have and still be hit. This matches the point at which
+	 * a pixel is kept when an image is drawn into a BITMASK image, such as a mirrored frame.
+	 */
+	public static final int ALPHA_THRESHOLD = 128;
+
+	/**
+	 * The width and height of the mask in pixels
+	 */
+	private transient final int maskWidth, maskHeight;
+
+	/**
+	 * The number of longs used for each row
+	 */
+	private transient final int wordsPerRow;
+
+	/**
+	 * The bits of the mask, row by row, with the leftmost pixel of each row in the lowest bit
+	 */
+	private transient final long[] maskBits;
+
+	/**
+	 * Constructor for the class HitMask. The mask starts with no pixels set.
+	 * @param	width	the width of the mask in pixels
+	 * @param	height	the height of the mask in pixels
+	 */
+	private HitMask(int width, int height) {
+		maskWidth = width;
+		maskHeight = height;
+		wordsPerRow = (width + 63) >>> 6;
+		maskBits = new long[wordsPerRow * height];
+	}
+
+	/**
+	 * Builds the HitMask of the specified image
+	 * @param	image	the image to build the mask from
+	 * @return	the mask of the image's solid pixels
+	 */
+	public static HitMask createMask(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final HitMask mask = new HitMask(width, height);
+
+		// Read the image a row at a time and set the bit of every solid pixel
+		final int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			final int rowStart = y * mask.wordsPerRow;
+			for(int x = 0; x < width; x++) {
+				if((row[x] >>> 24) >= ALPHA_THRESHOLD) {
+					mask.maskBits[rowStart + (x >>> 6)] |= 1L << (x & 63);
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns a mask mirrored left to right, matching an image mirrored by
+	 * ImageTransform.getMirrorImage
+	 * @return	the mirrored mask
+	 */
+	public HitMask getMirrorMask() {
+		final HitMask mirror = new HitMask(maskWidth, maskHeight);
+		for(int y = 0; y < maskHeight; y++) {
+			final int rowStart = y * wordsPerRow;
+			for(int x = 0; x < maskWidth; x++) {
+				if(((maskBits[rowStart + (x >>> 6)] >>> (x & 63)) & 1) != 0) {
+					final int mirrorX = maskWidth - 1 - x;
+					mirror.maskBits[rowStart + (mirrorX >>> 6)] |= 1L << (mirrorX & 63);
+				}
+			}
+		}
+		return mirror;
+	}
+
+	/**
+	 * Returns whether the pixel at the specified position can be hit. Positions
+	 * outside the mask can never be hit.
+	 * @param	xPos	the x position within the mask
+	 * @param	yPos	the y position within the mask
+	 * @return	true if the pixel is solid
+	 */
+	public boolean contains(final int xPos, final int yPos) {
+		if((xPos < 0) || (yPos < 0) || (xPos >= maskWidth) || (yPos >= maskHeight)) {
+			return false;
+		}
+		return ((maskBits[yPos * wordsPerRow + (xPos >>> 6)] >>> (xPos & 63)) & 1) != 0;
+	}
+
+	/**
+	 * Returns the width of the mask
+	 * @return	the width in pixels
+	 */
+	public int getWidth() { return maskWidth; }
+
+	/**
+	 * Returns the height of the mask
+	 * @return	the height in pixels
+	 */
+	public int getHeight() { return maskHeight; }
+
+	/**
+	 * Returns the number of solid pixels in the mask
+	 * @return	the number of pixels that can be hit
+	 */
+	public int getSolidCount() {
+		int solid = 0;
+		for(int i = 0; i < maskBits.length; i++) {
+			solid += Long.bitCount(maskBits[i]);
+		}
+		return solid;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the bits of the mask
+	 * @return	the size of the mask in bytes
+	 */
+	public long getBytes() {
+		return (long)maskBits.length * 8;
+	}
+}
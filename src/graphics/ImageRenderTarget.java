@@ -0,0 +1,126 @@
+package graphics;
+
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * The ImageRenderTarget class is a RenderTarget that paints every frame into the same
+ * BufferedImage in memory. It needs no display, so it works with java.awt.headless set,
+ * and showing a frame costs nothing, so frames can be painted as fast as the game can
+ * paint them for profiling. The last frame shown can be read back from the image, for
+ * example to compare against an earlier run.
+ * <p>The image's Graphics context is created once and handed out for every frame, put back
+ * as it was created each time, so painting a frame does not create a new context that has
+ * to be garbage collected.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class ImageRenderTarget implements RenderTarget {
+	/**
+	 * The image every frame is painted into
+	 */
+	private transient final BufferedImage frameImage;
+
+	/**
+	 * The Graphics context every frame is painted with
+	 */
+	private transient final Graphics2D frameGraphics;
+
+	/**
+	 * The state of frameGraphics as it was created, restored before each frame
+	 */
+	private transient final AffineTransform defaultTransform;
+	private transient final Paint defaultPaint;
+	private transient final Font defaultFont;
+	private transient final Composite defaultComposite;
+	private transient final Stroke defaultStroke;
+
+	/**
+	 * The number of frames shown, which may be read by other threads
+	 */
+	private transient volatile long frameCount;
+
+	/**
+	 * Constructor for the class ImageRenderTarget, painting into an INT_RGB image
+	 * @param	width	the width of the frames
+	 * @param	height	the height of the frames
+	 */
+	public ImageRenderTarget(int width, int height) {
+		this(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Constructor for the class ImageRenderTarget
+	 * @param	width	the width of the frames
+	 * @param	height	the height of the frames
+	 * @param	imageType	the BufferedImage type to paint into, such as TYPE_INT_RGB or TYPE_INT_ARGB
+	 */
+	public ImageRenderTarget(int width, int height, int imageType) {
+		frameImage = new BufferedImage(width, height, imageType);
+		frameGraphics = frameImage.createGraphics();
+		defaultTransform = frameGraphics.getTransform();
+		defaultPaint = frameGraphics.getPaint();
+		defaultFont = frameGraphics.getFont();
+		defaultComposite = frameGraphics.getComposite();
+		defaultStroke = frameGraphics.getStroke();
+	}
+
+	/**
+	 * Returns the image's Graphics context, put back as it was created. The same context
+	 * is returned for every frame, so only one frame can be painted at a time.
+	 * @return	the image's Graphics context
+	 */
+	public Graphics2D getDrawGraphics() {
+		frameGraphics.setTransform(defaultTransform);
+		frameGraphics.setClip(null);
+		frameGraphics.setPaint(defaultPaint);
+		frameGraphics.setFont(defaultFont);
+		frameGraphics.setComposite(defaultComposite);
+		frameGraphics.setStroke(defaultStroke);
+		return frameGraphics;
+	}
+
+	/**
+	 * Keeps the image's Graphics context to paint the next frame with
+	 * @param	gfx	the Graphics context the frame was painted into
+	 */
+	public void releaseDrawGraphics(final Graphics2D gfx) {
+		// The context is reused, so there is nothing to dispose of
+	}
+
+	/**
+	 * Counts the frame just painted. The frame stays in the image until the next one is painted.
+	 */
+	public void show() {
+		frameCount++;
+	}
+
+	/**
+	 * Returns the width of the frames
+	 * @return	the width in pixels
+	 */
+	public int getWidth() { return frameImage.getWidth(); }
+
+	/**
+	 * Returns the height of the frames
+	 * @return	the height in pixels
+	 */
+	public int getHeight() { return frameImage.getHeight(); }
+
+	/**
+	 * Returns the image the frames are painted into
+	 * @return	the frame image
+	 */
+	public BufferedImage getImage() { return frameImage; }
+
+	/**
+	 * Returns the number of frames shown
+	 * @return	the number of frames
+	 */
+	public long getFrameCount() { return frameCount; }
+}
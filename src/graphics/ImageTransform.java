@@ -12,13 +12,14 @@ import java.awt.geom.AffineTransform;
  */
 public class ImageTransform {
 	/**
-	 * The current configuration of the system's graphics device
+	 * The current configuration of the system's graphics device, or null if there is no display
 	 */
 	private final transient GraphicsConfiguration graphicsConfig;
 	
 	/**
 	 * Constructor for the class ImageTransform
-	 * @param	gfxConfig	the system's current graphics device configuration
+	 * @param	gfxConfig	the system's current graphics device configuration, or null if
+	 * 			there is no display, in which case plain images are created
 	 */
 	public ImageTransform(GraphicsConfiguration gfxConfig) {
 		this.graphicsConfig = gfxConfig;
@@ -39,11 +40,10 @@ public class ImageTransform {
 				(scaleX-1) * image.getWidth(null) / 2,
 				(scaleY-1) * image.getHeight(null) / 2);
 		
-		// Create a transparent (not translucent) image
-		final Image newImage = graphicsConfig.createCompatibleImage(
-			image.getWidth(null),
-			image.getHeight(null),
-			Transparency.BITMASK);
+		// Create a transparent (not translucent) image, or a plain image with alpha if there is no display
+		final Image newImage = (graphicsConfig != null)
+			? graphicsConfig.createCompatibleImage(image.getWidth(null), image.getHeight(null), Transparency.BITMASK)
+			: new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB_PRE);
 		
 		// Draw the image out to memory to render it
 		final Graphics2D gfx = (Graphics2D)newImage.getGraphics();
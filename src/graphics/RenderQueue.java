@@ -0,0 +1,360 @@
+package graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * The RenderQueue class collects the images to be painted in a frame and paints them
+ * grouped by image, so that Java2D switches between source images as few times as it can.
+ * Images are painted layer by layer, and within a layer an image is only ever moved past
+ * images it does not overlap, so the frame looks exactly the same as if every image had
+ * been painted in the order it was added.
+ * <p>Each image added is given a level: zero if it overlaps nothing added before it in the
+ * same layer, or else one more than the highest level of any earlier image it might overlap.
+ * Images on the same level cannot overlap one another, so the queue paints the levels in
+ * order and the images within each level sorted by image. Overlaps are found on a coarse
+ * grid of 64 pixel cells, which may see an overlap where there is none, but never misses one.
+ * <p>A RenderQueue is meant to be filled, sorted and cleared by one thread, and does not
+ * create any objects once its arrays have grown large enough and it has seen every image.
+ * Once sorted, the queue is only read while painting, so several threads may paint it at
+ * the same time, each into its own band of the frame, until it is cleared.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class RenderQueue {
+	/**
+	 * The size of the cells of the grid used to find overlaps, in pixels, as a power of two
+	 */
+	private static final int CELL_SHIFT = 6;
+
+	/**
+	 * The default number of images the queue can hold before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The number of bits of the sort key given to the layer, the level, the image and the
+	 * order the images were added in, which together fill a long
+	 */
+	private static final int LAYER_BITS = 3, LEVEL_BITS = 22, IMAGE_BITS = 17, INDEX_BITS = 22;
+
+	/**
+	 * The largest number of different images the queue numbers before starting again
+	 */
+	private static final int MAX_IMAGE_IDS = 1 << IMAGE_BITS;
+
+	/**
+	 * The images queued
+	 */
+	private transient Image[] images;
+
+	/**
+	 * The position of each image queued, and the row below the bottom of each image
+	 */
+	private transient int[] imageX, imageY, imageBottom;
+
+	/**
+	 * The sort key of each image queued
+	 */
+	private transient long[] sortKeys;
+
+	/**
+	 * The number of images queued
+	 */
+	private transient int imageCount;
+
+	/**
+	 * The number given to each image seen, by image. Images are held weakly, so an image
+	 * no Sprite uses any more, such as the frames of a dead Duck, is forgotten rather than
+	 * kept alive by the queue. Images do not override equals, so each image is its own key.
+	 */
+	private transient final WeakHashMap imageIds;
+
+	/**
+	 * The number to give the next image seen
+	 */
+	private transient int nextImageId;
+
+	/**
+	 * One more than the highest level painted in each cell of the grid so far in the
+	 * current layer, or zero if nothing has been painted there
+	 */
+	private transient final int[] cellLevels;
+
+	/**
+	 * The number of columns and rows in the grid
+	 */
+	private transient final int gridColumns, gridRows;
+
+	/**
+	 * The layer of the image last added, whose levels the grid holds
+	 */
+	private transient int currentLayer;
+
+	/**
+	 * The total number of times the source image has changed while painting, and the number
+	 * of times it would have changed had the images been painted in order, which may be read
+	 * by other threads for reporting
+	 */
+	private transient volatile long switchCount, unsortedSwitchCount;
+
+	/**
+	 * Constructor for the class RenderQueue
+	 * @param	width	the width of the area painted
+	 * @param	height	the height of the area painted
+	 */
+	public RenderQueue(int width, int height) {
+		images = new Image[DEFAULT_CAPACITY];
+		imageX = new int[DEFAULT_CAPACITY];
+		imageY = new int[DEFAULT_CAPACITY];
+		imageBottom = new int[DEFAULT_CAPACITY];
+		sortKeys = new long[DEFAULT_CAPACITY];
+		imageIds = new WeakHashMap();
+		gridColumns = (width >> CELL_SHIFT) + 1;
+		gridRows = (height >> CELL_SHIFT) + 1;
+		cellLevels = new int[gridColumns * gridRows];
+	}
+
+	/**
+	 * Adds an image to be painted. Layers must be added in order, lowest first, and
+	 * images within a layer in the order they would be painted.
+	 * @param	image	the image to paint
+	 * @param	xPos	the x position of the image
+	 * @param	yPos	the y position of the image
+	 * @param	layer	the layer of the image, from 0 to 7
+	 */
+	public void add(final Image image, final int xPos, final int yPos, final int layer) {
+		if(imageCount == images.length) {
+			grow();
+		}
+		if(imageCount == 1 << INDEX_BITS) {
+			throw new IllegalStateException("Too many images queued");
+		}
+
+		// Start the grid again for each new layer, as layers are never reordered
+		if(layer != currentLayer) {
+			Arrays.fill(cellLevels, 0);
+			currentLayer = layer;
+		}
+
+		// Find the cells the image covers, clamped to the grid, as images
+		// painted off the edge cannot overlap anything there
+		final int left = clamp(xPos >> CELL_SHIFT, gridColumns);
+		final int right = clamp((xPos + image.getWidth(null) - 1) >> CELL_SHIFT, gridColumns);
+		final int top = clamp(yPos >> CELL_SHIFT, gridRows);
+		final int imageHeight = image.getHeight(null);
+		final int bottom = clamp((yPos + imageHeight - 1) >> CELL_SHIFT, gridRows);
+
+		// The image must be painted after everything already painted in its cells. No image
+		// can be on a higher level than its index, so the level always fits in its bits.
+		int level = 0;
+		for(int row = top; row <= bottom; row++) {
+			for(int column = left; column <= right; column++) {
+				level = Math.max(level, cellLevels[row * gridColumns + column]);
+			}
+		}
+		for(int row = top; row <= bottom; row++) {
+			for(int column = left; column <= right; column++) {
+				cellLevels[row * gridColumns + column] = level + 1;
+			}
+		}
+
+		images[imageCount] = image;
+		imageX[imageCount] = xPos;
+		imageY[imageCount] = yPos;
+		imageBottom[imageCount] = yPos + imageHeight;
+		sortKeys[imageCount] = ((long)layer << (LEVEL_BITS + IMAGE_BITS + INDEX_BITS))
+				| ((long)level << (IMAGE_BITS + INDEX_BITS))
+				| ((long)getImageId(image) << INDEX_BITS) | imageCount;
+		imageCount++;
+	}
+
+	/**
+	 * Paints every image queued, grouped by image wherever that does not change the
+	 * result, and empties the queue
+	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 */
+	public void flush(final Graphics2D gfx, final ImageObserver observer) {
+		sort();
+		paint(gfx, observer);
+		clear();
+	}
+
+	/**
+	 * Sorts the images queued into the order they are painted in. This must be called
+	 * once every image has been added, and before the queue is painted.
+	 */
+	public void sort() {
+		// Count the changes of image the queue saves
+		int unsortedSwitches = 0;
+		for(int i = 1; i < imageCount; i++) {
+			if(images[i] != images[i - 1]) {
+				unsortedSwitches++;
+			}
+		}
+
+		Arrays.sort(sortKeys, 0, imageCount);
+		int switches = 0;
+		final int indexMask = (1 << INDEX_BITS) - 1;
+		for(int i = 1; i < imageCount; i++) {
+			if(images[(int)(sortKeys[i] & indexMask)] != images[(int)(sortKeys[i - 1] & indexMask)]) {
+				switches++;
+			}
+		}
+		switchCount += switches;
+		unsortedSwitchCount += unsortedSwitches;
+	}
+
+	/**
+	 * Paints every image in the sorted queue, leaving the queue as it is
+	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 */
+	public void paint(final Graphics2D gfx, final ImageObserver observer) {
+		paint(gfx, observer, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Paints the images in the sorted queue that cross a horizontal band of the frame,
+	 * leaving the queue as it is. Images entirely above or below the band are skipped, so
+	 * the Graphics context should be clipped to the band, and painting every band of a
+	 * frame gives exactly the same result as painting the whole queue at once.
+	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 * @param	top	the first row of the band
+	 * @param	bottom	the row below the last row of the band
+	 */
+	public void paint(final Graphics2D gfx, final ImageObserver observer, final int top, final int bottom) {
+		paint(gfx, observer, null, top, bottom);
+	}
+
+	/**
+	 * Paints the images in the sorted queue that cross a horizontal band of the frame,
+	 * leaving the queue as it is. Images the SoftwareBlitter supports are painted by it,
+	 * and any others through the Graphics context, so the blitter must paint into the
+	 * same image as the Graphics context, clipped to the same band.
+	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 * @param	blitter	the blitter painting into the frame, or null to paint everything through gfx
+	 * @param	top	the first row of the band
+	 * @param	bottom	the row below the last row of the band
+	 */
+	public void paint(final Graphics2D gfx, final ImageObserver observer, final SoftwareBlitter blitter,
+			final int top, final int bottom) {
+		final int indexMask = (1 << INDEX_BITS) - 1;
+		for(int i = 0; i < imageCount; i++) {
+			final int index = (int)(sortKeys[i] & indexMask);
+			if((imageY[index] < bottom) && (imageBottom[index] > top)) {
+				final Image image = images[index];
+				if((blitter != null) && (image instanceof BufferedImage) && SoftwareBlitter.isSupported((BufferedImage)image)) {
+					blitter.blit((BufferedImage)image, imageX[index], imageY[index]);
+				} else {
+					gfx.drawImage(image, imageX[index], imageY[index], observer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Paints every image in the sorted queue scaled to the display, using the images'
+	 * scaled copies from the SpriteCache where they are ready, and leaves the queue as it is
+	 * @param	gfx	the Graphics context onto which to paint, in screen pixels
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 * @param	spriteCache	the cache holding the images' scaled copies
+	 */
+	public void paintScaled(final Graphics2D gfx, final ImageObserver observer, final SpriteCache spriteCache) {
+		final int indexMask = (1 << INDEX_BITS) - 1;
+		for(int i = 0; i < imageCount; i++) {
+			final int index = (int)(sortKeys[i] & indexMask);
+			spriteCache.paintScaled(gfx, images[index], imageX[index], imageY[index], observer);
+		}
+	}
+
+	/**
+	 * Empties the queue without painting anything
+	 */
+	public void clear() {
+		// Drop the image references so that nothing is kept alive by the queue
+		for(int i = 0; i < imageCount; i++) {
+			images[i] = null;
+		}
+		imageCount = 0;
+		currentLayer = 0;
+		Arrays.fill(cellLevels, 0);
+	}
+
+	/**
+	 * Returns the number of images queued
+	 * @return	the number of images
+	 */
+	public int getImageCount() { return imageCount; }
+
+	/**
+	 * Returns the total number of times the source image has changed while painting
+	 * @return	the number of image switches
+	 */
+	public long getSwitchCount() { return switchCount; }
+
+	/**
+	 * Returns the total number of times the source image would have changed had the
+	 * images been painted in the order they were added
+	 * @return	the number of image switches without grouping
+	 */
+	public long getUnsortedSwitchCount() { return unsortedSwitchCount; }
+
+	/**
+	 * Returns the number given to the specified image, numbering it if it has not been seen before
+	 * @param	image	the image
+	 * @return	the image's number
+	 */
+	private int getImageId(final Image image) {
+		Integer id = (Integer)imageIds.get(image);
+		if(id == null) {
+			// Start numbering again once the numbers run out, as images forgotten leave gaps
+			if(nextImageId == MAX_IMAGE_IDS) {
+				imageIds.clear();
+				nextImageId = 0;
+			}
+			id = Integer.valueOf(nextImageId++);
+			imageIds.put(image, id);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Clamps a cell position to the grid
+	 * @param	cell	the cell position
+	 * @param	count	the number of cells across the grid
+	 * @return	the position within the grid
+	 */
+	private static int clamp(final int cell, final int count) {
+		return Math.max(0, Math.min(cell, count - 1));
+	}
+
+	/**
+	 * Doubles the number of images the queue can hold
+	 */
+	private void grow() {
+		final int capacity = images.length * 2;
+		final Image[] newImages = new Image[capacity];
+		System.arraycopy(images, 0, newImages, 0, imageCount);
+		images = newImages;
+		final int[] xs = new int[capacity];
+		System.arraycopy(imageX, 0, xs, 0, imageCount);
+		imageX = xs;
+		final int[] ys = new int[capacity];
+		System.arraycopy(imageY, 0, ys, 0, imageCount);
+		imageY = ys;
+		final int[] bottoms = new int[capacity];
+		System.arraycopy(imageBottom, 0, bottoms, 0, imageCount);
+		imageBottom = bottoms;
+		final long[] keys = new long[capacity];
+		System.arraycopy(sortKeys, 0, keys, 0, imageCount);
+		sortKeys = keys;
+	}
+}
@@ -0,0 +1,47 @@
+package graphics;
+
+import java.awt.Graphics2D;
+
+/**
+ * The RenderTarget interface is what the game paints its frames onto. Each frame is
+ * painted into the Graphics context returned by getDrawGraphics, which the caller
+ * hands back to releaseDrawGraphics rather than disposing of, and then shown by calling show. Painting does not need to know whether
+ * the frame ends up in a window or in an image in memory, so the game can be painted
+ * and measured on a machine with no display.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	BufferStrategyTarget
+ * @see	ImageRenderTarget
+ */
+public interface RenderTarget {
+	/**
+	 * Returns a Graphics context for painting the next frame, which must be passed to
+	 * releaseDrawGraphics once the frame has been painted
+	 * @return	the Graphics context to paint into
+	 */
+	Graphics2D getDrawGraphics();
+
+	/**
+	 * Releases a Graphics context returned by getDrawGraphics. A RenderTarget may keep the
+	 * context to return again for the next frame, so it must not be used after this.
+	 * @param	gfx	the Graphics context the frame was painted into
+	 */
+	void releaseDrawGraphics(Graphics2D gfx);
+
+	/**
+	 * Shows the frame that has just been painted
+	 */
+	void show();
+
+	/**
+	 * Returns the width of the frames painted
+	 * @return	the width in pixels
+	 */
+	int getWidth();
+
+	/**
+	 * Returns the height of the frames painted
+	 * @return	the height in pixels
+	 */
+	int getHeight();
+}
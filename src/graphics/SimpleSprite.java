@@ -1,6 +1,7 @@
 package graphics;
 
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.image.*;
 
 /**
@@ -46,6 +47,18 @@ public class SimpleSprite extends Sprite {
 		gfx.drawImage(currentImage, xPosition, yPosition, displayView);
 	}
 	
+	/**
+	 * Returns the image this SimpleSprite paints
+	 * @return	the SimpleSprite's image
+	 */
+	public Image getImage() { return simpleImage; }
+	
+	/**
+	 * Returns null, as the whole of a SimpleSprite's image can be hit
+	 * @return	null
+	 */
+	public HitMask getHitMask() { return null; }
+	
 	/**
 	 * Gets the width of the Sprite's current frame
 	 * @return	the width size of the Sprite's current frame
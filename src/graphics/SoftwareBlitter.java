@@ -0,0 +1,404 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * The SoftwareBlitter class paints images straight into the int array behind a
+ * BufferedImage, without going through Java2D. It copies opaque images and blends
+ * translucent ones using source-over, clips every image to a clip rectangle, and can
+ * mirror an image left to right as it paints it, so no mirrored copy is needed.
+ * <p>The target must be a TYPE_INT_RGB or TYPE_INT_ARGB_PRE image, and the images painted
+ * must be TYPE_INT_RGB, TYPE_INT_ARGB or TYPE_INT_ARGB_PRE images, which covers every image
+ * the SpriteCache creates when there is no display, or CompactSprites, whose transparent runs
+ * are skipped without being read. Blending uses the same rounding as
+ * Java2D's own loops, so the result is exactly what Graphics2D.drawImage would paint.
+ * <p>Images painted by the blitter can no longer be accelerated by Java2D, for good, so it
+ * is only meant for games with no display at all, painting every frame into memory. A game
+ * with a display must never blit its sprites, even into a frame captured in memory.
+ * A SoftwareBlitter keeps its own clip, so one blitter should be used by each thread.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class SoftwareBlitter {
+	/**
+	 * The image painted into
+	 */
+	private transient final BufferedImage targetImage;
+
+	/**
+	 * The pixels of the target image
+	 */
+	private transient final int[] targetPixels;
+
+	/**
+	 * The index of the target's top-left pixel in its array, the number of ints between
+	 * rows, and the size of the target
+	 */
+	private transient final int targetOffset, targetStride, targetWidth, targetHeight;
+
+	/**
+	 * Whether the target keeps an alpha channel, which is premultiplied
+	 */
+	private transient final boolean targetHasAlpha;
+
+	/**
+	 * The clip rectangle, as the first column and row inside it and the column and row after it
+	 */
+	private transient int clipLeft, clipTop, clipRight, clipBottom;
+
+	/**
+	 * The total number of images painted and pixels blended, rather than copied or skipped
+	 */
+	private transient long blitCount, blendCount;
+
+	/**
+	 * Constructor for the class SoftwareBlitter
+	 * @param	target	the image to paint into, which must be TYPE_INT_RGB or TYPE_INT_ARGB_PRE
+	 */
+	public SoftwareBlitter(BufferedImage target) {
+		if(!isTargetSupported(target)) {
+			throw new IllegalArgumentException("target must be TYPE_INT_RGB or TYPE_INT_ARGB_PRE, not type " + target.getType());
+		}
+		targetImage = target;
+		final Raster raster = target.getRaster();
+		targetPixels = getPixels(raster);
+		targetStride = getStride(raster);
+		targetOffset = getOffset(raster);
+		targetWidth = target.getWidth();
+		targetHeight = target.getHeight();
+		targetHasAlpha = (target.getType() == BufferedImage.TYPE_INT_ARGB_PRE);
+		clearClip();
+	}
+
+	/**
+	 * Returns whether a SoftwareBlitter can paint into the specified image
+	 * @param	image	the image
+	 * @return	true if the image is TYPE_INT_RGB or TYPE_INT_ARGB_PRE
+	 */
+	public static boolean isTargetSupported(final BufferedImage image) {
+		final int type = image.getType();
+		return (type == BufferedImage.TYPE_INT_RGB) || (type == BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+
+	/**
+	 * Returns whether the specified image can be painted by a SoftwareBlitter
+	 * @param	image	the image
+	 * @return	true if the image is a CompactSprite, or is TYPE_INT_RGB, TYPE_INT_ARGB or TYPE_INT_ARGB_PRE
+	 */
+	public static boolean isSupported(final BufferedImage image) {
+		final int type = image.getType();
+		return (image instanceof CompactSprite) || (type == BufferedImage.TYPE_INT_RGB) || (type == BufferedImage.TYPE_INT_ARGB)
+				|| (type == BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+
+	/**
+	 * Sets the clip rectangle, limited to the target. Nothing is painted outside it.
+	 * @param	x	the left of the clip
+	 * @param	y	the top of the clip
+	 * @param	width	the width of the clip
+	 * @param	height	the height of the clip
+	 */
+	public void setClip(final int x, final int y, final int width, final int height) {
+		clipLeft = Math.max(x, 0);
+		clipTop = Math.max(y, 0);
+		clipRight = Math.max(clipLeft, Math.min(x + width, targetWidth));
+		clipBottom = Math.max(clipTop, Math.min(y + height, targetHeight));
+	}
+
+	/**
+	 * Sets the clip rectangle back to the whole target
+	 */
+	public void clearClip() {
+		setClip(0, 0, targetWidth, targetHeight);
+	}
+
+	/**
+	 * Paints an image into the target with its top-left corner at the specified position
+	 * @param	image	the image to paint
+	 * @param	xPos	the x position of the image
+	 * @param	yPos	the y position of the image
+	 */
+	public void blit(final BufferedImage image, final int xPos, final int yPos) {
+		blit(image, xPos, yPos, false);
+	}
+
+	/**
+	 * Paints an image into the target with its top-left corner at the specified position,
+	 * optionally mirrored left to right
+	 * @param	image	the image to paint, which must be supported
+	 * @param	xPos	the x position of the image
+	 * @param	yPos	the y position of the image
+	 * @param	mirrored	true to paint the image mirrored left to right
+	 */
+	public void blit(final BufferedImage image, final int xPos, final int yPos, final boolean mirrored) {
+		if(!isSupported(image)) {
+			throw new IllegalArgumentException("Cannot blit image type " + image.getType());
+		}
+
+		// Clip the image to the clip rectangle, giving up if nothing is left
+		final int width = image.getWidth();
+		final int left = Math.max(xPos, clipLeft);
+		final int right = Math.min(xPos + width, clipRight);
+		final int top = Math.max(yPos, clipTop);
+		final int bottom = Math.min(yPos + image.getHeight(), clipBottom);
+		if((left >= right) || (top >= bottom)) {
+			return;
+		}
+		blitCount++;
+		if(image instanceof CompactSprite) {
+			blitCompact((CompactSprite)image, xPos, yPos, mirrored, left, right, top, bottom);
+			return;
+		}
+
+		// Work out where the first pixel painted comes from, and which way to step through each source row
+		final Raster raster = image.getRaster();
+		final int[] sourcePixels = getPixels(raster);
+		final int sourceStride = getStride(raster);
+		final int sourceColumn = mirrored ? (xPos + width - 1 - left) : (left - xPos);
+		final int sourceStep = mirrored ? -1 : 1;
+		int sourceIndex = getOffset(raster) + (top - yPos) * sourceStride + sourceColumn;
+		int targetIndex = targetOffset + top * targetStride + left;
+		final int count = right - left;
+
+		switch(image.getType()) {
+			case BufferedImage.TYPE_INT_RGB:
+				for(int row = top; row < bottom; row++) {
+					copyRow(sourcePixels, sourceIndex, sourceStep, targetIndex, count);
+					sourceIndex += sourceStride;
+					targetIndex += targetStride;
+				}
+				break;
+			case BufferedImage.TYPE_INT_ARGB_PRE:
+				for(int row = top; row < bottom; row++) {
+					blendRow(sourcePixels, sourceIndex, sourceStep, targetIndex, count, true);
+					sourceIndex += sourceStride;
+					targetIndex += targetStride;
+				}
+				break;
+			default:
+				for(int row = top; row < bottom; row++) {
+					blendRow(sourcePixels, sourceIndex, sourceStep, targetIndex, count, false);
+					sourceIndex += sourceStride;
+					targetIndex += targetStride;
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Paints the part of a CompactSprite inside the clip, looking each pixel up in its palette.
+	 * Where the sprite keeps its runs, only the visible spans of each row are read.
+	 * @param	sprite	the sprite to paint
+	 * @param	xPos	the x position of the sprite
+	 * @param	yPos	the y position of the sprite
+	 * @param	mirrored	true to paint the sprite mirrored left to right
+	 * @param	left	the first column painted
+	 * @param	right	the column after the last column painted
+	 * @param	top	the first row painted
+	 * @param	bottom	the row after the last row painted
+	 */
+	private void blitCompact(final CompactSprite sprite, final int xPos, final int yPos, final boolean mirrored,
+			final int left, final int right, final int top, final int bottom) {
+		final byte[] indices = sprite.getIndices();
+		final int[] palette = sprite.getPremultipliedPalette();
+		final int[] rowRuns = sprite.getRowRuns();
+		final short[] runs = sprite.getRuns();
+		final int width = sprite.getWidth();
+		int targetRow = targetOffset + top * targetStride;
+		for(int row = top; row < bottom; row++) {
+			final int spriteRow = row - yPos;
+			final int rowStart = spriteRow * width;
+			if(rowRuns == null) {
+				blendSpan(indices, palette, rowStart, 0, width, xPos, width, mirrored, left, right, targetRow);
+			} else {
+				final int lastRun = rowRuns[spriteRow + 1];
+				for(int run = rowRuns[spriteRow]; run < lastRun; run += 2) {
+					blendSpan(indices, palette, rowStart, runs[run], runs[run + 1], xPos, width, mirrored,
+							left, right, targetRow);
+				}
+			}
+			targetRow += targetStride;
+		}
+	}
+
+	/**
+	 * Blends the part of a span of a CompactSprite's row inside the clip into the target
+	 * @param	indices	the sprite's palette indices
+	 * @param	palette	the sprite's premultiplied palette
+	 * @param	rowStart	the index of the row's first pixel
+	 * @param	start	the first column of the span in the sprite
+	 * @param	end	the column after the span in the sprite
+	 * @param	xPos	the x position of the sprite
+	 * @param	width	the width of the sprite
+	 * @param	mirrored	true if the sprite is painted mirrored left to right
+	 * @param	left	the first column painted
+	 * @param	right	the column after the last column painted
+	 * @param	targetRow	the index of the target's pixel in column zero of the row painted
+	 */
+	private void blendSpan(final byte[] indices, final int[] palette, final int rowStart, final int start,
+			final int end, final int xPos, final int width, final boolean mirrored, final int left,
+			final int right, final int targetRow) {
+		// Find the columns of the target the span covers, and clip them
+		final int spanLeft = mirrored ? (xPos + width - end) : (xPos + start);
+		final int spanRight = mirrored ? (xPos + width - start) : (xPos + end);
+		final int first = Math.max(spanLeft, left);
+		final int last = Math.min(spanRight, right);
+		if(first >= last) {
+			return;
+		}
+
+		// Java2D copies an opaque palette colour whole, even into the unused top byte of an
+		// INT_RGB target, so opaque pixels are copied unmasked to give exactly the same pixels
+		final int[] target = targetPixels;
+		final int sourceStep = mirrored ? -1 : 1;
+		int sourceIndex = rowStart + (mirrored ? (xPos + width - 1 - first) : (first - xPos));
+		int blended = 0;
+		for(int targetIndex = targetRow + first; targetIndex < targetRow + last; targetIndex++) {
+			final int pixel = palette[indices[sourceIndex] & 0xFF];
+			final int alpha = pixel >>> 24;
+			if(alpha == 0xFF) {
+				target[targetIndex] = pixel;
+			} else if(alpha != 0) {
+				target[targetIndex] = blendPixel(pixel, alpha, target[targetIndex]);
+				blended++;
+			}
+			sourceIndex += sourceStep;
+		}
+		blendCount += blended;
+	}
+
+	/**
+	 * Returns the image painted into
+	 * @return	the target image
+	 */
+	public BufferedImage getTarget() { return targetImage; }
+
+	/**
+	 * Returns the total number of images painted, leaving out images entirely outside the clip
+	 * @return	the number of images painted
+	 */
+	public long getBlitCount() { return blitCount; }
+
+	/**
+	 * Returns the total number of pixels blended with the target rather than copied or skipped
+	 * @return	the number of pixels blended
+	 */
+	public long getBlendCount() { return blendCount; }
+
+	/**
+	 * Copies a row of opaque pixels into the target
+	 * @param	source	the source pixels
+	 * @param	sourceIndex	the index of the first source pixel
+	 * @param	sourceStep	1 to step forwards through the source, or -1 to step backwards
+	 * @param	targetIndex	the index of the first target pixel
+	 * @param	count	the number of pixels to copy
+	 */
+	private void copyRow(final int[] source, int sourceIndex, final int sourceStep, int targetIndex, final int count) {
+		final int[] target = targetPixels;
+		if((sourceStep == 1) && !targetHasAlpha) {
+			System.arraycopy(source, sourceIndex, target, targetIndex, count);
+			return;
+		}
+
+		// Whatever is in the unused top byte of an opaque pixel, the target's alpha is full
+		final int alpha = targetHasAlpha ? 0xFF000000 : 0;
+		for(int i = 0; i < count; i++) {
+			target[targetIndex++] = (source[sourceIndex] & 0x00FFFFFF) | alpha;
+			sourceIndex += sourceStep;
+		}
+	}
+
+	/**
+	 * Blends a row of translucent pixels into the target using source-over. Fully transparent
+	 * pixels are skipped and fully opaque pixels are copied, so only the edges of most sprites
+	 * are actually blended.
+	 * @param	source	the source pixels
+	 * @param	sourceIndex	the index of the first source pixel
+	 * @param	sourceStep	1 to step forwards through the source, or -1 to step backwards
+	 * @param	targetIndex	the index of the first target pixel
+	 * @param	count	the number of pixels to blend
+	 * @param	premultiplied	true if the source colours are already multiplied by their alpha
+	 */
+	private void blendRow(final int[] source, int sourceIndex, final int sourceStep, int targetIndex,
+			final int count, final boolean premultiplied) {
+		final int[] target = targetPixels;
+		final int colourMask = targetHasAlpha ? 0xFFFFFFFF : 0x00FFFFFF;
+		int blended = 0;
+		for(int i = 0; i < count; i++) {
+			final int pixel = source[sourceIndex];
+			final int alpha = pixel >>> 24;
+			if(alpha == 0xFF) {
+				target[targetIndex] = pixel & colourMask;
+			} else if(alpha != 0) {
+				// Multiply the source colours by their alpha if they are not already
+				final int premultipliedPixel = premultiplied ? pixel : ((alpha << 24) | (mul8(alpha, (pixel >> 16) & 0xFF) << 16)
+						| (mul8(alpha, (pixel >> 8) & 0xFF) << 8) | mul8(alpha, pixel & 0xFF));
+				target[targetIndex] = blendPixel(premultipliedPixel, alpha, target[targetIndex]);
+				blended++;
+			}
+			sourceIndex += sourceStep;
+			targetIndex++;
+		}
+		blendCount += blended;
+	}
+
+	/**
+	 * Blends a premultiplied pixel over a target pixel using source-over
+	 * @param	pixel	the premultiplied source pixel
+	 * @param	alpha	the source pixel's alpha
+	 * @param	dest	the target pixel
+	 * @return	the blended pixel
+	 */
+	private int blendPixel(final int pixel, final int alpha, final int dest) {
+		// Add what shows through of the target's colours
+		final int destFactor = 0xFF - alpha;
+		final int red = ((pixel >> 16) & 0xFF) + mul8(destFactor, (dest >> 16) & 0xFF);
+		final int green = ((pixel >> 8) & 0xFF) + mul8(destFactor, (dest >> 8) & 0xFF);
+		final int blue = (pixel & 0xFF) + mul8(destFactor, dest & 0xFF);
+		final int resultAlpha = targetHasAlpha ? alpha + mul8(destFactor, dest >>> 24) : 0;
+		return (resultAlpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	/**
+	 * Multiplies two values from 0 to 255 as if they were fractions of 255, rounding
+	 * exactly as Java2D's multiplication table does
+	 * @param	a	the first value
+	 * @param	b	the second value
+	 * @return	a times b divided by 255, rounded
+	 */
+	private static int mul8(final int a, final int b) {
+		return ((a * b * 0x10101) + 0x800000) >>> 24;
+	}
+
+	/**
+	 * Returns the int array holding a raster's pixels
+	 * @param	raster	the raster, which must hold its pixels in a DataBufferInt
+	 * @return	the pixels
+	 */
+	private static int[] getPixels(final Raster raster) {
+		return ((DataBufferInt)raster.getDataBuffer()).getData();
+	}
+
+	/**
+	 * Returns the number of ints between the rows of a raster
+	 * @param	raster	the raster, which must hold one pixel per int
+	 * @return	the scanline stride
+	 */
+	private static int getStride(final Raster raster) {
+		return ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+	}
+
+	/**
+	 * Returns the index of a raster's top-left pixel in its array, allowing for
+	 * rasters that share a larger array, such as those of sub-images
+	 * @param	raster	the raster, which must hold one pixel per int
+	 * @return	the index of the top-left pixel
+	 */
+	private static int getOffset(final Raster raster) {
+		return raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateX()
+				- raster.getSampleModelTranslateY() * getStride(raster);
+	}
+}
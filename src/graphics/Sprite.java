@@ -5,6 +5,7 @@
 package graphics;
 
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.image.BufferedImage;
 
 /**
@@ -112,6 +113,18 @@ public class Sprite {
 		gfx.drawImage(currentImage, xPosition, yPosition, displayView);
 	}
 	
+	/**
+	 * Returns the image the Sprite currently paints
+	 * @return	the Sprite's current image
+	 */
+	public Image getImage() { return spriteAnimation.getImage(); }
+	
+	/**
+	 * Returns the HitMask of the image the Sprite currently paints
+	 * @return	the Sprite's current HitMask, or null if the whole frame can be hit
+	 */
+	public HitMask getHitMask() { return spriteAnimation.getHitMask(); }
+	
 	/**
 	 * Gets the Sprite's current x-position
 	 * @return	the Sprite's x-position
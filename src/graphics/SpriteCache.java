@@ -1,7 +1,18 @@
 package graphics;
 
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
 import javax.imageio.ImageIO;
 
 import util.AbstractResourceCache;
@@ -9,30 +20,253 @@ import util.AbstractResourceCache;
 /**
  * The SpriteCache class is an implementation of the ResourceCache
  * that manages the loading and storage of Image files used in the game.
+ * <p>Images are converted as they are loaded into the format of the screen, with the
+ * least transparency they need, so that painting them never goes through Java2D's
+ * slow general-purpose conversion loops. Images with no see-through pixels become
+ * OPAQUE, images whose pixels are either solid or clear become BITMASK, and only
+ * images with partly see-through pixels are kept TRANSLUCENT. When the cache keeps compact
+ * sprites, images with no more than CompactSprite.MAX_COLOURS colours, which covers most
+ * animation frames, are instead kept as CompactSprites, a byte per pixel indexing a palette.
+ * Java2D cannot accelerate palette images onto the screen, so CompactSprites are only worth
+ * keeping when frames are painted in memory by a SoftwareBlitter, which by default is when
+ * there is no display.
+ * <p>Images are also held by a hash of their decoded pixels, so that frames repeated under
+ * different names, within an animation or across animations, share a single image. Images
+ * made outside the cache, such as mirrored frames, can be shared the same way through
+ * getSharedImage.
+ * <p>When the display is scaled, the cache also holds a copy of every image it knows of
+ * scaled to the display, so images can be painted at their own size rather than being
+ * rescaled every frame. The copies are made by rescaleImages, which is meant to be run
+ * in the background, and are swapped in all at once when they are ready. Until then,
+ * paintScaled scales images as it paints them.
  * @author	Graham Mace
  * @version	1.0 - 03/06/2006
  * @see	AbstractResourceCache
  */
 public class SpriteCache extends AbstractResourceCache {
+	/**
+	 * The configuration of the screen the images are converted for, or null if there
+	 * is no screen, in which case images are converted to plain integer RGB formats
+	 */
+	private transient final GraphicsConfiguration graphicsConfig;
+	
+	/**
+	 * Whether images with few enough colours are kept as CompactSprites
+	 */
+	private transient final boolean compactSprites;
+	
+	/**
+	 * The background images scaled to fill the screen, by image name and size
+	 */
+	private transient final HashMap scaledBackgrounds;
+	
+	/**
+	 * The number of images loaded with each transparency, indexed by Transparency constant
+	 */
+	private transient final int[] transparencyCounts;
+	
+	/**
+	 * The total time spent converting images, in nanoseconds
+	 */
+	private transient long convertNanos;
+	
+	/**
+	 * The number of images loaded that are kept as CompactSprites
+	 */
+	private transient int compactCount;
+	
+	/**
+	 * The images held, as lists of the images with each hash of their pixels, by hash
+	 */
+	private transient final HashMap imagesByContent;
+	
+	/**
+	 * The number of different images held by their pixels, and the number found to have
+	 * the same pixels as an image already held
+	 */
+	private transient int uniqueImageCount, sharedImageCount;
+	
+	/**
+	 * The number of bytes the images found to be the same as one already held would have taken
+	 */
+	private transient long sharedImageBytes;
+	
+	/**
+	 * The HitMasks of the images in the cache, and of their mirror images, by image name
+	 */
+	private transient final HashMap hitMasks, mirrorHitMasks;
+	
+	/**
+	 * The number of bytes taken by all the HitMasks held
+	 */
+	private transient long hitMaskBytes;
+	
+	/**
+	 * Every image scaled when the display is scaled, held weakly so that images no
+	 * longer used by any Sprite are forgotten. Only used while holding its lock.
+	 */
+	private transient final WeakHashMap scalableImages;
+	
+	/**
+	 * The number of times an image has been added or the display scale has changed,
+	 * which tells whether the scaled images are out of date
+	 */
+	private transient volatile int scaleVersion;
+	
+	/**
+	 * The scale the display is painted at
+	 */
+	private transient volatile double displayScale = 1;
+	
+	/**
+	 * The scaled images swapped in by the last call to rescaleImages, which only the thread
+	 * painting the display reads, as reading a WeakHashMap can change it. Also the display
+	 * scale, version and number of images they were made for.
+	 */
+	private transient volatile WeakHashMap scaledImages = new WeakHashMap();
+	private transient volatile double scaledImagesScale = 1;
+	private transient volatile int scaledImagesVersion, scaledImageCount;
+	
+	/**
+	 * The scaled images made by the last call to rescaleImages, which only rescaleImages
+	 * reads, and the scale they were made for
+	 */
+	private transient WeakHashMap rescaledImages = new WeakHashMap();
+	private transient double rescaledImagesScale = 1;
+	
+	/**
+	 * The number of times the images have been rescaled, and the total time taken
+	 */
+	private transient volatile long rescaleCount, rescaleNanos;
+	
+	/**
+	 * The number of images painted by paintScaled without a scaled copy ready
+	 */
+	private transient volatile long unscaledPaintCount;
+	
+	/**
+	 * Constructor for the class SpriteCache, keeping compact sprites only if there is no display
+	 */
+	public SpriteCache() {
+		this(GraphicsEnvironment.isHeadless());
+	}
+	
+	/**
+	 * Constructor for the class SpriteCache
+	 * @param	keepCompact	true to keep images with few enough colours as CompactSprites, for
+	 * 			painting by a SoftwareBlitter, or false to convert every image to the screen's format
+	 */
+	public SpriteCache(boolean keepCompact) {
+		super();
+		compactSprites = keepCompact;
+		graphicsConfig = GraphicsEnvironment.isHeadless() ? null
+			: GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		scaledBackgrounds = new HashMap();
+		transparencyCounts = new int[Transparency.TRANSLUCENT + 1];
+		hitMasks = new HashMap();
+		mirrorHitMasks = new HashMap();
+		scalableImages = new WeakHashMap();
+		imagesByContent = new HashMap();
+	}
+	
 	/**
 	 * Loads the specified resource into the cache.
 	 * @param	url	the URL of the resource to be loaded
 	 */
 	protected Object loadResource(final URL url) {
 		// Create our generic object
-		Object obj = null;
+		BufferedImage image = null;
 		
 		// Attempt to load the file from disk/network
 		try {
-			obj = ImageIO.read(url);
+			image = ImageIO.read(url);
 		} catch(Exception e) {
 			System.out.println("Cannot read file " + url);
 			System.out.println("Error at: " + e.getClass().getName() + " " + e.getMessage());
 			System.exit(0);
 		}
 		
-		// Return the object
-		return obj;
+		// Keep images with few enough colours in a palette, which takes a quarter of the memory, if
+		// compact sprites are kept, and convert the rest to the screen's format with only the transparency they need
+		final long startTime = System.nanoTime();
+		final int transparency = getTransparency(image);
+		final CompactSprite compact = (compactSprites) ? CompactSprite.encode(image) : null;
+		if(compact != null) {
+			image = compact;
+			compactCount++;
+		} else {
+			image = convertImage(image, image.getWidth(), image.getHeight(), transparency);
+		}
+		transparencyCounts[transparency]++;
+		convertNanos += System.nanoTime() - startTime;
+		
+		// Share the pixels of an image already loaded under another name, if it is the same
+		image = getSharedImage(image);
+		addScalableImage(image);
+		return image;
+	}
+	
+	/**
+	 * Returns the least transparency an image needs to be painted without changing how it looks
+	 * @param	image	the image to check
+	 * @return	Transparency.OPAQUE, Transparency.BITMASK or Transparency.TRANSLUCENT
+	 */
+	public static int getTransparency(final BufferedImage image) {
+		if(!image.getColorModel().hasAlpha()) {
+			return Transparency.OPAQUE;
+		}
+		
+		// Read the image a row at a time, stopping at the first partly see-through pixel
+		final int width = image.getWidth();
+		final int[] row = new int[width];
+		boolean hasClear = false;
+		for(int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				final int alpha = row[x] >>> 24;
+				if(alpha == 0) {
+					hasClear = true;
+				} else if(alpha != 255) {
+					return Transparency.TRANSLUCENT;
+				}
+			}
+		}
+		return hasClear ? Transparency.BITMASK : Transparency.OPAQUE;
+	}
+	
+	/**
+	 * Creates an empty image in the screen's format with the specified transparency
+	 * @param	width	the width of the image
+	 * @param	height	the height of the image
+	 * @param	transparency	the Transparency constant of the image
+	 * @return	the new image
+	 */
+	public BufferedImage createCompatibleImage(final int width, final int height, final int transparency) {
+		if(graphicsConfig != null) {
+			return graphicsConfig.createCompatibleImage(width, height, transparency);
+		}
+		return new BufferedImage(width, height, (transparency == Transparency.OPAQUE)
+				? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+	
+	/**
+	 * Draws an image into a new image in the screen's format, scaling it to the specified size
+	 * @param	image	the image to convert
+	 * @param	width	the width of the new image
+	 * @param	height	the height of the new image
+	 * @param	transparency	the Transparency constant of the new image
+	 * @return	the converted image
+	 */
+	private BufferedImage convertImage(final BufferedImage image, final int width, final int height,
+			final int transparency) {
+		final BufferedImage converted = createCompatibleImage(width, height, transparency);
+		final Graphics2D gfx = converted.createGraphics();
+		if((width != image.getWidth()) || (height != image.getHeight())) {
+			gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		}
+		gfx.drawImage(image, 0, 0, width, height, null);
+		gfx.dispose();
+		return converted;
 	}
 	
 	/**
@@ -44,4 +278,355 @@ public class SpriteCache extends AbstractResourceCache {
 	public BufferedImage getSprite(final String name) {
 		return (BufferedImage)getResource(name);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Returns the specified Image scaled to the specified size as an OPAQUE image, scaling
+	 * it the first time it is requested. Scaling once here means the Image is painted at
+	 * its own size every frame rather than being rescaled while it is drawn.
+	 * @param	name	the path containing the Image file
+	 * @param	width	the width to scale the Image to
+	 * @param	height	the height to scale the Image to
+	 * @return	the scaled Image
+	 */
+	public BufferedImage getScaledBackground(final String name, final int width, final int height) {
+		final String key = name + '@' + width + 'x' + height;
+		BufferedImage background = (BufferedImage)scaledBackgrounds.get(key);
+		if(background == null) {
+			final long startTime = System.nanoTime();
+			background = convertImage(getSprite(name), width, height, Transparency.OPAQUE);
+			convertNanos += System.nanoTime() - startTime;
+			scaledBackgrounds.put(key, background);
+			addScalableImage(background);
+		}
+		return background;
+	}
+	
+	/**
+	 * Returns the number of images loaded with the specified transparency
+	 * @param	transparency	Transparency.OPAQUE, Transparency.BITMASK or Transparency.TRANSLUCENT
+	 * @return	the number of images
+	 */
+	public int getTransparencyCount(final int transparency) {
+		return transparencyCounts[transparency];
+	}
+	
+	/**
+	 * Returns an image already held with the same class, type, size and pixels as the specified
+	 * image, or holds the specified image and returns it if there is none. Images are found
+	 * by a hash of their pixels, and a match is only returned once every pixel is compared.
+	 * @param	image	the image to share
+	 * @return	the image already held, or the specified image
+	 */
+	public BufferedImage getSharedImage(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int[] row = new int[width];
+		long hash = ((long)image.getType() * 31 + width) * 31 + height;
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			hash = hash * 31 + Arrays.hashCode(row);
+		}
+		
+		// Look through the images with the same hash for one with the same pixels
+		final Long key = Long.valueOf(hash);
+		ArrayList images = (ArrayList)imagesByContent.get(key);
+		if(images == null) {
+			images = new ArrayList(1);
+			imagesByContent.put(key, images);
+		}
+		for(int i = 0; i < images.size(); i++) {
+			final BufferedImage heldImage = (BufferedImage)images.get(i);
+			if(isSamePixels(heldImage, image)) {
+				sharedImageCount++;
+				sharedImageBytes += AnimGenerator.getImageBytes(image);
+				return heldImage;
+			}
+		}
+		images.add(image);
+		uniqueImageCount++;
+		return image;
+	}
+	
+	/**
+	 * Returns whether two images have the same class, type, size and pixels
+	 * @param	first	the first image
+	 * @param	second	the second image
+	 * @return	true if the images are the same
+	 */
+	private static boolean isSamePixels(final BufferedImage first, final BufferedImage second) {
+		final int width = first.getWidth();
+		final int height = first.getHeight();
+		if((first.getClass() != second.getClass()) || (first.getType() != second.getType()) || (width != second.getWidth()) || (height != second.getHeight())) {
+			return false;
+		}
+		final int[] firstRow = new int[width];
+		final int[] secondRow = new int[width];
+		for(int y = 0; y < height; y++) {
+			first.getRGB(0, y, width, 1, firstRow, 0, width);
+			second.getRGB(0, y, width, 1, secondRow, 0, width);
+			if(!Arrays.equals(firstRow, secondRow)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of different images held by their pixels
+	 * @return	the number of different images
+	 */
+	public int getUniqueImageCount() {
+		return uniqueImageCount;
+	}
+	
+	/**
+	 * Returns the number of images found to have the same pixels as an image already held,
+	 * which share that image rather than keeping their own
+	 * @return	the number of images shared
+	 */
+	public int getSharedImageCount() {
+		return sharedImageCount;
+	}
+	
+	/**
+	 * Returns the number of bytes saved by sharing images with the same pixels
+	 * @return	the bytes saved
+	 */
+	public long getSharedImageBytes() {
+		return sharedImageBytes;
+	}
+	
+	/**
+	 * Returns whether images with few enough colours are kept as CompactSprites
+	 * @return	true if compact sprites are kept
+	 */
+	public boolean isKeepingCompact() {
+		return compactSprites;
+	}
+	
+	/**
+	 * Returns the number of images loaded that are kept in a palette as CompactSprites
+	 * rather than converted to the screen's format
+	 * @return	the number of CompactSprites
+	 */
+	public int getCompactCount() {
+		return compactCount;
+	}
+	
+	/**
+	 * Returns the total time spent converting and scaling images
+	 * @return	the conversion time in nanoseconds
+	 */
+	public long getConvertNanos() {
+		return convertNanos;
+	}
+	
+	/**
+	 * Returns the HitMask of the specified Image, building it the first time it is requested.
+	 * @param	name	the path containing the Image file
+	 * @return	the HitMask of the Image
+	 */
+	public HitMask getHitMask(final String name) {
+		HitMask mask = (HitMask)hitMasks.get(name);
+		if(mask == null) {
+			mask = HitMask.createMask(getSprite(name));
+			hitMasks.put(name, mask);
+			hitMaskBytes += mask.getBytes();
+		}
+		return mask;
+	}
+	
+	/**
+	 * Returns the HitMask of the mirror image of the specified Image, building it the first
+	 * time it is requested. Every mirror image of the same Image shares this one mask.
+	 * @param	name	the path containing the Image file
+	 * @return	the HitMask of the mirrored Image
+	 */
+	public HitMask getMirrorHitMask(final String name) {
+		HitMask mask = (HitMask)mirrorHitMasks.get(name);
+		if(mask == null) {
+			mask = getHitMask(name).getMirrorMask();
+			mirrorHitMasks.put(name, mask);
+			hitMaskBytes += mask.getBytes();
+		}
+		return mask;
+	}
+	
+	/**
+	 * Returns the number of HitMasks held, counting mirrored masks
+	 * @return	the number of HitMasks
+	 */
+	public int getHitMaskCount() {
+		return hitMasks.size() + mirrorHitMasks.size();
+	}
+	
+	/**
+	 * Returns the number of bytes taken by all the HitMasks held
+	 * @return	the size of the HitMasks in bytes
+	 */
+	public long getHitMaskBytes() {
+		return hitMaskBytes;
+	}
+	
+	/**
+	 * Adds an image made outside the cache, such as a mirrored animation frame, to the
+	 * images scaled when the display is scaled
+	 * @param	image	the image to add
+	 */
+	public void addScalableImage(final Image image) {
+		synchronized(scalableImages) {
+			if(scalableImages.put(image, Boolean.TRUE) == null) {
+				scaleVersion++;
+			}
+		}
+	}
+	
+	/**
+	 * Sets the scale the display is painted at. Images are scaled as they are painted
+	 * until rescaleImages has made copies at the new scale.
+	 * @param	scale	the number of screen pixels to each game pixel
+	 */
+	public void setDisplayScale(final double scale) {
+		if(scale <= 0) {
+			throw new IllegalArgumentException("scale must be greater than zero");
+		}
+		synchronized(scalableImages) {
+			displayScale = scale;
+			scaleVersion++;
+		}
+	}
+	
+	/**
+	 * Returns the scale the display is painted at
+	 * @return	the number of screen pixels to each game pixel
+	 */
+	public double getDisplayScale() {
+		return displayScale;
+	}
+	
+	/**
+	 * Returns whether the scaled images are missing images added, or were made for an
+	 * earlier display scale, so that rescaleImages should be run
+	 * @return	true if the scaled images are out of date
+	 */
+	public boolean isRescaleNeeded() {
+		return (displayScale != 1) && (scaledImagesVersion != scaleVersion);
+	}
+	
+	/**
+	 * Makes a copy of every image known scaled to the display scale, and swaps them in
+	 * once they are all ready. Copies already made at the same scale are kept rather than
+	 * made again. This can take a while, so it is meant to be run in the background, and
+	 * must only be run on one thread at a time.
+	 */
+	public void rescaleImages() {
+		final long startTime = System.nanoTime();
+		
+		// Take the images to scale and the scale to scale them to, as they were at one moment
+		final Object[] images;
+		final double scale;
+		final int version;
+		synchronized(scalableImages) {
+			images = scalableImages.keySet().toArray();
+			scale = displayScale;
+			version = scaleVersion;
+		}
+		
+		// Scale each image, unless it is being painted at its own size
+		final WeakHashMap oldImages = (rescaledImagesScale == scale) ? rescaledImages : null;
+		final WeakHashMap newImages = new WeakHashMap(images.length * 2);
+		if(scale != 1) {
+			for(int i = 0; i < images.length; i++) {
+				final BufferedImage image = (BufferedImage)images[i];
+				Object scaled = (oldImages != null) ? oldImages.get(image) : null;
+				if(scaled == null) {
+					scaled = convertImage(image, getScaledSize(image.getWidth(), scale),
+							getScaledSize(image.getHeight(), scale), image.getTransparency());
+				}
+				newImages.put(image, scaled);
+			}
+		}
+		
+		rescaledImages = newImages;
+		rescaledImagesScale = scale;
+		
+		// Swap a copy of the new images in, setting the map last so the scale and version are never older than it
+		scaledImagesScale = scale;
+		scaledImagesVersion = version;
+		scaledImageCount = newImages.size();
+		scaledImages = new WeakHashMap(newImages);
+		rescaleCount++;
+		rescaleNanos += System.nanoTime() - startTime;
+	}
+	
+	/**
+	 * Paints an image scaled to the display, with its top-left corner at the specified
+	 * position in game coordinates. The image's scaled copy is painted if it is ready,
+	 * otherwise the image is scaled as it is painted. Only the thread painting the
+	 * display may call this.
+	 * @param	gfx	the Graphics context onto which to paint, in screen pixels
+	 * @param	image	the image to paint
+	 * @param	xPos	the x position of the image in game coordinates
+	 * @param	yPos	the y position of the image in game coordinates
+	 * @param	observer	the observer told of any images not yet fully loaded
+	 */
+	public void paintScaled(final Graphics2D gfx, final Image image, final int xPos, final int yPos,
+			final ImageObserver observer) {
+		final double scale = displayScale;
+		final int left = (int)Math.floor(xPos * scale);
+		final int top = (int)Math.floor(yPos * scale);
+		final int width = getScaledSize(image.getWidth(null), scale);
+		final int height = getScaledSize(image.getHeight(null), scale);
+		
+		// A copy made for another scale, while the scale is changing, is the wrong size and is not used
+		final Image scaled = (Image)scaledImages.get(image);
+		if((scaled != null) && (scaled.getWidth(null) == width) && (scaled.getHeight(null) == height)) {
+			gfx.drawImage(scaled, left, top, observer);
+		} else {
+			gfx.drawImage(image, left, top, width, height, observer);
+			unscaledPaintCount++;
+		}
+	}
+	
+	/**
+	 * Returns the number of scaled images ready to paint
+	 * @return	the number of scaled images
+	 */
+	public int getScaledImageCount() {
+		return (scaledImagesScale == displayScale) ? scaledImageCount : 0;
+	}
+	
+	/**
+	 * Returns the number of times the images have been rescaled
+	 * @return	the number of rescales
+	 */
+	public long getRescaleCount() {
+		return rescaleCount;
+	}
+	
+	/**
+	 * Returns the total time spent rescaling images
+	 * @return	the rescale time in nanoseconds
+	 */
+	public long getRescaleNanos() {
+		return rescaleNanos;
+	}
+	
+	/**
+	 * Returns the number of images painted by paintScaled before their scaled copies were ready
+	 * @return	the number of images scaled as they were painted
+	 */
+	public long getUnscaledPaintCount() {
+		return unscaledPaintCount;
+	}
+	
+	/**
+	 * Returns a length in game pixels scaled to the display, never less than one pixel
+	 * @param	length	the length in game pixels
+	 * @param	scale	the display scale
+	 * @return	the length in screen pixels
+	 */
+	private static int getScaledSize(final int length, final double scale) {
+		return Math.max(1, (int)Math.round(length * scale));
+	}
+}
@@ -0,0 +1,22 @@
+package graphics;
+
+import java.awt.Graphics2D;
+
+/**
+ * The TilePainter interface is implemented by anything that can paint one horizontal
+ * band of a frame at a time. A TileRenderTask calls paintTile for each band, possibly
+ * on several threads at once, so painting a tile must only read shared state.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	TileRenderTask
+ */
+public interface TilePainter {
+	/**
+	 * Paints one horizontal band of the frame into a Graphics context already clipped to it
+	 * @param	gfx	the Graphics context onto which to paint
+	 * @param	blitter	the blitter painting into the same image, clipped to the band, or null if there is none
+	 * @param	top	the first row of the band
+	 * @param	bottom	the row below the last row of the band
+	 */
+	void paintTile(Graphics2D gfx, SoftwareBlitter blitter, int top, int bottom);
+}
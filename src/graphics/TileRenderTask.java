@@ -0,0 +1,77 @@
+package graphics;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The TileRenderTask class paints a frame into a BufferedImage on a ForkJoinPool by
+ * splitting it into the horizontal tiles of a FrameTiles. The tiles are split in half until
+ * each task has a single tile, and each tile is painted by a TilePainter with the tile's own
+ * Graphics context and blitter, both clipped to the tile, so the tiles are spread across all
+ * the pool's threads and the task only completes once every tile has been painted.
+ * <p>Java2D decides which pixels an image, rectangle or line covers without regard to the
+ * clip, and the tiles do not overlap, so painting the tiles on any number of threads gives
+ * exactly the same frame as painting the whole frame on one thread.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	FrameTiles
+ */
+public class TileRenderTask extends RecursiveAction {
+	/**
+	 * Version ID used for serialization
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The painter painting each tile
+	 */
+	private transient final TilePainter tilePainter;
+
+	/**
+	 * The tiles the frame is painted in
+	 */
+	private transient final FrameTiles frameTiles;
+
+	/**
+	 * The first tile to paint and the tile after the last tile to paint
+	 */
+	private transient final int fromTile, toTile;
+
+	/**
+	 * Constructor for the class TileRenderTask
+	 * @param	painter	the painter painting each tile
+	 * @param	tiles	the tiles the frame is painted in
+	 * @param	from	the first tile to paint
+	 * @param	to	the tile after the last tile to paint
+	 */
+	public TileRenderTask(TilePainter painter, FrameTiles tiles, int from, int to) {
+		tilePainter = painter;
+		frameTiles = tiles;
+		fromTile = from;
+		toTile = to;
+	}
+
+	/**
+	 * Paints the range of tiles, splitting it into two tasks if it holds more than one tile
+	 */
+	protected void compute() {
+		if(toTile - fromTile <= 1) {
+			if(fromTile < toTile) {
+				paintTile(tilePainter, frameTiles, fromTile);
+			}
+		} else {
+			final int middle = (fromTile + toTile) >>> 1;
+			invokeAll(new TileRenderTask(tilePainter, frameTiles, fromTile, middle),
+					new TileRenderTask(tilePainter, frameTiles, middle, toTile));
+		}
+	}
+
+	/**
+	 * Paints one tile of the frame with the tile's own Graphics context and blitter
+	 * @param	painter	the painter painting the tile
+	 * @param	tiles	the tiles the frame is painted in
+	 * @param	tile	the number of the tile to paint
+	 */
+	public static void paintTile(final TilePainter painter, final FrameTiles tiles, final int tile) {
+		painter.paintTile(tiles.getGraphics(tile), tiles.getBlitter(tile), tiles.getTop(tile), tiles.getBottom(tile));
+	}
+}
@@ -1,6 +1,7 @@
 package sound;
 
 import util.AbstractResourceCache;
+import util.LatencyHistogram;
 import util.ThreadPool;
 
 import java.applet.Applet;
@@ -8,6 +9,7 @@ import java.applet.AudioClip;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import util.Randomizer;
 
@@ -35,6 +37,23 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 	 */
 	private transient ThreadPool sfxPool;
 	
+	/**
+	 * The Randomizer used to pick which sound in a list is played
+	 */
+	private transient Randomizer randomizer;
+	
+	/**
+	 * The SoundThreads already created for playing and looping each sound. A SoundThread
+	 * holds nothing but the sound to play, so each one is reused every time its sound is
+	 * played rather than creating a new one, even while an earlier play is still running.
+	 */
+	private transient HashMap playThreads, loopThreads;
+	
+	/**
+	 * The time taken for traced sounds to start after the events that triggered them
+	 */
+	private transient LatencyHistogram soundLatency;
+	
 	/**
 	 * Loads a sound from the specified resource
 	 * @param	url	the URL of the sound to load
@@ -53,21 +72,29 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 	}
 	
 	/**
-	 * Creates a new SoundThread for playing sounds. A random sound is chosen from
-	 * the soundList parameter, created in a SoundThread and added to the pool. 
+	 * Runs a SoundThread for playing sounds. A random sound is chosen from
+	 * the soundList parameter and its SoundThread is added to the pool. 
 	 * @param	soundList	the ArrayList containing the specified sounds
 	 * @param	loopSound	whether or not to loop the sound
+	 * @param	traceNanos	the System.nanoTime of the event that triggered the sound, or zero
 	 */
-	private void createThread(final ArrayList soundList, final boolean loopSound) {
+	private synchronized void createThread(final ArrayList soundList, final boolean loopSound, 
+			final long traceNanos) {
 		if((playSounds) && (soundList.size() >= 0)) {
 			int randomNum = 0;
 			
+			// Create the Randomizer and thread tables on first use
+			if(randomizer == null) {
+				randomizer = new Randomizer();
+				playThreads = new HashMap();
+				loopThreads = new HashMap();
+			}
+			
 			// Check that the soundList passed is not equal or less than zero
 			if(soundList.size() <= 0) {
 				randomNum = 0;
 			} else {
 				// Create a random number for picking a sound in the list
-				final Randomizer randomizer = new Randomizer();
 				randomizer.randomNum(0, soundList.size() - 1);
 				randomNum = randomizer.getCurrentNumber();
 			}
@@ -75,11 +102,23 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 			// Get the fileName from the soundList
 			final String fileName = (String)soundList.get(randomNum);
 			
-			// Create the thread and run it on the pool
-			final SoundThread soundThread = new SoundThread(fileName, this, loopSound);
-			soundThread.setDaemon(true);
-			soundThread.setPriority(Thread.MIN_PRIORITY);
-			sfxPool.runTask(soundThread);
+			// Find the thread for the sound, creating it the first time the sound is played
+			final HashMap soundThreads = loopSound ? loopThreads : playThreads;
+			SoundThread soundThread = (SoundThread)soundThreads.get(fileName);
+			if(soundThread == null) {
+				soundThread = new SoundThread(fileName, this, loopSound);
+				soundThread.setDaemon(true);
+				soundThread.setPriority(Thread.MIN_PRIORITY);
+				soundThreads.put(fileName, soundThread);
+			}
+			
+			// Run the thread on the pool, or a task carrying its own trace if the play is traced,
+			// so overlapping traced plays of the same sound each record their latency
+			if(traceNanos != 0) {
+				sfxPool.runTask(new TracedSound(soundThread, traceNanos));
+			} else {
+				sfxPool.runTask(soundThread);
+			}
 		}
 	}
 	
@@ -88,7 +127,17 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 	 * @param	soundList	the ArrayList containing the sounds
 	 */
 	public void playSound(final ArrayList soundList) {
-		this.createThread(soundList, false);
+		this.createThread(soundList, false, 0);
+	}
+	
+	/**
+	 * Plays a random sound from the specified soundList, recording how long it takes to
+	 * start after the triggering event in the sound latency histogram
+	 * @param	soundList	the ArrayList containing the sounds
+	 * @param	traceNanos	the System.nanoTime at which the triggering event happened
+	 */
+	public void playSound(final ArrayList soundList, final long traceNanos) {
+		this.createThread(soundList, false, traceNanos);
 	}
 	
 	/**
@@ -96,7 +145,7 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 	 * @param	soundList	the ArrayList containing the sounds
 	 */
 	public void loopSound(final ArrayList soundList) {
-		this.createThread(soundList, true);
+		this.createThread(soundList, true, 0);
 	}
 	
 	/**
@@ -137,13 +186,29 @@ public class SoundCache extends AbstractResourceCache implements Serializable {
 	}
 	
 	/**
-	 * The ThreadPool onto which sounds are run
+	 * The ThreadPool onto which sounds are run. Any ThreadPool previously assigned
+	 * to this SoundCache is closed so its threads do not outlive the game session.
 	 * @param	soundPool	the ThreadPool to run the SoundThreads on
 	 */
 	public void setPool(final ThreadPool soundPool) {
+		if((sfxPool != null) && (sfxPool != soundPool)) {
+			sfxPool.close();
+		}
 		sfxPool = soundPool;
 	}
 	
+	/**
+	 * Returns the histogram of how long traced sounds took to start after the events
+	 * that triggered them
+	 * @return	the sound latency histogram
+	 */
+	public synchronized LatencyHistogram getSoundLatency() {
+		if(soundLatency == null) {
+			soundLatency = new LatencyHistogram("Event to sound");
+		}
+		return soundLatency;
+	}
+	
 	/**
 	 * Gets the current ThreadPool assigned to this SoundCache for playing sounds
 	 * @return	the ThreadPool for this SoundCache
@@ -48,6 +48,17 @@ public class SoundThread extends Thread implements Runnable {
 	 * or killed.
 	 */
 	public void run() {
+		play(0);
+	}
+	
+	/**
+	 * Plays or loops the sound, recording how long it took to start in the SoundCache's
+	 * sound latency histogram if the play is traced. The trace is passed in rather than
+	 * kept by the SoundThread, as the same SoundThread can be playing on several pool
+	 * threads at once.
+	 * @param	traceNanos	the System.nanoTime at which the triggering event happened, or zero
+	 */
+	public void play(final long traceNanos) {
 		// If the sound is to be looped
 		if(loopSound) {
 			// Then play the sound repeatedly
@@ -56,5 +67,10 @@ public class SoundThread extends Thread implements Runnable {
 			// Otherwise, just play once
 			soundCache.getAudioClip(soundName).play();
 		}
+		
+		// Record how long the sound took to start after the event that triggered it
+		if(traceNanos != 0) {
+			soundCache.getSoundLatency().record(System.nanoTime() - traceNanos);
+		}
 	}
 }
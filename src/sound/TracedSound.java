@@ -0,0 +1,37 @@
+package sound;
+
+/**
+ * The TracedSound class is a task that plays a sound once through its SoundThread, recording
+ * how long after the triggering event the sound started. A TracedSound is made for each
+ * traced play, so every play keeps its own trace however many are running at once.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+class TracedSound implements Runnable {
+	/**
+	 * The SoundThread that plays the sound
+	 */
+	private transient final SoundThread soundThread;
+	
+	/**
+	 * The System.nanoTime at which the event that triggered the sound happened
+	 */
+	private transient final long traceNanos;
+	
+	/**
+	 * Constructor for the class TracedSound
+	 * @param	thread	the SoundThread that plays the sound
+	 * @param	nanos	the System.nanoTime at which the triggering event happened
+	 */
+	TracedSound(SoundThread thread, long nanos) {
+		soundThread = thread;
+		traceNanos = nanos;
+	}
+	
+	/**
+	 * Plays the sound, recording its latency
+	 */
+	public void run() {
+		soundThread.play(traceNanos);
+	}
+}
@@ -0,0 +1,183 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The AllocationMonitor class measures how many bytes of memory a thread allocates
+ * between calls to startFrame and endFrame, using the allocation counter kept by the
+ * JVM for each thread. It is used to check that the game loop does not create garbage
+ * in steady state, which would otherwise show up as garbage collection pauses.
+ * If the JVM does not support per-thread allocation counting the monitor does nothing.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class AllocationMonitor {
+	/**
+	 * The JVM's thread bean if it supports per-thread allocation counting, otherwise null
+	 */
+	private static final com.sun.management.ThreadMXBean threadBean = getThreadBean();
+
+	/**
+	 * The number of bytes a frame may allocate before it counts as over budget
+	 */
+	private transient final long frameBudget;
+
+	/**
+	 * The ID of the thread being measured
+	 */
+	private transient long threadID;
+
+	/**
+	 * The allocation counter of the thread when the current frame started
+	 */
+	private transient long frameStart;
+
+	/**
+	 * The bytes allocated by the last frame and the most allocated by any frame
+	 */
+	private transient long lastFrameBytes, maxFrameBytes;
+
+	/**
+	 * The total bytes allocated and the number of frames measured
+	 */
+	private transient long totalBytes, frameCount;
+
+	/**
+	 * The number of frames that allocated more than the budget
+	 */
+	private transient long framesOverBudget;
+
+	/**
+	 * Constructor for the class AllocationMonitor
+	 * @param	budget	the number of bytes a frame may allocate before it counts as over budget
+	 */
+	public AllocationMonitor(long budget) {
+		frameBudget = budget;
+		threadID = -1;
+	}
+
+	/**
+	 * Returns whether the JVM supports per-thread allocation counting
+	 * @return	true if allocations can be measured
+	 */
+	public static boolean isSupported() {
+		return threadBean != null;
+	}
+
+	/**
+	 * Returns the number of bytes the calling thread has allocated since it started,
+	 * or -1 if allocations cannot be measured
+	 * @return	the bytes allocated by the calling thread
+	 */
+	public static long getAllocatedBytes() {
+		if(threadBean == null) {
+			return -1;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Marks the start of a frame on the calling thread
+	 */
+	public void startFrame() {
+		if(threadBean != null) {
+			threadID = Thread.currentThread().getId();
+			frameStart = threadBean.getThreadAllocatedBytes(threadID);
+		}
+	}
+
+	/**
+	 * Marks the end of a frame on the calling thread and records the bytes it allocated
+	 * @return	the bytes allocated since startFrame was called
+	 */
+	public long endFrame() {
+		if((threadBean == null) || (threadID != Thread.currentThread().getId())) {
+			return 0;
+		}
+
+		lastFrameBytes = threadBean.getThreadAllocatedBytes(threadID) - frameStart;
+		totalBytes += lastFrameBytes;
+		frameCount++;
+		if(lastFrameBytes > maxFrameBytes) {
+			maxFrameBytes = lastFrameBytes;
+		}
+		if(lastFrameBytes > frameBudget) {
+			framesOverBudget++;
+		}
+		return lastFrameBytes;
+	}
+
+	/**
+	 * Clears all the figures recorded so far
+	 */
+	public void reset() {
+		lastFrameBytes = 0;
+		maxFrameBytes = 0;
+		totalBytes = 0;
+		frameCount = 0;
+		framesOverBudget = 0;
+	}
+
+	/**
+	 * Returns the bytes allocated by the last frame measured
+	 * @return	the bytes allocated
+	 */
+	public long getLastFrameBytes() { return lastFrameBytes; }
+
+	/**
+	 * Returns the most bytes allocated by any frame measured
+	 * @return	the maximum bytes allocated by a frame
+	 */
+	public long getMaxFrameBytes() { return maxFrameBytes; }
+
+	/**
+	 * Returns the average bytes allocated per frame measured
+	 * @return	the average bytes allocated by a frame
+	 */
+	public long getAverageFrameBytes() {
+		if(frameCount == 0) {
+			return 0;
+		}
+		return totalBytes / frameCount;
+	}
+
+	/**
+	 * Returns the number of frames measured
+	 * @return	the number of frames
+	 */
+	public long getFrameCount() { return frameCount; }
+
+	/**
+	 * Returns the number of frames that allocated more than the budget
+	 * @return	the number of frames over budget
+	 */
+	public long getFramesOverBudget() { return framesOverBudget; }
+
+	/**
+	 * Returns the number of bytes a frame may allocate before it counts as over budget
+	 * @return	the frame budget in bytes
+	 */
+	public long getFrameBudget() { return frameBudget; }
+
+	/**
+	 * Returns the JVM's thread bean if it supports per-thread allocation counting
+	 * @return	the thread bean, or null if allocation counting is not available
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(bean instanceof com.sun.management.ThreadMXBean) {
+				final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+				if(sunBean.isThreadAllocatedMemorySupported()) {
+					sunBean.setThreadAllocatedMemoryEnabled(true);
+					return sunBean;
+				}
+			}
+		} catch(Throwable t) {
+			// Allocation counting is not available on this JVM
+			System.out.println("Allocation monitoring not available: " + t);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,187 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The BoundedTaskQueue class is a fixed-size, lock-free queue of Runnable tasks.
+ * Each slot in the ring carries a sequence number which tells producers and consumers
+ * whether the slot is free to write or ready to read, so neither side ever takes a lock.
+ * Any number of threads may offer tasks; polling is also safe from several threads, which
+ * allows a producer to evict the oldest task when the queue is full. The time each task
+ * was queued is stored alongside it so that the queueing latency can be measured.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class BoundedTaskQueue {
+	/**
+	 * The tasks stored in each slot of the ring
+	 */
+	private transient final AtomicReferenceArray tasks;
+
+	/**
+	 * The sequence number of each slot in the ring
+	 */
+	private transient final AtomicLongArray sequences;
+
+	/**
+	 * The time (in nanoseconds) each task was added to the ring
+	 */
+	private transient final long[] queueTimes;
+
+	/**
+	 * Mask used to wrap a position onto a slot index
+	 */
+	private transient final int indexMask;
+
+	/**
+	 * The next position to be written to by a producer
+	 */
+	private transient final AtomicLong tailPosition;
+
+	/**
+	 * The next position to be read from by a consumer
+	 */
+	private transient final AtomicLong headPosition;
+
+	/**
+	 * Constructor for the class BoundedTaskQueue. The capacity is rounded up
+	 * to the next power of two.
+	 * @param	capacity	the minimum number of tasks the queue can hold
+	 */
+	public BoundedTaskQueue(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be greater than zero");
+		}
+
+		// Round the capacity up to a power of two so positions can be masked
+		int size = 1;
+		while(size < capacity) {
+			size = size << 1;
+		}
+
+		indexMask = size - 1;
+		tasks = new AtomicReferenceArray(size);
+		sequences = new AtomicLongArray(size);
+		queueTimes = new long[size];
+		tailPosition = new AtomicLong(0);
+		headPosition = new AtomicLong(0);
+
+		// Each slot starts off free for the producer at its own position
+		for(int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds a task to the tail of the queue. This method never blocks.
+	 * @param	task	the task to add
+	 * @param	queueTime	the time (in nanoseconds) the task was queued
+	 * @return	true if the task was added, false if the queue is full
+	 */
+	public boolean offer(final Runnable task, final long queueTime) {
+		long position = tailPosition.get();
+		int index = 0;
+
+		// Claim a slot by moving the tail along, retrying if another producer beat us to it
+		while(true) {
+			index = (int)(position & indexMask);
+			final long difference = sequences.get(index) - position;
+			if(difference == 0) {
+				if(tailPosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = tailPosition.get();
+			} else if(difference < 0) {
+				// The slot still holds a task from the previous lap, so the queue is full
+				return false;
+			} else {
+				position = tailPosition.get();
+			}
+		}
+
+		// Write the task then publish the slot to consumers
+		tasks.set(index, task);
+		queueTimes[index] = queueTime;
+		sequences.set(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the task at the head of the queue. This method never blocks.
+	 * @param	queueTime	a single element array into which the time the task was queued
+	 * is written, or null if the time is not required
+	 * @return	the task removed, or null if the queue is empty
+	 */
+	public Runnable poll(final long[] queueTime) {
+		long position = headPosition.get();
+		int index = 0;
+
+		// Claim the slot at the head, retrying if another consumer took it first
+		while(true) {
+			index = (int)(position & indexMask);
+			final long difference = sequences.get(index) - (position + 1);
+			if(difference == 0) {
+				if(headPosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = headPosition.get();
+			} else if(difference < 0) {
+				// Nothing has been published to this slot yet, so the queue is empty
+				return null;
+			} else {
+				position = headPosition.get();
+			}
+		}
+
+		// Read the task then hand the slot back to producers for the next lap
+		final Runnable task = (Runnable)tasks.get(index);
+		if(queueTime != null) {
+			queueTime[0] = queueTimes[index];
+		}
+		tasks.set(index, null);
+		sequences.set(index, position + indexMask + 1);
+		return task;
+	}
+
+	/**
+	 * Removes all tasks currently in the queue
+	 * @return	the number of tasks removed
+	 */
+	public int clear() {
+		int count = 0;
+		while(poll(null) != null) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the approximate number of tasks in the queue
+	 * @return	the current queue depth
+	 */
+	public int size() {
+		final long size = tailPosition.get() - headPosition.get();
+		if(size < 0) {
+			return 0;
+		}
+		return (int)Math.min(size, getCapacity());
+	}
+
+	/**
+	 * Returns whether the queue currently holds any tasks
+	 * @return	true if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the maximum number of tasks the queue can hold
+	 * @return	the capacity of the queue
+	 */
+	public int getCapacity() {
+		return indexMask + 1;
+	}
+}
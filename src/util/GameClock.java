@@ -0,0 +1,180 @@
+package util;
+
+/**
+ * The GameClock class measures the passing of game time. A real GameClock follows
+ * System.nanoTime, so it is monotonic and unaffected by changes to the system clock.
+ * A virtual GameClock only moves when it is advanced, which lets a simulation run as
+ * fast as it can while still seeing exactly the amount of time it asked for.
+ * <p>Either kind of GameClock can be paused, during which no game time passes, and
+ * can have its speed scaled for slow-motion or fast-forward. Changing the pause state
+ * or the time scale never changes the game time that has already passed.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class GameClock {
+	/**
+	 * The number of nanoseconds in a millisecond
+	 */
+	public static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * Whether this clock is driven by calls to advance instead of System.nanoTime
+	 */
+	private transient final boolean virtualClock;
+
+	/**
+	 * The game time (in nanoseconds) that had passed when the clock was last rebased
+	 */
+	private transient long elapsedNanos;
+
+	/**
+	 * The source time (in nanoseconds) when the clock was last rebased
+	 */
+	private transient long baseNanos;
+
+	/**
+	 * The source time of a virtual clock
+	 */
+	private transient long virtualNanos;
+
+	/**
+	 * The rate at which game time passes compared to real time
+	 */
+	private transient double timeScale;
+
+	/**
+	 * Whether the clock is currently paused
+	 */
+	private transient boolean paused;
+
+	/**
+	 * Constructor for the class GameClock - creates a real clock
+	 */
+	public GameClock() {
+		this(false);
+	}
+
+	/**
+	 * Constructor for the class GameClock
+	 * @param	virtual	true to create a clock that only moves when it is advanced
+	 */
+	public GameClock(boolean virtual) {
+		virtualClock = virtual;
+		timeScale = 1.0;
+		paused = false;
+		reset();
+	}
+
+	/**
+	 * Resets the game time to zero. The pause state and time scale are kept.
+	 */
+	public synchronized void reset() {
+		elapsedNanos = 0;
+		baseNanos = sourceNanos();
+	}
+
+	/**
+	 * Returns the game time that has passed
+	 * @return	the game time in nanoseconds
+	 */
+	public synchronized long getNanos() {
+		if(paused) {
+			return elapsedNanos;
+		}
+		return elapsedNanos + (long)((sourceNanos() - baseNanos) * timeScale);
+	}
+
+	/**
+	 * Returns the game time that has passed
+	 * @return	the game time in milliseconds
+	 */
+	public long getMillis() {
+		return getNanos() / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Pauses or resumes the clock
+	 * @param	pause	true to pause the clock, false to resume it
+	 */
+	public synchronized void setPaused(final boolean pause) {
+		if(pause != paused) {
+			// Rebase so that time stops, or restarts, from exactly where it is now
+			rebase();
+			paused = pause;
+		}
+	}
+
+	/**
+	 * Returns whether the clock is currently paused
+	 * @return	true if the clock is paused
+	 */
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Sets the rate at which game time passes compared to real time.
+	 * A scale of 0.5 runs at half speed and a scale of 2.0 at double speed.
+	 * @param	scale	the time scale, which must be greater than zero
+	 */
+	public synchronized void setTimeScale(final double scale) {
+		if(scale <= 0) {
+			throw new IllegalArgumentException("scale must be greater than zero");
+		}
+		rebase();
+		timeScale = scale;
+	}
+
+	/**
+	 * Returns the rate at which game time passes compared to real time
+	 * @return	the current time scale
+	 */
+	public synchronized double getTimeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * Returns whether this clock is driven by calls to advance
+	 * @return	true if this is a virtual clock
+	 */
+	public boolean isVirtual() {
+		return virtualClock;
+	}
+
+	/**
+	 * Moves a virtual clock on by the specified amount of real time. The game time
+	 * moves on by the same amount multiplied by the time scale, or not at all if
+	 * the clock is paused.
+	 * @param	nanos	the amount of time to advance in nanoseconds
+	 * @throws	IllegalStateException	if this is not a virtual clock
+	 */
+	public synchronized void advance(final long nanos) {
+		if(!virtualClock) {
+			throw new IllegalStateException("Only a virtual GameClock can be advanced");
+		}
+		virtualNanos += nanos;
+	}
+
+	/**
+	 * Moves the base of the clock to the current source time, adding the game time
+	 * passed since the last rebase to the elapsed time
+	 */
+	private void rebase() {
+		final long now = sourceNanos();
+		if(!paused) {
+			elapsedNanos += (long)((now - baseNanos) * timeScale);
+		}
+		baseNanos = now;
+	}
+
+	/**
+	 * Returns the current time of the source driving this clock
+	 * @return	the source time in nanoseconds
+	 */
+	private long sourceNanos() {
+		if(virtualClock) {
+			return virtualNanos;
+		}
+		return System.nanoTime();
+	}
+}
@@ -0,0 +1,166 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram class counts how long something took, in nanoseconds, into buckets
+ * that double in size: bucket n holds every latency below 2^n nanoseconds that did not fit
+ * in bucket n - 1. This keeps the histogram small and fixed in size while still telling
+ * microseconds apart from milliseconds, and recording a latency never creates any objects.
+ * Latencies can be recorded from any number of threads at once.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class LatencyHistogram {
+	/**
+	 * The number of buckets, enough for any positive long
+	 */
+	private static final int BUCKET_COUNT = 64;
+
+	/**
+	 * The name of what is being measured
+	 */
+	private transient final String histogramName;
+
+	/**
+	 * The number of latencies counted in each bucket
+	 */
+	private transient final AtomicLongArray buckets;
+
+	/**
+	 * The number of latencies recorded, their total and the largest recorded
+	 */
+	private transient final AtomicLong count, total, max;
+
+	/**
+	 * Constructor for the class LatencyHistogram
+	 * @param	name	the name of what is being measured
+	 */
+	public LatencyHistogram(String name) {
+		histogramName = name;
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Records a latency. Negative latencies are counted as zero.
+	 * @param	nanos	the latency in nanoseconds
+	 */
+	public void record(final long nanos) {
+		final long latency = Math.max(nanos, 0);
+		buckets.incrementAndGet(getBucket(latency));
+		count.incrementAndGet();
+		total.addAndGet(latency);
+
+		// Raise the maximum if this latency is larger
+		long currentMax = max.get();
+		while((latency > currentMax) && (!max.compareAndSet(currentMax, latency))) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Clears every latency recorded
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Returns the name of what is being measured
+	 * @return	the histogram's name
+	 */
+	public String getName() { return histogramName; }
+
+	/**
+	 * Returns the number of latencies recorded
+	 * @return	the number of latencies
+	 */
+	public long getCount() { return count.get(); }
+
+	/**
+	 * Returns the largest latency recorded
+	 * @return	the largest latency in nanoseconds
+	 */
+	public long getMax() { return max.get(); }
+
+	/**
+	 * Returns the mean latency recorded
+	 * @return	the mean latency in nanoseconds, or zero if nothing has been recorded
+	 */
+	public long getMean() {
+		final long recorded = count.get();
+		return (recorded == 0) ? 0 : total.get() / recorded;
+	}
+
+	/**
+	 * Returns an upper bound on the latency below which the specified fraction of
+	 * the latencies recorded fall. The bound is the top of the bucket the percentile
+	 * falls into, so it is accurate to within a factor of two, and is never more than
+	 * the largest latency recorded.
+	 * @param	fraction	the fraction of latencies, from 0.0 to 1.0 (0.99 for the 99th percentile)
+	 * @return	the percentile in nanoseconds, or zero if nothing has been recorded
+	 */
+	public long getPercentile(final double fraction) {
+		final long recorded = count.get();
+		if(recorded == 0) {
+			return 0;
+		}
+
+		// Walk the buckets until enough latencies have been passed
+		final long wanted = Math.max((long)Math.ceil(recorded * fraction), 1);
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if(seen >= wanted) {
+				final long bucketTop = (i >= BUCKET_COUNT - 1) ? Long.MAX_VALUE : (1L << i) - 1;
+				return Math.min(bucketTop, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the number of latencies counted in the specified bucket
+	 * @param	bucket	the bucket, from 0 to 63
+	 * @return	the number of latencies in the bucket
+	 */
+	public long getBucketCount(final int bucket) {
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * Returns a String listing every bucket that holds any latencies
+	 */
+	public String toString() {
+		final StringBuffer text = new StringBuffer(histogramName);
+		text.append(": ").append(getCount()).append(" samples, mean ").append(getMean() / 1000)
+			.append("us, p50 ").append(getPercentile(0.5) / 1000)
+			.append("us, p99 ").append(getPercentile(0.99) / 1000)
+			.append("us, max ").append(getMax() / 1000).append("us");
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			final long bucketCount = buckets.get(i);
+			if(bucketCount > 0) {
+				text.append("\n  < ").append(((1L << i) + 999) / 1000).append("us: ").append(bucketCount);
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the bucket the specified latency belongs in
+	 * @param	nanos	the latency in nanoseconds
+	 * @return	the bucket index
+	 */
+	private static int getBucket(final long nanos) {
+		return Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKET_COUNT - 1);
+	}
+}
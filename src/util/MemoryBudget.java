@@ -0,0 +1,298 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * The MemoryBudget class decides how many new objects of an estimated size can be created
+ * without putting the heap at risk. Two limits are set as fractions of the maximum heap size:
+ * below the throttle limit every request is admitted in full, between the throttle limit and the
+ * reject limit only part of the remaining headroom is handed out, and above the reject limit
+ * nothing is admitted. Usage thresholds are also set on the heap's memory pools, so that the JVM
+ * notifies the MemoryBudget when a pool fills up between requests.
+ * <p>Decisions are based on each pool's usage after its last collection, since the current usage
+ * also counts garbage which has not been collected yet. A pool crossing its usage threshold, or the
+ * current heap usage passing the throttle limit, only causes the collection figures to be checked again.
+ * <p>Nothing is decided permanently - once memory has been freed the full budget is available again.
+ * The pools' thresholds are shared by everything running in the JVM, so the thresholds they
+ * had before are put back when the MemoryBudget is closed.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class MemoryBudget implements NotificationListener {
+	/**
+	 * The fraction of the headroom handed out while throttled
+	 */
+	private static final int THROTTLED_SHARE = 4;
+
+	/**
+	 * The fractions of the maximum heap size at which requests are throttled and rejected
+	 */
+	private transient final double throttleFraction, rejectFraction;
+
+	/**
+	 * Every heap pool, whose usage after collection is the measure of live memory
+	 */
+	private transient final List heapPools;
+
+	/**
+	 * The heap pools on which usage thresholds have been set
+	 */
+	private transient final List thresholdPools;
+
+	/**
+	 * The usage and collection usage thresholds each pool in thresholdPools had before, as
+	 * a long[2] per pool, with -1 for a collection threshold the pool does not support
+	 */
+	private transient final List savedThresholds;
+
+	/**
+	 * The memory bean whose notifications are being listened to, or null if not listening
+	 */
+	private transient NotificationEmitter memoryEmitter;
+
+	/**
+	 * Whether a pool was above its threshold after collection when memory was last checked
+	 */
+	private transient volatile boolean lowMemory;
+
+	/**
+	 * Whether a pool has reported crossing its threshold since the pools were last checked
+	 */
+	private transient volatile boolean recheckMemory;
+
+	/**
+	 * The number of threshold notifications received
+	 */
+	private transient final AtomicLong notificationCount;
+
+	/**
+	 * The number of objects admitted, admitted while throttled and refused
+	 */
+	private transient long admittedCount, throttledCount, rejectedCount;
+
+	/**
+	 * Constructor for the class MemoryBudget
+	 * @param	throttle	the fraction of the maximum heap size above which requests are throttled
+	 * @param	reject	the fraction of the maximum heap size above which requests are refused
+	 */
+	public MemoryBudget(double throttle, double reject) {
+		if((throttle <= 0) || (throttle > reject) || (reject > 1)) {
+			throw new IllegalArgumentException("Limits must satisfy 0 < throttle <= reject <= 1");
+		}
+		throttleFraction = throttle;
+		rejectFraction = reject;
+		heapPools = new ArrayList();
+		thresholdPools = new ArrayList();
+		savedThresholds = new ArrayList();
+		notificationCount = new AtomicLong();
+
+		// Set usage thresholds on each heap pool that supports them
+		final List pools = ManagementFactory.getMemoryPoolMXBeans();
+		for(int i = 0; i < pools.size(); i++) {
+			final MemoryPoolMXBean pool = (MemoryPoolMXBean)pools.get(i);
+			final long poolMax = pool.getUsage().getMax();
+			if(pool.getType() == MemoryType.HEAP) {
+				heapPools.add(pool);
+			}
+			if((pool.getType() == MemoryType.HEAP) && (pool.isUsageThresholdSupported()) && (poolMax > 0)) {
+				try {
+					final long[] saved = new long[] {pool.getUsageThreshold(), -1};
+					pool.setUsageThreshold((long)(poolMax * throttleFraction));
+					thresholdPools.add(pool);
+					savedThresholds.add(saved);
+					if(pool.isCollectionUsageThresholdSupported()) {
+						saved[1] = pool.getCollectionUsageThreshold();
+						pool.setCollectionUsageThreshold((long)(poolMax * throttleFraction));
+					}
+				} catch(RuntimeException ex) {
+					// The pool's threshold cannot be changed, so rely on the heap figures alone
+					System.out.println("Cannot set memory threshold on " + pool.getName() + ": " + ex);
+				}
+			}
+		}
+
+		// Listen for the pools crossing their thresholds
+		final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+		if(memoryBean instanceof NotificationEmitter) {
+			memoryEmitter = (NotificationEmitter)memoryBean;
+			memoryEmitter.addNotificationListener(this, null, null);
+		}
+	}
+
+	/**
+	 * Returns how many of the requested objects can be created now. The counts of admitted,
+	 * throttled and rejected objects are updated to match.
+	 * @param	bytesEach	the estimated number of bytes each object takes
+	 * @param	requested	the number of objects wanted
+	 * @return	the number of objects that may be created, between zero and requested
+	 */
+	public synchronized int admit(final long bytesEach, final int requested) {
+		if(requested <= 0) {
+			return 0;
+		}
+
+		// Find where the limits lie and how much of the heap was live after the last collections
+		final MemoryUsage heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		long heapMax = heapUsage.getMax();
+		if(heapMax <= 0) {
+			heapMax = Runtime.getRuntime().maxMemory();
+		}
+		final long used = getCollectedUsage();
+		final long throttleLimit = (long)(heapMax * throttleFraction);
+		final long rejectLimit = (long)(heapMax * rejectFraction);
+
+		// A full heap may only be holding garbage, so it is a reason to check the pools, not to throttle
+		if((recheckMemory) || (lowMemory) || (heapUsage.getUsed() >= throttleLimit)) {
+			recheckMemory = false;
+			lowMemory = isPoolThresholdExceeded();
+		}
+		final boolean throttled = (lowMemory) || (used >= throttleLimit);
+
+		// Hand out the headroom left below the reject limit, or only a share of it when throttled
+		long headroom = Math.max(rejectLimit - used, 0);
+		if(throttled) {
+			headroom = headroom / THROTTLED_SHARE;
+		}
+		final long affordable = headroom / Math.max(bytesEach, 1);
+		final int admitted = (int)Math.min(requested, affordable);
+
+		// Update the counts
+		admittedCount += admitted;
+		if(admitted == 0) {
+			rejectedCount += requested;
+		} else if(throttled) {
+			throttledCount += admitted;
+			rejectedCount += requested - admitted;
+		} else {
+			rejectedCount += requested - admitted;
+		}
+		return admitted;
+	}
+
+	/**
+	 * Called by the JVM when a heap pool crosses its usage threshold
+	 * @param	notification	the notification sent
+	 * @param	handback	not used
+	 */
+	public void handleNotification(final Notification notification, final Object handback) {
+		final String type = notification.getType();
+		if(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+			// The pool is still full after a collection, so memory really is low
+			notificationCount.incrementAndGet();
+			lowMemory = true;
+		} else if(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)) {
+			// The pool may be full of garbage, so check it again on the next request
+			notificationCount.incrementAndGet();
+			recheckMemory = true;
+		}
+	}
+
+	/**
+	 * Stops listening for memory notifications and puts back the thresholds the heap pools had before
+	 */
+	public synchronized void close() {
+		if(memoryEmitter != null) {
+			try {
+				memoryEmitter.removeNotificationListener(this);
+			} catch(ListenerNotFoundException ex) {
+				// Already removed
+			}
+			memoryEmitter = null;
+		}
+
+		// Restore the thresholds each pool had before this MemoryBudget changed them
+		for(int i = 0; i < thresholdPools.size(); i++) {
+			final MemoryPoolMXBean pool = (MemoryPoolMXBean)thresholdPools.get(i);
+			final long[] saved = (long[])savedThresholds.get(i);
+			try {
+				if(saved[1] >= 0) {
+					pool.setCollectionUsageThreshold(saved[1]);
+				}
+				pool.setUsageThreshold(saved[0]);
+			} catch(RuntimeException ex) {
+				System.out.println("Cannot restore memory threshold on " + pool.getName() + ": " + ex);
+			}
+		}
+		heapPools.clear();
+		thresholdPools.clear();
+		savedThresholds.clear();
+	}
+
+	/**
+	 * Returns whether memory is currently low enough for requests to be throttled
+	 * @return	true if a heap pool has crossed its threshold and not yet recovered
+	 */
+	public boolean isLowMemory() { return lowMemory; }
+
+	/**
+	 * Returns the number of objects admitted
+	 * @return	the number of objects admitted, including those admitted while throttled
+	 */
+	public synchronized long getAdmittedCount() { return admittedCount; }
+
+	/**
+	 * Returns the number of objects admitted while memory was being throttled
+	 * @return	the number of objects admitted while throttled
+	 */
+	public synchronized long getThrottledCount() { return throttledCount; }
+
+	/**
+	 * Returns the number of objects refused
+	 * @return	the number of objects rejected
+	 */
+	public synchronized long getRejectedCount() { return rejectedCount; }
+
+	/**
+	 * Returns the number of threshold notifications received from the JVM
+	 * @return	the number of notifications
+	 */
+	public long getNotificationCount() { return notificationCount.get(); }
+
+	/**
+	 * Returns whether any of the pools with thresholds was above its threshold after its last
+	 * collection. A pool which does not report collection usage is judged on its current usage.
+	 * @return	true if a pool is above its threshold
+	 */
+	private boolean isPoolThresholdExceeded() {
+		for(int i = 0; i < thresholdPools.size(); i++) {
+			final MemoryPoolMXBean pool = (MemoryPoolMXBean)thresholdPools.get(i);
+			final boolean exceeded = (pool.isCollectionUsageThresholdSupported())
+				? pool.isCollectionUsageThresholdExceeded() : pool.isUsageThresholdExceeded();
+			if(exceeded) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of bytes the heap pools held after their last collections, which leaves
+	 * out garbage made since then. A pool which does not report collection usage adds its current usage.
+	 * @return	the number of bytes of heap in use after collection
+	 */
+	private long getCollectedUsage() {
+		long used = 0;
+		for(int i = 0; i < heapPools.size(); i++) {
+			final MemoryPoolMXBean pool = (MemoryPoolMXBean)heapPools.get(i);
+			MemoryUsage usage = pool.getCollectionUsage();
+			if(usage == null) {
+				usage = pool.getUsage();
+			}
+			used += usage.getUsed();
+		}
+		return used;
+	}
+}
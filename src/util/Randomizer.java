@@ -26,6 +26,17 @@ public class Randomizer {
 	 */
 	public Randomizer() {
 		numberGenerated = 0;
+		numberGenerator = new Random();
+	}
+	
+	/**
+	 * Constructor for the class Randomizer - the same seed always produces
+	 * the same sequence of numbers
+	 * @param	seed	the seed for the random number generator
+	 */
+	public Randomizer(long seed) {
+		numberGenerated = 0;
+		numberGenerator = new Random(seed);
 	}
 	
 	/**
@@ -39,7 +50,6 @@ public class Randomizer {
 			throw new IllegalArgumentException("upperBound must be higher than lowerBound");
 		}
 		
-		numberGenerator = new Random();
 		final long range = (long)upperBound - (long)lowerBound + 1;
 		final long fraction = (long)(range * numberGenerator.nextDouble());
 		numberGenerated = (int)(fraction + lowerBound);
@@ -51,10 +61,24 @@ public class Randomizer {
 	 * @return	the boolean value generated
 	 */
 	public boolean getBoolean() {
-		numberGenerator = new Random();
 		return numberGenerator.nextBoolean(); 
 	}
 	
+	/**
+	 * Returns a seed for one of many independent streams of random numbers derived
+	 * from a single seed. Each stream number gives a well-mixed, different seed, so
+	 * Randomizers seeded with neighbouring stream numbers do not produce similar numbers.
+	 * @param	seed	the seed all the streams are derived from
+	 * @param	stream	the number of the stream
+	 * @return	the seed for the stream
+	 */
+	public static long getStreamSeed(final long seed, final long stream) {
+		long mixed = seed + ((stream + 1) * 0x9E3779B97F4A7C15L);
+		mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+		return mixed ^ (mixed >>> 31);
+	}
+	
 	/**
 	 * Gets the current random number generated by this Randomizer object
 	 * @return	the random number currently generated
@@ -0,0 +1,170 @@
+package util;
+
+/**
+ * The TextBuilder class builds up text in a reusable character array. Unlike String
+ * concatenation or a StringBuffer, numbers are written straight into the array and the
+ * text is never turned into a String, so text that changes every frame (such as scores
+ * and timers) can be built and drawn without creating any objects.
+ * @author	Graham Mace
+ * @version	1.1
+ */
+public class TextBuilder {
+	/**
+	 * The default number of characters the builder can hold before growing
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The characters built so far
+	 */
+	private transient char[] textChars;
+
+	/**
+	 * The number of characters built so far
+	 */
+	private transient int textLength;
+
+	/**
+	 * Constructor for the class TextBuilder
+	 */
+	public TextBuilder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for the class TextBuilder
+	 * @param	capacity	the number of characters the builder can hold before growing
+	 */
+	public TextBuilder(int capacity) {
+		textChars = new char[capacity];
+		textLength = 0;
+	}
+
+	/**
+	 * Clears the text so the builder can be reused
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder clear() {
+		textLength = 0;
+		return this;
+	}
+
+	/**
+	 * Appends the specified String
+	 * @param	text	the String to append, or null to append "null"
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder append(final String text) {
+		final String value = (text == null) ? "null" : text;
+		ensureCapacity(textLength + value.length());
+		value.getChars(0, value.length(), textChars, textLength);
+		textLength += value.length();
+		return this;
+	}
+
+	/**
+	 * Appends the text held by another TextBuilder
+	 * @param	text	the TextBuilder whose text is appended
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder append(final TextBuilder text) {
+		ensureCapacity(textLength + text.textLength);
+		System.arraycopy(text.textChars, 0, textChars, textLength, text.textLength);
+		textLength += text.textLength;
+		return this;
+	}
+
+	/**
+	 * Appends the specified character
+	 * @param	character	the character to append
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder append(final char character) {
+		ensureCapacity(textLength + 1);
+		textChars[textLength++] = character;
+		return this;
+	}
+
+	/**
+	 * Appends the decimal representation of the specified number
+	 * @param	number	the number to append
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder append(final long number) {
+		return append(number, 1);
+	}
+
+	/**
+	 * Appends the decimal representation of the specified number, padded with
+	 * leading zeros to at least the specified number of digits
+	 * @param	number	the number to append
+	 * @param	minDigits	the minimum number of digits to write
+	 * @return	this TextBuilder
+	 */
+	public TextBuilder append(final long number, final int minDigits) {
+		if(number == Long.MIN_VALUE) {
+			// Cannot be negated, so fall back on the String form
+			return append(Long.toString(number));
+		}
+
+		long value = number;
+		if(value < 0) {
+			append('-');
+			value = -value;
+		}
+
+		// Count the digits needed
+		int digits = 1;
+		long remaining = value / 10;
+		while(remaining > 0) {
+			digits++;
+			remaining = remaining / 10;
+		}
+		digits = Math.max(digits, minDigits);
+
+		// Write the digits from right to left
+		ensureCapacity(textLength + digits);
+		for(int i = textLength + digits - 1; i >= textLength; i--) {
+			textChars[i] = (char)('0' + (value % 10));
+			value = value / 10;
+		}
+		textLength += digits;
+		return this;
+	}
+
+	/**
+	 * Returns the array holding the characters built so far. Only the first
+	 * length() characters of the array are valid.
+	 * @return	the character array
+	 */
+	public char[] getChars() {
+		return textChars;
+	}
+
+	/**
+	 * Returns the number of characters built so far
+	 * @return	the length of the text
+	 */
+	public int length() {
+		return textLength;
+	}
+
+	/**
+	 * Returns the text built so far as a String
+	 */
+	public String toString() {
+		return new String(textChars, 0, textLength);
+	}
+
+	/**
+	 * Grows the character array if it cannot hold the specified number of characters
+	 * @param	capacity	the number of characters needed
+	 */
+	private void ensureCapacity(final int capacity) {
+		if(capacity > textChars.length) {
+			final char[] newChars = new char[Math.max(capacity, textChars.length * 2)];
+			System.arraycopy(textChars, 0, newChars, 0, textLength);
+			textChars = newChars;
+		}
+	}
+}
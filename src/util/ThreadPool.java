@@ -1,175 +1,431 @@
 package util;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
-    A thread pool is a group of a limited number of threads that
-    are used to execute tasks.
-    @author		David Brackeen - New Riders Developing Games In Java (ISBN 1-5927-3005-1)
-    @version	August 20, 2003 - http://www.brackeen.com/javagamebook/
-*/
+ * The ThreadPool class is a group of a limited number of threads that are used to
+ * execute tasks. Tasks are held in a BoundedTaskQueue, so submitting a task never blocks
+ * or takes a lock. When the queue is full the rejection policy given to the constructor
+ * decides what happens to the task. The pool keeps counters for the queue depth, the time
+ * tasks spend waiting in the queue and the number of tasks that have been rejected.
+ * Idle threads park until a new task wakes them, and a new task only wakes a thread
+ * that is actually idle.
+ * <p>Based on the ThreadPool class by David Brackeen.
+ * @author	David Brackeen - New Riders Developing Games In Java (ISBN 1-5927-3005-1)
+ * @author	Graham Mace
+ * @version	August 20, 2003 - http://www.brackeen.com/javagamebook/
+ * @version	1.1
+ * @see	BoundedTaskQueue
+ */
 public class ThreadPool extends ThreadGroup {
+	/**
+	 * Rejection policy which throws an IllegalStateException when the queue is full
+	 */
+	public static final int POLICY_ABORT = 0;
 
-	private transient int threadID;
-    private transient final LinkedList taskQueue;
-	private transient boolean isAlive;
-    private static int threadPoolID;
-
-    /**
-        Creates a new ThreadPool.
-        @param numThreads The number of threads in the pool.
-    */
-    public ThreadPool(int numThreads) {
-        super("ThreadPool-" + (threadPoolID++));
-        setDaemon(true);
-
-        isAlive = true;
-
-        taskQueue = new LinkedList();
-        for (int i=0; i<numThreads; i++) {
-            new PooledThread().start();
-        }
-    }
-
-
-    /**
-        Requests a new task to run. This method returns
-        immediately, and the task executes on the next available
-        idle thread in this ThreadPool.
-        <p>Tasks start execution in the order they are received.
-        @param task The task to run. If null, no action is taken.
-        @throws IllegalStateException if this ThreadPool is
-        already closed.
-    */
-    public synchronized void runTask(final Runnable task) {
-        if (!isAlive) {
-            throw new IllegalStateException();
-        }
-        if (task != null) {
-            taskQueue.add(task);
-            notifyAll();
-        }
-
-    }
-
-
-    protected Runnable getTask()
-        throws InterruptedException
-    {
-    	synchronized(this) {
-	        while (taskQueue.size() == 0) {
-	            if (!isAlive) {
-	                return null;
-	            }
-	            wait();
-	        }
-	        return (Runnable)taskQueue.removeFirst();
-    	}
-    }
-
-
-    /**
-        Closes this ThreadPool and returns immediately. All
-        threads are stopped, and any waiting tasks are not
-        executed. Once a ThreadPool is closed, no more tasks can
-        be run on this ThreadPool.
-    */
-    public void close() {
-    	synchronized(this) {
-	        if (isAlive) {
-	            isAlive = false;
-	            taskQueue.clear();
-	            interrupt();
-	        }
-    	}
-    }
-
-
-    /**
-        Closes this ThreadPool and waits for all running threads
-        to finish. Any waiting tasks are executed.
-    */
-    public void join() {
-        // notify all waiting threads that this ThreadPool is no
-        // longer alive
-        synchronized (this) {
-            isAlive = false;
-            notifyAll();
-        }
-
-        // wait for all threads to finish
-        final Thread[] threads = new Thread[activeCount()];
-        final int count = enumerate(threads);
-        for (int i=0; i<count; i++) {
-            try {
-                threads[i].join();
-            }
-            catch (InterruptedException ex) { }
-        }
-    }
-
-
-
-    /**
-        Signals that a PooledThread has started. This method
-        does nothing by default; subclasses should override to do
-        any thread-specific startup tasks.
-    */
-    protected void threadStarted() {
-        // do nothing
-    }
-
-
-    /**
-        Signals that a PooledThread has stopped. This method
-        does nothing by default; subclasses should override to do
-        any thread-specific cleanup tasks.
-    */
-    protected void threadStopped() {
-        // do nothing
-    }
-
-
-    /**
-        A PooledThread is a Thread in a ThreadPool group, designed
-        to run tasks (Runnables).
-    */
-    private class PooledThread extends Thread {
-        public PooledThread() {
-            super(ThreadPool.this,
-                "PooledThread-" + (threadID++));
-        }
-
-
-        public void run() {
-            // signal that this thread has started
-            threadStarted();
-
-            while (!isInterrupted()) {
-
-                // get a task to run
-                Runnable task = null;
-                try {
-                    task = getTask();
-                }
-                catch (InterruptedException ex) { }
-
-                // if getTask() returned null or was interrupted,
-                // close this thread.
-                if (task == null) {
-                    break;
-                }
-
-                // run the task, and eat any exceptions it throws
-                try {
-                    task.run();
-                }
-                catch (Throwable t) {
-                    uncaughtException(this, t);
-                }
-            }
-            // signal that this thread has stopped
-            threadStopped();
-        }
-    }
-}
\ No newline at end of file
+	/**
+	 * Rejection policy which silently discards the new task when the queue is full
+	 */
+	public static final int POLICY_DISCARD = 1;
+
+	/**
+	 * Rejection policy which discards the oldest queued task to make room for the new task
+	 */
+	public static final int POLICY_DISCARD_OLDEST = 2;
+
+	/**
+	 * Rejection policy which runs the new task on the calling thread when the queue is full
+	 */
+	public static final int POLICY_CALLER_RUNS = 3;
+
+	/**
+	 * The default number of tasks that can be queued
+	 */
+	private static final int DEFAULT_QUEUE_SIZE = 64;
+
+	/**
+	 * The ID of the next ThreadPool to be created
+	 */
+	private static final AtomicInteger threadPoolID = new AtomicInteger();
+
+	/**
+	 * The queue of tasks waiting to be run
+	 */
+	private transient final BoundedTaskQueue taskQueue;
+
+	/**
+	 * The threads belonging to this pool
+	 */
+	private transient final PooledThread[] pooledThreads;
+
+	/**
+	 * The policy used when the task queue is full
+	 */
+	private transient final int rejectionPolicy;
+
+	/**
+	 * Whether this pool is accepting new tasks
+	 */
+	private transient volatile boolean isAlive;
+
+	/**
+	 * Whether this pool has been closed and queued tasks are to be discarded
+	 */
+	private transient volatile boolean isClosed;
+
+	/**
+	 * The number of threads which are parked waiting for a task
+	 */
+	private transient final AtomicInteger idleCount;
+
+	/**
+	 * Counters for the tasks submitted, completed and rejected
+	 */
+	private transient final AtomicLong submittedCount, completedCount, rejectedCount;
+
+	/**
+	 * The total and maximum amount of time (in nanoseconds) tasks have waited in the queue
+	 */
+	private transient final AtomicLong totalLatency, maxLatency;
+
+	/**
+	 * Creates a new ThreadPool with the default queue size which discards the oldest
+	 * task when the queue is full.
+	 * @param	numThreads	the number of threads in the pool
+	 */
+	public ThreadPool(int numThreads) {
+		this(numThreads, DEFAULT_QUEUE_SIZE, POLICY_DISCARD_OLDEST);
+	}
+
+	/**
+	 * Creates a new ThreadPool
+	 * @param	numThreads	the number of threads in the pool
+	 * @param	queueSize	the maximum number of tasks waiting to be run
+	 * @param	policy	the rejection policy used when the queue is full
+	 */
+	public ThreadPool(int numThreads, int queueSize, int policy) {
+		super("ThreadPool-" + threadPoolID.getAndIncrement());
+		setDaemon(true);
+
+		if((policy < POLICY_ABORT) || (policy > POLICY_CALLER_RUNS)) {
+			throw new IllegalArgumentException("Unknown rejection policy: " + policy);
+		}
+
+		isAlive = true;
+		isClosed = false;
+		rejectionPolicy = policy;
+		taskQueue = new BoundedTaskQueue(queueSize);
+		idleCount = new AtomicInteger();
+		submittedCount = new AtomicLong();
+		completedCount = new AtomicLong();
+		rejectedCount = new AtomicLong();
+		totalLatency = new AtomicLong();
+		maxLatency = new AtomicLong();
+
+		// Create and start the threads
+		pooledThreads = new PooledThread[numThreads];
+		for(int i = 0; i < numThreads; i++) {
+			pooledThreads[i] = new PooledThread(i);
+			pooledThreads[i].start();
+		}
+	}
+
+	/**
+	 * Requests a new task to run. This method returns immediately, and the task
+	 * executes on the next available idle thread in this ThreadPool. Tasks start
+	 * execution in the order they are received. If the queue is full, the task is
+	 * handled according to this pool's rejection policy.
+	 * @param	task	the task to run. If null, no action is taken.
+	 * @throws	IllegalStateException	if this ThreadPool is already closed, or the
+	 * queue is full and the rejection policy is POLICY_ABORT
+	 */
+	public void runTask(final Runnable task) {
+		if(!isAlive) {
+			throw new IllegalStateException("ThreadPool is closed");
+		}
+		if(task == null) {
+			return;
+		}
+
+		submittedCount.incrementAndGet();
+		final long queueTime = System.nanoTime();
+		if(!taskQueue.offer(task, queueTime)) {
+			switch(rejectionPolicy) {
+				case POLICY_DISCARD_OLDEST:
+					// Evict the oldest tasks until the new task fits
+					do {
+						if(taskQueue.poll(null) != null) {
+							rejectedCount.incrementAndGet();
+						}
+					} while(!taskQueue.offer(task, queueTime));
+					break;
+				case POLICY_CALLER_RUNS:
+					// Run the task on the submitting thread
+					rejectedCount.incrementAndGet();
+					task.run();
+					completedCount.incrementAndGet();
+					return;
+				case POLICY_DISCARD:
+					// Drop the new task
+					rejectedCount.incrementAndGet();
+					return;
+				default:
+					rejectedCount.incrementAndGet();
+					throw new IllegalStateException("ThreadPool queue is full");
+			}
+		}
+
+		// Wake up an idle thread to run the task; busy threads drain the queue before parking
+		if(idleCount.get() > 0) {
+			wakeIdleThread();
+		}
+	}
+
+	/**
+	 * Claims and unparks one idle thread, preferring the lowest numbered thread so
+	 * recently used threads are reused. Nothing is done if every thread is busy.
+	 */
+	private void wakeIdleThread() {
+		for(int i = 0; i < pooledThreads.length; i++) {
+			if(pooledThreads[i].claim()) {
+				LockSupport.unpark(pooledThreads[i]);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Closes this ThreadPool and returns immediately. All threads are stopped,
+	 * and any waiting tasks are not executed. Once a ThreadPool is closed, no more
+	 * tasks can be run on this ThreadPool.
+	 */
+	public void close() {
+		if(!isClosed) {
+			isAlive = false;
+			isClosed = true;
+			taskQueue.clear();
+			interrupt();
+		}
+	}
+
+	/**
+	 * Closes this ThreadPool and waits for all running threads to finish.
+	 * Any waiting tasks are executed.
+	 */
+	public void join() {
+		// Stop accepting tasks and wake every thread so they drain the queue
+		isAlive = false;
+		for(int i = 0; i < pooledThreads.length; i++) {
+			LockSupport.unpark(pooledThreads[i]);
+		}
+
+		// Wait for all threads to finish
+		for(int i = 0; i < pooledThreads.length; i++) {
+			if(pooledThreads[i] == Thread.currentThread()) {
+				continue;
+			}
+			try {
+				pooledThreads[i].join();
+			} catch(InterruptedException ex) {
+				// Restore the interrupt so the caller can see it
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether this ThreadPool is still accepting tasks
+	 * @return	true if the pool has not been closed or joined
+	 */
+	public boolean isAlive() {
+		return isAlive;
+	}
+
+	/**
+	 * Returns the number of tasks currently waiting to be run
+	 * @return	the current queue depth
+	 */
+	public int getQueueDepth() {
+		return taskQueue.size();
+	}
+
+	/**
+	 * Returns the maximum number of tasks that can wait to be run
+	 * @return	the capacity of the task queue
+	 */
+	public int getQueueCapacity() {
+		return taskQueue.getCapacity();
+	}
+
+	/**
+	 * Returns the number of tasks submitted to this ThreadPool
+	 * @return	the submitted task count
+	 */
+	public long getSubmittedCount() {
+		return submittedCount.get();
+	}
+
+	/**
+	 * Returns the number of tasks that have finished running
+	 * @return	the completed task count
+	 */
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	/**
+	 * Returns the number of tasks that were rejected or evicted because the queue was full
+	 * @return	the rejected task count
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Returns the average amount of time tasks have waited in the queue before running
+	 * @return	the average task latency in nanoseconds
+	 */
+	public long getAverageLatency() {
+		final long completed = completedCount.get();
+		if(completed == 0) {
+			return 0;
+		}
+		return totalLatency.get() / completed;
+	}
+
+	/**
+	 * Returns the longest amount of time a task has waited in the queue before running
+	 * @return	the maximum task latency in nanoseconds
+	 */
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * Records the amount of time a task waited in the queue
+	 * @param	latency	the time waited in nanoseconds
+	 */
+	private void recordLatency(final long latency) {
+		totalLatency.addAndGet(latency);
+		long currentMax = maxLatency.get();
+		while((latency > currentMax) && (!maxLatency.compareAndSet(currentMax, latency))) {
+			currentMax = maxLatency.get();
+		}
+	}
+
+	/**
+	 * Signals that a PooledThread has started. This method does nothing by default;
+	 * subclasses should override to do any thread-specific startup tasks.
+	 */
+	protected void threadStarted() {
+		// Do nothing
+	}
+
+	/**
+	 * Signals that a PooledThread has stopped. This method does nothing by default;
+	 * subclasses should override to do any thread-specific cleanup tasks.
+	 */
+	protected void threadStopped() {
+		// Do nothing
+	}
+
+	/**
+	 * A PooledThread is a Thread in a ThreadPool group, designed to run tasks (Runnables).
+	 */
+	private class PooledThread extends Thread {
+		/**
+		 * The time the task currently being run was queued
+		 */
+		private transient final long[] queueTime = new long[1];
+
+		/**
+		 * Whether this thread is parked waiting for a task and has not yet been claimed
+		 */
+		private transient final AtomicBoolean idle = new AtomicBoolean();
+
+		/**
+		 * Constructor for the class PooledThread
+		 * @param	threadID	the index of this thread within the pool
+		 */
+		public PooledThread(int threadID) {
+			super(ThreadPool.this, ThreadPool.this.getName() + "-PooledThread-" + threadID);
+		}
+
+		/**
+		 * Runs tasks from the queue until the pool is closed, or until the pool
+		 * has been joined and the queue is empty.
+		 */
+		public void run() {
+			// Signal that this thread has started
+			threadStarted();
+
+			while(!isClosed) {
+				// Get a task to run
+				final Runnable task = taskQueue.poll(queueTime);
+				if(task == null) {
+					// Finish once the pool has stopped accepting tasks and the queue is drained
+					if(!isAlive) {
+						break;
+					}
+					awaitTask();
+					continue;
+				}
+
+				recordLatency(System.nanoTime() - queueTime[0]);
+
+				// Run the task, and pass any exceptions it throws to the group handler
+				try {
+					task.run();
+				} catch(Throwable t) {
+					uncaughtException(this, t);
+				}
+				completedCount.incrementAndGet();
+
+				// An interrupt only stops this thread when the pool is closing; otherwise
+				// it was aimed at the finished task and must not leak into the next one
+				if(Thread.interrupted() && isClosed) {
+					break;
+				}
+			}
+
+			// Signal that this thread has stopped
+			threadStopped();
+		}
+
+		/**
+		 * Parks this thread until it is claimed for a new task, or the pool is closed or joined.
+		 * The idle state is published before the queue is checked again, so a task offered in
+		 * between is either seen by the check or finds this thread idle and wakes it.
+		 */
+		private void awaitTask() {
+			idle.set(true);
+			idleCount.incrementAndGet();
+
+			while(idle.get() && isAlive && !isClosed && taskQueue.isEmpty()) {
+				LockSupport.park(ThreadPool.this);
+
+				// A stray interrupt would stop park from blocking; closing is seen through isClosed
+				Thread.interrupted();
+			}
+
+			// Withdraw from the idle threads unless a submitter has already claimed this thread
+			claim();
+		}
+
+		/**
+		 * Marks this thread as no longer idle
+		 * @return	true if this thread was idle, false if it was busy or already claimed
+		 */
+		public boolean claim() {
+			if(idle.compareAndSet(true, false)) {
+				idleCount.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
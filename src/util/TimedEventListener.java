@@ -0,0 +1,16 @@
+package util;
+
+/**
+ * The TimedEventListener interface is implemented by any class wishing to be
+ * called back by a TimerWheel when a scheduled timer expires.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	TimerWheel
+ */
+public interface TimedEventListener {
+	/**
+	 * Called when a timer scheduled for this listener expires
+	 * @param	eventID	the ID that was passed when the timer was scheduled
+	 */
+	void timerExpired(int eventID);
+}
@@ -0,0 +1,380 @@
+package util;
+
+/**
+ * The TimerWheel class schedules TimedEventListeners to be called back after a given
+ * amount of time. Timers are kept in a hierarchy of four wheels of 64 slots each: the first
+ * wheel holds timers due within the next 64 time units, and each wheel after that covers
+ * 64 times the range of the one before. As time advances, timers on the outer wheels are
+ * moved inwards, so each advance only touches the slots that have come due rather than
+ * every timer outstanding. Scheduling and cancelling a timer are both constant time.
+ * <p>The TimerWheel has no clock of its own - it is driven by calling advanceTo with the
+ * current game time, which means timers do not run while the game is paused. Timer entries
+ * are pooled, so scheduling does not create any objects once the pool is large enough.
+ * @author	Graham Mace
+ * @version	1.1
+ * @see	TimedEventListener
+ */
+public class TimerWheel {
+	/**
+	 * The handle returned for a timer that could not be scheduled
+	 */
+	public static final long NO_TIMER = 0;
+
+	/**
+	 * The number of bits used to index a slot on a wheel
+	 */
+	private static final int SLOT_BITS = 6;
+
+	/**
+	 * The number of slots on each wheel
+	 */
+	private static final int SLOT_COUNT = 1 << SLOT_BITS;
+
+	/**
+	 * Mask used to find a slot on a wheel
+	 */
+	private static final int SLOT_MASK = SLOT_COUNT - 1;
+
+	/**
+	 * The number of wheels in the hierarchy
+	 */
+	private static final int WHEEL_COUNT = 4;
+
+	/**
+	 * The longest delay that can be placed directly onto the wheels
+	 */
+	private static final long MAX_DELAY = (1L << (SLOT_BITS * WHEEL_COUNT)) - 1;
+
+	/**
+	 * The default number of timer entries to allocate
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * The value used to mark the end of a list of entries
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * The slot holding the timers currently being fired
+	 */
+	private static final int FIRING_SLOT = SLOT_COUNT * WHEEL_COUNT;
+
+	/**
+	 * The first entry in each slot of each wheel
+	 */
+	private transient final int[] slotHeads;
+
+	/**
+	 * The next and previous entries in the list each entry belongs to
+	 */
+	private transient int[] nextEntry, previousEntry;
+
+	/**
+	 * The slot each entry belongs to, or NONE if the entry is free
+	 */
+	private transient int[] entrySlot;
+
+	/**
+	 * The generation of each entry, used to detect stale handles
+	 */
+	private transient int[] entryGeneration;
+
+	/**
+	 * The time each entry expires
+	 */
+	private transient long[] entryDeadline;
+
+	/**
+	 * The listener and event ID of each entry
+	 */
+	private transient TimedEventListener[] entryListener;
+	private transient int[] entryEventID;
+
+	/**
+	 * The first free entry
+	 */
+	private transient int freeEntry;
+
+	/**
+	 * The time the wheels have been advanced to
+	 */
+	private transient long currentTime;
+
+	/**
+	 * The number of timers currently scheduled
+	 */
+	private transient int timerCount;
+
+	/**
+	 * Constructor for the class TimerWheel
+	 * @param	startTime	the time at which the wheels start
+	 */
+	public TimerWheel(long startTime) {
+		currentTime = startTime;
+		slotHeads = new int[FIRING_SLOT + 1];
+		for(int i = 0; i < slotHeads.length; i++) {
+			slotHeads[i] = NONE;
+		}
+
+		nextEntry = new int[0];
+		previousEntry = new int[0];
+		entrySlot = new int[0];
+		entryGeneration = new int[0];
+		entryDeadline = new long[0];
+		entryListener = new TimedEventListener[0];
+		entryEventID = new int[0];
+		freeEntry = NONE;
+		growEntries(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Schedules the specified listener to be called after the specified delay.
+	 * A delay of zero or less expires on the next advance.
+	 * @param	delay	the amount of time until the timer expires
+	 * @param	listener	the listener to call
+	 * @param	eventID	the ID passed to the listener when the timer expires
+	 * @return	a handle that can be passed to cancel
+	 */
+	public long schedule(final long delay, final TimedEventListener listener, final int eventID) {
+		if(listener == null) {
+			throw new IllegalArgumentException("listener must not be null");
+		}
+
+		// Take an entry from the free list, growing the pool if it is empty
+		if(freeEntry == NONE) {
+			growEntries(entrySlot.length * 2);
+		}
+		final int entry = freeEntry;
+		freeEntry = nextEntry[entry];
+
+		entryDeadline[entry] = currentTime + Math.max(delay, 1);
+		entryListener[entry] = listener;
+		entryEventID[entry] = eventID;
+		entryGeneration[entry]++;
+		insertEntry(entry);
+		timerCount++;
+
+		return ((long)entryGeneration[entry] << 32) | entry;
+	}
+
+	/**
+	 * Cancels the timer with the specified handle. Handles of timers that have already
+	 * expired or been cancelled are ignored.
+	 * @param	handle	the handle returned when the timer was scheduled
+	 * @return	true if the timer was cancelled
+	 */
+	public boolean cancel(final long handle) {
+		final int entry = (int)handle;
+		if((handle == NO_TIMER) || (entry < 0) || (entry >= entrySlot.length)) {
+			return false;
+		}
+		if((entrySlot[entry] == NONE) || (entryGeneration[entry] != (int)(handle >>> 32))) {
+			return false;
+		}
+
+		removeEntry(entry);
+		freeEntry(entry);
+		return true;
+	}
+
+	/**
+	 * Cancels every timer currently scheduled
+	 */
+	public void cancelAll() {
+		for(int slot = 0; slot < slotHeads.length; slot++) {
+			int entry = slotHeads[slot];
+			while(entry != NONE) {
+				final int next = nextEntry[entry];
+				freeEntry(entry);
+				entry = next;
+			}
+			slotHeads[slot] = NONE;
+		}
+	}
+
+	/**
+	 * Advances the wheels to the specified time, calling the listener of every timer that
+	 * expires on the way. Listeners may schedule or cancel timers while being called.
+	 * @param	time	the time to advance to
+	 */
+	public void advanceTo(final long time) {
+		while(currentTime < time) {
+			// Skip straight to the requested time if there is nothing to do
+			if(timerCount == 0) {
+				currentTime = time;
+				return;
+			}
+
+			currentTime++;
+
+			// Move timers from the outer wheels inwards when the inner wheel wraps around
+			final int slot = (int)(currentTime & SLOT_MASK);
+			if(slot == 0) {
+				for(int wheel = 1; wheel < WHEEL_COUNT; wheel++) {
+					final int wheelSlot = (int)((currentTime >>> (SLOT_BITS * wheel)) & SLOT_MASK);
+					cascadeSlot((wheel * SLOT_COUNT) + wheelSlot);
+					if(wheelSlot != 0) {
+						break;
+					}
+				}
+			}
+
+			// Move the current slot's timers to the firing slot, so that any timers
+			// scheduled by the listeners go into a fresh list and any cancelled by
+			// the listeners are simply unlinked
+			int entry = slotHeads[slot];
+			slotHeads[slot] = NONE;
+			slotHeads[FIRING_SLOT] = entry;
+			while(entry != NONE) {
+				entrySlot[entry] = FIRING_SLOT;
+				entry = nextEntry[entry];
+			}
+
+			// Fire each timer in turn
+			while(slotHeads[FIRING_SLOT] != NONE) {
+				entry = slotHeads[FIRING_SLOT];
+				final TimedEventListener listener = entryListener[entry];
+				final int eventID = entryEventID[entry];
+				removeEntry(entry);
+				freeEntry(entry);
+				listener.timerExpired(eventID);
+			}
+		}
+	}
+
+	/**
+	 * Returns the time the wheels have been advanced to
+	 * @return	the current time
+	 */
+	public long getCurrentTime() {
+		return currentTime;
+	}
+
+	/**
+	 * Returns the number of timers currently scheduled
+	 * @return	the number of timers waiting to expire
+	 */
+	public int getTimerCount() {
+		return timerCount;
+	}
+
+	/**
+	 * Re-inserts every timer in the specified slot so that it moves to an inner wheel
+	 * @param	slot	the index of the slot to cascade
+	 */
+	private void cascadeSlot(final int slot) {
+		int entry = slotHeads[slot];
+		slotHeads[slot] = NONE;
+		while(entry != NONE) {
+			final int next = nextEntry[entry];
+			insertEntry(entry);
+			entry = next;
+		}
+	}
+
+	/**
+	 * Places the specified entry into the slot matching its deadline
+	 * @param	entry	the entry to insert
+	 */
+	private void insertEntry(final int entry) {
+		final long deadline = entryDeadline[entry];
+		final long delay = deadline - currentTime;
+		int slot = 0;
+
+		if(delay < 0) {
+			// Already due, so fire on the current slot
+			slot = (int)(currentTime & SLOT_MASK);
+		} else if(delay > MAX_DELAY) {
+			// Too far ahead, so park on the outermost wheel and re-insert when it comes round
+			final int wheel = WHEEL_COUNT - 1;
+			slot = (wheel * SLOT_COUNT) + (int)(((currentTime + MAX_DELAY) >>> (SLOT_BITS * wheel)) & SLOT_MASK);
+		} else {
+			// Find the innermost wheel that covers the delay
+			int wheel = 0;
+			while((wheel < WHEEL_COUNT - 1) && (delay >= (1L << (SLOT_BITS * (wheel + 1))))) {
+				wheel++;
+			}
+			slot = (wheel * SLOT_COUNT) + (int)((deadline >>> (SLOT_BITS * wheel)) & SLOT_MASK);
+		}
+
+		// Link the entry onto the front of the slot's list
+		entrySlot[entry] = slot;
+		previousEntry[entry] = NONE;
+		nextEntry[entry] = slotHeads[slot];
+		if(slotHeads[slot] != NONE) {
+			previousEntry[slotHeads[slot]] = entry;
+		}
+		slotHeads[slot] = entry;
+	}
+
+	/**
+	 * Unlinks the specified entry from the slot it belongs to
+	 * @param	entry	the entry to remove
+	 */
+	private void removeEntry(final int entry) {
+		final int previous = previousEntry[entry];
+		final int next = nextEntry[entry];
+		if(previous == NONE) {
+			slotHeads[entrySlot[entry]] = next;
+		} else {
+			nextEntry[previous] = next;
+		}
+		if(next != NONE) {
+			previousEntry[next] = previous;
+		}
+	}
+
+	/**
+	 * Returns the specified entry to the free list
+	 * @param	entry	the entry to free
+	 */
+	private void freeEntry(final int entry) {
+		entrySlot[entry] = NONE;
+		entryListener[entry] = null;
+		nextEntry[entry] = freeEntry;
+		freeEntry = entry;
+		timerCount--;
+	}
+
+	/**
+	 * Grows the pool of entries to the specified size, adding the new entries to the free list
+	 * @param	capacity	the new number of entries
+	 */
+	private void growEntries(final int capacity) {
+		final int oldCapacity = entrySlot.length;
+
+		nextEntry = copyOf(nextEntry, capacity);
+		previousEntry = copyOf(previousEntry, capacity);
+		entrySlot = copyOf(entrySlot, capacity);
+		entryGeneration = copyOf(entryGeneration, capacity);
+		entryEventID = copyOf(entryEventID, capacity);
+
+		final long[] deadlines = new long[capacity];
+		System.arraycopy(entryDeadline, 0, deadlines, 0, oldCapacity);
+		entryDeadline = deadlines;
+
+		final TimedEventListener[] listeners = new TimedEventListener[capacity];
+		System.arraycopy(entryListener, 0, listeners, 0, oldCapacity);
+		entryListener = listeners;
+
+		// Chain the new entries onto the free list
+		for(int i = capacity - 1; i >= oldCapacity; i--) {
+			entrySlot[i] = NONE;
+			nextEntry[i] = freeEntry;
+			freeEntry = i;
+		}
+	}
+
+	/**
+	 * Returns a copy of the specified array with the specified length
+	 * @param	array	the array to copy
+	 * @param	length	the length of the new array
+	 * @return	the new array
+	 */
+	private static int[] copyOf(final int[] array, final int length) {
+		final int[] newArray = new int[length];
+		System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+		return newArray;
+	}
+}